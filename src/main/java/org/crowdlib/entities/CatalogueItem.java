@@ -1,7 +1,10 @@
 package org.crowdlib.entities;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 import javax.ws.rs.core.Link;
 import javax.xml.bind.annotation.XmlElement;
@@ -10,7 +13,7 @@ import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 @XmlRootElement
-public class CatalogueItem {
+public class CatalogueItem implements Identified {
 
 	private Integer id;
 
@@ -20,16 +23,15 @@ public class CatalogueItem {
 	
 	private List<Comment> comments;
 	
-	private List<User> followers;
-	
 	private Link linkToAllComments;
 
-	private List<Link> linksToEachComment;
+	private int[] idsOfEachComment;
+
+	private int numberOfCommentIds;
 	
 	public CatalogueItem(){
 		this.comments = new ArrayList<Comment>();
-		this.followers = new ArrayList<User>();
-		this.linksToEachComment = new ArrayList<Link>();
+		this.idsOfEachComment = new int[8];
 	}
 
 	public CatalogueItem(Integer id, String title, String author, Link linkToAllComments) {
@@ -38,11 +40,11 @@ public class CatalogueItem {
 		this.title = title;
 		this.author = author;
 		this.comments = new ArrayList<Comment>();
-		this.followers = new ArrayList<User>();
 		this.linkToAllComments = linkToAllComments;
-		this.linksToEachComment = new ArrayList<Link>();
+		this.idsOfEachComment = new int[8];
 	}
 
+	@Override
 	public Integer getId() {
 		return id;
 	}
@@ -76,14 +78,37 @@ public class CatalogueItem {
 		this.comments = comments;
 	}
 	
+    /**
+     * Links to the comments of the item in the order they were added. Only
+     * their ids are kept; the list is a view building each link when it is read.
+     * @return Read-only view of the links
+     */
     @XmlElement(name = "linksToEachComment")
     @XmlJavaTypeAdapter(Link.JaxbAdapter.class) 
     public List<Link> getLinksToEachComment() {
-        return linksToEachComment;
+        return new LinksToEachComment();
     }
-    
-    public void setLinksToEachComment(List<Link> links) {
-        this.linksToEachComment = links;
+
+    /**
+     * Appends the link to a comment added to the item
+     * @param commentId Id of the comment
+     */
+    public synchronized void addLinkToComment(int commentId) {
+        if (numberOfCommentIds == idsOfEachComment.length) {
+            idsOfEachComment = Arrays.copyOf(idsOfEachComment, numberOfCommentIds * 2);
+        }
+        idsOfEachComment[numberOfCommentIds++] = commentId;
+    }
+
+    private synchronized int commentIdAt(int index) {
+        if (index < 0 || index >= numberOfCommentIds) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return idsOfEachComment[index];
+    }
+
+    private synchronized int numberOfCommentIds() {
+        return numberOfCommentIds;
     }
     
 	public Link getLinkToAllComments() {
@@ -94,13 +119,17 @@ public class CatalogueItem {
 		this.linkToAllComments = linkToAllComments;
 	}
 
-    @XmlTransient
-	public List<User> getFollowers() {
-		return followers;
-	}
+	private class LinksToEachComment extends AbstractList<Link> implements RandomAccess {
+
+		@Override
+		public Link get(int index) {
+			return CommentLinks.toComment(id, commentIdAt(index), "comment");
+		}
 
-	public void setFollowers(List<User> followers) {
-		this.followers = followers;
+		@Override
+		public int size() {
+			return numberOfCommentIds();
+		}
 	}
     
     
@@ -1,8 +1,8 @@
 package org.crowdlib.entities;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.ws.rs.core.Link;
 import javax.xml.bind.annotation.XmlElement;
@@ -10,14 +10,33 @@ import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import org.crowdlib.ids.AtomicIdAllocator;
+import org.crowdlib.ids.IdAllocator;
+import org.crowdlib.inmemory.collections.HotFavourites;
+import org.crowdlib.text.OffHeapTextArena;
+import org.crowdlib.text.Utf8TextSerializer;
+import org.crowdlib.time.EpochMillisSerializer;
+import org.crowdlib.time.MonotonicClock;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 @XmlRootElement
-public class Comment {
+public class Comment implements Identified {
+
+	/**
+	 * Creation timestamp of comments whose creation time is not known
+	 */
+	public static final long NO_CREATION_TIMESTAMP = Long.MIN_VALUE;
 
 	private Integer id;
 
 	private String commentContent;
 
-	private LocalDateTime creationTimestamp;
+	private Utf8Text storedCommentContent;
+
+	private long creationTimestamp;
 	
 	private User owner;
 	
@@ -27,34 +46,93 @@ public class Comment {
 	
 	private List<Comment> replies;
 	
-	private Link linkToSelf;
-	
-	private Link linkToReplies;
+	private boolean deleted;
+
+	private volatile int favouritesCount;
 
-	private int favouritesCount;
+	private volatile HotFavourites hotFavourites;
+
+	private static final AtomicReferenceFieldUpdater<Comment, HotFavourites> HOT_FAVOURITES = AtomicReferenceFieldUpdater
+			.newUpdater(Comment.class, HotFavourites.class, "hotFavourites");
 	
-	public static int numberOfComments=0;
+	private static IdAllocator idAllocator = new AtomicIdAllocator();
+
+	private static OffHeapTextArena contentArena;
 
 	public Comment(){
 		super();
-		this.id = ++numberOfComments;
-		this.creationTimestamp = LocalDateTime.now();
+		this.id = idAllocator.nextId();
+		this.creationTimestamp = MonotonicClock.currentTimeMillis();
 		this.parentComment = null;
 		this.replies = new ArrayList<Comment>();
 		this.favouritesCount = 0;
 	}
 	public Comment(String content, User owner, CatalogueItem catalogueItem) {
 		super();
-		this.id = ++numberOfComments;
-		this.commentContent = content;
-		this.creationTimestamp = LocalDateTime.now();
+		this.id = idAllocator.nextId();
+		storeContent(content);
+		this.creationTimestamp = MonotonicClock.currentTimeMillis();
 		this.owner = owner;
 		this.catalogueItem = catalogueItem;
 		this.parentComment = null;
 		this.replies = new ArrayList<Comment>();
 		this.favouritesCount = 0;
 	}
-	
+
+	/**
+	 * Recreates a comment that already has an id, e.g. one read back from a database,
+	 * without allocating a new id
+	 * @param id Id of the comment
+	 * @param content Content of the comment
+	 * @param creationTimestamp When the comment was created, in milliseconds since the epoch
+	 */
+	public Comment(Integer id, String content, long creationTimestamp) {
+		super();
+		this.id = id;
+		storeContent(content);
+		this.creationTimestamp = creationTimestamp;
+		this.parentComment = null;
+		this.replies = new ArrayList<Comment>();
+		this.favouritesCount = 0;
+	}
+
+	/**
+	 * Replaces the allocator used to assign ids to new comments
+	 * @param allocator Allocator to be used from now on
+	 */
+	public static void setIdAllocator(IdAllocator allocator) {
+		idAllocator = allocator;
+	}
+
+	/**
+	 * Retrieves the allocator currently assigning ids to new comments
+	 * @return The allocator in use
+	 */
+	public static IdAllocator getIdAllocator() {
+		return idAllocator;
+	}
+
+	/**
+	 * Keeps the content of the comments created or edited from now on in an
+	 * off-heap arena instead of in Strings
+	 * @param arena Arena to be used, null to keep content on the heap
+	 */
+	public static void setContentArena(OffHeapTextArena arena) {
+		contentArena = arena;
+	}
+
+	private void storeContent(String content) {
+		OffHeapTextArena arena = contentArena;
+		if (arena == null || content == null) {
+			this.commentContent = content;
+			this.storedCommentContent = null;
+		} else {
+			this.storedCommentContent = arena.store(content);
+			this.commentContent = null;
+		}
+	}
+
+	@Override
 	public Integer getId() {
 		return id;
 	}
@@ -63,19 +141,50 @@ public class Comment {
 		this.id = id;
 	}
 
+	@JsonIgnore
 	public String getCommentContent() {
-		return commentContent;
+		Utf8Text stored = storedCommentContent;
+		return stored == null ? commentContent : stored.toString();
 	}
 
+	@JsonProperty
 	public void setCommentContent(String commentContent) {
-		this.commentContent = commentContent;
+		storeContent(commentContent);
+	}
+
+	/**
+	 * Content as it is written to JSON: content stored outside a String is
+	 * written from its UTF-8 bytes without being decoded
+	 * @return The stored content if there is one, the String content otherwise
+	 */
+	@JsonProperty("commentContent")
+	@JsonSerialize(using = Utf8TextSerializer.class)
+	public Object getCommentContentForJson() {
+		Utf8Text stored = storedCommentContent;
+		return stored == null ? commentContent : stored;
 	}
 
-	public LocalDateTime getCreationTimestamp() {
+	/**
+	 * Sets content that stays where it was loaded from, e.g. a memory-mapped
+	 * snapshot, and is only decoded when it is read. Setting the content
+	 * with {@link #setCommentContent(String)} replaces it.
+	 * @param storedCommentContent Content of the comment
+	 */
+	public void setStoredCommentContent(Utf8Text storedCommentContent) {
+		this.storedCommentContent = storedCommentContent;
+		this.commentContent = null;
+	}
+
+	/**
+	 * When the comment was created, written to JSON the way a LocalDateTime is
+	 * @return Milliseconds since the epoch, or {@link #NO_CREATION_TIMESTAMP}
+	 */
+	@JsonSerialize(using = EpochMillisSerializer.class)
+	public long getCreationTimestamp() {
 		return creationTimestamp;
 	}
 
-	public void setCreationTimestamp(LocalDateTime creationTimestamp) {
+	public void setCreationTimestamp(long creationTimestamp) {
 		this.creationTimestamp = creationTimestamp;
 	}
 
@@ -114,33 +223,88 @@ public class Comment {
 		this.replies = replies;
 	}
 
+	/**
+	 * The link to the comment itself, built from its id and its item's id
+	 * @return Link to the comment, null if it does not belong to an item
+	 */
     @XmlElement(name = "linkToSelf")
     @XmlJavaTypeAdapter(Link.JaxbAdapter.class) 
 	public Link getLinkToSelf() {
-		return linkToSelf;
+		return CommentLinks.toComment(this, "self");
 	}
 
-	public void setLinkToSelf(Link linkToSelf) {
-		this.linkToSelf = linkToSelf;
-	}
-	
+	/**
+	 * The link to the replies of the comment, built from its id and its item's id
+	 * @return Link to the replies, null once the comment is deleted or if it does not belong to an item
+	 */
     @XmlElement(name = "linkToReplies")
     @XmlJavaTypeAdapter(Link.JaxbAdapter.class) 
 	public Link getLinkToReplies() {
-		return linkToReplies;
+		if (deleted || catalogueItem == null || catalogueItem.getId() == null || id == null) {
+			return null;
+		}
+		return CommentLinks.toReplies(catalogueItem.getId(), id);
 	}
 
-	public void setLinkToReplies(Link linkToReplies) {
-		this.linkToReplies = linkToReplies;
+	@XmlTransient
+	public boolean isDeleted() {
+		return deleted;
 	}
 
+	public void setDeleted(boolean deleted) {
+		this.deleted = deleted;
+	}
+
+	/**
+	 * Retrieves the number of favourites, including those of a hot comment
+	 * that it is not ranked by yet. The number never goes down.
+	 * @return Number of favourites
+	 */
 	public int getFavouritesCount() {
-		return favouritesCount;
+		HotFavourites hot = hotFavourites;
+		if (hot == null) {
+			return favouritesCount;
+		}
+		int count = hot.count(favouritesCount);
+		if (count >= 0) {
+			return count;
+		}
+		// the comment is being made cold, which holds its monitor until then
+		synchronized (this) {
+			return getFavouritesCount();
+		}
 	}
 
 	public void setFavouritesCount(int favouritesCount) {
 		this.favouritesCount = favouritesCount;
 	}
+
+	/**
+	 * Retrieves the number of favourites the comment is ranked by, which lags
+	 * behind the exact number while the comment is hot
+	 * @return Number of favourites added to the count itself
+	 */
+	public int materializedFavouritesCount() {
+		return favouritesCount;
+	}
+
+	/**
+	 * Retrieves where the favourites of a hot comment are counted
+	 * @return The favourites, or null while they go straight to the count
+	 */
+	public HotFavourites hotFavourites() {
+		return hotFavourites;
+	}
+
+	/**
+	 * Replaces where favourites are counted if it is the expected one
+	 * @param expected Favourites expected, may be null
+	 * @param updated Favourites to be used from now on, may be null
+	 * @return true if they were replaced
+	 */
+	public boolean compareAndSetHotFavourites(HotFavourites expected, HotFavourites updated) {
+		return HOT_FAVOURITES.compareAndSet(this, expected, updated);
+	}
 	
 	
 	
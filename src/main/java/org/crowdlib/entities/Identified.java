@@ -0,0 +1,12 @@
+package org.crowdlib.entities;
+
+/**
+ * An entity with an id that is unique among the entities of its type
+ */
+public interface Identified {
+
+	/**
+	 * @return Id of the entity, null if it has none yet
+	 */
+	Integer getId();
+}
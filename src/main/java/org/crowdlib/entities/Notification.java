@@ -11,12 +11,15 @@ public class Notification {
 	
 	private Comment comment;
 	
+	private int logPosition;
+	
 	private Link linkToComment;
 
-	public Notification(CatalogueItem catalogueItem, Comment comment, Link linkToComment) {
+	public Notification(CatalogueItem catalogueItem, Comment comment, int logPosition, Link linkToComment) {
 		super();
 		this.catalogueItem = catalogueItem;
 		this.comment = comment;
+		this.logPosition = logPosition;
 		this.linkToComment = linkToComment;
 	}
 
@@ -38,6 +41,18 @@ public class Notification {
 		this.comment = comment;
 	}
 
+	/**
+	 * Position of the comment in the comment log of its catalogue item
+	 */
+	@XmlTransient
+	public int getLogPosition() {
+		return logPosition;
+	}
+
+	public void setLogPosition(int logPosition) {
+		this.logPosition = logPosition;
+	}
+
     @XmlElement(name = "linkToNewComment")
     @XmlJavaTypeAdapter(Link.JaxbAdapter.class) 
 	public Link getLinkToComment() {
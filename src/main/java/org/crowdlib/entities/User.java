@@ -7,13 +7,17 @@ package org.crowdlib.entities;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
 
+import org.crowdlib.inmemory.collections.IdIndexedList;
+
 @XmlRootElement
-public class User {
+public class User implements Identified {
 
 	private Integer id;
 
@@ -35,17 +39,21 @@ public class User {
 	
 	private List<Notification> notifications;
 
+	private Map<Integer, Integer> readWatermarks;
+
 	public User() {
-		this.favouriteComments = new ArrayList<Comment>();
-		this.followedItems = new ArrayList<CatalogueItem>();
+		this.favouriteComments = new IdIndexedList<Comment>();
+		this.followedItems = new IdIndexedList<CatalogueItem>();
 		this.notifications = new ArrayList<Notification>();
+		this.readWatermarks = new ConcurrentHashMap<Integer, Integer>();
 	}
 	
 	public User(String username) {
 		this.username = username;
-		this.favouriteComments = new ArrayList<Comment>();
-		this.followedItems = new ArrayList<CatalogueItem>();
+		this.favouriteComments = new IdIndexedList<Comment>();
+		this.followedItems = new IdIndexedList<CatalogueItem>();
 		this.notifications = new ArrayList<Notification>();
+		this.readWatermarks = new ConcurrentHashMap<Integer, Integer>();
 	}
 
 	public User(Integer id, String title, String name, String surname, String role, String username, String password) {
@@ -56,11 +64,13 @@ public class User {
 		this.role = role;
 		this.username = username;
 		this.password = password;
-		this.favouriteComments = new ArrayList<Comment>();
-		this.followedItems = new ArrayList<CatalogueItem>();
+		this.favouriteComments = new IdIndexedList<Comment>();
+		this.followedItems = new IdIndexedList<CatalogueItem>();
 		this.notifications = new ArrayList<Notification>();
+		this.readWatermarks = new ConcurrentHashMap<Integer, Integer>();
 	}
 
+	@Override
 	public Integer getId() {
 		return id;
 	}
@@ -124,7 +134,7 @@ public class User {
 	}
 
 	public void setFavouriteComments(List<Comment> comments) {
-		this.favouriteComments = comments;
+		this.favouriteComments = new IdIndexedList<Comment>(comments);
 	}
 
 	@XmlTransient
@@ -133,7 +143,7 @@ public class User {
 	}
 
 	public void setFollowedItems(List<CatalogueItem> followedItems) {
-		this.followedItems = followedItems;
+		this.followedItems = new IdIndexedList<CatalogueItem>(followedItems);
 	}
 	
 	@XmlTransient
@@ -145,6 +155,19 @@ public class User {
 		this.notifications = notifications;
 	}
 
+	/**
+	 * Positions in the comment logs of followed items up to which the user has seen
+	 * the comments, keyed by item id
+	 */
+	@XmlTransient
+	public Map<Integer, Integer> getReadWatermarks() {
+		return readWatermarks;
+	}
+
+	public void setReadWatermarks(Map<Integer, Integer> readWatermarks) {
+		this.readWatermarks = readWatermarks;
+	}
+
 	@Override
 	public int hashCode() {
 		return id.hashCode();
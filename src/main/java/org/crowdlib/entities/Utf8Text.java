@@ -0,0 +1,54 @@
+package org.crowdlib.entities;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text kept as UTF-8 in a buffer shared with other texts, such as a
+ * memory-mapped snapshot, instead of in a String of its own. It is decoded
+ * every time it is read.
+ */
+public final class Utf8Text {
+
+	private final ByteBuffer buffer;
+
+	private final int offset;
+
+	private final int length;
+
+	/**
+	 * @param buffer Buffer holding the text, its position and limit are ignored
+	 * @param offset Index of the first byte of the text in the buffer
+	 * @param length Number of bytes of the text
+	 */
+	public Utf8Text(ByteBuffer buffer, int offset, int length) {
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * @return Number of bytes of the text
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Copies the UTF-8 bytes of the text to the start of an array
+	 * @param destination Array at least {@link #length()} bytes long
+	 */
+	public void copyTo(byte[] destination) {
+		// a view of its own, so that concurrent reads of the buffer don't share a position
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset);
+		view.get(destination, 0, length);
+	}
+
+	@Override
+	public String toString() {
+		byte[] bytes = new byte[length];
+		copyTo(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
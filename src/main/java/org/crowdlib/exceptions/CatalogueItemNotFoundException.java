@@ -4,6 +4,10 @@ public class CatalogueItemNotFoundException extends Exception {
 
 	private static final long serialVersionUID = 6274846720511918832L;
 
+	public static final String NOT_AVAILABLE_MESSAGE = "Catalogue item not available in the system";
+
+	private static final CatalogueItemNotFoundException NOT_AVAILABLE = new CatalogueItemNotFoundException(NOT_AVAILABLE_MESSAGE, false);
+
 	public CatalogueItemNotFoundException(String msg) {
 		super(msg);
 	}
@@ -11,4 +15,19 @@ public class CatalogueItemNotFoundException extends Exception {
 	public CatalogueItemNotFoundException(String msg, Exception e) {
 		super(msg, e);
 	}
+
+	/**
+	 * Creates an exception without a stack trace or suppressed exceptions
+	 */
+	private CatalogueItemNotFoundException(String msg, boolean writableStackTrace) {
+		super(msg, null, false, writableStackTrace);
+	}
+
+	/**
+	 * Retrieves the shared, stackless exception thrown when an item id is unknown
+	 * @return The shared, immutable exception
+	 */
+	public static CatalogueItemNotFoundException notAvailable() {
+		return NOT_AVAILABLE;
+	}
 }
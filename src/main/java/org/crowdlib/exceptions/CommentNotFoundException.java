@@ -4,6 +4,10 @@ public class CommentNotFoundException extends Exception {
 
 	private static final long serialVersionUID = 1808743362263658538L;
 
+	public static final String NOT_AVAILABLE_MESSAGE = "Comment not available";
+
+	private static final CommentNotFoundException NOT_AVAILABLE = new CommentNotFoundException(NOT_AVAILABLE_MESSAGE, false);
+
 	public CommentNotFoundException(String msg) {
 		super(msg);
 	}
@@ -11,4 +15,21 @@ public class CommentNotFoundException extends Exception {
 	public CommentNotFoundException(String msg, Exception e) {
 		super(msg, e);
 	}
+
+	/**
+	 * Creates an exception without a stack trace or suppressed exceptions
+	 */
+	private CommentNotFoundException(String msg, boolean writableStackTrace) {
+		super(msg, null, false, writableStackTrace);
+	}
+
+	/**
+	 * Retrieves the shared exception thrown when a comment is not available. It has
+	 * no stack trace, so clients probing unknown comment ids cost little more than
+	 * successful lookups.
+	 * @return The shared, immutable exception
+	 */
+	public static CommentNotFoundException notAvailable() {
+		return NOT_AVAILABLE;
+	}
 }
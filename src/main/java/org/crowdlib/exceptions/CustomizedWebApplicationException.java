@@ -1,18 +1,61 @@
 package org.crowdlib.exceptions;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 
+/**
+ * Error sent back to the client as a plain text response. These are expected
+ * client errors, such as unknown ids, so the exception does not record a
+ * stack trace and the response for each status and message is only put
+ * together once.
+ */
 public class CustomizedWebApplicationException extends WebApplicationException {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final int MAX_CACHED_MESSAGES = 256;
+
+	private static final ConcurrentHashMap<Status, ConcurrentHashMap<String, ResponseBuilder>> responseTemplates = new ConcurrentHashMap<Status, ConcurrentHashMap<String, ResponseBuilder>>();
+
 	public CustomizedWebApplicationException(Status status, String message) {
-		super(Response.status(status).type(MediaType.TEXT_PLAIN).entity("Error : " + message).build());
+		super(message, errorResponse(status, message));
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
+	/**
+	 * Builds the response from a cached template. Responses themselves are not
+	 * shared because Jersey writes into them while sending them.
+	 */
+	private static Response errorResponse(Status status, String message) {
+		if (message == null) {
+			return newResponseBuilder(status, message).build();
+		}
+		ConcurrentHashMap<String, ResponseBuilder> templates = responseTemplates.get(status);
+		if (templates == null) {
+			templates = responseTemplates.computeIfAbsent(status,
+					key -> new ConcurrentHashMap<String, ResponseBuilder>());
+		}
+		ResponseBuilder template = templates.get(message);
+		if (template == null) {
+			template = newResponseBuilder(status, message);
+			// messages are expected to come from a small fixed set, do not let others fill the cache
+			if (templates.size() < MAX_CACHED_MESSAGES) {
+				templates.putIfAbsent(message, template);
+			}
+		}
+		return template.clone().build();
+	}
+
+	private static ResponseBuilder newResponseBuilder(Status status, String message) {
+		return Response.status(status).type(MediaType.TEXT_PLAIN).entity("Error : " + message);
 	}
-	
-	
 }
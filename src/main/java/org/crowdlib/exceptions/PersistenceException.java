@@ -0,0 +1,14 @@
+package org.crowdlib.exceptions;
+
+/**
+ * Thrown when the database or the journal behind the DAOs cannot be read or
+ * written. It is unchecked, as a request cannot recover from it.
+ */
+public class PersistenceException extends RuntimeException {
+
+	private static final long serialVersionUID = -2916433752069847614L;
+
+	public PersistenceException(String msg, Exception e) {
+		super(msg, e);
+	}
+}
@@ -4,6 +4,10 @@ public class UserNotFoundException extends Exception {
 
 	private static final long serialVersionUID = -653870917875607543L;
 
+	public static final String NOT_AVAILABLE_MESSAGE = "Not a registered user";
+
+	private static final UserNotFoundException NOT_AVAILABLE = new UserNotFoundException(NOT_AVAILABLE_MESSAGE, false);
+
 	public UserNotFoundException(String msg) {
 		super(msg);
 	}
@@ -11,4 +15,19 @@ public class UserNotFoundException extends Exception {
 	public UserNotFoundException(String msg, Exception e) {
 		super(msg, e);
 	}
+
+	/**
+	 * Creates an exception without a stack trace or suppressed exceptions
+	 */
+	private UserNotFoundException(String msg, boolean writableStackTrace) {
+		super(msg, null, false, writableStackTrace);
+	}
+
+	/**
+	 * Retrieves the shared, stackless exception thrown for a username that is not registered
+	 * @return The shared, immutable exception
+	 */
+	public static UserNotFoundException notAvailable() {
+		return NOT_AVAILABLE;
+	}
 }
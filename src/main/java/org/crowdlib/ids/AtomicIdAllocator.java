@@ -0,0 +1,29 @@
+package org.crowdlib.ids;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single node allocator handing out dense, increasing ids from one atomic
+ * counter. Allocation is lock-free: every call is a single atomic add.
+ */
+public class AtomicIdAllocator implements IdAllocator {
+
+	private final AtomicInteger lastId;
+
+	public AtomicIdAllocator() {
+		this(0);
+	}
+
+	/**
+	 * Creates an allocator whose first id is the one following lastId
+	 * @param lastId The last id already in use
+	 */
+	public AtomicIdAllocator(int lastId) {
+		this.lastId = new AtomicInteger(lastId);
+	}
+
+	@Override
+	public int nextId() {
+		return lastId.incrementAndGet();
+	}
+}
@@ -0,0 +1,99 @@
+package org.crowdlib.ids;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Allocator in which every thread leases a whole block of consecutive ids from
+ * a shared {@link IdBlockSource} and then hands them out locally, so the shared
+ * source is only touched once per block. Ids are unique but only increasing
+ * within the thread that allocated them.
+ */
+public class BlockLeasingIdAllocator implements IdAllocator {
+
+	private final IdBlockSource blockSource;
+
+	private final int blockSize;
+
+	private final ThreadLocal<Lease> leases = new ThreadLocal<Lease>() {
+		@Override
+		protected Lease initialValue() {
+			return new Lease();
+		}
+	};
+
+	/**
+	 * Creates an allocator leasing blocks from a counter local to this node
+	 * @param blockSize Number of ids reserved by a thread at a time
+	 */
+	public BlockLeasingIdAllocator(int blockSize) {
+		this(new LocalIdBlockSource(0), blockSize);
+	}
+
+	/**
+	 * Creates an allocator leasing blocks from the given source, e.g. one
+	 * shared between several nodes
+	 * @param blockSource Source of id blocks
+	 * @param blockSize Number of ids reserved by a thread at a time
+	 */
+	public BlockLeasingIdAllocator(IdBlockSource blockSource, int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Block size must be positive");
+		}
+		this.blockSource = blockSource;
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public int nextId() {
+		Lease lease = leases.get();
+		if (lease.next == lease.end) {
+			lease.next = blockSource.leaseBlock(blockSize);
+			lease.end = lease.next + blockSize;
+		}
+		return lease.next++;
+	}
+
+	/**
+	 * A source of disjoint blocks of ids.
+	 */
+	public interface IdBlockSource {
+
+		/**
+		 * Reserves a block of consecutive ids that is never handed out again
+		 * @param blockSize Number of ids in the block
+		 * @return The first id of the reserved block
+		 */
+		public int leaseBlock(int blockSize);
+	}
+
+	/**
+	 * Block source backed by an atomic counter in this JVM.
+	 */
+	public static class LocalIdBlockSource implements IdBlockSource {
+
+		private final AtomicInteger nextBlockStart;
+
+		/**
+		 * Creates a block source whose first block starts after lastId
+		 * @param lastId The last id already in use
+		 */
+		public LocalIdBlockSource(int lastId) {
+			this.nextBlockStart = new AtomicInteger(lastId + 1);
+		}
+
+		@Override
+		public int leaseBlock(int blockSize) {
+			return nextBlockStart.getAndAdd(blockSize);
+		}
+	}
+
+	/**
+	 * The part of a leased block not handed out yet by the owning thread.
+	 */
+	private static final class Lease {
+
+		private int next;
+
+		private int end;
+	}
+}
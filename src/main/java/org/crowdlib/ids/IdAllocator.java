@@ -0,0 +1,14 @@
+package org.crowdlib.ids;
+
+/**
+ * Hands out unique ids for newly created entities. Implementations must be
+ * safe to call from many request threads at once.
+ */
+public interface IdAllocator {
+
+	/**
+	 * Allocates an id that has not been returned before by this allocator
+	 * @return A new unique id
+	 */
+	public int nextId();
+}
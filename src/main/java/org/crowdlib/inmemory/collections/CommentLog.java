@@ -0,0 +1,124 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.crowdlib.entities.Comment;
+
+/**
+ * Append-only, ordered log of the comments posted on one catalogue item. Every
+ * comment gets the next position in the log, so a position identifies a point
+ * in the discussion that does not move when newer comments are appended.
+ * Appends are serialised, reads take no lock. The log also ranks its comments
+ * by favourites in a {@link FavouritesLeaderboard}.
+ */
+public class CommentLog {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private volatile Comment[] entries = new Comment[INITIAL_CAPACITY];
+
+	private volatile int size;
+
+	private final FavouritesLeaderboard leaderboard = new FavouritesLeaderboard();
+
+	/**
+	 * Appends a comment at the end of the log
+	 * @param comment Comment to be appended
+	 * @return Position of the comment in the log
+	 */
+	public synchronized int append(Comment comment) {
+		Comment[] current = entries;
+		int position = size;
+		if (position == current.length) {
+			current = Arrays.copyOf(current, position << 1);
+			entries = current;
+		}
+		current[position] = comment;
+		// publishing the new size makes the entry visible to readers
+		size = position + 1;
+		synchronized (comment) {
+			leaderboard.add(comment);
+		}
+		return position;
+	}
+
+	/**
+	 * Retrieves the leaderboard that favourites count changes of the comments
+	 * in this log have to be reported to
+	 * @return The leaderboard of this log
+	 */
+	public FavouritesLeaderboard getFavouritesLeaderboard() {
+		return leaderboard;
+	}
+
+	/**
+	 * Retrieves the most favourited comments of the log. When fewer than limit
+	 * comments have been favourited the rest are filled up in log order, so
+	 * the cost stays proportional to limit.
+	 * @param limit Maximum number of comments returned
+	 * @return At most limit comments, most favourited first
+	 */
+	public List<Comment> readMostFavourited(int limit) {
+		List<Comment> comments = leaderboard.top(limit);
+		if (comments.size() >= limit) {
+			return comments;
+		}
+		Set<Comment> ranked = Collections.newSetFromMap(new IdentityHashMap<Comment, Boolean>());
+		ranked.addAll(comments);
+		int end = size;
+		Comment[] snapshot = entries;
+		// every ranked comment is skipped at most once, and fewer than limit are
+		for (int position = 0; position < end && comments.size() < limit; position++) {
+			if (!ranked.contains(snapshot[position])) {
+				comments.add(snapshot[position]);
+			}
+		}
+		return comments;
+	}
+
+	/**
+	 * Retrieves the number of comments in the log
+	 * @return Number of comments appended so far
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retrieves the comment at this position
+	 * @param position Position in the log
+	 * @return Comment at this position
+	 */
+	public Comment get(int position) {
+		int end = size;
+		if (position < 0 || position >= end) {
+			throw new IndexOutOfBoundsException("No comment at position " + position);
+		}
+		return entries[position];
+	}
+
+	/**
+	 * Retrieves the comments that follow a position in the log. The cost depends
+	 * only on the number of comments returned.
+	 * @param afterPosition Position after which to start, -1 to start at the beginning
+	 * @param limit Maximum number of comments returned
+	 * @return List of at most limit comments in log order
+	 */
+	public List<Comment> readAfter(int afterPosition, int limit) {
+		// read the size before the array, the array is then at least as new
+		int end = size;
+		Comment[] snapshot = entries;
+		int from = Math.max(afterPosition + 1, 0);
+		int to = (int) Math.min((long) from + limit, end);
+		List<Comment> comments = new ArrayList<Comment>(Math.max(to - from, 0));
+		for (int position = from; position < to; position++) {
+			comments.add(snapshot[position]);
+		}
+		return comments;
+	}
+}
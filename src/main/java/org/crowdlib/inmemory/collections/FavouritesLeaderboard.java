@@ -0,0 +1,95 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.crowdlib.entities.Comment;
+
+/**
+ * The favourited comments of one catalogue item, ordered by favourites count,
+ * most favourited first, and by id among comments with the same count. Every
+ * comment is kept under a key packing its count and its id into a long, in a
+ * skip list, so that reading the top K comments walks K entries and a new
+ * favourite moves a comment with two O(log n) updates. Comments nobody has
+ * favourited are not kept here at all; {@link CommentLog} lists them. A
+ * comment whose favourites are counted in {@link HotFavourites} keeps the rank
+ * of the count last materialized until the next materialization.
+ *
+ * Updates of one comment must hold its monitor, which orders them. A moving
+ * comment is inserted under its new key before its old key goes, so readers
+ * may meet it twice but never miss it, and skip the second, lower entry.
+ */
+public class FavouritesLeaderboard {
+
+	private final ConcurrentSkipListMap<Long, Comment> comments = new ConcurrentSkipListMap<Long, Comment>();
+
+	/**
+	 * Ranks a comment appended to the item's log, if it has been favourited.
+	 * The caller holds the monitor of the comment.
+	 * @param comment Comment specified
+	 */
+	void add(Comment comment) {
+		int favouritesCount = comment.materializedFavouritesCount();
+		if (favouritesCount > 0) {
+			comments.put(key(favouritesCount, comment.getId()), comment);
+		}
+	}
+
+	/**
+	 * Moves a comment to the rank of its new favourites count. The caller holds
+	 * the monitor of the comment and has already changed the count.
+	 * @param comment Comment specified, whose count has changed
+	 * @param previousFavouritesCount Materialized count before the change
+	 * @param favouritesCount Materialized count after the change
+	 */
+	public void favouritesCountChanged(Comment comment, int previousFavouritesCount, int favouritesCount) {
+		if (favouritesCount == previousFavouritesCount) {
+			return;
+		}
+		if (favouritesCount > 0) {
+			comments.put(key(favouritesCount, comment.getId()), comment);
+		}
+		if (previousFavouritesCount > 0) {
+			comments.remove(key(previousFavouritesCount, comment.getId()));
+		}
+	}
+
+	/**
+	 * Retrieves the most favourited comments
+	 * @param limit Maximum number of comments returned
+	 * @return At most limit comments, most favourited first
+	 */
+	public List<Comment> top(int limit) {
+		List<Comment> top = new ArrayList<Comment>(Math.min(limit, 64));
+		Set<Comment> seen = Collections.newSetFromMap(new IdentityHashMap<Comment, Boolean>());
+		for (Map.Entry<Long, Comment> entry : comments.entrySet()) {
+			if (top.size() >= limit) {
+				break;
+			}
+			if (seen.add(entry.getValue())) {
+				top.add(entry.getValue());
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * @return Number of comments ranked, which may count a moving comment twice
+	 */
+	public int size() {
+		return comments.size();
+	}
+
+	/**
+	 * The count is stored negated in the high half, so that the ascending order
+	 * of the keys is the descending order of the counts; ids come second.
+	 */
+	private static Long key(int favouritesCount, int id) {
+		return ((long) -favouritesCount << 32) | (id & 0xFFFFFFFFL);
+	}
+}
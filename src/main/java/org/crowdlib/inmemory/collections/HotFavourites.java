@@ -0,0 +1,93 @@
+package org.crowdlib.inmemory.collections;
+
+/**
+ * The favourites of a comment too popular to count them one at a time: the
+ * count the comment had when it became hot, and a {@link StripedCounter} of
+ * every favourite since. The counter is never drained, so their sum is the
+ * exact count and only grows.
+ *
+ * The base is set by the favourite that was adding to the count in place when
+ * the comment became hot, once it is done; until then the count of the comment
+ * stands in for it, since nothing else changes the count meanwhile.
+ *
+ * Sealing the counter makes the comment cold again. Favourites refused by a
+ * sealed counter are counted again in place.
+ */
+public final class HotFavourites {
+
+	private static final int UNKNOWN_BASE = -1;
+
+	private final StripedCounter counter;
+
+	private volatile int base = UNKNOWN_BASE;
+
+	private int quietIntervals;
+
+	public HotFavourites() {
+		this(new StripedCounter());
+	}
+
+	/**
+	 * @param counter Counter of the favourites since the comment became hot
+	 */
+	public HotFavourites(StripedCounter counter) {
+		this.counter = counter;
+	}
+
+	/**
+	 * Counts one more favourite
+	 * @return false if the counter has been sealed and the favourite was not
+	 *         counted
+	 */
+	public boolean add() {
+		return counter.add(1);
+	}
+
+	/**
+	 * @param base Count of the comment before its first hot favourite
+	 */
+	public void setBase(int base) {
+		this.base = base;
+	}
+
+	public boolean hasBase() {
+		return base != UNKNOWN_BASE;
+	}
+
+	/**
+	 * Retrieves the exact count
+	 * @param favouritesCount Count of the comment, read after these favourites
+	 * @return Number of favourites, or -1 if the counter is being sealed
+	 */
+	public int count(int favouritesCount) {
+		if (counter.isSealed()) {
+			return -1;
+		}
+		int knownBase = base;
+		long sum = counter.sum();
+		// a seal that began during the sum may have taken cells it read
+		if (counter.isSealed()) {
+			return -1;
+		}
+		return (knownBase == UNKNOWN_BASE ? favouritesCount : knownBase) + (int) sum;
+	}
+
+	/**
+	 * Seals the counter
+	 * @return The exact and final count, once the base is known
+	 */
+	public int seal() {
+		return base + (int) counter.seal();
+	}
+
+	/**
+	 * Keeps track of how long the comment has gone without a favourite, for
+	 * the one thread that materializes counts
+	 * @param quiet true if the count has not changed since the last interval
+	 * @return Number of intervals in a row without a favourite
+	 */
+	public int countInterval(boolean quiet) {
+		quietIntervals = quiet ? quietIntervals + 1 : 0;
+		return quietIntervals;
+	}
+}
@@ -0,0 +1,126 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.crowdlib.entities.Identified;
+
+/**
+ * A list of entities that answers {@link #contains(Object)} from a set of
+ * their ids instead of comparing every element, while iterating in the order
+ * the entities were added. Two entities with the same id count as the same
+ * entity. Entities without an id are kept in the list only and looked up by
+ * scanning it.
+ *
+ * Changes and lookups synchronize on the list. Reading elements does not, as
+ * with the ArrayList this replaces; copying with {@link #toArray()} while
+ * other threads add gives a snapshot that may miss the latest additions.
+ *
+ * @param <E> type of the entities
+ */
+public class IdIndexedList<E extends Identified> extends AbstractList<E> implements RandomAccess {
+
+	private final List<E> elements;
+
+	private final IntHashSet ids = new IntHashSet();
+
+	private int elementsWithoutId;
+
+	public IdIndexedList() {
+		this.elements = new ArrayList<E>();
+	}
+
+	/**
+	 * Creates a list holding the given entities, in their order
+	 * @param entities Entities to be added
+	 */
+	public IdIndexedList(Collection<? extends E> entities) {
+		this.elements = new ArrayList<E>(entities.size());
+		addAll(entities);
+	}
+
+	@Override
+	public E get(int index) {
+		return elements.get(index);
+	}
+
+	@Override
+	public int size() {
+		return elements.size();
+	}
+
+	@Override
+	public synchronized boolean contains(Object object) {
+		if (!(object instanceof Identified)) {
+			return false;
+		}
+		Integer id = ((Identified) object).getId();
+		if (id != null) {
+			return ids.contains(id);
+		}
+		return elementsWithoutId > 0 && elements.contains(object);
+	}
+
+	@Override
+	public synchronized void add(int index, E entity) {
+		elements.add(index, entity);
+		index(entity);
+	}
+
+	@Override
+	public synchronized E set(int index, E entity) {
+		E previous = elements.set(index, entity);
+		unindex(previous);
+		index(entity);
+		return previous;
+	}
+
+	@Override
+	public synchronized E remove(int index) {
+		E removed = elements.remove(index);
+		unindex(removed);
+		return removed;
+	}
+
+	@Override
+	public synchronized void clear() {
+		elements.clear();
+		ids.clear();
+		elementsWithoutId = 0;
+	}
+
+	@Override
+	public Object[] toArray() {
+		return elements.toArray();
+	}
+
+	private void index(E entity) {
+		Integer id = entity == null ? null : entity.getId();
+		if (id == null) {
+			elementsWithoutId++;
+		} else {
+			ids.add(id);
+		}
+	}
+
+	/**
+	 * Drops the id of an entity that left the list, unless another element
+	 * has the same id. Only then is the list scanned, removals are rare.
+	 */
+	private void unindex(E entity) {
+		Integer id = entity == null ? null : entity.getId();
+		if (id == null) {
+			elementsWithoutId--;
+			return;
+		}
+		for (E element : elements) {
+			if (element != null && id.equals(element.getId())) {
+				return;
+			}
+		}
+		ids.remove(id);
+	}
+}
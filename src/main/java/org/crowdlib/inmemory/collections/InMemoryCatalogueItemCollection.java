@@ -1,8 +1,7 @@
 package org.crowdlib.inmemory.collections;
 
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
 
 import javax.ws.rs.core.Link;
@@ -10,24 +9,34 @@ import javax.ws.rs.core.Link;
 import org.crowdlib.entities.CatalogueItem;
 
 public class InMemoryCatalogueItemCollection {
-	private static HashMap<Integer, CatalogueItem> catalogueItems = new HashMap<Integer, CatalogueItem>();
+	private static StripedStore<CatalogueItem> catalogueItems = new StripedStore<CatalogueItem>();
 
 	public static void initializeInMemoryCatalogueItems(){
+		InMemoryFollowerCollection.initializeInMemoryFollowers();
 		catalogueItems.put(1, new CatalogueItem(1, "Book1", "Author1", Link.fromPath("http://localhost:9998/1/comments").build()));
 		catalogueItems.put(2, new CatalogueItem(2, "Book2", "Author2", Link.fromPath("http://localhost:9998/2/comments").build()));
 		catalogueItems.put(3, new CatalogueItem(3, "Book3", "Author3", Link.fromPath("http://localhost:9998/3/comments").build()));
 	}
 	
 	public static void addCatalogueItem(CatalogueItem catalogueItem) {
+		// an item added again under the same id starts without followers
+		if (catalogueItem.getId() != null) {
+			InMemoryFollowerCollection.removeItem(catalogueItem.getId());
+		}
 		catalogueItems.put(catalogueItem.getId(), catalogueItem);
 	}
 	
 	public static CatalogueItem getCatalogueItem(Integer id) {
+		if (id == null) {
+			return null;
+		}
 		return catalogueItems.get(id);
 	}
 	
 	public static List<CatalogueItem> getAllCatalogueItems(){
-		return new ArrayList<>(catalogueItems.values());
+		List<CatalogueItem> items = catalogueItems.values();
+		items.sort(Comparator.comparing(CatalogueItem::getId));
+		return items;
 	}
 
 }
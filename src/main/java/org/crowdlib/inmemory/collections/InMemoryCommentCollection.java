@@ -3,13 +3,13 @@ package org.crowdlib.inmemory.collections;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 
 import org.crowdlib.entities.Comment;
 import org.crowdlib.entities.User;
 
 public class InMemoryCommentCollection {
-	private static HashMap<Integer, Comment> comments = new HashMap<Integer, Comment>();
+	private static StripedStore<Comment> comments = new StripedStore<Comment>();
 
 	public static void initializeInMemoryComments() {
 	}
@@ -19,7 +19,18 @@ public class InMemoryCommentCollection {
 	}
 
 	public static Comment getComment(Integer id) {
+		if (id == null) {
+			return null;
+		}
 		return comments.get(id);
 	}
 
+	public static void removeComment(Integer id) {
+		comments.remove(id);
+	}
+
+	public static List<Comment> getAllComments() {
+		return comments.values();
+	}
+
 }
@@ -0,0 +1,38 @@
+package org.crowdlib.inmemory.collections;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+
+public class InMemoryCommentLogCollection {
+	private static StripedStore<CommentLog> commentLogs = new StripedStore<CommentLog>();
+
+	public static void initializeInMemoryCommentLogs() {
+		commentLogs.clear();
+	}
+
+	/**
+	 * Retrieves the comment log of this item, creating an empty one the first
+	 * time the item is seen
+	 * @param item Item specified
+	 * @return The item's comment log
+	 */
+	public static CommentLog getCommentLog(CatalogueItem item) {
+		return commentLogs.computeIfAbsent(item.getId(), CommentLog::new);
+	}
+
+	/**
+	 * Re-ranks a comment on the favourites leaderboard of its item. Replies are
+	 * not in the comment log of the item and are left alone. The caller holds
+	 * the monitor of the comment and has already changed its count.
+	 * @param comment Comment whose favourites count has changed
+	 * @param previousFavouritesCount Materialized count before the change
+	 */
+	public static void favouritesCountChanged(Comment comment, int previousFavouritesCount) {
+		if (comment.getParentComment() != null || comment.getCatalogueItem() == null) {
+			return;
+		}
+		getCommentLog(comment.getCatalogueItem()).getFavouritesLeaderboard()
+				.favouritesCountChanged(comment, previousFavouritesCount, comment.materializedFavouritesCount());
+	}
+
+}
@@ -0,0 +1,157 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.CommentPaths;
+
+/**
+ * Indexes replies by their {@link CommentPaths materialized path}. The replies
+ * of each thread are kept sorted by path in a {@link CommentThreadArray}, so
+ * that the descendants of a comment are one slice of it, already in thread
+ * order, and the ancestors of a comment are read off its path. Top-level
+ * comments are not kept, their path being their id.
+ *
+ * A reply is indexed when it is added to a comment that is itself top-level or
+ * indexed. Deleting a comment detaches its replies, and their whole subtrees
+ * are taken out of the index; replies added below them later are not indexed
+ * either. Adding replies shares a lock that removing subtrees holds alone, so
+ * that no reply is indexed below a subtree being removed. Queries take no lock.
+ */
+public class InMemoryCommentPathCollection {
+	private static StripedStore<CommentThreadArray> threadsByTopLevelId = new StripedStore<CommentThreadArray>();
+
+	private static StripedStore<String> pathsById = new StripedStore<String>();
+
+	private static final StampedLock lock = new StampedLock();
+
+	public static void initializeInMemoryCommentPaths() {
+		threadsByTopLevelId.clear();
+		pathsById.clear();
+	}
+
+	/**
+	 * Indexes the comments in memory afresh, e.g. once they have been recovered.
+	 * Each thread is sorted once rather than kept sorted reply by reply.
+	 * @param comments Every comment, in any order
+	 */
+	public static void rebuild(Collection<Comment> comments) {
+		initializeInMemoryCommentPaths();
+		Deque<Comment> pending = new ArrayDeque<Comment>();
+		for (Comment comment : comments) {
+			if (comment.getParentComment() != null || comment.getReplies().isEmpty()) {
+				continue;
+			}
+			TreeMap<String, Comment> replies = new TreeMap<String, Comment>();
+			pending.push(comment);
+			while (!pending.isEmpty()) {
+				Comment parent = pending.pop();
+				String parentPath = getPath(parent);
+				for (Comment reply : parent.getReplies()) {
+					String path = CommentPaths.child(parentPath, reply.getId());
+					pathsById.put(reply.getId(), path);
+					replies.put(path, reply);
+					pending.push(reply);
+				}
+			}
+			threadsByTopLevelId.put(comment.getId(), new CommentThreadArray(replies));
+		}
+	}
+
+	/**
+	 * Indexes a reply just added to a comment
+	 * @param comment Comment replied to
+	 * @param reply Reply added
+	 */
+	public static void replyAdded(Comment comment, Comment reply) {
+		long stamp = lock.readLock();
+		try {
+			String parentPath = getPath(comment);
+			if (parentPath == null) {
+				return;
+			}
+			String path = CommentPaths.child(parentPath, reply.getId());
+			pathsById.put(reply.getId(), path);
+			threadsByTopLevelId.computeIfAbsent(CommentPaths.topLevelId(path), CommentThreadArray::new).add(path, reply);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Removes the replies of a comment and all of theirs from the index
+	 * @param comment Comment whose replies have been detached
+	 */
+	public static void repliesRemoved(Comment comment) {
+		long stamp = lock.writeLock();
+		try {
+			String path = getPath(comment);
+			if (path == null) {
+				return;
+			}
+			CommentThreadArray thread = threadsByTopLevelId.get(CommentPaths.topLevelId(path));
+			if (thread == null) {
+				return;
+			}
+			for (Comment descendant : thread.removeDescendants(path)) {
+				pathsById.remove(descendant.getId());
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @param comment Comment specified
+	 * @return Path of the comment, null for a reply that is not indexed
+	 */
+	public static String getPath(Comment comment) {
+		if (comment.getParentComment() == null) {
+			return CommentPaths.root(comment.getId());
+		}
+		return pathsById.get(comment.getId());
+	}
+
+	/**
+	 * Retrieves the replies of a comment, their replies and so on, each
+	 * followed by its own replies
+	 * @param comment Comment specified
+	 * @return Descendants of the comment in thread order
+	 */
+	public static List<Comment> getDescendants(Comment comment) {
+		String path = getPath(comment);
+		CommentThreadArray thread = path == null ? null : threadsByTopLevelId.get(CommentPaths.topLevelId(path));
+		if (thread == null) {
+			return new ArrayList<Comment>();
+		}
+		return thread.descendants(path);
+	}
+
+	/**
+	 * Retrieves the comments above a comment in its thread
+	 * @param comment Comment specified
+	 * @return Ancestors of the comment, the top-level comment first, none for a
+	 * reply that is not indexed
+	 */
+	public static List<Comment> getAncestors(Comment comment) {
+		String path = getPath(comment);
+		List<Comment> ancestors = new ArrayList<Comment>();
+		if (path == null) {
+			return ancestors;
+		}
+		int[] ids = CommentPaths.ids(path);
+		for (int i = 0; i < ids.length - 1; i++) {
+			Comment ancestor = InMemoryCommentCollection.getComment(ids[i]);
+			if (ancestor != null) {
+				ancestors.add(ancestor);
+			}
+		}
+		return ancestors;
+	}
+}
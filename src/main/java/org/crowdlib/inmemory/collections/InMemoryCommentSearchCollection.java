@@ -0,0 +1,65 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.crowdlib.entities.Comment;
+import org.crowdlib.search.CommentSearchIndex;
+
+/**
+ * Finds comments in memory by the words of their content through a
+ * {@link CommentSearchIndex}. Comments are indexed when created and left out
+ * of results once deleted; the content a deletion puts in their place is not
+ * indexed.
+ */
+public class InMemoryCommentSearchCollection {
+	private static volatile CommentSearchIndex index = new CommentSearchIndex();
+
+	public static void initializeInMemoryCommentSearch() {
+		index = new CommentSearchIndex();
+	}
+
+	/**
+	 * Indexes the comments in memory afresh, e.g. once they have been recovered,
+	 * oldest first so that the newest are kept if they do not all fit
+	 * @param comments Every comment, in any order
+	 */
+	public static void rebuild(Collection<Comment> comments) {
+		List<Comment> sorted = new ArrayList<Comment>(comments);
+		sorted.sort(Comparator.comparing(Comment::getId));
+		CommentSearchIndex rebuilt = new CommentSearchIndex();
+		for (Comment comment : sorted) {
+			if (!comment.isDeleted()) {
+				rebuilt.add(comment.getId(), comment.getCommentContent());
+			}
+		}
+		index = rebuilt;
+	}
+
+	public static void commentCreated(Comment comment) {
+		index.add(comment.getId(), comment.getCommentContent());
+	}
+
+	public static void commentDeleted(Comment comment) {
+		index.remove(comment.getId());
+	}
+
+	/**
+	 * @param query Words to be found
+	 * @param limit Maximum number of comments found
+	 * @return Comments containing any of the words, best match first
+	 */
+	public static List<Comment> search(String query, int limit) {
+		int[] ids = index.search(query, limit);
+		List<Comment> found = new ArrayList<Comment>(ids.length);
+		for (int id : ids) {
+			Comment comment = InMemoryCommentCollection.getComment(id);
+			if (comment != null) {
+				found.add(comment);
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,171 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.Arrays;
+
+/**
+ * Who follows which catalogue item, as two indexes of ids: the followers of
+ * every item in an {@link IntBitmap}, and the items followed by every user in
+ * a sorted array. Users are referred to by id only;
+ * {@link InMemoryUserCollection} resolves them.
+ *
+ * An item may have millions of followers, so each bitmap is guarded by its
+ * own monitor and readers get copies, and a fan-out over the followers of an
+ * item does not hold up users following it meanwhile. A user follows a few
+ * items at most, where a bitmap per user would take several times the heap
+ * of the ids themselves; their arrays are replaced rather than changed, under
+ * a single lock for all users, and can be read without it.
+ */
+public class InMemoryFollowerCollection {
+	private static StripedStore<IntBitmap> followersOfItems = new StripedStore<IntBitmap>();
+
+	private static StripedStore<int[]> itemsFollowedByUsers = new StripedStore<int[]>();
+
+	private static final Object followedItemsLock = new Object();
+
+	/**
+	 * Drops every follower, e.g. when the items are initialized again
+	 */
+	public static void initializeInMemoryFollowers() {
+		followersOfItems.clear();
+		itemsFollowedByUsers.clear();
+	}
+
+	/**
+	 * Drops the followers of an item, from both indexes
+	 * @param itemId Id of the item
+	 */
+	public static void removeItem(int itemId) {
+		IntBitmap followers = followersOfItems.remove(itemId);
+		if (followers == null) {
+			return;
+		}
+		int[] userIds;
+		synchronized (followers) {
+			userIds = followers.toArray();
+		}
+		synchronized (followedItemsLock) {
+			for (int userId : userIds) {
+				int[] itemIds = itemsFollowedByUsers.get(userId);
+				int index = itemIds == null ? -1 : Arrays.binarySearch(itemIds, itemId);
+				if (index < 0) {
+					continue;
+				}
+				if (itemIds.length == 1) {
+					itemsFollowedByUsers.remove(userId);
+				} else {
+					int[] remaining = new int[itemIds.length - 1];
+					System.arraycopy(itemIds, 0, remaining, 0, index);
+					System.arraycopy(itemIds, index + 1, remaining, index, remaining.length - index);
+					itemsFollowedByUsers.put(userId, remaining);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records that the user follows the item
+	 * @param itemId Id of the item
+	 * @param userId Id of the user
+	 * @return true if the user did not follow the item yet
+	 */
+	public static boolean addFollower(int itemId, int userId) {
+		IntBitmap followers = followersOfItems.computeIfAbsent(itemId, IntBitmap::new);
+		boolean added;
+		synchronized (followers) {
+			added = followers.add(userId);
+		}
+		synchronized (followedItemsLock) {
+			int[] itemIds = itemsFollowedByUsers.get(userId);
+			if (itemIds == null) {
+				itemsFollowedByUsers.put(userId, new int[] { itemId });
+			} else {
+				int index = Arrays.binarySearch(itemIds, itemId);
+				if (index < 0) {
+					index = -index - 1;
+					int[] updated = new int[itemIds.length + 1];
+					System.arraycopy(itemIds, 0, updated, 0, index);
+					updated[index] = itemId;
+					System.arraycopy(itemIds, index, updated, index + 1, itemIds.length - index);
+					itemsFollowedByUsers.put(userId, updated);
+				}
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Checks if the user follows the item
+	 * @param itemId Id of the item
+	 * @param userId Id of the user
+	 * @return true if the user follows the item
+	 */
+	public static boolean isFollower(int itemId, int userId) {
+		IntBitmap followers = followersOfItems.get(itemId);
+		if (followers == null) {
+			return false;
+		}
+		synchronized (followers) {
+			return followers.contains(userId);
+		}
+	}
+
+	/**
+	 * Retrieves the ids of the followers of an item, in ascending order
+	 * @param itemId Id of the item
+	 * @return A copy of the ids, empty if the item has no followers
+	 */
+	public static int[] getFollowerIds(int itemId) {
+		IntBitmap followers = followersOfItems.get(itemId);
+		if (followers == null) {
+			return new int[0];
+		}
+		synchronized (followers) {
+			return followers.toArray();
+		}
+	}
+
+	/**
+	 * Retrieves the followers of an item as a bitmap, e.g. to intersect it
+	 * @param itemId Id of the item
+	 * @return A copy of the bitmap of follower ids
+	 */
+	public static IntBitmap getFollowers(int itemId) {
+		return copyOf(followersOfItems.get(itemId));
+	}
+
+	/**
+	 * Retrieves the ids of the items followed by a user, in ascending order
+	 * @param userId Id of the user
+	 * @return A copy of the ids, empty if the user follows no items
+	 */
+	public static int[] getFollowedItemIds(int userId) {
+		int[] itemIds = itemsFollowedByUsers.get(userId);
+		return itemIds == null ? new int[0] : itemIds.clone();
+	}
+
+	/**
+	 * Retrieves the users who follow both items
+	 * @param itemId Id of an item
+	 * @param otherItemId Id of another item
+	 * @return Bitmap of the ids of the users following both
+	 */
+	public static IntBitmap getFollowersOfBoth(int itemId, int otherItemId) {
+		IntBitmap followers = getFollowers(itemId);
+		IntBitmap otherFollowers = followersOfItems.get(otherItemId);
+		if (followers.isEmpty() || otherFollowers == null) {
+			return new IntBitmap();
+		}
+		synchronized (otherFollowers) {
+			return IntBitmap.and(followers, otherFollowers);
+		}
+	}
+
+	private static IntBitmap copyOf(IntBitmap bitmap) {
+		if (bitmap == null) {
+			return new IntBitmap();
+		}
+		synchronized (bitmap) {
+			return bitmap.copy();
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package org.crowdlib.inmemory.collections;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 
 import org.crowdlib.constants.RoleTypeConstants;
 import org.crowdlib.entities.User;
@@ -8,18 +11,56 @@ import org.crowdlib.entities.User;
 public class InMemoryUserCollection {
 	private static HashMap<String, User> users = new HashMap<String, User>();
 
+	private static IntObjectHashMap<User> usersById = new IntObjectHashMap<User>();
+
+	private static volatile int modificationCount;
+
 	public static void initializeInMemoryUsers(){
-		users.put("student1", new User(1, "Mr.", "Fady", "Zaki", RoleTypeConstants.GUEST_USER, "student1", "whoopey"));
-		users.put("student2", new User(2, "Mr.", "John", "Doe", RoleTypeConstants.GUEST_USER, "student2", "password"));
-		users.put("lecturer", new User(3, "Mr.", "Alex", "Voss", RoleTypeConstants.ADMIN_USER, "lecturer", "secret"));
+		modificationCount++;
+		put(new User(1, "Mr.", "Fady", "Zaki", RoleTypeConstants.GUEST_USER, "student1", "whoopey"));
+		put(new User(2, "Mr.", "John", "Doe", RoleTypeConstants.GUEST_USER, "student2", "password"));
+		put(new User(3, "Mr.", "Alex", "Voss", RoleTypeConstants.ADMIN_USER, "lecturer", "secret"));
 	}
 	
 	public static void addUser(User user) {
+		modificationCount++;
+		put(user);
+	}
+
+	private static void put(User user) {
 		users.put(user.getUsername(), user);
+		if (user.getId() != null) {
+			usersById.put(user.getId(), user);
+		}
+	}
+
+	/**
+	 * Retrieves a counter that changes whenever users are added or replaced, so
+	 * that anything derived from the registered users can tell it is outdated
+	 * @return The current modification count
+	 */
+	public static int getModificationCount() {
+		return modificationCount;
 	}
 	
 	public static User getUser(String username) {
 		return users.get(username);
 	}
 
+	/**
+	 * Retrieves a user by id, e.g. to resolve the ids kept by
+	 * {@link InMemoryFollowerCollection}
+	 * @param id Id of the user
+	 * @return The user last added with this id, or null
+	 */
+	public static User getUserById(int id) {
+		return usersById.get(id);
+	}
+
+	public static List<User> getAllUsers() {
+		List<User> allUsers = new ArrayList<User>(users.values());
+		allUsers.sort(Comparator.comparing(User::getId));
+		return allUsers;
+	}
+
 }
@@ -0,0 +1,443 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of ints in the style of a Roaring bitmap. Values are split
+ * by their upper 16 bits into chunks of 65536; each chunk holds its lower 16
+ * bits either in a sorted char array, while it has at most 4096 values, or
+ * in a bitmap of 1024 longs (8KB) once it has more. Dense runs of ids cost a
+ * bit each and sparse ones two bytes each, and intersections are computed
+ * chunk by chunk with merges or word-wise ANDs.
+ *
+ * Values are ordered as unsigned ints, which is their natural order for ids.
+ * The bitmap is not thread-safe.
+ */
+public class IntBitmap {
+
+	private static final int MAXIMUM_ARRAY_CARDINALITY = 4096;
+
+	private static final int BITMAP_WORDS = 1024;
+
+	private char[] keys;
+
+	private Container[] containers;
+
+	private int numberOfContainers;
+
+	public IntBitmap() {
+		this.keys = new char[4];
+		this.containers = new Container[4];
+	}
+
+	private IntBitmap(int capacity) {
+		this.keys = new char[Math.max(capacity, 1)];
+		this.containers = new Container[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Adds the value to the bitmap
+	 * @param value Value to be added
+	 * @return true if the value was not in the bitmap yet
+	 */
+	public boolean add(int value) {
+		char key = high(value);
+		int index = indexOf(key);
+		if (index < 0) {
+			index = -index - 1;
+			insertContainerAt(index, key, new ArrayContainer());
+		}
+		Container container = containers[index];
+		if (container.contains(low(value))) {
+			return false;
+		}
+		containers[index] = container.add(low(value));
+		return true;
+	}
+
+	/**
+	 * Removes the value from the bitmap
+	 * @param value Value to be removed
+	 * @return true if the value was in the bitmap
+	 */
+	public boolean remove(int value) {
+		int index = indexOf(high(value));
+		if (index < 0 || !containers[index].contains(low(value))) {
+			return false;
+		}
+		Container container = containers[index].remove(low(value));
+		if (container.cardinality() == 0) {
+			removeContainerAt(index);
+		} else {
+			containers[index] = container;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if the value is in the bitmap
+	 * @param value Value specified
+	 * @return true if the value is in the bitmap
+	 */
+	public boolean contains(int value) {
+		int index = indexOf(high(value));
+		return index >= 0 && containers[index].contains(low(value));
+	}
+
+	/**
+	 * @return Number of values in the bitmap
+	 */
+	public int getCardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < numberOfContainers; i++) {
+			cardinality += containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return numberOfContainers == 0;
+	}
+
+	/**
+	 * Passes every value to the consumer, in ascending order
+	 * @param consumer Consumer of the values
+	 */
+	public void forEach(IntConsumer consumer) {
+		for (int i = 0; i < numberOfContainers; i++) {
+			containers[i].forEach(keys[i] << 16, consumer);
+		}
+	}
+
+	/**
+	 * @return The values in ascending order
+	 */
+	public int[] toArray() {
+		int[] values = new int[getCardinality()];
+		int[] position = new int[1];
+		forEach(value -> values[position[0]++] = value);
+		return values;
+	}
+
+	/**
+	 * @return A bitmap with the same values that shares nothing with this one
+	 */
+	public IntBitmap copy() {
+		IntBitmap copy = new IntBitmap(numberOfContainers);
+		for (int i = 0; i < numberOfContainers; i++) {
+			copy.keys[i] = keys[i];
+			copy.containers[i] = containers[i].copy();
+		}
+		copy.numberOfContainers = numberOfContainers;
+		return copy;
+	}
+
+	/**
+	 * Estimates the heap taken by the bitmap, headers and references included
+	 * @return Size in bytes
+	 */
+	public long getSizeInBytes() {
+		// the object, its two arrays and the headers of the containers
+		long size = 16 + 16 + keys.length * 2 + 16 + containers.length * 4;
+		for (int i = 0; i < numberOfContainers; i++) {
+			size += containers[i].sizeInBytes();
+		}
+		return size;
+	}
+
+	/**
+	 * Computes the values that are in both bitmaps, chunk by chunk
+	 * @param first A bitmap
+	 * @param second Another bitmap
+	 * @return A new bitmap holding the intersection
+	 */
+	public static IntBitmap and(IntBitmap first, IntBitmap second) {
+		IntBitmap result = new IntBitmap(Math.min(first.numberOfContainers, second.numberOfContainers));
+		int i = 0;
+		int j = 0;
+		while (i < first.numberOfContainers && j < second.numberOfContainers) {
+			char firstKey = first.keys[i];
+			char secondKey = second.keys[j];
+			if (firstKey < secondKey) {
+				i++;
+			} else if (firstKey > secondKey) {
+				j++;
+			} else {
+				Container container = first.containers[i].and(second.containers[j]);
+				if (container.cardinality() > 0) {
+					result.keys[result.numberOfContainers] = firstKey;
+					result.containers[result.numberOfContainers++] = container;
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	private int indexOf(char key) {
+		int low = 0;
+		int high = numberOfContainers - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			char middleKey = keys[middle];
+			if (middleKey < key) {
+				low = middle + 1;
+			} else if (middleKey > key) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private void insertContainerAt(int index, char key, Container container) {
+		if (numberOfContainers == keys.length) {
+			keys = Arrays.copyOf(keys, keys.length * 2);
+			containers = Arrays.copyOf(containers, containers.length * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, numberOfContainers - index);
+		System.arraycopy(containers, index, containers, index + 1, numberOfContainers - index);
+		keys[index] = key;
+		containers[index] = container;
+		numberOfContainers++;
+	}
+
+	private void removeContainerAt(int index) {
+		System.arraycopy(keys, index + 1, keys, index, numberOfContainers - index - 1);
+		System.arraycopy(containers, index + 1, containers, index, numberOfContainers - index - 1);
+		containers[--numberOfContainers] = null;
+	}
+
+	private static char high(int value) {
+		return (char) (value >>> 16);
+	}
+
+	private static char low(int value) {
+		return (char) value;
+	}
+
+	/**
+	 * The lower 16 bits of the values of one chunk. Changes return the
+	 * container to be kept, which is another kind of container when the
+	 * change crosses {@link #MAXIMUM_ARRAY_CARDINALITY}.
+	 */
+	private abstract static class Container {
+
+		abstract boolean contains(char value);
+
+		abstract Container add(char value);
+
+		abstract Container remove(char value);
+
+		abstract int cardinality();
+
+		abstract Container and(Container other);
+
+		abstract void forEach(int high, IntConsumer consumer);
+
+		abstract Container copy();
+
+		abstract long sizeInBytes();
+	}
+
+	private static final class ArrayContainer extends Container {
+
+		private char[] values;
+
+		private int cardinality;
+
+		ArrayContainer() {
+			this.values = new char[4];
+		}
+
+		ArrayContainer(char[] values, int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+
+		@Override
+		Container add(char value) {
+			if (cardinality == MAXIMUM_ARRAY_CARDINALITY) {
+				return toBitmap().add(value);
+			}
+			int index = -Arrays.binarySearch(values, 0, cardinality, value) - 1;
+			if (cardinality == values.length) {
+				values = Arrays.copyOf(values, Math.min(Math.max(values.length * 2, 4), MAXIMUM_ARRAY_CARDINALITY));
+			}
+			System.arraycopy(values, index, values, index + 1, cardinality - index);
+			values[index] = value;
+			cardinality++;
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+			cardinality--;
+			return this;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		Container and(Container other) {
+			char[] result = new char[Math.min(cardinality, other.cardinality())];
+			int size = 0;
+			if (other instanceof BitmapContainer) {
+				BitmapContainer bitmap = (BitmapContainer) other;
+				for (int i = 0; i < cardinality; i++) {
+					if (bitmap.contains(values[i])) {
+						result[size++] = values[i];
+					}
+				}
+			} else {
+				ArrayContainer array = (ArrayContainer) other;
+				int i = 0;
+				int j = 0;
+				while (i < cardinality && j < array.cardinality) {
+					if (values[i] < array.values[j]) {
+						i++;
+					} else if (values[i] > array.values[j]) {
+						j++;
+					} else {
+						result[size++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			return new ArrayContainer(result, size);
+		}
+
+		@Override
+		void forEach(int high, IntConsumer consumer) {
+			for (int i = 0; i < cardinality; i++) {
+				consumer.accept(high | values[i]);
+			}
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 16 + 16 + values.length * 2;
+		}
+
+		private BitmapContainer toBitmap() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for (int i = 0; i < cardinality; i++) {
+				bitmap.add(values[i]);
+			}
+			return bitmap;
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+
+		private final long[] words;
+
+		private int cardinality;
+
+		BitmapContainer() {
+			this.words = new long[BITMAP_WORDS];
+		}
+
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		Container add(char value) {
+			long word = words[value >>> 6];
+			long updated = word | (1L << value);
+			if (updated != word) {
+				words[value >>> 6] = updated;
+				cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			words[value >>> 6] &= ~(1L << value);
+			cardinality--;
+			return cardinality > MAXIMUM_ARRAY_CARDINALITY ? this : toArray();
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		Container and(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			long[] otherWords = ((BitmapContainer) other).words;
+			long[] result = new long[BITMAP_WORDS];
+			int resultCardinality = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				result[i] = words[i] & otherWords[i];
+				resultCardinality += Long.bitCount(result[i]);
+			}
+			BitmapContainer intersection = new BitmapContainer(result, resultCardinality);
+			return resultCardinality > MAXIMUM_ARRAY_CARDINALITY ? intersection : intersection.toArray();
+		}
+
+		@Override
+		void forEach(int high, IntConsumer consumer) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+				while (word != 0) {
+					consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(words.clone(), cardinality);
+		}
+
+		@Override
+		long sizeInBytes() {
+			return 16 + 16 + BITMAP_WORDS * 8;
+		}
+
+		private ArrayContainer toArray() {
+			char[] values = new char[cardinality];
+			int size = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+				while (word != 0) {
+					values[size++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer(values, size);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive ints using open addressing with linear probing, like
+ * {@link IntObjectHashMap}, without a boxed Integer or a node per element.
+ * A slot is free when it holds 0, so 0 itself is tracked apart from the
+ * table. The set is not thread-safe.
+ */
+public class IntHashSet {
+
+	private static final int MINIMUM_CAPACITY = 8;
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private static final int FREE = 0;
+
+	private int[] keys;
+
+	private boolean containsFree;
+
+	private int size;
+
+	private int resizeThreshold;
+
+	public IntHashSet() {
+		allocate(MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * Checks if the value is in the set
+	 * @param value Value specified
+	 * @return true if the value was added and not removed since
+	 */
+	public boolean contains(int value) {
+		if (value == FREE) {
+			return containsFree;
+		}
+		int mask = keys.length - 1;
+		int index = indexFor(value, mask);
+		while (keys[index] != FREE) {
+			if (keys[index] == value) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the value to the set
+	 * @param value Value to be added
+	 * @return true if the value was not in the set yet
+	 */
+	public boolean add(int value) {
+		if (value == FREE) {
+			if (containsFree) {
+				return false;
+			}
+			containsFree = true;
+			size++;
+			return true;
+		}
+		int mask = keys.length - 1;
+		int index = indexFor(value, mask);
+		while (keys[index] != FREE) {
+			if (keys[index] == value) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = value;
+		if (++size > resizeThreshold) {
+			resize(keys.length << 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the value from the set
+	 * @param value Value to be removed
+	 * @return true if the value was in the set
+	 */
+	public boolean remove(int value) {
+		if (value == FREE) {
+			if (!containsFree) {
+				return false;
+			}
+			containsFree = false;
+			size--;
+			return true;
+		}
+		int mask = keys.length - 1;
+		int index = indexFor(value, mask);
+		while (keys[index] != FREE) {
+			if (keys[index] == value) {
+				shiftBack(index, mask);
+				size--;
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all values, keeping the current capacity
+	 */
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		containsFree = false;
+		size = 0;
+	}
+
+	/**
+	 * Fills the slot freed at this index the way
+	 * {@link IntObjectHashMap} does, so that no tombstones are needed
+	 */
+	private void shiftBack(int freed, int mask) {
+		int index = (freed + 1) & mask;
+		while (keys[index] != FREE) {
+			int home = indexFor(keys[index], mask);
+			if (((index - home) & mask) >= ((index - freed) & mask)) {
+				keys[freed] = keys[index];
+				freed = index;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[freed] = FREE;
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		allocate(capacity);
+		int mask = capacity - 1;
+		for (int key : oldKeys) {
+			if (key != FREE) {
+				int index = indexFor(key, mask);
+				while (keys[index] != FREE) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * Murmur3 finaliser, so that sequential ids spread over the whole table.
+	 */
+	private static int indexFor(int key, int mask) {
+		int hash = key;
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		hash ^= hash >>> 16;
+		return hash & mask;
+	}
+}
@@ -0,0 +1,235 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map from primitive int keys to objects using open addressing with linear
+ * probing. Keys and values live in two parallel arrays, so there is no boxed
+ * Integer and no entry node per mapping. A slot is free when its value is null,
+ * which is why null values cannot be stored.
+ *
+ * The map is not thread-safe. {@link #get(int)} never fails or loops forever
+ * while another thread modifies the map, but its result is only meaningful when
+ * the caller can tell that no modification overlapped it (see
+ * {@link StripedStore}).
+ *
+ * @param <V> type of the stored values
+ */
+public class IntObjectHashMap<V> {
+
+	private static final int MINIMUM_CAPACITY = 8;
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private int[] keys;
+
+	private Object[] values;
+
+	private int size;
+
+	private int resizeThreshold;
+
+	public IntObjectHashMap() {
+		this(MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * Creates a map that can hold the given number of mappings without resizing
+	 * @param expectedSize Expected number of mappings
+	 */
+	public IntObjectHashMap(int expectedSize) {
+		int capacity = MINIMUM_CAPACITY;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Retrieves the value mapped to this key
+	 * @param key Key specified
+	 * @return The value or null if the key is not mapped
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		// read both arrays once so that a concurrent resize cannot make us index
+		// one table with the mask of the other
+		int[] keys = this.keys;
+		Object[] values = this.values;
+		int mask = Math.min(keys.length, values.length) - 1;
+		int index = indexFor(key, mask);
+		for (int probes = 0; probes <= mask; probes++) {
+			Object value = values[index];
+			if (value == null) {
+				return null;
+			}
+			if (keys[index] == key) {
+				return (V) value;
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Maps a value to this key, replacing any previous value
+	 * @param key Key specified
+	 * @param value Value to be stored, must not be null
+	 * @return The previous value or null if the key was not mapped
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values cannot be stored");
+		}
+		int mask = keys.length - 1;
+		int index = indexFor(key, mask);
+		while (values[index] != null) {
+			if (keys[index] == key) {
+				V previous = (V) values[index];
+				values[index] = value;
+				return previous;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = value;
+		if (++size > resizeThreshold) {
+			resize(keys.length << 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the mapping for this key
+	 * @param key Key specified
+	 * @return The removed value or null if the key was not mapped
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int mask = keys.length - 1;
+		int index = indexFor(key, mask);
+		while (values[index] != null) {
+			if (keys[index] == key) {
+				V previous = (V) values[index];
+				shiftBack(index, mask);
+				size--;
+				return previous;
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Checks if this key is mapped
+	 * @param key Key specified
+	 * @return true if the key is mapped
+	 */
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Retrieves all values in table order
+	 * @return A new list holding all values of the map
+	 */
+	public List<V> values() {
+		List<V> result = new ArrayList<V>(size);
+		addValuesTo(result);
+		return result;
+	}
+
+	/**
+	 * Appends all values in table order to the given list
+	 * @param result list the values are added to
+	 */
+	@SuppressWarnings("unchecked")
+	public void addValuesTo(List<? super V> result) {
+		for (Object value : values) {
+			if (value != null) {
+				result.add((V) value);
+			}
+		}
+	}
+
+	/**
+	 * Removes all mappings, keeping the current capacity
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Fills the slot freed at this index by moving back any later entry of the
+	 * same probe run that would otherwise become unreachable. This keeps lookups
+	 * correct without tombstones.
+	 */
+	private void shiftBack(int freed, int mask) {
+		int index = (freed + 1) & mask;
+		while (values[index] != null) {
+			int home = indexFor(keys[index], mask);
+			// move the entry if its home slot is not in the cyclic range (freed, index]
+			if (((index - home) & mask) >= ((index - freed) & mask)) {
+				keys[freed] = keys[index];
+				values[freed] = values[index];
+				freed = index;
+			}
+			index = (index + 1) & mask;
+		}
+		values[freed] = null;
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		int[] newKeys = new int[capacity];
+		Object[] newValues = new Object[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int index = indexFor(oldKeys[i], mask);
+				while (newValues[index] != null) {
+					index = (index + 1) & mask;
+				}
+				newKeys[index] = oldKeys[i];
+				newValues[index] = oldValues[i];
+			}
+		}
+		// a racing get() may see one old and one new table, it stays in bounds by
+		// using the mask of the smaller one
+		this.values = newValues;
+		this.keys = newKeys;
+		this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * Murmur3 finaliser, so that sequential ids spread over the whole table.
+	 */
+	private static int indexFor(int key, int mask) {
+		int hash = key;
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		hash ^= hash >>> 16;
+		return hash & mask;
+	}
+}
@@ -0,0 +1,96 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter split into cells, in the spirit of LongAdder, for values that many
+ * threads add to at once. Each thread adds to the cell its id maps to, so
+ * threads rarely share a cell, and each cell sits on cache lines of its own.
+ * Reading the value sums the cells, which is only exact when nobody adds.
+ *
+ * Unlike LongAdder the counter can be sealed once it is no longer wanted:
+ * every cell is taken and marked atomically, so an addition either counts in
+ * what the seal returns or is refused, never both and never neither.
+ */
+public class StripedCounter {
+
+	/**
+	 * Cells are 16 longs apart, two 64 byte lines, since adjacent lines are
+	 * often fetched together.
+	 */
+	private static final int CELL_STRIDE = 16;
+
+	private final AtomicLongArray cells;
+
+	private static final long SEALED = Long.MIN_VALUE;
+
+	private final int mask;
+
+	private volatile boolean sealed;
+
+	public StripedCounter() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a counter with at least the given number of cells
+	 * @param concurrencyLevel Expected number of concurrently adding threads
+	 */
+	public StripedCounter(int concurrencyLevel) {
+		int numberOfCells = 1;
+		while (numberOfCells < concurrencyLevel) {
+			numberOfCells <<= 1;
+		}
+		this.cells = new AtomicLongArray(numberOfCells * CELL_STRIDE);
+		this.mask = numberOfCells - 1;
+	}
+
+	/**
+	 * Adds to the counter
+	 * @param delta Value to be added, not negative
+	 * @return false if the counter has been sealed and the value was not added
+	 */
+	public boolean add(long delta) {
+		return cells.getAndAdd(cellFor(Thread.currentThread()) * CELL_STRIDE, delta) >= 0;
+	}
+
+	/**
+	 * @return Sum of the cells, meaningless once sealing has begun
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int cell = 0; cell <= mask; cell++) {
+			sum += cells.get(cell * CELL_STRIDE);
+		}
+		return sum;
+	}
+
+	/**
+	 * Marks every cell so that later additions are refused, returning what the
+	 * cells held
+	 * @return Sum of every addition accepted
+	 */
+	public long seal() {
+		sealed = true;
+		long sum = 0;
+		for (int cell = 0; cell <= mask; cell++) {
+			sum += cells.getAndSet(cell * CELL_STRIDE, SEALED);
+		}
+		return sum;
+	}
+
+	/**
+	 * @return true once sealing has begun, even if it has not finished
+	 */
+	public boolean isSealed() {
+		return sealed;
+	}
+
+	/**
+	 * Spreads thread ids the way {@link StripedStore} spreads keys
+	 */
+	private int cellFor(Thread thread) {
+		int hash = (int) thread.getId() * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
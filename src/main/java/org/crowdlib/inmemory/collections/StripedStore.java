@@ -0,0 +1,193 @@
+package org.crowdlib.inmemory.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe store of values keyed by an int id. The key space is split into
+ * a fixed number of stripes, each guarded by its own lock, so writers only
+ * contend with each other when their keys land on the same stripe. Lookups are
+ * optimistic and take no lock unless they overlap a write to the same stripe.
+ *
+ * @param <V> type of the stored values
+ */
+public class StripedStore<V> {
+
+	private static final int STRIPES_PER_CORE = 4;
+
+	private final Stripe<V>[] stripes;
+
+	private final int mask;
+
+	public StripedStore() {
+		this(Runtime.getRuntime().availableProcessors() * STRIPES_PER_CORE);
+	}
+
+	/**
+	 * Creates a store with at least the given number of stripes
+	 * @param concurrencyLevel Expected number of concurrently writing threads
+	 */
+	public StripedStore(int concurrencyLevel) {
+		int numberOfStripes = 1;
+		while (numberOfStripes < concurrencyLevel) {
+			numberOfStripes <<= 1;
+		}
+		this.stripes = newStripes(numberOfStripes);
+		for (int i = 0; i < numberOfStripes; i++) {
+			this.stripes[i] = new Stripe<V>();
+		}
+		this.mask = numberOfStripes - 1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> Stripe<V>[] newStripes(int length) {
+		return (Stripe<V>[]) new Stripe<?>[length];
+	}
+
+	/**
+	 * Retrieves the value stored under this key
+	 * @param key Key of the value
+	 * @return The value or null if no value is stored under this key
+	 */
+	public V get(int key) {
+		Stripe<V> stripe = stripeFor(key);
+		long stamp = stripe.lock.tryOptimisticRead();
+		if (stamp != 0) {
+			V value = stripe.values.get(key);
+			if (stripe.lock.validate(stamp)) {
+				return value;
+			}
+		}
+		stamp = stripe.lock.readLock();
+		try {
+			return stripe.values.get(key);
+		} finally {
+			stripe.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Stores a value under this key, replacing any previous value
+	 * @param key Key of the value
+	 * @param value Value to be stored
+	 * @return The previous value or null if there was none
+	 */
+	public V put(int key, V value) {
+		Stripe<V> stripe = stripeFor(key);
+		long stamp = stripe.lock.writeLock();
+		try {
+			return stripe.values.put(key, value);
+		} finally {
+			stripe.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Retrieves the value stored under this key, storing a new one created by
+	 * the factory if there is none
+	 * @param key Key of the value
+	 * @param factory Creates the value if the key is absent
+	 * @return The value stored under this key after the call
+	 */
+	public V computeIfAbsent(int key, Supplier<? extends V> factory) {
+		V current = get(key);
+		if (current != null) {
+			return current;
+		}
+		Stripe<V> stripe = stripeFor(key);
+		long stamp = stripe.lock.writeLock();
+		try {
+			current = stripe.values.get(key);
+			if (current != null) {
+				return current;
+			}
+			V value = factory.get();
+			stripe.values.put(key, value);
+			return value;
+		} finally {
+			stripe.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Removes the value stored under this key
+	 * @param key Key of the value
+	 * @return The removed value or null if there was none
+	 */
+	public V remove(int key) {
+		Stripe<V> stripe = stripeFor(key);
+		long stamp = stripe.lock.writeLock();
+		try {
+			return stripe.values.remove(key);
+		} finally {
+			stripe.lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Retrieves the number of values in the store. Stripes are counted one at a
+	 * time, so the result is only exact when there are no concurrent writers.
+	 * @return Number of stored values
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe<V> stripe : stripes) {
+			long stamp = stripe.lock.readLock();
+			try {
+				size += stripe.values.size();
+			} finally {
+				stripe.lock.unlockRead(stamp);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Retrieves a snapshot of all values currently in the store
+	 * @return List of stored values
+	 */
+	public List<V> values() {
+		List<V> values = new ArrayList<V>();
+		for (Stripe<V> stripe : stripes) {
+			long stamp = stripe.lock.readLock();
+			try {
+				stripe.values.addValuesTo(values);
+			} finally {
+				stripe.lock.unlockRead(stamp);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Removes all values from the store
+	 */
+	public void clear() {
+		for (Stripe<V> stripe : stripes) {
+			long stamp = stripe.lock.writeLock();
+			try {
+				stripe.values.clear();
+			} finally {
+				stripe.lock.unlockWrite(stamp);
+			}
+		}
+	}
+
+	/**
+	 * Spreads the key bits so that sequential ids are distributed evenly over
+	 * the stripes.
+	 */
+	private Stripe<V> stripeFor(int key) {
+		int hash = key * 0x9E3779B9;
+		return stripes[(hash ^ (hash >>> 16)) & mask];
+	}
+
+	private static final class Stripe<V> {
+
+		private final StampedLock lock = new StampedLock();
+
+		private final IntObjectHashMap<V> values = new IntObjectHashMap<V>();
+	}
+}
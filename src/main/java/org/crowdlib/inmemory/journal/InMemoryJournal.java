@@ -0,0 +1,502 @@
+package org.crowdlib.inmemory.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.exceptions.PersistenceException;
+import org.crowdlib.inmemory.collections.CommentLog;
+import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentPathCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentSearchCollection;
+import org.crowdlib.inmemory.collections.InMemoryFollowerCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+
+/**
+ * Makes the in-memory collections survive a restart. The in-memory DAOs report
+ * every change they make here once it is applied, and it is appended to a
+ * {@link WriteAheadLog}; the DAO call returns when the change is on disk.
+ * Snapshots of the collections are taken periodically so that recovery only
+ * replays the log written since the last one.
+ *
+ * A snapshot is taken while the DAOs keep changing the collections. The log
+ * is rolled to a new segment first, so every change in an older segment is
+ * already in the collections the snapshot reads, and recovery replays the
+ * segments from the rolled one onwards. Changes made while the snapshot is
+ * written can show up both in the snapshot and in those segments, so every
+ * record is replayed idempotently: counts and watermarks only move up, and
+ * additions are skipped when already present.
+ *
+ * While no journal is started every method returns at once, which is what the
+ * tests and a database-backed application get.
+ */
+public final class InMemoryJournal {
+
+	// only found in logs written while creation times were written as local times
+	private static final byte COMMENT_CREATED_AT_LOCAL_TIME = 1;
+	private static final byte REPLY_ADDED = 2;
+	// only found in logs written while the links of comments were stored
+	private static final byte LINK_TO_SELF_ADJUSTED = 3;
+	private static final byte LINK_TO_REPLIES_ADJUSTED = 4;
+	private static final byte FAVOURITES_COUNT_CHANGED = 5;
+	private static final byte COMMENT_DELETED = 6;
+	private static final byte COMMENT_ADDED_TO_ITEM = 7;
+	private static final byte FAVOURITE_ADDED = 8;
+	private static final byte ITEM_FOLLOWED = 9;
+	private static final byte FOLLOWER_ADDED = 10;
+	private static final byte READ_WATERMARK_ADVANCED = 11;
+	private static final byte COMMENT_CREATED = 12;
+
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+	private static final String SNAPSHOT_SUFFIX = ".bin";
+
+	private static volatile WriteAheadLog log;
+
+	private static Path directory;
+
+	private static ScheduledExecutorService snapshots;
+
+	private static volatile long lastSnapshotSequence;
+
+	private static int lastCommentId;
+
+	private InMemoryJournal() {
+	}
+
+	/**
+	 * Loads the latest snapshot of a journal directory into the in-memory
+	 * collections and replays the log written after it. The users and catalogue
+	 * items must already be in their collections.
+	 * @param journalDirectory Directory of the journal, may not exist yet
+	 * @return Highest comment id recovered, 0 if there were none
+	 */
+	public static synchronized int recover(Path journalDirectory) {
+		lastCommentId = 0;
+		try {
+			long firstSegment = 0;
+			List<Long> snapshotNumbers = WriteAheadLog.numberedFiles(journalDirectory, SNAPSHOT_PREFIX,
+					SNAPSHOT_SUFFIX);
+			if (!snapshotNumbers.isEmpty()) {
+				firstSegment = snapshotNumbers.get(snapshotNumbers.size() - 1);
+				lastCommentId = JournalSnapshot.load(snapshotPath(journalDirectory, firstSegment));
+			}
+			List<Long> segments = WriteAheadLog.segments(journalDirectory);
+			for (int i = 0; i < segments.size(); i++) {
+				long segment = segments.get(i);
+				if (segment < firstSegment) {
+					continue;
+				}
+				boolean intact = WriteAheadLog.read(journalDirectory, segment, InMemoryJournal::apply);
+				// only the last segment can end in a record cut short by a crash
+				if (!intact && i < segments.size() - 1) {
+					throw new PersistenceException("Journal segment " + segment + " is damaged", null);
+				}
+			}
+		} catch (IOException e) {
+			throw new PersistenceException("Recovering the journal failed", e);
+		}
+		// replies are linked in whatever order the snapshot and the log have them, so paths are only known now
+		InMemoryCommentPathCollection.rebuild(InMemoryCommentCollection.getAllComments());
+		InMemoryCommentSearchCollection.rebuild(InMemoryCommentCollection.getAllComments());
+		return lastCommentId;
+	}
+
+	/**
+	 * Starts journaling the changes made by the in-memory DAOs
+	 * @param journalDirectory Directory of the journal, created if missing
+	 * @param syncIntervalMillis Minimum time between two fsyncs of the log
+	 * @param awaitSync Whether a change waits for its fsync before the DAO call returns
+	 * @param snapshotIntervalMillis Time between two snapshots, 0 to take none
+	 */
+	public static synchronized void start(Path journalDirectory, long syncIntervalMillis, boolean awaitSync,
+			long snapshotIntervalMillis) {
+		try {
+			log = new WriteAheadLog(journalDirectory, syncIntervalMillis, awaitSync);
+		} catch (IOException e) {
+			throw new PersistenceException("Opening the journal failed", e);
+		}
+		directory = journalDirectory;
+		if (snapshotIntervalMillis > 0) {
+			snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "journal-snapshots");
+				thread.setDaemon(true);
+				return thread;
+			});
+			snapshots.scheduleWithFixedDelay(InMemoryJournal::snapshotIfChanged, snapshotIntervalMillis,
+					snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the in-memory collections and deletes the segments
+	 * and snapshots it replaces
+	 */
+	public static synchronized void snapshot() {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return;
+		}
+		try {
+			long segment = current.roll();
+			Path temporary = directory.resolve(SNAPSHOT_PREFIX + "next.tmp");
+			JournalSnapshot.write(temporary);
+			Files.move(temporary, snapshotPath(directory, segment), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+			for (long older : WriteAheadLog.numberedFiles(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+				if (older < segment) {
+					deleteSnapshot(snapshotPath(directory, older));
+				}
+			}
+			current.deleteSegmentsBefore(segment);
+		} catch (IOException e) {
+			throw new PersistenceException("Writing a journal snapshot failed", e);
+		}
+	}
+
+	/**
+	 * Comments loaded from a snapshot keep reading their content from its
+	 * mapping. Where the platform refuses to delete a mapped file, the snapshot
+	 * is left for a later snapshot to delete, once the process has restarted.
+	 */
+	private static void deleteSnapshot(Path snapshot) {
+		try {
+			Files.deleteIfExists(snapshot);
+		} catch (IOException e) {
+			System.out.println("Could not delete " + snapshot + " yet: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Stops the snapshots and closes the log once everything appended is on disk
+	 */
+	public static synchronized void stop() {
+		if (snapshots != null) {
+			snapshots.shutdown();
+			snapshots = null;
+		}
+		if (log != null) {
+			log.close();
+			log = null;
+		}
+	}
+
+	public static void commentCreated(Comment comment) {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return;
+		}
+		CatalogueItem item = comment.getCatalogueItem();
+		User owner = comment.getOwner();
+		append(current, output -> {
+			output.writeByte(COMMENT_CREATED);
+			output.writeInt(comment.getId());
+			output.writeInt(item == null ? -1 : item.getId());
+			JournalCodec.writeString(output, owner == null ? null : owner.getUsername());
+			JournalCodec.writeString(output, comment.getCommentContent());
+			JournalCodec.writeTimestamp(output, comment.getCreationTimestamp());
+		}, true);
+	}
+
+	public static void replyAdded(Comment comment, Comment reply) {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return;
+		}
+		append(current, output -> {
+			output.writeByte(REPLY_ADDED);
+			output.writeInt(comment.getId());
+			output.writeInt(reply.getId());
+		}, true);
+	}
+
+	public static void favouritesCountChanged(Comment comment, int favouritesCount) {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return;
+		}
+		append(current, output -> {
+			output.writeByte(FAVOURITES_COUNT_CHANGED);
+			output.writeInt(comment.getId());
+			output.writeInt(favouritesCount);
+		}, true);
+	}
+
+	public static void commentDeleted(Comment comment, String deletionMessage) {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return;
+		}
+		append(current, output -> {
+			output.writeByte(COMMENT_DELETED);
+			output.writeInt(comment.getId());
+			JournalCodec.writeString(output, deletionMessage);
+		}, true);
+	}
+
+	/**
+	 * Appends the addition of a comment to an item's comment log without waiting
+	 * for it to be on disk. It is called while the item's comment log is locked,
+	 * so the records of an item are in the order of its log positions; the
+	 * caller waits with {@link #awaitDurable(long)} after releasing the lock.
+	 * @param item Item the comment was added to
+	 * @param comment Comment added
+	 * @param position Position of the comment in the item's comment log
+	 * @return Sequence number of the record, 0 while no journal is started
+	 */
+	public static long appendCommentAdded(CatalogueItem item, Comment comment, int position) {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return 0;
+		}
+		return append(current, output -> {
+			output.writeByte(COMMENT_ADDED_TO_ITEM);
+			output.writeInt(item.getId());
+			output.writeInt(comment.getId());
+			output.writeInt(position);
+		}, false);
+	}
+
+	/**
+	 * Waits until a record appended with {@link #appendCommentAdded} is on disk
+	 * @param sequence Sequence number of the record
+	 */
+	public static void awaitDurable(long sequence) {
+		WriteAheadLog current = log;
+		if (current == null || sequence == 0) {
+			return;
+		}
+		current.awaitDurable(sequence);
+	}
+
+	public static void favouriteAdded(User user, Comment comment) {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return;
+		}
+		append(current, output -> {
+			output.writeByte(FAVOURITE_ADDED);
+			JournalCodec.writeString(output, user.getUsername());
+			output.writeInt(comment.getId());
+		}, true);
+	}
+
+	public static void itemFollowed(User user, CatalogueItem item) {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return;
+		}
+		append(current, output -> {
+			output.writeByte(ITEM_FOLLOWED);
+			JournalCodec.writeString(output, user.getUsername());
+			output.writeInt(item.getId());
+		}, true);
+	}
+
+	public static void followerAdded(CatalogueItem item, User follower) {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return;
+		}
+		append(current, output -> {
+			output.writeByte(FOLLOWER_ADDED);
+			output.writeInt(item.getId());
+			JournalCodec.writeString(output, follower.getUsername());
+		}, true);
+	}
+
+	/**
+	 * Appends the advance of a read watermark without waiting for it to be on
+	 * disk, since it is written whenever a page of notifications is read. A crash
+	 * can lose the last advances, which only shows a few notifications as unseen
+	 * again.
+	 */
+	public static void readWatermarkAdvanced(User user, CatalogueItem item, int position) {
+		WriteAheadLog current = log;
+		if (current == null) {
+			return;
+		}
+		append(current, output -> {
+			output.writeByte(READ_WATERMARK_ADVANCED);
+			JournalCodec.writeString(output, user.getUsername());
+			output.writeInt(item.getId());
+			output.writeInt(position);
+		}, false);
+	}
+
+	private interface RecordWriter {
+
+		void write(DataOutputStream output) throws IOException;
+	}
+
+	private static long append(WriteAheadLog current, RecordWriter writer, boolean await) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			writer.write(output);
+		} catch (IOException e) {
+			throw new PersistenceException("Encoding a journal record failed", e);
+		}
+		long sequence = current.append(bytes.toByteArray());
+		if (await) {
+			current.awaitDurable(sequence);
+		}
+		return sequence;
+	}
+
+	private static void snapshotIfChanged() {
+		WriteAheadLog current = log;
+		// a roll appends nothing, so an unchanged sequence means nothing happened since
+		if (current == null || current.getAppendedSequence() == lastSnapshotSequence) {
+			return;
+		}
+		long sequence = current.getAppendedSequence();
+		try {
+			snapshot();
+			lastSnapshotSequence = sequence;
+		} catch (PersistenceException e) {
+			System.out.println("Journal snapshot failed, the log is kept: " + e.getMessage());
+		}
+	}
+
+	private static void apply(byte[] record) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+		byte type = input.readByte();
+		switch (type) {
+		case COMMENT_CREATED_AT_LOCAL_TIME:
+		case COMMENT_CREATED: {
+			int id = input.readInt();
+			int itemId = input.readInt();
+			String owner = JournalCodec.readString(input);
+			String content = JournalCodec.readString(input);
+			long creationTimestamp = type == COMMENT_CREATED ? JournalCodec.readTimestamp(input)
+					: JournalCodec.readLocalTimestamp(input);
+			if (InMemoryCommentCollection.getComment(id) == null) {
+				Comment comment = new Comment(id, content, creationTimestamp);
+				comment.setOwner(owner == null ? null : InMemoryUserCollection.getUser(owner));
+				comment.setCatalogueItem(InMemoryCatalogueItemCollection.getCatalogueItem(itemId));
+				InMemoryCommentCollection.addComment(comment);
+			}
+			lastCommentId = Math.max(lastCommentId, id);
+			break;
+		}
+		case REPLY_ADDED: {
+			Comment comment = InMemoryCommentCollection.getComment(input.readInt());
+			Comment reply = InMemoryCommentCollection.getComment(input.readInt());
+			if (comment != null && reply != null && reply.getParentComment() != comment) {
+				reply.setParentComment(comment);
+				comment.getReplies().add(reply);
+			}
+			break;
+		}
+		case LINK_TO_SELF_ADJUSTED:
+		case LINK_TO_REPLIES_ADJUSTED:
+			// links are derived from the ids now
+			break;
+		case FAVOURITES_COUNT_CHANGED: {
+			Comment comment = InMemoryCommentCollection.getComment(input.readInt());
+			int favouritesCount = input.readInt();
+			if (comment != null) {
+				synchronized (comment) {
+					int previousFavouritesCount = comment.materializedFavouritesCount();
+					if (favouritesCount > previousFavouritesCount) {
+						comment.setFavouritesCount(favouritesCount);
+						InMemoryCommentLogCollection.favouritesCountChanged(comment, previousFavouritesCount);
+					}
+				}
+			}
+			break;
+		}
+		case COMMENT_DELETED: {
+			Comment comment = InMemoryCommentCollection.getComment(input.readInt());
+			String deletionMessage = JournalCodec.readString(input);
+			if (comment != null) {
+				comment.setCommentContent(deletionMessage);
+				comment.getReplies().clear();
+				comment.setDeleted(true);
+			}
+			break;
+		}
+		case COMMENT_ADDED_TO_ITEM: {
+			CatalogueItem item = InMemoryCatalogueItemCollection.getCatalogueItem(input.readInt());
+			Comment comment = InMemoryCommentCollection.getComment(input.readInt());
+			// records written while links were stored end in the item's link, which is derived now
+			int position = input.readInt();
+			if (item != null && comment != null) {
+				addToItem(item, comment, position);
+			}
+			break;
+		}
+		case FAVOURITE_ADDED: {
+			User user = InMemoryUserCollection.getUser(JournalCodec.readString(input));
+			Comment comment = InMemoryCommentCollection.getComment(input.readInt());
+			if (user != null && comment != null && !user.getFavouriteComments().contains(comment)) {
+				user.getFavouriteComments().add(comment);
+			}
+			break;
+		}
+		case ITEM_FOLLOWED: {
+			User user = InMemoryUserCollection.getUser(JournalCodec.readString(input));
+			CatalogueItem item = InMemoryCatalogueItemCollection.getCatalogueItem(input.readInt());
+			if (user != null && item != null && !user.getFollowedItems().contains(item)) {
+				user.getFollowedItems().add(item);
+			}
+			break;
+		}
+		case FOLLOWER_ADDED: {
+			CatalogueItem item = InMemoryCatalogueItemCollection.getCatalogueItem(input.readInt());
+			User follower = InMemoryUserCollection.getUser(JournalCodec.readString(input));
+			if (item != null && follower != null) {
+				InMemoryFollowerCollection.addFollower(item.getId(), follower.getId());
+			}
+			break;
+		}
+		case READ_WATERMARK_ADVANCED: {
+			User user = InMemoryUserCollection.getUser(JournalCodec.readString(input));
+			int itemId = input.readInt();
+			int position = input.readInt();
+			if (user != null) {
+				user.getReadWatermarks().merge(itemId, position, Math::max);
+			}
+			break;
+		}
+		default:
+			throw new IOException("Unknown journal record type " + record[0]);
+		}
+	}
+
+	/**
+	 * Adds a comment at a position of an item's comment log, unless the snapshot
+	 * already had it there
+	 */
+	static void addToItem(CatalogueItem item, Comment comment, int position) throws IOException {
+		CommentLog commentLog = InMemoryCommentLogCollection.getCommentLog(item);
+		if (position < commentLog.size()) {
+			return;
+		}
+		if (position > commentLog.size()) {
+			throw new IOException("Comment " + comment.getId() + " is at position " + position + " of item "
+					+ item.getId() + ", which has only " + commentLog.size() + " comments");
+		}
+		item.getComments().add(comment);
+		item.addLinkToComment(comment.getId());
+		commentLog.append(comment);
+	}
+
+	private static Path snapshotPath(Path journalDirectory, long segment) {
+		return WriteAheadLog.numberedFile(journalDirectory, SNAPSHOT_PREFIX, segment, SNAPSHOT_SUFFIX);
+	}
+}
@@ -0,0 +1,88 @@
+package org.crowdlib.inmemory.journal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.crowdlib.entities.Comment;
+import org.crowdlib.time.MonotonicClock;
+
+/**
+ * Encodings shared by the journal records and the snapshots. Strings are
+ * written as UTF-8 with their length, since comments can be longer than
+ * {@link DataOutput#writeUTF(String)} allows.
+ */
+final class JournalCodec {
+
+	private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+	private JournalCodec() {
+	}
+
+	static void writeString(DataOutput output, String value) throws IOException {
+		if (value == null) {
+			output.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	static String readString(DataInput input) throws IOException {
+		int length = input.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Skips a link written, as its URI and rel, when the links of comments
+	 * were stored rather than derived from their ids
+	 * @return Whether there was a link
+	 */
+	static boolean skipLink(DataInput input) throws IOException {
+		boolean present = skipString(input);
+		skipString(input);
+		return present;
+	}
+
+	private static boolean skipString(DataInput input) throws IOException {
+		int length = input.readInt();
+		if (length < 0) {
+			return false;
+		}
+		input.skipBytes(length);
+		return true;
+	}
+
+	/**
+	 * Writes a timestamp as milliseconds since the epoch, which neither the time
+	 * zone of the server nor its daylight saving changes
+	 */
+	static void writeTimestamp(DataOutput output, long epochMillis) throws IOException {
+		output.writeLong(epochMillis);
+	}
+
+	static long readTimestamp(DataInput input) throws IOException {
+		return input.readLong();
+	}
+
+	/**
+	 * Reads a timestamp written as the seconds and nanoseconds of its local date
+	 * and time, the way timestamps were written when they were LocalDateTimes. A
+	 * local time repeated when the clocks go back reads as its first occurrence.
+	 */
+	static long readLocalTimestamp(DataInput input) throws IOException {
+		long seconds = input.readLong();
+		int nanos = input.readInt();
+		if (seconds == NO_TIMESTAMP) {
+			return Comment.NO_CREATION_TIMESTAMP;
+		}
+		return MonotonicClock.toEpochMillis(seconds * 1000 + nanos / 1000000);
+	}
+}
@@ -0,0 +1,317 @@
+package org.crowdlib.inmemory.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.entities.Utf8Text;
+import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.inmemory.collections.InMemoryFollowerCollection;
+import org.crowdlib.inmemory.collections.IntHashSet;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+
+/**
+ * Binary image of what the journal records: every comment, the comment log,
+ * followers and per-user state. Users and items themselves are not in it,
+ * they are created at startup. Entities refer to each other by id or
+ * username, and comments are written before anything that refers to them so
+ * that loading resolves every reference in a single pass.
+ *
+ * The comment logs of the items are read after the comments, so they can hold
+ * comments posted in between. Each log is only written up to its first
+ * comment that is not in the snapshot; the rest of it is replayed from the log
+ * segments written after the snapshot began.
+ */
+final class JournalSnapshot {
+
+	private static final int MAGIC = 0x43524c53;
+
+	private static final int VERSION = 3;
+
+	// version 1 stored the links of comments, which are derived now
+	private static final int VERSION_WITH_LINKS = 1;
+
+	// versions 1 and 2 stored creation times as local times
+	private static final int VERSION_WITH_LOCAL_TIMES = 2;
+
+	private JournalSnapshot() {
+	}
+
+	/**
+	 * Writes the in-memory collections to a file and forces it to disk
+	 * @param file File to be written, replaced if it exists
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				DataOutputStream output = new DataOutputStream(
+						new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			List<Comment> comments = InMemoryCommentCollection.getAllComments();
+			IntHashSet writtenIds = new IntHashSet();
+			output.writeInt(comments.size());
+			for (Comment comment : comments) {
+				writeComment(output, comment);
+				writtenIds.add(comment.getId());
+			}
+			for (Comment comment : comments) {
+				writeRelations(output, comment);
+			}
+			List<CatalogueItem> items = InMemoryCatalogueItemCollection.getAllCatalogueItems();
+			output.writeInt(items.size());
+			for (CatalogueItem item : items) {
+				writeItem(output, item, writtenIds);
+			}
+			List<User> users = InMemoryUserCollection.getAllUsers();
+			output.writeInt(users.size());
+			for (User user : users) {
+				writeUser(output, user);
+			}
+			output.writeInt(MAGIC);
+			output.flush();
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Loads a snapshot into the in-memory collections. The file is mapped
+	 * rather than read, and the content of the comments is left in the
+	 * mapping, to be decoded when it is asked for; the heap only holds the
+	 * comments' structure.
+	 * @param file Snapshot file
+	 * @return Highest comment id in the snapshot, 0 if it has no comments
+	 * @throws IOException if the file cannot be read or is not a complete snapshot
+	 */
+	static int load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedInput input = new MappedInput(channel, MappedInput.WINDOW_SIZE);
+			int version = input.readInt() == MAGIC ? input.readInt() : -1;
+			if (version != VERSION && version != VERSION_WITH_LOCAL_TIMES && version != VERSION_WITH_LINKS) {
+				throw new IOException(file + " is not a journal snapshot");
+			}
+			boolean withLinks = version == VERSION_WITH_LINKS;
+			boolean withLocalTimes = version != VERSION;
+			int lastCommentId = 0;
+			int numberOfComments = input.readInt();
+			for (int i = 0; i < numberOfComments; i++) {
+				lastCommentId = Math.max(lastCommentId, readComment(input, withLinks, withLocalTimes));
+			}
+			for (int i = 0; i < numberOfComments; i++) {
+				readRelations(input);
+			}
+			int numberOfItems = input.readInt();
+			for (int i = 0; i < numberOfItems; i++) {
+				readItem(input, withLinks);
+			}
+			int numberOfUsers = input.readInt();
+			for (int i = 0; i < numberOfUsers; i++) {
+				readUser(input);
+			}
+			if (input.readInt() != MAGIC) {
+				throw new IOException(file + " is incomplete");
+			}
+			return lastCommentId;
+		}
+	}
+
+	private static void writeComment(DataOutputStream output, Comment comment) throws IOException {
+		CatalogueItem item = comment.getCatalogueItem();
+		User owner = comment.getOwner();
+		output.writeInt(comment.getId());
+		output.writeInt(item == null ? -1 : item.getId());
+		JournalCodec.writeString(output, owner == null ? null : owner.getUsername());
+		JournalCodec.writeString(output, comment.getCommentContent());
+		JournalCodec.writeTimestamp(output, comment.getCreationTimestamp());
+		output.writeInt(comment.getFavouritesCount());
+		output.writeBoolean(comment.isDeleted());
+	}
+
+	private static int readComment(MappedInput input, boolean withLinks, boolean withLocalTimes) throws IOException {
+		int id = input.readInt();
+		int itemId = input.readInt();
+		String owner = JournalCodec.readString(input);
+		int contentLength = input.readInt();
+		Utf8Text content = contentLength < 0 ? null : input.readText(contentLength);
+		long creationTimestamp = withLocalTimes ? JournalCodec.readLocalTimestamp(input)
+				: JournalCodec.readTimestamp(input);
+		Comment comment = new Comment(id, null, creationTimestamp);
+		if (content != null) {
+			comment.setStoredCommentContent(content);
+		}
+		comment.setFavouritesCount(input.readInt());
+		if (withLinks) {
+			boolean hasLinkToSelf = JournalCodec.skipLink(input);
+			// deleting a comment used to drop its link to replies
+			comment.setDeleted(hasLinkToSelf && !JournalCodec.skipLink(input));
+		} else {
+			comment.setDeleted(input.readBoolean());
+		}
+		comment.setOwner(owner == null ? null : InMemoryUserCollection.getUser(owner));
+		comment.setCatalogueItem(InMemoryCatalogueItemCollection.getCatalogueItem(itemId));
+		InMemoryCommentCollection.addComment(comment);
+		return id;
+	}
+
+	private static void writeRelations(DataOutputStream output, Comment comment) throws IOException {
+		Comment parent = comment.getParentComment();
+		output.writeInt(comment.getId());
+		output.writeInt(parent == null ? -1 : parent.getId());
+		writeIds(output, comment.getReplies());
+	}
+
+	private static void readRelations(DataInput input) throws IOException {
+		Comment comment = snapshotComment(input.readInt());
+		int parentId = input.readInt();
+		if (parentId >= 0) {
+			comment.setParentComment(InMemoryCommentCollection.getComment(parentId));
+		}
+		int numberOfReplies = input.readInt();
+		for (int i = 0; i < numberOfReplies; i++) {
+			Comment reply = InMemoryCommentCollection.getComment(input.readInt());
+			if (reply != null) {
+				comment.getReplies().add(reply);
+			}
+		}
+	}
+
+	private static void writeItem(DataOutputStream output, CatalogueItem item, IntHashSet writtenIds)
+			throws IOException {
+		List<Comment> comments = InMemoryCommentLogCollection.getCommentLog(item).readAfter(-1, Integer.MAX_VALUE);
+		int written = 0;
+		while (written < comments.size() && writtenIds.contains(comments.get(written).getId())) {
+			written++;
+		}
+		output.writeInt(item.getId());
+		output.writeInt(written);
+		for (Comment comment : comments.subList(0, written)) {
+			output.writeInt(comment.getId());
+		}
+		List<User> followers = new ArrayList<User>();
+		for (int followerId : InMemoryFollowerCollection.getFollowerIds(item.getId())) {
+			User follower = InMemoryUserCollection.getUserById(followerId);
+			if (follower != null) {
+				followers.add(follower);
+			}
+		}
+		output.writeInt(followers.size());
+		for (User follower : followers) {
+			JournalCodec.writeString(output, follower.getUsername());
+		}
+	}
+
+	private static void readItem(DataInput input, boolean withLinks) throws IOException {
+		CatalogueItem item = InMemoryCatalogueItemCollection.getCatalogueItem(input.readInt());
+		int numberOfComments = input.readInt();
+		for (int position = 0; position < numberOfComments; position++) {
+			Comment comment = snapshotComment(input.readInt());
+			if (withLinks) {
+				JournalCodec.skipLink(input);
+			}
+			if (item != null) {
+				InMemoryJournal.addToItem(item, comment, position);
+			}
+		}
+		int numberOfFollowers = input.readInt();
+		for (int i = 0; i < numberOfFollowers; i++) {
+			User follower = InMemoryUserCollection.getUser(JournalCodec.readString(input));
+			if (item != null && follower != null) {
+				InMemoryFollowerCollection.addFollower(item.getId(), follower.getId());
+			}
+		}
+	}
+
+	/**
+	 * Looks up a comment the snapshot refers to, which it must hold
+	 * @throws IOException if the comment is not in the snapshot
+	 */
+	private static Comment snapshotComment(int commentId) throws IOException {
+		Comment comment = InMemoryCommentCollection.getComment(commentId);
+		if (comment == null) {
+			throw new IOException("The snapshot refers to comment " + commentId + ", which it does not hold");
+		}
+		return comment;
+	}
+
+	private static void writeUser(DataOutputStream output, User user) throws IOException {
+		JournalCodec.writeString(output, user.getUsername());
+		writeIds(output, user.getFavouriteComments());
+		List<CatalogueItem> followedItems = withoutNulls(user.getFollowedItems());
+		output.writeInt(followedItems.size());
+		for (CatalogueItem item : followedItems) {
+			output.writeInt(item.getId());
+		}
+		List<Map.Entry<Integer, Integer>> watermarks = new ArrayList<Map.Entry<Integer, Integer>>(
+				user.getReadWatermarks().entrySet());
+		output.writeInt(watermarks.size());
+		for (Map.Entry<Integer, Integer> watermark : watermarks) {
+			output.writeInt(watermark.getKey());
+			output.writeInt(watermark.getValue());
+		}
+	}
+
+	private static void readUser(DataInput input) throws IOException {
+		User user = InMemoryUserCollection.getUser(JournalCodec.readString(input));
+		int numberOfFavourites = input.readInt();
+		for (int i = 0; i < numberOfFavourites; i++) {
+			Comment comment = InMemoryCommentCollection.getComment(input.readInt());
+			if (user != null && comment != null) {
+				user.getFavouriteComments().add(comment);
+			}
+		}
+		int numberOfFollowedItems = input.readInt();
+		for (int i = 0; i < numberOfFollowedItems; i++) {
+			CatalogueItem item = InMemoryCatalogueItemCollection.getCatalogueItem(input.readInt());
+			if (user != null && item != null) {
+				user.getFollowedItems().add(item);
+			}
+		}
+		int numberOfWatermarks = input.readInt();
+		for (int i = 0; i < numberOfWatermarks; i++) {
+			int itemId = input.readInt();
+			int position = input.readInt();
+			if (user != null) {
+				user.getReadWatermarks().put(itemId, position);
+			}
+		}
+	}
+
+	private static void writeIds(DataOutputStream output, List<Comment> comments) throws IOException {
+		List<Comment> present = withoutNulls(comments);
+		output.writeInt(present.size());
+		for (Comment comment : present) {
+			output.writeInt(comment.getId());
+		}
+	}
+
+	/**
+	 * Copies a list that other threads may be adding to. The copy can miss the
+	 * latest additions or hold a null where one was under way; those additions
+	 * are in the log segments replayed after the snapshot.
+	 */
+	private static <T> List<T> withoutNulls(List<T> list) {
+		List<T> copy = new ArrayList<T>(list.size());
+		for (Object element : list.toArray()) {
+			if (element != null) {
+				@SuppressWarnings("unchecked")
+				T typed = (T) element;
+				copy.add(typed);
+			}
+		}
+		return copy;
+	}
+}
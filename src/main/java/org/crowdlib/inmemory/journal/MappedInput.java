@@ -0,0 +1,174 @@
+package org.crowdlib.inmemory.journal;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.crowdlib.entities.Utf8Text;
+
+/**
+ * Reads a file through memory-mapped windows of it. A buffer cannot map
+ * more than 2GB, so a new window is mapped from the current position
+ * whenever a value does not fit in the rest of the current one; every value
+ * read, and every {@link Utf8Text} handed out, lies within a single window.
+ * The windows stay mapped for as long as the texts referring to them are
+ * reachable, even once the channel is closed.
+ */
+final class MappedInput implements DataInput {
+
+	static final int WINDOW_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final int windowSize;
+
+	private ByteBuffer window = ByteBuffer.allocate(0);
+
+	private long windowStart;
+
+	MappedInput(FileChannel channel, int windowSize) throws IOException {
+		this.channel = channel;
+		this.size = channel.size();
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Hands out the next bytes of the file as text without copying them
+	 * @param length Number of bytes of the text
+	 * @return Text backed by the mapped file
+	 * @throws IOException if the file ends before the text does
+	 */
+	Utf8Text readText(int length) throws IOException {
+		ByteBuffer buffer = require(length);
+		int offset = buffer.position();
+		buffer.position(offset + length);
+		return new Utf8Text(buffer, offset, length);
+	}
+
+	private ByteBuffer require(int length) throws IOException {
+		if (window.remaining() >= length) {
+			return window;
+		}
+		long position = windowStart + window.position();
+		if (position + length > size) {
+			throw new EOFException();
+		}
+		window = channel.map(MapMode.READ_ONLY, position, Math.min(Math.max(windowSize, length), size - position));
+		windowStart = position;
+		return window;
+	}
+
+	private long remaining() {
+		return size - windowStart - window.position();
+	}
+
+	@Override
+	public void readFully(byte[] bytes) throws IOException {
+		readFully(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public void readFully(byte[] bytes, int offset, int length) throws IOException {
+		require(length).get(bytes, offset, length);
+	}
+
+	@Override
+	public int skipBytes(int n) throws IOException {
+		int skipped = (int) Math.min(n, remaining());
+		ByteBuffer buffer = require(skipped);
+		buffer.position(buffer.position() + skipped);
+		return skipped;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		return require(1).get();
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		return require(2).getShort();
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return require(2).getChar();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return require(4).getInt();
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		return require(8).getLong();
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return require(4).getFloat();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return require(8).getDouble();
+	}
+
+	/**
+	 * Reads a line the way {@link DataInputStream#readLine()} does: every byte
+	 * is a character, and the line ends at "\n", "\r", "\r\n" or the end of the
+	 * file
+	 * @return The line without its end, or null at the end of the file
+	 */
+	@Override
+	public String readLine() throws IOException {
+		if (remaining() == 0) {
+			return null;
+		}
+		StringBuilder line = new StringBuilder();
+		while (remaining() > 0) {
+			char c = (char) readUnsignedByte();
+			if (c == '\n') {
+				break;
+			}
+			if (c == '\r') {
+				if (remaining() > 0) {
+					ByteBuffer buffer = require(1);
+					if (buffer.get(buffer.position()) == '\n') {
+						buffer.get();
+					}
+				}
+				break;
+			}
+			line.append(c);
+		}
+		return line.toString();
+	}
+
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+}
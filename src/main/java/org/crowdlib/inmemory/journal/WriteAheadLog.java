@@ -0,0 +1,391 @@
+package org.crowdlib.inmemory.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.crowdlib.exceptions.PersistenceException;
+
+/**
+ * Append-only log of records, kept in numbered segment files of a directory.
+ * Appending only copies the record into a buffer; a single writer thread
+ * writes everything buffered since its last write and forces it to disk with
+ * one fsync, so records appended while an fsync is running share the next one
+ * (group commit). A sync interval makes the writer wait between fsyncs and
+ * gather larger groups.
+ *
+ * Every record is framed with its length and a CRC32 of its contents, so
+ * reading stops at a record that was only partly written when the process
+ * died.
+ */
+public final class WriteAheadLog implements AutoCloseable {
+
+	/**
+	 * Receives the records read back from a segment
+	 */
+	public interface RecordHandler {
+
+		void handle(byte[] record) throws IOException;
+	}
+
+	private static final String SEGMENT_PREFIX = "journal-";
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private static final int FRAME_HEADER = 8;
+
+	private final Path directory;
+
+	private final long syncIntervalMillis;
+
+	private final boolean awaitSync;
+
+	/** Guards the buffer and the sequence numbers */
+	private final Object lock = new Object();
+
+	/** Guards the segment being written, taken before lock when both are needed */
+	private final Object writeLock = new Object();
+
+	private byte[] buffer = new byte[64 * 1024];
+
+	private int bufferLength;
+
+	private byte[] spareBuffer = new byte[64 * 1024];
+
+	private long appendedSequence;
+
+	private long syncedSequence;
+
+	private IOException failure;
+
+	private boolean closed;
+
+	private long segment;
+
+	private FileChannel channel;
+
+	private final Thread writer;
+
+	/**
+	 * Opens a new segment after the last one in the directory and starts the writer
+	 * @param directory Directory of the segments, created if missing
+	 * @param syncIntervalMillis Minimum time between two fsyncs, 0 to sync as soon as records arrive
+	 * @param awaitSync Whether {@link #awaitDurable(long)} waits for the fsync of a record
+	 * @throws IOException if the segment cannot be created
+	 */
+	public WriteAheadLog(Path directory, long syncIntervalMillis, boolean awaitSync) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.syncIntervalMillis = syncIntervalMillis;
+		this.awaitSync = awaitSync;
+		List<Long> segments = segments(directory);
+		this.segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+		this.channel = openSegment(segment);
+		this.writer = new Thread(this::writeLoop, "journal-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Appends a record to the log without waiting for it to be written
+	 * @param record Contents of the record
+	 * @return Sequence number of the record, to be passed to {@link #awaitDurable(long)}
+	 */
+	public long append(byte[] record) {
+		CRC32 crc = new CRC32();
+		crc.update(record, 0, record.length);
+		synchronized (lock) {
+			if (closed) {
+				throw new PersistenceException("The journal is closed", null);
+			}
+			int required = bufferLength + FRAME_HEADER + record.length;
+			if (required > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length << 1));
+			}
+			putInt(buffer, bufferLength, record.length);
+			putInt(buffer, bufferLength + 4, (int) crc.getValue());
+			System.arraycopy(record, 0, buffer, bufferLength + FRAME_HEADER, record.length);
+			bufferLength = required;
+			lock.notifyAll();
+			return ++appendedSequence;
+		}
+	}
+
+	/**
+	 * Waits until the record with this sequence number is on disk. Returns at once
+	 * when the log was opened not to wait for fsyncs.
+	 * @param sequence Sequence number returned by {@link #append(byte[])}
+	 */
+	public void awaitDurable(long sequence) {
+		if (!awaitSync) {
+			return;
+		}
+		synchronized (lock) {
+			while (syncedSequence < sequence) {
+				if (failure != null) {
+					throw new PersistenceException("Writing the journal failed", failure);
+				}
+				if (closed && !writer.isAlive()) {
+					throw new PersistenceException("The journal is closed", null);
+				}
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new PersistenceException("Interrupted while waiting for the journal", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the sequence number of the last record appended
+	 * @return The last sequence number, 0 if nothing was appended yet
+	 */
+	public long getAppendedSequence() {
+		synchronized (lock) {
+			return appendedSequence;
+		}
+	}
+
+	/**
+	 * Forces the records appended so far into the current segment and continues
+	 * in a new one. Everything appended before this call is in a segment with a
+	 * lower number than the one returned.
+	 * @return Number of the new segment
+	 * @throws IOException if the current segment cannot be synced or the new one created
+	 */
+	public long roll() throws IOException {
+		synchronized (writeLock) {
+			long target = writeBuffered();
+			channel.close();
+			segment++;
+			channel = openSegment(segment);
+			markSynced(target);
+			return segment;
+		}
+	}
+
+	/**
+	 * Deletes the segments that come before this one
+	 * @param firstKept Number of the first segment kept
+	 * @throws IOException if a segment cannot be deleted
+	 */
+	public void deleteSegmentsBefore(long firstKept) throws IOException {
+		for (long number : segments(directory)) {
+			if (number < firstKept) {
+				Files.deleteIfExists(segmentPath(directory, number));
+			}
+		}
+	}
+
+	/**
+	 * Writes and syncs the remaining records, then stops the writer
+	 */
+	@Override
+	public void close() {
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (writeLock) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// the records were synced by the writer, or the failure was reported to their callers
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the numbers of the segments in a directory in ascending order
+	 * @param directory Directory of the segments
+	 * @return The segment numbers, empty if the directory does not exist
+	 * @throws IOException if the directory cannot be listed
+	 */
+	public static List<Long> segments(Path directory) throws IOException {
+		return numberedFiles(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+	}
+
+	static List<Long> numberedFiles(Path directory, String prefix, String suffix) throws IOException {
+		List<Long> numbers = new ArrayList<Long>();
+		if (!Files.isDirectory(directory)) {
+			return numbers;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "[0-9]*" + suffix)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+			}
+		}
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+	static Path numberedFile(Path directory, String prefix, long number, String suffix) {
+		return directory.resolve(String.format("%s%010d%s", prefix, number, suffix));
+	}
+
+	/**
+	 * Reads the records of a segment in the order they were appended. A record
+	 * cut short or failing its checksum ends the segment; the segment is
+	 * truncated there so that it only holds complete records.
+	 * @param directory Directory of the segments
+	 * @param number Number of the segment
+	 * @param handler Receives every complete record
+	 * @return Whether the whole segment was read without finding a damaged record
+	 * @throws IOException if the segment cannot be read or the handler fails
+	 */
+	public static boolean read(Path directory, long number, RecordHandler handler) throws IOException {
+		Path file = segmentPath(directory, number);
+		long fileLength = Files.size(file);
+		long validLength = 0;
+		boolean intact = true;
+		try (InputStream stream = Files.newInputStream(file);
+				DataInputStream input = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+			CRC32 crc = new CRC32();
+			while (true) {
+				int length;
+				try {
+					length = input.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				byte[] record;
+				int checksum;
+				try {
+					checksum = input.readInt();
+					if (length < 0 || length > fileLength - validLength - FRAME_HEADER) {
+						throw new EOFException();
+					}
+					record = new byte[length];
+					input.readFully(record);
+				} catch (EOFException e) {
+					intact = false;
+					break;
+				}
+				crc.reset();
+				crc.update(record, 0, length);
+				if ((int) crc.getValue() != checksum) {
+					intact = false;
+					break;
+				}
+				handler.handle(record);
+				validLength += FRAME_HEADER + length;
+			}
+		}
+		if (!intact) {
+			try (FileChannel damaged = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				damaged.truncate(validLength);
+			}
+		}
+		return intact;
+	}
+
+	private void writeLoop() {
+		long lastSync = 0;
+		while (true) {
+			synchronized (lock) {
+				while (bufferLength == 0 && !closed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						// only close() stops the writer, so that no record is left unwritten
+					}
+				}
+				if (bufferLength == 0) {
+					return;
+				}
+			}
+			long wait = lastSync + syncIntervalMillis - System.currentTimeMillis();
+			if (wait > 0) {
+				try {
+					Thread.sleep(wait);
+				} catch (InterruptedException e) {
+					// write what has been gathered so far
+				}
+			}
+			try {
+				synchronized (writeLock) {
+					markSynced(writeBuffered());
+				}
+			} catch (IOException e) {
+				synchronized (lock) {
+					failure = e;
+					closed = true;
+					lock.notifyAll();
+				}
+				return;
+			}
+			lastSync = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Writes the buffered records to the current segment. Must hold writeLock.
+	 * @return Sequence number of the last record written
+	 */
+	private long writeBuffered() throws IOException {
+		byte[] batch;
+		int length;
+		long target;
+		synchronized (lock) {
+			batch = buffer;
+			length = bufferLength;
+			target = appendedSequence;
+			buffer = spareBuffer;
+			bufferLength = 0;
+		}
+		ByteBuffer bytes = ByteBuffer.wrap(batch, 0, length);
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		if (length > 0) {
+			channel.force(false);
+		}
+		synchronized (lock) {
+			spareBuffer = batch;
+		}
+		return target;
+	}
+
+	private void markSynced(long target) {
+		synchronized (lock) {
+			syncedSequence = Math.max(syncedSequence, target);
+			lock.notifyAll();
+		}
+	}
+
+	private FileChannel openSegment(long number) throws IOException {
+		return FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.WRITE);
+	}
+
+	private static Path segmentPath(Path directory, long number) {
+		return numberedFile(directory, SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+	}
+
+	private static void putInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+}
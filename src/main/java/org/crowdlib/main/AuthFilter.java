@@ -3,6 +3,7 @@ package org.crowdlib.main;
 import java.io.IOException;
 import java.security.Principal;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
@@ -10,15 +11,12 @@ import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.container.PreMatching;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
-import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
 
 import org.crowdlib.entities.User;
-import org.crowdlib.exceptions.CustomizedWebApplicationException;
-import org.crowdlib.exceptions.UserNotFoundException;
 import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.DaoFactory;
 import org.crowdlib.model.UserDao;
-import org.crowdlib.model.UserDaoImpl;
 import org.glassfish.jersey.internal.util.Base64;
 
 /**
@@ -36,8 +34,35 @@ public class AuthFilter implements ContainerRequestFilter {
 
 	private UserDao userDao;
 
+	private CredentialCache credentialCache;
+
+	/**
+	 * Creates the filter with a credential cache sized by the crowdlib.authCacheSize and
+	 * crowdlib.authCacheTtlSeconds system properties
+	 */
 	public AuthFilter() {
-		this.userDao = new UserDaoImpl();
+		this(Integer.getInteger("crowdlib.authCacheSize", 10000),
+				TimeUnit.SECONDS.toMillis(Integer.getInteger("crowdlib.authCacheTtlSeconds", 300)));
+	}
+
+	/**
+	 * Creates the filter with a credential cache of the given size
+	 * @param cacheCapacity Maximum number of cached Authorization headers, 0 disables the cache
+	 * @param cacheTimeToLiveMillis Time after which a cached header is checked again
+	 */
+	public AuthFilter(int cacheCapacity, long cacheTimeToLiveMillis) {
+		this(DaoFactory.getUserDao(), cacheCapacity, cacheTimeToLiveMillis);
+	}
+
+	/**
+	 * Creates the filter looking users up through the given DAO
+	 * @param userDao DAO used to find the user named in the credentials
+	 * @param cacheCapacity Maximum number of cached Authorization headers, 0 disables the cache
+	 * @param cacheTimeToLiveMillis Time after which a cached header is checked again
+	 */
+	public AuthFilter(UserDao userDao, int cacheCapacity, long cacheTimeToLiveMillis) {
+		this.userDao = userDao;
+		this.credentialCache = new CredentialCache(cacheCapacity, cacheTimeToLiveMillis);
 	}
 
 	private void sendUnAuthorised(ContainerRequestContext requestContext) {
@@ -49,22 +74,32 @@ public class AuthFilter implements ContainerRequestFilter {
 	public void filter(ContainerRequestContext requestContext) throws IOException {
 
 		// Get the authentication passed in HTTP headers parameters
-		String authHeader = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
-		if (authHeader == null) {
+		final String rawAuthHeader = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
+		if (rawAuthHeader == null) {
 			sendUnAuthorised(requestContext);
+			return;
 		}
 
-		authHeader = authHeader.replaceFirst("[Bb]asic ", "");
-		final String userCreds = Base64.decodeAsString(authHeader);
+		SecurityContext cached = credentialCache.get(rawAuthHeader);
+		if (cached != null) {
+			requestContext.setSecurityContext(cached);
+			return;
+		}
 
-		User user = InMemoryUserCollection.getUser(userCreds.split(":")[0]);
+		final String authHeader = rawAuthHeader.replaceFirst("[Bb]asic ", "");
+		final String userCreds = Base64.decodeAsString(authHeader);
 
-		if (user == null)
+		int userModificationCount = InMemoryUserCollection.getModificationCount();
+		User user = userDao.findUserByUsername(userCreds.split(":")[0]).orElse(null);
+		if (user == null) {
 			sendUnAuthorised(requestContext);
+			return;
+		}
 
 		final String credential = user.getUsername() + ":" + user.getPassword();
 		if (userCreds.equals(credential)) {
-			final SecurityContext sc = new MySecurityContext(user.getUsername());
+			final SecurityContext sc = new MySecurityContext(user);
+			credentialCache.put(rawAuthHeader, user, sc, userModificationCount);
 			requestContext.setSecurityContext(sc);
 			return;
 		}
@@ -74,19 +109,23 @@ public class AuthFilter implements ContainerRequestFilter {
 
 	/**
 	 * A simple implementation of a {@link SecurityContext} that is just enough
-	 * to implement HTTP basic authentication.
+	 * to implement HTTP basic authentication. It keeps the role found at
+	 * authentication time, so role checks do not look the user up again.
 	 */
-	private class MySecurityContext implements SecurityContext {
+	private static class MySecurityContext implements SecurityContext {
+
+		private final Principal principal;
 
-		private Principal principal = null;
+		private final String role;
 
 		/**
-		 * Constructor takes the name of the authenticated users as its
-		 * argument, which will be returned in a {@link MyUserPrincipal} object
-		 * by the {@link #getUserPrincipal()} method.
+		 * Constructor takes the authenticated user as its argument, whose
+		 * username will be returned in a {@link MyUserPrincipal} object by the
+		 * {@link #getUserPrincipal()} method.
 		 */
-		public MySecurityContext(final String principalName) {
-			this.principal = new MyUserPrincipal(principalName);
+		public MySecurityContext(final User user) {
+			this.principal = new MyUserPrincipal(user.getUsername());
+			this.role = user.getRole();
 		}
 
 		@Override
@@ -96,13 +135,7 @@ public class AuthFilter implements ContainerRequestFilter {
 
 		@Override
 		public boolean isUserInRole(final String role) {
-			User currentUser;
-			try {
-				currentUser = userDao.getUserByUsername(principal.getName());
-				return currentUser.getRole().equals(role);
-			} catch (UserNotFoundException e) {
-				throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
-			}
+			return this.role != null && this.role.equals(role);
 		}
 
 		@Override
@@ -119,7 +152,7 @@ public class AuthFilter implements ContainerRequestFilter {
 	/**
 	 * Simple implementation of {@link Principal}, simply stores a username.
 	 */
-	private class MyUserPrincipal implements Principal {
+	private static class MyUserPrincipal implements Principal {
 
 		private String name = null;
 
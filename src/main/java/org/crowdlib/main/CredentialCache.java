@@ -0,0 +1,157 @@
+package org.crowdlib.main;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.ws.rs.core.SecurityContext;
+
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+
+/**
+ * Bounded cache of successful authentications, keyed by the raw value of the
+ * Authorization header. A hit costs one lookup in a concurrent map, takes no
+ * lock and hands back the security context built when the header was first
+ * checked.
+ *
+ * Eviction is approximate, after the CLOCK algorithm: every cached header has
+ * a slot on a ring, and a hit marks its entry as used. A new header takes the
+ * slot under the hand of the clock, moving it past the entries used since it
+ * last passed them, which lose their mark, but never past more than a few, so
+ * making room is constant time.
+ *
+ * An entry is only used while it has not expired, the user's password and
+ * role are still the ones it was created with and no user has been added or
+ * replaced since. Only the in-memory collection counts the users added or
+ * replaced; the database backend never changes its users once they are
+ * loaded, and a change made to its table directly is seen when the entry
+ * expires.
+ */
+class CredentialCache {
+
+	/**
+	 * Most entries the hand moves past to make room, before it takes a slot
+	 * whatever its entry
+	 */
+	private static final int MAX_SWEEP = 8;
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private final AtomicReferenceArray<String> ring;
+
+	private final AtomicInteger hand = new AtomicInteger();
+
+	private final int capacity;
+
+	private final long timeToLiveNanos;
+
+	/**
+	 * @param capacity Maximum number of cached headers, 0 disables the cache
+	 * @param timeToLiveMillis Time after which a header has to be checked again
+	 */
+	CredentialCache(int capacity, long timeToLiveMillis) {
+		this.capacity = capacity;
+		this.ring = new AtomicReferenceArray<String>(Math.max(capacity, 0));
+		this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+	}
+
+	/**
+	 * Retrieves the security context of a header that was authenticated before
+	 * @param authHeader Raw value of the Authorization header
+	 * @return The security context, or null if the header has to be checked
+	 */
+	SecurityContext get(String authHeader) {
+		Entry entry = entries.get(authHeader);
+		if (entry == null) {
+			return null;
+		}
+		if (!entry.isValid(System.nanoTime())) {
+			entries.remove(authHeader, entry);
+			return null;
+		}
+		if (!entry.used) {
+			entry.used = true;
+		}
+		return entry.securityContext;
+	}
+
+	/**
+	 * Remembers that a header authenticates a user
+	 * @param authHeader Raw value of the Authorization header
+	 * @param user The authenticated user
+	 * @param securityContext Security context for the user's requests
+	 * @param userModificationCount Modification count of the users read before looking the user up
+	 */
+	void put(String authHeader, User user, SecurityContext securityContext, int userModificationCount) {
+		if (capacity <= 0) {
+			return;
+		}
+		Entry entry = new Entry(user, securityContext, userModificationCount, System.nanoTime() + timeToLiveNanos);
+		if (entries.put(authHeader, entry) == null) {
+			takeSlot(authHeader);
+		}
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Moves the hand to a slot for a new header, evicting the header that had it
+	 */
+	private void takeSlot(String authHeader) {
+		for (int swept = 0;; swept++) {
+			int slot = Math.floorMod(hand.getAndIncrement(), capacity);
+			String occupant = ring.get(slot);
+			Entry occupantEntry = occupant == null ? null : entries.get(occupant);
+			if (occupantEntry != null && occupantEntry.used && swept < MAX_SWEEP) {
+				occupantEntry.used = false;
+				continue;
+			}
+			if (!ring.compareAndSet(slot, occupant, authHeader)) {
+				// another header took the slot meanwhile
+				continue;
+			}
+			if (occupantEntry != null && !occupant.equals(authHeader)) {
+				entries.remove(occupant, occupantEntry);
+			}
+			return;
+		}
+	}
+
+	private static final class Entry {
+
+		private final User user;
+		private final String password;
+		private final String role;
+		private final int userModificationCount;
+		private final SecurityContext securityContext;
+		private final long expiresAt;
+
+		/**
+		 * Set by hits and cleared by the hand; a lost update only makes eviction
+		 * a little less accurate
+		 */
+		private volatile boolean used;
+
+		private Entry(User user, SecurityContext securityContext, int userModificationCount, long expiresAt) {
+			this.user = user;
+			this.password = user.getPassword();
+			this.role = user.getRole();
+			this.userModificationCount = userModificationCount;
+			this.securityContext = securityContext;
+			this.expiresAt = expiresAt;
+		}
+
+		/**
+		 * Setters replace the strings, so comparing references is enough to notice a change.
+		 */
+		private boolean isValid(long now) {
+			return now - expiresAt < 0 && user.getPassword() == password && user.getRole() == role
+					&& InMemoryUserCollection.getModificationCount() == userModificationCount;
+		}
+	}
+}
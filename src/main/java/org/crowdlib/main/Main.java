@@ -1,19 +1,43 @@
 package org.crowdlib.main;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import javax.ws.rs.core.UriBuilder;
 
 import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.CommentLinks;
 import org.crowdlib.exceptions.mappers.NotFoundExceptionMapper;
+import org.crowdlib.ids.AtomicIdAllocator;
+import org.crowdlib.ids.BlockLeasingIdAllocator;
+import org.crowdlib.ids.BlockLeasingIdAllocator.LocalIdBlockSource;
 import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
 import org.crowdlib.inmemory.collections.InMemoryCommentCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentPathCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentSearchCollection;
 import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.inmemory.journal.InMemoryJournal;
+import org.crowdlib.model.DaoFactory;
+import org.crowdlib.model.jdbc.Database;
+import org.crowdlib.notifications.NotificationDispatcher;
+import org.crowdlib.notifications.NotificationMode;
+import org.crowdlib.notifications.NotificationService;
+import org.crowdlib.notifications.NotificationStreams;
+import org.crowdlib.search.CommentSearchIndex;
+import org.crowdlib.text.OffHeapTextArena;
 import org.crowdlib.webservices.api.CatalogueItemResource;
 import org.crowdlib.webservices.api.CommentResource;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
 
@@ -34,6 +58,7 @@ public final class Main {
      * Create a Grizzly server and register the classes that make up this application.
      */
     protected static HttpServer createServer() throws IOException {
+        CommentLinks.setBaseUri(BASE_URI);
         final ResourceConfig rc = new ResourceConfig();
         rc.packages("org.crowdlib.main");
         rc.packages("org.crowdlib.webservices.api");
@@ -42,22 +67,161 @@ public final class Main {
         rc.register(CommentResource.class);
         rc.register(CatalogueItemResource.class);
         rc.register(RolesAllowedDynamicFeature.class);
+        rc.register(SseFeature.class);
         rc.register(AuthFilter.class);
         rc.register(NotFoundExceptionMapper.class);
         return GrizzlyHttpServerFactory.createHttpServer(BASE_URI, rc);
     }
     
-    private static void initializeInMemoryCollections(){
+    /**
+     * Switches comment ids to per-thread block leasing when a block size is given
+     * through the crowdlib.commentIdBlockSize system property. New ids continue after
+     * the last one already in use.
+     */
+    private static void configureIdAllocation(int lastCommentId) {
+    	int blockSize = Integer.getInteger("crowdlib.commentIdBlockSize", 0);
+    	if (blockSize > 0) {
+    		Comment.setIdAllocator(new BlockLeasingIdAllocator(new LocalIdBlockSource(lastCommentId), blockSize));
+    	} else if (lastCommentId > 0) {
+    		Comment.setIdAllocator(new AtomicIdAllocator(lastCommentId));
+    	}
+    }
+
+    /**
+     * Moves the content of comments out of the heap when the crowdlib.offHeapCommentContent
+     * system property is true, which shortens full collections of a heap holding many comments.
+     * The direct memory used is bounded by -XX:MaxDirectMemorySize.
+     */
+    private static void configureCommentContent() {
+    	if (Boolean.getBoolean("crowdlib.offHeapCommentContent")) {
+    		Comment.setContentArena(new OffHeapTextArena(OffHeapTextArena.DEFAULT_CHUNK_SIZE));
+    	}
+    }
+
+    /**
+     * Bounds the estimated size of the comment search index by the
+     * crowdlib.searchIndexBudgetMegabytes system property, 64 by default. Once over it,
+     * the index drops its oldest comments, which are then no longer found by searches.
+     */
+    private static void configureCommentSearch() {
+    	CommentSearchIndex.setDefaultBudget(
+    			Long.getLong("crowdlib.searchIndexBudgetMegabytes", CommentSearchIndex.DEFAULT_BUDGET_BYTES >> 20) << 20);
+    }
+
+    /**
+     * Keeps the data in the H2 database named by the crowdlib.database system property,
+     * e.g. -Dcrowdlib.database=jdbc:h2:./crowdlib, so that it survives a restart. A new
+     * database starts with the users and catalogue items of the in-memory collections.
+     */
+    private static Database openDatabase() {
+    	String url = System.getProperty("crowdlib.database");
+    	if (url == null) {
+    		return null;
+    	}
+    	Database database = Database.open(url, Integer.getInteger("crowdlib.databaseConnections", 8));
+    	database.seedIfEmpty(InMemoryUserCollection.getAllUsers(),
+    			InMemoryCatalogueItemCollection.getAllCatalogueItems());
+    	DaoFactory.useDatabase(database);
+    	return database;
+    }
+
+    /**
+     * Selects the notification mode named by the crowdlib.notificationMode system property,
+     * e.g. -Dcrowdlib.notificationMode=FAN_OUT_ON_READ, and sizes the notification streams
+     * and sets their heartbeat interval and write timeout.
+     */
+    private static void configureNotifications() {
+    	String mode = System.getProperty("crowdlib.notificationMode");
+    	if (mode != null) {
+    		NotificationService.setMode(NotificationMode.valueOf(mode));
+    	}
+    	NotificationService.setStreams(new NotificationStreams(
+    			Integer.getInteger("crowdlib.notificationStreamWriters", 2),
+    			Integer.getInteger("crowdlib.notificationStreamBufferSize", 256),
+    			Long.getLong("crowdlib.notificationStreamHeartbeatMillis",
+    					NotificationStreams.DEFAULT_HEARTBEAT_INTERVAL_MILLIS),
+    			Long.getLong("crowdlib.notificationStreamWriteTimeoutMillis",
+    					NotificationStreams.DEFAULT_WRITE_TIMEOUT_MILLIS)));
+    }
+
+    /**
+     * Starts the background delivery of notifications and publishes its metrics over JMX.
+     * -Dcrowdlib.notificationWorkers=0 delivers notifications while the comment is posted.
+     */
+    private static NotificationDispatcher startNotificationDispatcher() {
+    	int workers = Integer.getInteger("crowdlib.notificationWorkers", 2);
+    	if (workers <= 0) {
+    		return null;
+    	}
+    	NotificationDispatcher dispatcher = new NotificationDispatcher(
+    			Integer.getInteger("crowdlib.notificationQueueCapacity", 10000), workers,
+    			Integer.getInteger("crowdlib.notificationBatchSize", 64),
+    			Long.getLong("crowdlib.notificationOfferTimeoutMillis", NotificationDispatcher.DEFAULT_OFFER_TIMEOUT_MILLIS));
+    	dispatcher.start();
+    	NotificationService.setDispatcher(dispatcher);
+    	try {
+    		ManagementFactory.getPlatformMBeanServer().registerMBean(dispatcher,
+    				new ObjectName("org.crowdlib:type=NotificationDispatcher"));
+    	} catch (JMException e) {
+    		System.out.println("Notification dispatcher metrics are not available: " + e.getMessage());
+    	}
+    	return dispatcher;
+    }
+
+    /**
+     * Delivers the notifications still waiting in the dispatcher before the application exits.
+     */
+    private static void drainNotificationDispatcher(NotificationDispatcher dispatcher) {
+    	if (dispatcher == null) {
+    		return;
+    	}
+    	NotificationService.setDispatcher(null);
+    	try {
+    		dispatcher.shutdown(30, TimeUnit.SECONDS);
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    	}
+    }
+
+    /**
+     * Fills the in-memory collections. With a journal directory given through the
+     * crowdlib.journal system property, e.g. -Dcrowdlib.journal=./journal, they are
+     * recovered from its latest snapshot and the log written after it, and every change
+     * is journaled from then on. The journal is not used when a database is configured.
+     * @return Highest comment id recovered, 0 if there were none
+     */
+    private static int initializeInMemoryCollections(){
     	InMemoryUserCollection.initializeInMemoryUsers();
     	InMemoryCatalogueItemCollection.initializeInMemoryCatalogueItems();
     	InMemoryCommentCollection.initializeInMemoryComments();
+    	InMemoryCommentLogCollection.initializeInMemoryCommentLogs();
+    	InMemoryCommentPathCollection.initializeInMemoryCommentPaths();
+    	InMemoryCommentSearchCollection.initializeInMemoryCommentSearch();
+    	String journal = System.getProperty("crowdlib.journal");
+    	if (journal == null || System.getProperty("crowdlib.database") != null) {
+    		return 0;
+    	}
+    	long started = System.nanoTime();
+    	int lastCommentId = InMemoryJournal.recover(Paths.get(journal));
+    	System.out.println(String.format("Recovered comments up to id %d from %s in %d ms", lastCommentId, journal,
+    			TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+    	InMemoryJournal.start(Paths.get(journal), Long.getLong("crowdlib.journalSyncIntervalMillis", 0),
+    			Boolean.parseBoolean(System.getProperty("crowdlib.journalAwaitSync", "true")),
+    			TimeUnit.SECONDS.toMillis(Long.getLong("crowdlib.journalSnapshotIntervalSeconds", 300)));
+    	return lastCommentId;
     }
 
     /**
      * main() method starts up Grizzly server, waits for user input, then shuts it down.
      */
     public static void main(final String[] args) throws IOException {
-        initializeInMemoryCollections();
+        configureNotifications();
+        configureCommentContent();
+        configureCommentSearch();
+        final int lastRecoveredCommentId = initializeInMemoryCollections();
+        final Database database = openDatabase();
+        configureIdAllocation(database == null ? lastRecoveredCommentId : database.getLastCommentId());
+        final NotificationDispatcher dispatcher = startNotificationDispatcher();
     	final HttpServer httpServer = createServer();
         System.out.println("Starting grizzly2...");
         httpServer.start();
@@ -65,5 +229,12 @@ public final class Main {
                 + "%sapplication.wadl%nHit enter to stop it...", BASE_URI));
         System.in.read();
         httpServer.shutdownNow();
+        drainNotificationDispatcher(dispatcher);
+        // a snapshot taken on the way out leaves no log to replay at the next start
+        InMemoryJournal.snapshot();
+        InMemoryJournal.stop();
+        if (database != null) {
+            database.close();
+        }
     }
 }
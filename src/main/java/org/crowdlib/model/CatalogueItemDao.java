@@ -1,8 +1,8 @@
 package org.crowdlib.model;
 
 import java.util.List;
+import java.util.Optional;
 
-import javax.ws.rs.core.Link;
 
 import org.crowdlib.entities.CatalogueItem;
 import org.crowdlib.entities.Comment;
@@ -25,6 +25,13 @@ public interface CatalogueItemDao {
 	 * @throws CatalogueItemNotFoundException in case catalogue item is not available in memory
 	 */
 	public CatalogueItem getById(Integer itemId) throws CatalogueItemNotFoundException;
+
+	/**
+	 * Looks up a catalogue item without throwing when it does not exist
+	 * @param itemId The id for the catalogue item
+	 * @return The catalogue item, or an empty Optional if there is none with this id
+	 */
+	public Optional<CatalogueItem> findById(Integer itemId);
 	
 	/**
 	 * Retrieves all comments for this catalogue item 
@@ -42,13 +49,32 @@ public interface CatalogueItemDao {
 	 */
 	public List<Comment> getSubsetOfComments(CatalogueItem item, Integer startIndex, Integer size);
 
+	/**
+	 * Retrieves the comments of the specified item that were posted after the comment at the given
+	 * position of the item's comment log. Pages do not shift when new comments are added.
+	 * @param item the specified item
+	 * @param afterPosition Log position to continue after, -1 to start with the first comment
+	 * @param limit Maximum number of comments on the page
+	 * @return A page of the item's comments in the order they were posted
+	 */
+	public CommentPage getCommentsAfter(CatalogueItem item, int afterPosition, int limit);
+
+	/**
+	 * Retrieves the most favourited comments of the specified item
+	 * @param item the specified item
+	 * @param limit Maximum number of comments returned
+	 * @return At most limit comments, most favourited first, those with as many favourites in the
+	 * order they were posted
+	 */
+	public List<Comment> getMostFavouritedComments(CatalogueItem item, int limit);
+
 	/**
 	 * Adds a comment to this catalogue item
 	 * @param item Item specified
 	 * @param comment Comment to be added
-	 * @param linkToComment Link for the new comment
+	 * @return Position of the comment in the item's comment log
 	 */
-	public void addComment(CatalogueItem item, Comment comment, Link linkToComment);
+	public int addComment(CatalogueItem item, Comment comment);
 
 	/**
 	 * Retrieves the number of remaning comments in the list given a start index
@@ -72,4 +98,12 @@ public interface CatalogueItemDao {
 	 */
 	public List<User> getAllFollowers(CatalogueItem item);
 
+	/**
+	 * Retrieves the users who follow both items
+	 * @param item Item specified
+	 * @param otherItem Another item
+	 * @return List of the followers of both items, in ascending order of id
+	 */
+	public List<User> getFollowersOfBoth(CatalogueItem item, CatalogueItem otherItem);
+
 }
@@ -2,23 +2,31 @@ package org.crowdlib.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
-import javax.ws.rs.core.Link;
 
 import org.crowdlib.entities.CatalogueItem;
 import org.crowdlib.entities.Comment;
 import org.crowdlib.entities.User;
 import org.crowdlib.exceptions.CatalogueItemNotFoundException;
 import org.crowdlib.exceptions.CommentNotFoundException;
+import org.crowdlib.inmemory.collections.CommentLog;
 import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.inmemory.collections.InMemoryFollowerCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.inmemory.journal.InMemoryJournal;
 
 public class CatalogueItemDaoImpl implements CatalogueItemDao {
 
 	@Override
 	public CatalogueItem getById(Integer itemId) throws CatalogueItemNotFoundException {
-		CatalogueItem item = InMemoryCatalogueItemCollection.getCatalogueItem(itemId);
-		if(item == null) throw new CatalogueItemNotFoundException("Catalogue item not available in the system");
-		return item;
+		return findById(itemId).orElseThrow(CatalogueItemNotFoundException::notAvailable);
+	}
+
+	@Override
+	public Optional<CatalogueItem> findById(Integer itemId) {
+		return Optional.ofNullable(InMemoryCatalogueItemCollection.getCatalogueItem(itemId));
 	}
 
 	@Override
@@ -32,10 +40,22 @@ public class CatalogueItemDaoImpl implements CatalogueItemDao {
 		if(startIndex > allComments.size())
 			return new ArrayList<Comment>();
 		else if (startIndex + size > allComments.size())
-			return allComments.subList(startIndex, allComments.size());
+			return new ArrayList<Comment>(allComments.subList(startIndex, allComments.size()));
 		else
-			return allComments.subList(startIndex, startIndex + size);
+			return new ArrayList<Comment>(allComments.subList(startIndex, startIndex + size));
+
+	}
+
+	@Override
+	public CommentPage getCommentsAfter(CatalogueItem item, int afterPosition, int limit) {
+		List<Comment> comments = InMemoryCommentLogCollection.getCommentLog(item).readAfter(afterPosition, limit);
+		int lastPosition = comments.isEmpty() ? afterPosition : Math.max(afterPosition, -1) + comments.size();
+		return new CommentPage(comments, lastPosition);
+	}
 
+	@Override
+	public List<Comment> getMostFavouritedComments(CatalogueItem item, int limit) {
+		return InMemoryCommentLogCollection.getCommentLog(item).readMostFavourited(limit);
 	}
 	
 	@Override
@@ -48,9 +68,19 @@ public class CatalogueItemDaoImpl implements CatalogueItemDao {
 	}
 
 	@Override
-	public void addComment(CatalogueItem item, Comment comment, Link linkToComment) {
-		item.getComments().add(comment);
-		item.getLinksToEachComment().add(linkToComment);
+	public int addComment(CatalogueItem item, Comment comment) {
+		CommentLog commentLog = InMemoryCommentLogCollection.getCommentLog(item);
+		int position;
+		long journalSequence;
+		// the item's lists stay in log order, which the journal snapshots rely on
+		synchronized (commentLog) {
+			item.getComments().add(comment);
+			item.addLinkToComment(comment.getId());
+			position = commentLog.append(comment);
+			journalSequence = InMemoryJournal.appendCommentAdded(item, comment, position);
+		}
+		InMemoryJournal.awaitDurable(journalSequence);
+		return position;
 	}
 
 	@Override
@@ -60,13 +90,34 @@ public class CatalogueItemDaoImpl implements CatalogueItemDao {
 
 	@Override
 	public void addFollower(CatalogueItem item, User follower) {
-		item.getFollowers().add(follower);
+		if (InMemoryFollowerCollection.addFollower(item.getId(), follower.getId())) {
+			InMemoryJournal.followerAdded(item, follower);
+		}
 	}
 
+	/**
+	 * Resolves the ids of the followers through {@link InMemoryUserCollection},
+	 * so the followers come in ascending order of id
+	 */
 	@Override
 	public List<User> getAllFollowers(CatalogueItem item) {
-		return item.getFollowers();
-		
+		return usersWithIds(InMemoryFollowerCollection.getFollowerIds(item.getId()));
+	}
+
+	@Override
+	public List<User> getFollowersOfBoth(CatalogueItem item, CatalogueItem otherItem) {
+		return usersWithIds(InMemoryFollowerCollection.getFollowersOfBoth(item.getId(), otherItem.getId()).toArray());
+	}
+
+	private static List<User> usersWithIds(int[] userIds) {
+		List<User> users = new ArrayList<User>(userIds.length);
+		for (int userId : userIds) {
+			User user = InMemoryUserCollection.getUserById(userId);
+			if (user != null) {
+				users.add(user);
+			}
+		}
+		return users;
 	}
 
 }
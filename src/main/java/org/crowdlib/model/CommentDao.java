@@ -1,8 +1,8 @@
 package org.crowdlib.model;
 
 import java.util.List;
+import java.util.Optional;
 
-import javax.ws.rs.core.Link;
 
 import org.crowdlib.entities.CatalogueItem;
 import org.crowdlib.entities.Comment;
@@ -18,6 +18,13 @@ public interface CommentDao {
 	 * @throws CommentNotFoundException if comment is not available in memory
 	 */
 	public Comment getById(Integer commentId) throws CommentNotFoundException;
+
+	/**
+	 * Looks up a comment without throwing when it does not exist
+	 * @param commentId Id of the comment
+	 * @return The comment, or an empty Optional if there is none with this id
+	 */
+	public Optional<Comment> findById(Integer commentId);
 	
 	/**
 	 * Creates a new comment using the specified arguments
@@ -41,20 +48,51 @@ public interface CommentDao {
 	 * @param reply Reply to be added
 	 */
 	public void addReply(Comment comment, Comment reply);
-	
+
 	/**
-	 * sets a link to the comment itself
+	 * Retrieves the replies of the specified comment, their replies and so on
 	 * @param comment Comment specified
-	 * @param linkToSelf
+	 * @return Descendants of the comment, each followed by its own replies, replies
+	 * in the order they were created
 	 */
-	public void adjustLinkToSelf(Comment comment, Link linkToSelf);
-	
+	public List<Comment> getDescendants(Comment comment);
+
+	/**
+	 * Retrieves the part of the thread below the specified comment that a client
+	 * asked for, without reading any more of it
+	 * @param comment Comment specified
+	 * @param depth Number of levels of replies below the comment
+	 * @param maxDescendants Maximum number of descendants
+	 * @return The first descendants of the comment within the depth, as
+	 * {@link #getDescendants(Comment)} orders them, and which comments have
+	 * replies left out
+	 */
+	public ThreadExcerpt getThreadExcerpt(Comment comment, int depth, int maxDescendants);
+
 	/**
-	 * Sets a link for the comment replies
+	 * Retrieves the comments above the specified comment in its thread
 	 * @param comment Comment specified
-	 * @param linkToReplies Link to replies for this comment
+	 * @return Ancestors of the comment, the top-level comment first, none for a
+	 * top-level comment or a reply detached by the deletion of a comment above it
+	 */
+	public List<Comment> getAncestors(Comment comment);
+
+	/**
+	 * Retrieves the thread the specified comment belongs to
+	 * @param comment Comment specified
+	 * @return The top-level comment of the thread followed by its descendants, as
+	 * {@link #getDescendants(Comment)} orders them
+	 */
+	public List<Comment> getThread(Comment comment);
+
+	/**
+	 * Finds the comments whose content contains any of the words of a query
+	 * @param query Words to be found, in any order and case
+	 * @param limit Maximum number of comments found
+	 * @return Comments found, those matching more and rarer words first, then
+	 * the newest first; deleted comments are not found
 	 */
-	public void adjustLinkToReplies(Comment comment, Link linkToReplies);
+	public List<Comment> searchComments(String query, int limit);
 	
 	/**
 	 * Increment number of favourites for this comment
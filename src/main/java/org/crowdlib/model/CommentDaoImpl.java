@@ -1,8 +1,9 @@
 package org.crowdlib.model;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
-import javax.ws.rs.core.Link;
 
 import org.crowdlib.entities.CatalogueItem;
 import org.crowdlib.entities.Comment;
@@ -10,20 +11,28 @@ import org.crowdlib.entities.User;
 import org.crowdlib.exceptions.CommentNotFoundException;
 import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
 import org.crowdlib.inmemory.collections.InMemoryCommentCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentPathCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentSearchCollection;
+import org.crowdlib.inmemory.journal.InMemoryJournal;
 
 public class CommentDaoImpl implements CommentDao {
 
 	@Override
 	public Comment getById(Integer commentId) throws CommentNotFoundException {
-		Comment comment = InMemoryCommentCollection.getComment(commentId);
-		if(comment == null) throw new CommentNotFoundException("Comment not available");
-		return comment;
+		return findById(commentId).orElseThrow(CommentNotFoundException::notAvailable);
+	}
+
+	@Override
+	public Optional<Comment> findById(Integer commentId) {
+		return Optional.ofNullable(InMemoryCommentCollection.getComment(commentId));
 	}
 	
 	@Override
 	public Comment createComment(String commentContent, User commentOwner, CatalogueItem item) {
 		Comment comment = new Comment(commentContent,commentOwner, item);
 		InMemoryCommentCollection.addComment(comment);
+		InMemoryCommentSearchCollection.commentCreated(comment);
+		InMemoryJournal.commentCreated(comment);
 		return comment;
 	}
 
@@ -32,22 +41,44 @@ public class CommentDaoImpl implements CommentDao {
 		InMemoryCommentCollection.addComment(reply);
 		reply.setParentComment(comment);
 		comment.getReplies().add(reply);
+		InMemoryCommentPathCollection.replyAdded(comment, reply);
+		InMemoryJournal.replyAdded(comment, reply);
 	}
 
 	@Override
-	public void adjustLinkToSelf(Comment comment, Link linkToSelf) {
-		comment.setLinkToSelf(linkToSelf);
+	public List<Comment> getDescendants(Comment comment) {
+		return InMemoryCommentPathCollection.getDescendants(comment);
 	}
-	
+
+	@Override
+	public ThreadExcerpt getThreadExcerpt(Comment comment, int depth, int maxDescendants) {
+		return ThreadExcerpt.ofReplies(this, comment, depth, maxDescendants);
+	}
+
+	@Override
+	public List<Comment> getAncestors(Comment comment) {
+		return InMemoryCommentPathCollection.getAncestors(comment);
+	}
+
+	@Override
+	public List<Comment> getThread(Comment comment) {
+		List<Comment> ancestors = InMemoryCommentPathCollection.getAncestors(comment);
+		Comment topLevelComment = ancestors.isEmpty() ? comment : ancestors.get(0);
+		List<Comment> descendants = InMemoryCommentPathCollection.getDescendants(topLevelComment);
+		List<Comment> thread = new ArrayList<Comment>(descendants.size() + 1);
+		thread.add(topLevelComment);
+		thread.addAll(descendants);
+		return thread;
+	}
+
 	@Override
-	public void adjustLinkToReplies(Comment comment, Link linkToReplies) {
-		comment.setLinkToReplies(linkToReplies);
+	public List<Comment> searchComments(String query, int limit) {
+		return InMemoryCommentSearchCollection.search(query, limit);
 	}
 
 	@Override
 	public void incrementFavouritesCount(Comment comment) {
-		int favouritesCounts = comment.getFavouritesCount()+1;
-		comment.setFavouritesCount(favouritesCounts);
+		FavouriteCounters.increment(comment);
 	}
 
 	@Override
@@ -64,7 +95,10 @@ public class CommentDaoImpl implements CommentDao {
 	public void deleteComment(Comment comment, String deletionMessage) {
 		comment.setCommentContent(deletionMessage);
 		comment.getReplies().clear();
-		comment.setLinkToReplies(null);
+		InMemoryCommentPathCollection.repliesRemoved(comment);
+		comment.setDeleted(true);
+		InMemoryCommentSearchCollection.commentDeleted(comment);
+		InMemoryJournal.commentDeleted(comment, deletionMessage);
 	}
 
 	
@@ -0,0 +1,34 @@
+package org.crowdlib.model;
+
+import java.util.List;
+
+import org.crowdlib.entities.Comment;
+
+/**
+ * A page of an item's comments read from its comment log, together with the
+ * log position of the last comment on the page.
+ */
+public class CommentPage {
+
+	private final List<Comment> comments;
+
+	private final int lastPosition;
+
+	public CommentPage(List<Comment> comments, int lastPosition) {
+		this.comments = comments;
+		this.lastPosition = lastPosition;
+	}
+
+	public List<Comment> getComments() {
+		return comments;
+	}
+
+	/**
+	 * Retrieves the position to continue from when reading the next page. For an
+	 * empty page this is the position the page was requested after.
+	 * @return Log position of the last comment on this page
+	 */
+	public int getLastPosition() {
+		return lastPosition;
+	}
+}
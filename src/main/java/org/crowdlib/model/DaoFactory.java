@@ -0,0 +1,45 @@
+package org.crowdlib.model;
+
+import org.crowdlib.model.jdbc.Database;
+import org.crowdlib.model.jdbc.JdbcCatalogueItemDao;
+import org.crowdlib.model.jdbc.JdbcCommentDao;
+import org.crowdlib.model.jdbc.JdbcUserDao;
+
+/**
+ * Creates the DAOs used by the resources and services. They work on the
+ * in-memory collections unless a database is configured at startup.
+ */
+public final class DaoFactory {
+
+	private static volatile Database database;
+
+	private DaoFactory() {
+	}
+
+	/**
+	 * Switches the DAOs created from now on to a database
+	 * @param newDatabase The database, null to go back to the in-memory collections
+	 */
+	public static void useDatabase(Database newDatabase) {
+		database = newDatabase;
+	}
+
+	public static Database getDatabase() {
+		return database;
+	}
+
+	public static CatalogueItemDao getCatalogueItemDao() {
+		Database current = database;
+		return current == null ? new CatalogueItemDaoImpl() : new JdbcCatalogueItemDao(current);
+	}
+
+	public static CommentDao getCommentDao() {
+		Database current = database;
+		return current == null ? new CommentDaoImpl() : new JdbcCommentDao(current);
+	}
+
+	public static UserDao getUserDao() {
+		Database current = database;
+		return current == null ? new UserDaoImpl() : new JdbcUserDao(current);
+	}
+}
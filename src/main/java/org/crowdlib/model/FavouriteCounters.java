@@ -0,0 +1,178 @@
+package org.crowdlib.model;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.crowdlib.entities.Comment;
+import org.crowdlib.inmemory.collections.HotFavourites;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.inmemory.collections.StripedCounter;
+import org.crowdlib.inmemory.journal.InMemoryJournal;
+
+/**
+ * Counts the favourites of in-memory comments. A favourite normally goes
+ * straight to the count of its comment, which is re-ranked and journaled
+ * right away. While that happens the comment's hot favourites hold the
+ * {@link #UPDATING} marker; a favourite that finds the marker has met another
+ * favourite of the same comment, and promotes the comment to
+ * {@link HotFavourites} instead of waiting. From then on favourites of the
+ * comment only add to a cell of a striped counter, and a background task
+ * re-ranks the comment by the sum of the cells and journals its count every
+ * {@link #MATERIALIZATION_INTERVAL_MILLIS} ms. The cells are never drained.
+ *
+ * Reads of the count add the cells to the count the comment had when it was
+ * promoted, so they are exact and never go down. The rank of a hot comment
+ * and its journaled count lag behind by up to one interval, and a crash loses
+ * the favourites counted in that interval. A hot comment without a favourite
+ * for {@link #QUIET_INTERVALS_BEFORE_DEMOTION} intervals, or deleted, is made
+ * cold again, which frees its counter.
+ */
+final class FavouriteCounters {
+
+	static final long MATERIALIZATION_INTERVAL_MILLIS = 100;
+
+	static final int QUIET_INTERVALS_BEFORE_DEMOTION = 50;
+
+	private static final HotFavourites UPDATING = new HotFavourites(new StripedCounter(1));
+
+	private static final Set<Comment> hotComments = ConcurrentHashMap.newKeySet();
+
+	private static volatile ScheduledExecutorService materializer;
+
+	private FavouriteCounters() {
+	}
+
+	/**
+	 * Counts one more favourite of the comment
+	 * @param comment Comment specified
+	 */
+	static void increment(Comment comment) {
+		while (true) {
+			HotFavourites hot = comment.hotFavourites();
+			if (hot == null) {
+				if (comment.compareAndSetHotFavourites(null, UPDATING)) {
+					InMemoryJournal.favouritesCountChanged(comment, incrementInPlace(comment));
+					return;
+				}
+			} else if (hot == UPDATING) {
+				HotFavourites promoted = new HotFavourites();
+				promoted.add();
+				if (comment.compareAndSetHotFavourites(UPDATING, promoted)) {
+					promoted(comment);
+					return;
+				}
+			} else if (hot.add()) {
+				return;
+			} else {
+				// the comment is being demoted, which holds its monitor until it is cold
+				synchronized (comment) {
+					continue;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the favourites of the comment are counted in stripes
+	 * @param comment Comment specified
+	 * @return true from its promotion until its demotion
+	 */
+	static boolean isHot(Comment comment) {
+		return hotComments.contains(comment);
+	}
+
+	/**
+	 * Re-ranks every hot comment by its exact count, and demotes those that
+	 * have gone quiet or been deleted
+	 */
+	static void materialize() {
+		for (Comment comment : hotComments) {
+			int favouritesCount;
+			synchronized (comment) {
+				HotFavourites hot = comment.hotFavourites();
+				if (hot == null || !hot.hasBase()) {
+					// demoted meanwhile, or the favourite that promoted it is not counted yet
+					continue;
+				}
+				int previousFavouritesCount = comment.materializedFavouritesCount();
+				favouritesCount = hot.count(previousFavouritesCount);
+				int quietIntervals = hot.countInterval(favouritesCount == previousFavouritesCount);
+				if (comment.isDeleted() || quietIntervals >= QUIET_INTERVALS_BEFORE_DEMOTION) {
+					favouritesCount = demote(comment, hot);
+				}
+				if (favouritesCount == previousFavouritesCount) {
+					continue;
+				}
+				comment.setFavouritesCount(favouritesCount);
+				InMemoryCommentLogCollection.favouritesCountChanged(comment, previousFavouritesCount);
+			}
+			InMemoryJournal.favouritesCountChanged(comment, favouritesCount);
+		}
+	}
+
+	/**
+	 * Makes a hot comment cold again. Called with the monitor of the comment
+	 * held, which readers and refused favourites wait for while the counter is
+	 * sealed.
+	 * @return The final count of its hot favourites
+	 */
+	private static int demote(Comment comment, HotFavourites hot) {
+		int favouritesCount = hot.seal();
+		comment.setFavouritesCount(favouritesCount);
+		// before the comment can be promoted again, which adds it back
+		hotComments.remove(comment);
+		comment.compareAndSetHotFavourites(hot, null);
+		return favouritesCount;
+	}
+
+	private static int incrementInPlace(Comment comment) {
+		synchronized (comment) {
+			int previousFavouritesCount = comment.materializedFavouritesCount();
+			try {
+				comment.setFavouritesCount(previousFavouritesCount + 1);
+				InMemoryCommentLogCollection.favouritesCountChanged(comment, previousFavouritesCount);
+			} finally {
+				if (!comment.compareAndSetHotFavourites(UPDATING, null)) {
+					// promoted meanwhile, and nothing else changes the count until this is known
+					comment.hotFavourites().setBase(comment.materializedFavouritesCount());
+				}
+			}
+			return previousFavouritesCount + 1;
+		}
+	}
+
+	private static void promoted(Comment comment) {
+		hotComments.add(comment);
+		if (materializer != null) {
+			return;
+		}
+		synchronized (FavouriteCounters.class) {
+			if (materializer != null) {
+				return;
+			}
+			ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "favourite-counters");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.scheduleWithFixedDelay(FavouriteCounters::materializeQuietly, MATERIALIZATION_INTERVAL_MILLIS,
+					MATERIALIZATION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			materializer = executor;
+		}
+	}
+
+	/**
+	 * An exception would cancel the scheduled task, and with it every later
+	 * materialization
+	 */
+	private static void materializeQuietly() {
+		try {
+			materialize();
+		} catch (RuntimeException e) {
+			System.out.println("Materializing favourite counts failed: " + e.getMessage());
+		}
+	}
+}
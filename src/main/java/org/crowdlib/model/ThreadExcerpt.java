@@ -0,0 +1,83 @@
+package org.crowdlib.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.crowdlib.entities.Comment;
+
+/**
+ * The part of the thread below a comment that a client asked for: the first
+ * of its descendants in thread order, down to a depth, and which of the
+ * comments read have replies that were left out.
+ */
+public class ThreadExcerpt {
+
+	private final List<Comment> descendants;
+
+	private final Set<Integer> moreReplies;
+
+	/**
+	 * @param descendants Descendants read, each followed by its own replies
+	 * @param moreReplies Ids of the comments whose replies were not all read
+	 */
+	public ThreadExcerpt(List<Comment> descendants, Set<Integer> moreReplies) {
+		this.descendants = descendants;
+		this.moreReplies = moreReplies;
+	}
+
+	public List<Comment> getDescendants() {
+		return descendants;
+	}
+
+	/**
+	 * @param comment The comment the excerpt starts from or one of its descendants
+	 * @return true if replies of the comment were left out
+	 */
+	public boolean hasMoreReplies(Comment comment) {
+		return moreReplies.contains(comment.getId());
+	}
+
+	/**
+	 * Reads an excerpt reply by reply, which is as cheap as it gets when the
+	 * replies are kept on the comments, and the only way for a reply detached by
+	 * the deletion of a comment above it, which has no path. Reading stops as
+	 * soon as the descendants are all read; only the replies of the comments read
+	 * are looked up, to tell whether some were left out.
+	 * @param commentDao Dao the replies are read through
+	 * @param comment Comment the excerpt starts from
+	 * @param depth Number of levels of replies read below the comment
+	 * @param maxDescendants Maximum number of descendants read
+	 * @return The excerpt
+	 */
+	public static ThreadExcerpt ofReplies(CommentDao commentDao, Comment comment, int depth, int maxDescendants) {
+		List<Comment> descendants = new ArrayList<Comment>();
+		Set<Integer> moreReplies = new HashSet<Integer>();
+		List<Comment> open = new ArrayList<Comment>(depth + 1);
+		List<List<Comment>> replies = new ArrayList<List<Comment>>(depth + 1);
+		int[] nextReply = new int[depth + 1];
+		open.add(comment);
+		replies.add(commentDao.getReplies(comment));
+		while (!open.isEmpty()) {
+			int level = open.size() - 1;
+			List<Comment> siblings = replies.get(level);
+			int next = nextReply[level];
+			if (level < depth && descendants.size() < maxDescendants && next < siblings.size()) {
+				Comment reply = siblings.get(next);
+				nextReply[level] = next + 1;
+				descendants.add(reply);
+				open.add(reply);
+				replies.add(commentDao.getReplies(reply));
+				nextReply[level + 1] = 0;
+			} else {
+				if (next < siblings.size()) {
+					moreReplies.add(open.get(level).getId());
+				}
+				open.remove(level);
+				replies.remove(level);
+			}
+		}
+		return new ThreadExcerpt(descendants, moreReplies);
+	}
+}
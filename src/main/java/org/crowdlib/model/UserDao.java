@@ -1,6 +1,7 @@
 package org.crowdlib.model;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.crowdlib.entities.CatalogueItem;
 import org.crowdlib.entities.Comment;
@@ -17,6 +18,13 @@ public interface UserDao {
 	 * @throws UserNotFoundException in case user is not in memory
 	 */
 	public User getUserByUsername(String username) throws UserNotFoundException;
+
+	/**
+	 * Looks up a user without throwing when the username is not registered
+	 * @param username Username specified
+	 * @return The user, or an empty Optional if no user has this username
+	 */
+	public Optional<User> findUserByUsername(String username);
 	
 	/**
 	 * Retrieve the comments that are the user's favourite comments
@@ -34,11 +42,14 @@ public interface UserDao {
 	boolean checkIfCommentIsAmongFavourites(User user, Comment comment);
 
 	/**
-	 * Adds a comment to user's favourites list
+	 * Adds a comment to user's favourites list, unless it is among them already.
+	 * Checking and adding are one step, so a comment added by concurrent calls is
+	 * added only once.
 	 * @param user user specified
 	 * @param comment comment specified
+	 * @return True if the comment was added
 	 */
-	public void addCommentToFavourites(User user, Comment comment);
+	public boolean addCommentToFavourites(User user, Comment comment);
 	
 	/**
 	 * Retrieves the a list of user's followed items
@@ -68,6 +79,14 @@ public interface UserDao {
 	 * @return List of notifications for the user
 	 */
 	public List<Notification> getListOfNotifications(User user);
+
+	/**
+	 * Removes the notifications of comments at or below the user's read watermark of their
+	 * item and retrieves the remaining ones
+	 * @param user user specified
+	 * @return List of notifications the user has not seen yet
+	 */
+	public List<Notification> getUnseenNotifications(User user);
 	
 	/**
 	 * Adds a notification to the user's list of notifications
@@ -75,6 +94,13 @@ public interface UserDao {
 	 * @param notification notification specified
 	 */
 	public void addToListOfNotifications(User user, Notification notification);
+
+	/**
+	 * Adds several notifications to the user's list of notifications at once
+	 * @param user User specified
+	 * @param notifications notifications specified
+	 */
+	public void addAllToListOfNotifications(User user, List<Notification> notifications);
 	
 	/**
 	 * Removes notification from the user's list of notifications when the corresponding
@@ -85,11 +111,20 @@ public interface UserDao {
 	public void adjustListOfNotificationsAfterCommentIsSeen(User user, Comment comment);
 
 	/**
-	 * Removes notifications from the user's list of notifications when the corresponding
-	 * comments are seen
+	 * Retrieves the position in the item's comment log up to which the user has seen its comments
 	 * @param user user specified
-	 * @param comments list of comments to be checked against the notifications list
+	 * @param item item specified
+	 * @return log position of the last comment seen, -1 if none has been seen
 	 */
-	public void adjustListOfNotificationsAfterAListOfCommentsIsSeen(User currentUser, List<Comment> comments);
-	
+	public int getReadWatermark(User user, CatalogueItem item);
+
+	/**
+	 * Records that the user has seen the item's comments up to this log position. The watermark
+	 * never moves backwards.
+	 * @param user user specified
+	 * @param item item specified
+	 * @param position log position of the last comment seen
+	 */
+	public void advanceReadWatermark(User user, CatalogueItem item, int position);
+
 }
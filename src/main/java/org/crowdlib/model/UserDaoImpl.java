@@ -1,22 +1,29 @@
 package org.crowdlib.model;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 import org.crowdlib.entities.CatalogueItem;
 import org.crowdlib.entities.Comment;
 import org.crowdlib.entities.Notification;
 import org.crowdlib.entities.User;
 import org.crowdlib.exceptions.UserNotFoundException;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
 import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.inmemory.journal.InMemoryJournal;
 
 public class UserDaoImpl implements UserDao {
 
 	@Override
 	public User getUserByUsername(String username) throws UserNotFoundException {
-		User currentUser = InMemoryUserCollection.getUser(username);
-		if(currentUser == null) throw new UserNotFoundException("Not a registered user");
-		return currentUser;
+		return findUserByUsername(username).orElseThrow(UserNotFoundException::notAvailable);
+	}
+
+	@Override
+	public Optional<User> findUserByUsername(String username) {
+		return Optional.ofNullable(InMemoryUserCollection.getUser(username));
 	}
 	
 	@Override
@@ -26,13 +33,22 @@ public class UserDaoImpl implements UserDao {
 
 	@Override
 	public boolean checkIfCommentIsAmongFavourites(User user, Comment comment) {
+		// users keep their favourites in an IdIndexedList, which looks the id up in a set
 		return user.getFavouriteComments().contains(comment);
-		
 	}
 	
 	@Override
-	public void addCommentToFavourites(User user, Comment comment) {
-		user.getFavouriteComments().add(comment);
+	public boolean addCommentToFavourites(User user, Comment comment) {
+		List<Comment> favourites = user.getFavouriteComments();
+		// the list synchronizes its lookups and changes on itself, so holding its lock makes them one step
+		synchronized (favourites) {
+			if (favourites.contains(comment)) {
+				return false;
+			}
+			favourites.add(comment);
+		}
+		InMemoryJournal.favouriteAdded(user, comment);
+		return true;
 	}
 
 	@Override
@@ -48,11 +64,26 @@ public class UserDaoImpl implements UserDao {
 	@Override
 	public void addItemToFollowedItems(User user, CatalogueItem item) {
 		user.getFollowedItems().add(item);
+		InMemoryJournal.itemFollowed(user, item);
+		// comments posted before following are not notified
+		advanceReadWatermark(user, item, InMemoryCommentLogCollection.getCommentLog(item).size() - 1);
 	}
 
 	@Override
 	public void addToListOfNotifications(User user, Notification notification) {
-		user.getNotifications().add(notification);	
+		List<Notification> notifications = user.getNotifications();
+		synchronized (notifications) {
+			notifications.add(notification);
+		}
+	}
+
+	@Override
+	public void addAllToListOfNotifications(User user, List<Notification> newNotifications) {
+		// notifications are delivered from background threads while the user reads them
+		List<Notification> notifications = user.getNotifications();
+		synchronized (notifications) {
+			notifications.addAll(newNotifications);
+		}
 	}
 
 	@Override
@@ -61,28 +92,46 @@ public class UserDaoImpl implements UserDao {
 		
 	}
 
+	@Override
+	public List<Notification> getUnseenNotifications(User user) {
+		List<Notification> notifications = user.getNotifications();
+		synchronized (notifications) {
+			notifications.removeIf(notification -> isSeen(user, notification));
+			return new ArrayList<Notification>(notifications);
+		}
+	}
+
 	@Override
 	public void adjustListOfNotificationsAfterCommentIsSeen(User user, Comment comment) {
 		List<Notification> notifications = user.getNotifications();
-		for(Iterator<Notification> itr = notifications.iterator();itr.hasNext();)
-        {
-            Notification notification = itr.next();
-            if(notification.getComment().equals(comment))
-				itr.remove();
-        }
+		synchronized (notifications) {
+			for(Iterator<Notification> itr = notifications.iterator();itr.hasNext();)
+	        {
+	            Notification notification = itr.next();
+	            if(notification.getComment().equals(comment))
+					itr.remove();
+	        }
+		}
 	}
 
 	@Override
-	public void adjustListOfNotificationsAfterAListOfCommentsIsSeen(User currentUser, List<Comment> comments) {
-		List<Notification> notifications = currentUser.getNotifications();
-		for(Iterator<Notification> itr = notifications.iterator();itr.hasNext();)
-        {
-            Notification notification = itr.next();
-            if(comments.contains(notification.getComment()))
-				itr.remove();
-        }
+	public int getReadWatermark(User user, CatalogueItem item) {
+		Integer watermark = user.getReadWatermarks().get(item.getId());
+		return watermark == null ? -1 : watermark;
+	}
+
+	@Override
+	public void advanceReadWatermark(User user, CatalogueItem item, int position) {
+		Integer previous = user.getReadWatermarks().get(item.getId());
+		user.getReadWatermarks().merge(item.getId(), position, Math::max);
+		if (previous == null || position > previous) {
+			InMemoryJournal.readWatermarkAdvanced(user, item, position);
+		}
+	}
+
+	private boolean isSeen(User user, Notification notification) {
+		CatalogueItem item = notification.getCatalogueItem();
+		return item != null && notification.getLogPosition() <= getReadWatermark(user, item);
 	}
-	
-	
 
 }
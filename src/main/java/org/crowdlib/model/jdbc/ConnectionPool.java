@@ -0,0 +1,97 @@
+package org.crowdlib.model.jdbc;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed-size pool of connections to one database. Connections are opened
+ * lazily and kept open with their prepared statements until the pool is
+ * closed, so a DAO call neither opens a connection nor parses its SQL again.
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+	private final String url;
+
+	private final Semaphore permits;
+
+	private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<PooledConnection>();
+
+	private final long acquireTimeoutMillis;
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates a pool, no connection is opened yet
+	 * @param url JDBC url of the database
+	 * @param maxConnections Maximum number of connections open at once
+	 * @param acquireTimeoutMillis How long a caller waits for a connection when all are in use
+	 */
+	public ConnectionPool(String url, int maxConnections, long acquireTimeoutMillis) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("The pool needs at least one connection");
+		}
+		this.url = url;
+		this.permits = new Semaphore(maxConnections, true);
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+	}
+
+	/**
+	 * Takes an idle connection out of the pool, opening a new one if there is
+	 * none and the pool is not full yet
+	 * @return A connection the caller has to hand back with {@link #release}
+	 * @throws SQLException if no connection becomes available in time or a new one cannot be opened
+	 */
+	public PooledConnection acquire() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+		try {
+			if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new SQLException("No database connection available after " + acquireTimeoutMillis + " ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+		PooledConnection connection = idle.poll();
+		if (connection != null) {
+			return connection;
+		}
+		try {
+			return new PooledConnection(DriverManager.getConnection(url));
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Hands a connection back to the pool
+	 * @param connection Connection taken with {@link #acquire}
+	 * @param broken true if the connection failed and must not be reused
+	 */
+	public void release(PooledConnection connection, boolean broken) {
+		if (broken || closed) {
+			connection.close();
+		} else {
+			idle.offer(connection);
+		}
+		permits.release();
+	}
+
+	/**
+	 * Closes the idle connections, connections in use are closed when they are released
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		PooledConnection connection;
+		while ((connection = idle.poll()) != null) {
+			connection.close();
+		}
+	}
+}
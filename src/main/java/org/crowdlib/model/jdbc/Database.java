@@ -0,0 +1,271 @@
+package org.crowdlib.model.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.User;
+import org.crowdlib.exceptions.PersistenceException;
+import org.crowdlib.search.CommentSearchIndex;
+
+/**
+ * An embedded H2 database holding the users, catalogue items and comments,
+ * shared by the JDBC DAOs. It owns the connection pool and the cache that
+ * makes every row map to a single entity object, so the rest of the
+ * application can keep comparing entities by reference as it does with the
+ * in-memory collections.
+ *
+ * A thread keeps the connection it took while its work runs, so loading an
+ * entity from inside another query does not take a second connection.
+ *
+ * Comments are searched through a {@link CommentSearchIndex} held in memory,
+ * filled from the table when the database is opened.
+ */
+public class Database implements AutoCloseable {
+
+	/**
+	 * Work done on a connection of the pool
+	 * @param <T> type of the result
+	 */
+	public interface Work<T> {
+
+		T run(PooledConnection connection) throws SQLException;
+	}
+
+	private static final String[] SCHEMA = {
+			"CREATE TABLE IF NOT EXISTS app_user (id INT PRIMARY KEY, username VARCHAR(64) NOT NULL, "
+					+ "password VARCHAR(255), role VARCHAR(32), title VARCHAR(32), name VARCHAR(255), "
+					+ "surname VARCHAR(255))",
+			"CREATE UNIQUE INDEX IF NOT EXISTS app_user_username ON app_user(username)",
+			"CREATE TABLE IF NOT EXISTS catalogue_item (id INT PRIMARY KEY, title VARCHAR(255), author VARCHAR(255), "
+					+ "link_to_all_comments VARCHAR(2048), comment_count INT DEFAULT 0 NOT NULL)",
+			"CREATE TABLE IF NOT EXISTS comment (id INT PRIMARY KEY, seq BIGINT AUTO_INCREMENT, item_id INT, "
+					+ "parent_id INT, owner VARCHAR(64), content VARCHAR, created TIMESTAMP, "
+					+ "favourites_count INT DEFAULT 0 NOT NULL, log_position INT, deleted BOOLEAN DEFAULT FALSE NOT NULL, "
+					+ "thread_path VARCHAR)",
+			// the links of comments used to be stored, databases from then lack this column
+			"ALTER TABLE comment ADD COLUMN IF NOT EXISTS deleted BOOLEAN DEFAULT FALSE NOT NULL",
+			// comments stored before threads were indexed have no path and are left out of thread queries
+			"ALTER TABLE comment ADD COLUMN IF NOT EXISTS thread_path VARCHAR",
+			"CREATE INDEX IF NOT EXISTS comment_item ON comment(item_id, log_position)",
+			"CREATE INDEX IF NOT EXISTS comment_parent ON comment(parent_id, seq)",
+			"CREATE INDEX IF NOT EXISTS comment_thread_path ON comment(thread_path)",
+			"CREATE INDEX IF NOT EXISTS comment_owner ON comment(owner)",
+			"CREATE INDEX IF NOT EXISTS comment_favourites ON comment(item_id, favourites_count DESC, log_position)",
+			"CREATE TABLE IF NOT EXISTS item_follower (item_id INT NOT NULL, username VARCHAR(64) NOT NULL, "
+					+ "seq BIGINT AUTO_INCREMENT, PRIMARY KEY (item_id, username))",
+			"CREATE INDEX IF NOT EXISTS item_follower_user ON item_follower(username, seq)",
+			"CREATE TABLE IF NOT EXISTS favourite (username VARCHAR(64) NOT NULL, comment_id INT NOT NULL, "
+					+ "seq BIGINT AUTO_INCREMENT, PRIMARY KEY (username, comment_id))",
+			"CREATE TABLE IF NOT EXISTS notification (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+					+ "username VARCHAR(64) NOT NULL, item_id INT, comment_id INT NOT NULL, log_position INT, "
+					+ "link VARCHAR(2048))",
+			"CREATE INDEX IF NOT EXISTS notification_user ON notification(username, id)",
+			"CREATE TABLE IF NOT EXISTS read_watermark (username VARCHAR(64) NOT NULL, item_id INT NOT NULL, "
+					+ "position INT NOT NULL, PRIMARY KEY (username, item_id))" };
+
+	private static final String INSERT_USER = "INSERT INTO app_user "
+			+ "(id, username, password, role, title, name, surname) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+	private static final String INSERT_ITEM = "INSERT INTO catalogue_item "
+			+ "(id, title, author, link_to_all_comments) VALUES (?, ?, ?, ?)";
+
+	private static final String SELECT_COMMENT_CONTENT = "SELECT id, content FROM comment WHERE deleted = FALSE "
+			+ "ORDER BY id";
+
+	private final ConnectionPool pool;
+
+	private final EntityCache entities = new EntityCache();
+
+	private final CommentSearchIndex searchIndex = new CommentSearchIndex();
+
+	private final ThreadLocal<PooledConnection> currentConnection = new ThreadLocal<PooledConnection>();
+
+	/**
+	 * Opens the database and creates the tables and indexes that do not exist yet
+	 * @param url JDBC url, e.g. jdbc:h2:./crowdlib for a file next to the working directory
+	 * @param maxConnections Size of the connection pool
+	 * @return The open database
+	 */
+	public static Database open(String url, int maxConnections) {
+		Database database = new Database(new ConnectionPool(url, maxConnections, 10000));
+		database.createSchema();
+		database.indexComments();
+		return database;
+	}
+
+	Database(ConnectionPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Runs the work with auto-commit, every statement is its own transaction
+	 * @param work Work to be run
+	 * @return The result of the work
+	 */
+	public <T> T withConnection(Work<T> work) {
+		PooledConnection held = currentConnection.get();
+		if (held != null) {
+			return run(work, held);
+		}
+		PooledConnection connection = acquire();
+		boolean broken = true;
+		currentConnection.set(connection);
+		try {
+			T result = run(work, connection);
+			broken = false;
+			return result;
+		} finally {
+			currentConnection.remove();
+			pool.release(connection, broken);
+		}
+	}
+
+	/**
+	 * Runs the work in a single transaction, rolling it back if the work fails.
+	 * Work nested in other work joins the outer connection and its mode.
+	 * @param work Work to be run
+	 * @return The result of the work
+	 */
+	public <T> T transaction(Work<T> work) {
+		PooledConnection held = currentConnection.get();
+		if (held != null) {
+			return run(work, held);
+		}
+		PooledConnection connection = acquire();
+		boolean broken = true;
+		currentConnection.set(connection);
+		Connection jdbcConnection = connection.getConnection();
+		try {
+			jdbcConnection.setAutoCommit(false);
+			T result = work.run(connection);
+			jdbcConnection.commit();
+			jdbcConnection.setAutoCommit(true);
+			broken = false;
+			return result;
+		} catch (SQLException e) {
+			throw new PersistenceException("Database transaction failed", e);
+		} finally {
+			if (broken) {
+				rollback(jdbcConnection);
+			}
+			currentConnection.remove();
+			pool.release(connection, broken);
+		}
+	}
+
+	/**
+	 * Stores users and catalogue items in a database that has none yet, e.g.
+	 * the ones the in-memory collections start with
+	 * @param users Users to be stored
+	 * @param items Catalogue items to be stored
+	 */
+	public void seedIfEmpty(Collection<User> users, Collection<CatalogueItem> items) {
+		transaction(connection -> {
+			if (count(connection, "SELECT COUNT(*) FROM app_user") == 0) {
+				PreparedStatement insertUser = connection.prepare(INSERT_USER);
+				for (User user : users) {
+					insertUser.setInt(1, user.getId());
+					insertUser.setString(2, user.getUsername());
+					insertUser.setString(3, user.getPassword());
+					insertUser.setString(4, user.getRole());
+					insertUser.setString(5, user.getTitle());
+					insertUser.setString(6, user.getName());
+					insertUser.setString(7, user.getSurname());
+					insertUser.addBatch();
+				}
+				insertUser.executeBatch();
+			}
+			if (count(connection, "SELECT COUNT(*) FROM catalogue_item") == 0) {
+				PreparedStatement insertItem = connection.prepare(INSERT_ITEM);
+				for (CatalogueItem item : items) {
+					insertItem.setInt(1, item.getId());
+					insertItem.setString(2, item.getTitle());
+					insertItem.setString(3, item.getAuthor());
+					insertItem.setString(4, EntityCache.format(item.getLinkToAllComments()));
+					insertItem.addBatch();
+				}
+				insertItem.executeBatch();
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Retrieves the highest comment id stored, so new comments can continue after it
+	 * @return The highest comment id, 0 if there are no comments
+	 */
+	public int getLastCommentId() {
+		return withConnection(connection -> count(connection, "SELECT COALESCE(MAX(id), 0) FROM comment"));
+	}
+
+	EntityCache entities() {
+		return entities;
+	}
+
+	CommentSearchIndex searchIndex() {
+		return searchIndex;
+	}
+
+	@Override
+	public void close() {
+		pool.close();
+	}
+
+	private void createSchema() {
+		transaction(connection -> {
+			try (Statement statement = connection.getConnection().createStatement()) {
+				for (String ddl : SCHEMA) {
+					statement.execute(ddl);
+				}
+			}
+			return null;
+		});
+	}
+
+	private void indexComments() {
+		withConnection(connection -> {
+			try (ResultSet row = connection.prepare(SELECT_COMMENT_CONTENT).executeQuery()) {
+				while (row.next()) {
+					searchIndex.add(row.getInt(1), row.getString(2));
+				}
+			}
+			return null;
+		});
+	}
+
+	private static int count(PooledConnection connection, String sql) throws SQLException {
+		try (ResultSet resultSet = connection.prepare(sql).executeQuery()) {
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+	}
+
+	private PooledConnection acquire() {
+		try {
+			return pool.acquire();
+		} catch (SQLException e) {
+			throw new PersistenceException("No database connection available", e);
+		}
+	}
+
+	private static <T> T run(Work<T> work, PooledConnection connection) {
+		try {
+			return work.run(connection);
+		} catch (SQLException e) {
+			throw new PersistenceException("Database access failed", e);
+		}
+	}
+
+	private static void rollback(Connection connection) {
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			// the connection is discarded anyway
+		}
+	}
+}
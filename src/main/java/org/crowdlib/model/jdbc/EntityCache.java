@@ -0,0 +1,175 @@
+package org.crowdlib.model.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+
+/**
+ * Maps rows to entity objects, loading each row once and handing out the same
+ * object from then on. Relations between entities, such as the comments of an
+ * item or the followers of an item, are not kept on the objects but queried
+ * by the DAOs, so the cache only has to hold what a row contains.
+ */
+final class EntityCache {
+
+	private static final String SELECT_USER = "SELECT id, username, password, role, title, name, surname "
+			+ "FROM app_user WHERE username = ?";
+
+	private static final String SELECT_ITEM = "SELECT id, title, author, link_to_all_comments "
+			+ "FROM catalogue_item WHERE id = ?";
+
+	private static final String SELECT_ITEM_COMMENT_IDS = "SELECT id FROM comment "
+			+ "WHERE item_id = ? AND log_position IS NOT NULL ORDER BY log_position";
+
+	private static final String SELECT_COMMENT = "SELECT id, item_id, parent_id, owner, content, created, "
+			+ "favourites_count, deleted FROM comment WHERE id = ?";
+
+	private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<String, User>();
+
+	private final ConcurrentHashMap<Integer, CatalogueItem> items = new ConcurrentHashMap<Integer, CatalogueItem>();
+
+	private final ConcurrentHashMap<Integer, Comment> comments = new ConcurrentHashMap<Integer, Comment>();
+
+	User user(PooledConnection connection, String username) throws SQLException {
+		if (username == null) {
+			return null;
+		}
+		User user = users.get(username);
+		if (user != null) {
+			return user;
+		}
+		PreparedStatement statement = connection.prepare(SELECT_USER);
+		statement.setString(1, username);
+		try (ResultSet row = statement.executeQuery()) {
+			if (!row.next()) {
+				return null;
+			}
+			user = new User(row.getInt(1), row.getString(5), row.getString(6), row.getString(7), row.getString(4),
+					row.getString(2), row.getString(3));
+		}
+		User cached = users.putIfAbsent(username, user);
+		return cached == null ? user : cached;
+	}
+
+	CatalogueItem item(PooledConnection connection, Integer itemId) throws SQLException {
+		if (itemId == null) {
+			return null;
+		}
+		CatalogueItem item = items.get(itemId);
+		if (item != null) {
+			return item;
+		}
+		PreparedStatement statement = connection.prepare(SELECT_ITEM);
+		statement.setInt(1, itemId);
+		try (ResultSet row = statement.executeQuery()) {
+			if (!row.next()) {
+				return null;
+			}
+			item = new CatalogueItem(row.getInt(1), row.getString(2), row.getString(3), parse(row.getString(4)));
+		}
+		// the links are part of the item's representation, so they are loaded with it
+		PreparedStatement commentIds = connection.prepare(SELECT_ITEM_COMMENT_IDS);
+		commentIds.setInt(1, itemId);
+		try (ResultSet rows = commentIds.executeQuery()) {
+			while (rows.next()) {
+				item.addLinkToComment(rows.getInt(1));
+			}
+		}
+		CatalogueItem cached = items.putIfAbsent(itemId, item);
+		return cached == null ? item : cached;
+	}
+
+	Comment comment(PooledConnection connection, Integer commentId) throws SQLException {
+		if (commentId == null) {
+			return null;
+		}
+		Comment comment = comments.get(commentId);
+		if (comment != null) {
+			return comment;
+		}
+		PreparedStatement statement = connection.prepare(SELECT_COMMENT);
+		statement.setInt(1, commentId);
+		Integer itemId;
+		Integer parentId;
+		String owner;
+		try (ResultSet row = statement.executeQuery()) {
+			if (!row.next()) {
+				return null;
+			}
+			itemId = (Integer) row.getObject(2);
+			parentId = (Integer) row.getObject(3);
+			owner = row.getString(4);
+			Timestamp created = row.getTimestamp(6);
+			comment = new Comment(row.getInt(1), row.getString(5), created == null ? Comment.NO_CREATION_TIMESTAMP : created.getTime());
+			comment.setFavouritesCount(row.getInt(7));
+			comment.setDeleted(row.getBoolean(8));
+		}
+		// the row is read completely before the statement runs again for the parent
+		comment.setOwner(user(connection, owner));
+		comment.setCatalogueItem(item(connection, itemId));
+		comment.setParentComment(comment(connection, parentId));
+		Comment cached = comments.putIfAbsent(commentId, comment);
+		return cached == null ? comment : cached;
+	}
+
+	/**
+	 * Resolves the comments with these ids, in the same order
+	 */
+	List<Comment> comments(PooledConnection connection, List<Integer> commentIds) throws SQLException {
+		List<Comment> result = new ArrayList<Comment>(commentIds.size());
+		for (Integer commentId : commentIds) {
+			Comment comment = comment(connection, commentId);
+			if (comment != null) {
+				result.add(comment);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Makes a comment that has just been stored the object of its row
+	 */
+	void register(Comment comment) {
+		comments.putIfAbsent(comment.getId(), comment);
+	}
+
+	/**
+	 * Reads the int values of the first column of a query
+	 */
+	static List<Integer> ids(PreparedStatement statement) throws SQLException {
+		List<Integer> ids = new ArrayList<Integer>();
+		try (ResultSet rows = statement.executeQuery()) {
+			while (rows.next()) {
+				ids.add(rows.getInt(1));
+			}
+		}
+		return ids;
+	}
+
+	static void setNullableInt(PreparedStatement statement, int index, Integer value) throws SQLException {
+		if (value == null) {
+			statement.setNull(index, Types.INTEGER);
+		} else {
+			statement.setInt(index, value);
+		}
+	}
+
+	static String format(Link link) {
+		return link == null ? null : link.toString();
+	}
+
+	static Link parse(String link) {
+		return link == null ? null : Link.valueOf(link);
+	}
+}
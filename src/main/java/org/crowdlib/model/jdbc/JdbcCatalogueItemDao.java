@@ -0,0 +1,207 @@
+package org.crowdlib.model.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.exceptions.CatalogueItemNotFoundException;
+import org.crowdlib.model.CatalogueItemDao;
+import org.crowdlib.model.CommentPage;
+
+/**
+ * {@link CatalogueItemDao} storing catalogue items in a {@link Database}. The
+ * comment log of an item is the log_position column of its comments, read in
+ * order through the (item_id, log_position) index.
+ */
+public class JdbcCatalogueItemDao implements CatalogueItemDao {
+
+	private static final String SELECT_ALL_ITEMS = "SELECT id FROM catalogue_item ORDER BY id";
+
+	private static final String SELECT_COMMENTS = "SELECT id FROM comment "
+			+ "WHERE item_id = ? AND log_position IS NOT NULL ORDER BY log_position";
+
+	private static final String SELECT_COMMENTS_SUBSET = SELECT_COMMENTS + " LIMIT ? OFFSET ?";
+
+	private static final String SELECT_COMMENTS_AFTER = "SELECT id, log_position FROM comment "
+			+ "WHERE item_id = ? AND log_position > ? ORDER BY log_position LIMIT ?";
+
+	private static final String SELECT_MOST_FAVOURITED_COMMENTS = "SELECT id FROM comment "
+			+ "WHERE item_id = ? AND log_position IS NOT NULL ORDER BY favourites_count DESC, log_position LIMIT ?";
+
+	private static final String SELECT_COMMENT_COUNT = "SELECT comment_count FROM catalogue_item WHERE id = ?";
+
+	private static final String INCREMENT_COMMENT_COUNT = "UPDATE catalogue_item SET comment_count = comment_count + 1 "
+			+ "WHERE id = ?";
+
+	private static final String APPEND_TO_LOG = "UPDATE comment SET log_position = ? WHERE id = ?";
+
+	private static final String MERGE_FOLLOWER = "MERGE INTO item_follower (item_id, username) KEY (item_id, username) "
+			+ "VALUES (?, ?)";
+
+	private static final String SELECT_FOLLOWERS = "SELECT username FROM item_follower WHERE item_id = ? ORDER BY seq";
+
+	private static final String SELECT_FOLLOWERS_OF_BOTH = "SELECT follower.username FROM item_follower follower "
+			+ "JOIN item_follower other ON other.username = follower.username AND other.item_id = ? "
+			+ "JOIN app_user ON app_user.username = follower.username "
+			+ "WHERE follower.item_id = ? ORDER BY app_user.id";
+
+	private final Database database;
+
+	public JdbcCatalogueItemDao(Database database) {
+		this.database = database;
+	}
+
+	@Override
+	public List<CatalogueItem> getAll() {
+		return database.withConnection(connection -> {
+			List<CatalogueItem> items = new ArrayList<CatalogueItem>();
+			for (Integer itemId : EntityCache.ids(connection.prepare(SELECT_ALL_ITEMS))) {
+				items.add(database.entities().item(connection, itemId));
+			}
+			return items;
+		});
+	}
+
+	@Override
+	public CatalogueItem getById(Integer itemId) throws CatalogueItemNotFoundException {
+		return findById(itemId).orElseThrow(CatalogueItemNotFoundException::notAvailable);
+	}
+
+	@Override
+	public Optional<CatalogueItem> findById(Integer itemId) {
+		return Optional.ofNullable(database.withConnection(connection -> database.entities().item(connection, itemId)));
+	}
+
+	@Override
+	public List<Comment> getAllComments(CatalogueItem item) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_COMMENTS);
+			statement.setInt(1, item.getId());
+			return database.entities().comments(connection, EntityCache.ids(statement));
+		});
+	}
+
+	@Override
+	public List<Comment> getMostFavouritedComments(CatalogueItem item, int limit) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_MOST_FAVOURITED_COMMENTS);
+			statement.setInt(1, item.getId());
+			statement.setInt(2, limit);
+			return database.entities().comments(connection, EntityCache.ids(statement));
+		});
+	}
+
+	@Override
+	public List<Comment> getSubsetOfComments(CatalogueItem item, Integer startIndex, Integer size) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_COMMENTS_SUBSET);
+			statement.setInt(1, item.getId());
+			statement.setInt(2, size);
+			statement.setInt(3, startIndex);
+			return database.entities().comments(connection, EntityCache.ids(statement));
+		});
+	}
+
+	@Override
+	public CommentPage getCommentsAfter(CatalogueItem item, int afterPosition, int limit) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_COMMENTS_AFTER);
+			statement.setInt(1, item.getId());
+			statement.setInt(2, afterPosition);
+			statement.setInt(3, limit);
+			List<Integer> commentIds = new ArrayList<Integer>();
+			int lastPosition = afterPosition;
+			try (ResultSet rows = statement.executeQuery()) {
+				while (rows.next()) {
+					commentIds.add(rows.getInt(1));
+					lastPosition = rows.getInt(2);
+				}
+			}
+			return new CommentPage(database.entities().comments(connection, commentIds), lastPosition);
+		});
+	}
+
+	@Override
+	public int getNumberOfRemainingComments(CatalogueItem item, Integer newStartIndex) {
+		int numberOfComments = database.withConnection(connection -> commentCount(connection, item));
+		return Math.max(0, numberOfComments - newStartIndex);
+	}
+
+	@Override
+	public int addComment(CatalogueItem item, Comment comment) {
+		// one poster per item at a time keeps the links in log order and avoids
+		// concurrent updates of the item row, which H2's MVCC rejects
+		synchronized (item) {
+			int logPosition = database.transaction(connection -> {
+				PreparedStatement increment = connection.prepare(INCREMENT_COMMENT_COUNT);
+				increment.setInt(1, item.getId());
+				increment.executeUpdate();
+				int position = commentCount(connection, item) - 1;
+				PreparedStatement append = connection.prepare(APPEND_TO_LOG);
+				append.setInt(1, position);
+				append.setInt(2, comment.getId());
+				append.executeUpdate();
+				return position;
+			});
+			item.addLinkToComment(comment.getId());
+			return logPosition;
+		}
+	}
+
+	@Override
+	public void addFollower(CatalogueItem item, User follower) {
+		database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(MERGE_FOLLOWER);
+			statement.setInt(1, item.getId());
+			statement.setString(2, follower.getUsername());
+			return statement.executeUpdate();
+		});
+	}
+
+	@Override
+	public List<User> getAllFollowers(CatalogueItem item) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_FOLLOWERS);
+			statement.setInt(1, item.getId());
+			return users(connection, statement);
+		});
+	}
+
+	@Override
+	public List<User> getFollowersOfBoth(CatalogueItem item, CatalogueItem otherItem) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_FOLLOWERS_OF_BOTH);
+			statement.setInt(1, otherItem.getId());
+			statement.setInt(2, item.getId());
+			return users(connection, statement);
+		});
+	}
+
+	private List<User> users(PooledConnection connection, PreparedStatement usernamesQuery) throws SQLException {
+		List<String> usernames = new ArrayList<String>();
+		try (ResultSet rows = usernamesQuery.executeQuery()) {
+			while (rows.next()) {
+				usernames.add(rows.getString(1));
+			}
+		}
+		List<User> users = new ArrayList<User>(usernames.size());
+		for (String username : usernames) {
+			users.add(database.entities().user(connection, username));
+		}
+		return users;
+	}
+
+	private static int commentCount(PooledConnection connection, CatalogueItem item) throws SQLException {
+		PreparedStatement statement = connection.prepare(SELECT_COMMENT_COUNT);
+		statement.setInt(1, item.getId());
+		try (ResultSet row = statement.executeQuery()) {
+			return row.next() ? row.getInt(1) : 0;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package org.crowdlib.model.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.CommentPaths;
+import org.crowdlib.entities.User;
+import org.crowdlib.exceptions.CommentNotFoundException;
+import org.crowdlib.model.CommentDao;
+import org.crowdlib.model.ThreadExcerpt;
+
+/**
+ * {@link CommentDao} storing comments in a {@link Database}. Replies are found
+ * through the parent_id index instead of a list on the parent comment, and
+ * descendants through the index on the {@link CommentPaths materialized path}
+ * stored with each comment. Searches go through the index the database keeps
+ * in memory rather than through the table.
+ */
+public class JdbcCommentDao implements CommentDao {
+
+	private static final String MERGE_COMMENT = "MERGE INTO comment (id, item_id, parent_id, owner, content, created, "
+			+ "favourites_count, deleted, thread_path) KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private static final String SELECT_REPLIES = "SELECT id FROM comment WHERE parent_id = ? ORDER BY seq";
+
+	private static final String INCREMENT_FAVOURITES = "UPDATE comment SET favourites_count = favourites_count + 1 "
+			+ "WHERE id = ?";
+
+	private static final String DELETE_CONTENT = "UPDATE comment SET content = ?, deleted = TRUE WHERE id = ?";
+
+	private static final String DETACH_REPLIES = "UPDATE comment SET parent_id = NULL WHERE parent_id = ?";
+
+	private static final String SELECT_THREAD_PATH = "SELECT thread_path FROM comment WHERE id = ?";
+
+	private static final String SELECT_DESCENDANTS = "SELECT id FROM comment WHERE thread_path > ? AND thread_path < ? "
+			+ "ORDER BY thread_path";
+
+	private static final String SELECT_DESCENDANTS_WITHIN = "SELECT id, thread_path FROM comment "
+			+ "WHERE thread_path > ? AND thread_path < ? AND LENGTH(thread_path) <= ? ORDER BY thread_path LIMIT ?";
+
+	private static final String SELECT_PARENTS_AT_LENGTH = "SELECT DISTINCT parent_id FROM comment "
+			+ "WHERE thread_path > ? AND thread_path < ? AND LENGTH(thread_path) = ?";
+
+	private static final String SELECT_FIRST_BETWEEN = "SELECT id FROM comment WHERE thread_path > ? AND thread_path < ? "
+			+ "ORDER BY thread_path LIMIT 1";
+
+	private static final String DETACH_DESCENDANTS = "UPDATE comment SET thread_path = NULL "
+			+ "WHERE thread_path > ? AND thread_path < ?";
+
+	private final Database database;
+
+	public JdbcCommentDao(Database database) {
+		this.database = database;
+	}
+
+	@Override
+	public Comment getById(Integer commentId) throws CommentNotFoundException {
+		return findById(commentId).orElseThrow(CommentNotFoundException::notAvailable);
+	}
+
+	@Override
+	public Optional<Comment> findById(Integer commentId) {
+		return Optional.ofNullable(
+				database.withConnection(connection -> database.entities().comment(connection, commentId)));
+	}
+
+	@Override
+	public Comment createComment(String commentContent, User commentOwner, CatalogueItem item) {
+		Comment comment = new Comment(commentContent, commentOwner, item);
+		save(comment);
+		database.searchIndex().add(comment.getId(), commentContent);
+		return comment;
+	}
+
+	@Override
+	public void addReply(Comment comment, Comment reply) {
+		reply.setParentComment(comment);
+		save(reply);
+	}
+
+	@Override
+	public void incrementFavouritesCount(Comment comment) {
+		// concurrent updates of one row fail under H2's MVCC instead of waiting
+		synchronized (comment) {
+			database.withConnection(connection -> {
+				PreparedStatement statement = connection.prepare(INCREMENT_FAVOURITES);
+				statement.setInt(1, comment.getId());
+				return statement.executeUpdate();
+			});
+			comment.setFavouritesCount(comment.getFavouritesCount() + 1);
+		}
+	}
+
+	@Override
+	public List<Comment> getReplies(Comment comment) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_REPLIES);
+			statement.setInt(1, comment.getId());
+			return database.entities().comments(connection, EntityCache.ids(statement));
+		});
+	}
+
+	@Override
+	public List<Comment> getDescendants(Comment comment) {
+		return database.withConnection(connection -> descendants(connection, threadPath(connection, comment.getId())));
+	}
+
+	/**
+	 * Reads the descendants within the depth in path order, one row past the
+	 * last one returned to see where the excerpt ends. The comments with replies
+	 * left out are then those at the last level with a reply before that point,
+	 * and above that point those with a reply after it, one row to look up for
+	 * each level, so nothing past the excerpt is read.
+	 */
+	@Override
+	public ThreadExcerpt getThreadExcerpt(Comment comment, int depth, int maxDescendants) {
+		String path = database.withConnection(connection -> threadPath(connection, comment.getId()));
+		if (path == null) {
+			return ThreadExcerpt.ofReplies(this, comment, depth, maxDescendants);
+		}
+		return database.withConnection(connection -> {
+			PreparedStatement select = connection.prepare(SELECT_DESCENDANTS_WITHIN);
+			select.setString(1, path);
+			select.setString(2, CommentPaths.upperBound(path));
+			select.setInt(3, CommentPaths.length(path, depth));
+			select.setInt(4, maxDescendants + 1);
+			List<Integer> ids = new ArrayList<Integer>();
+			String end = null;
+			try (ResultSet rows = select.executeQuery()) {
+				while (end == null && rows.next()) {
+					if (ids.size() < maxDescendants) {
+						ids.add(rows.getInt(1));
+					} else {
+						end = rows.getString(2);
+					}
+				}
+			}
+			PreparedStatement parents = connection.prepare(SELECT_PARENTS_AT_LENGTH);
+			parents.setString(1, path);
+			parents.setString(2, end == null ? CommentPaths.upperBound(path) : end);
+			parents.setInt(3, CommentPaths.length(path, depth + 1));
+			Set<Integer> moreReplies = new HashSet<Integer>(EntityCache.ids(parents));
+			if (end != null) {
+				String parentPath = CommentPaths.parent(end);
+				moreReplies.add(CommentPaths.id(parentPath));
+				for (int level = 0; CommentPaths.length(path, level) < parentPath.length(); level++) {
+					String ancestorPath = end.substring(0, CommentPaths.length(path, level));
+					String replyPath = end.substring(0, CommentPaths.length(path, level + 1));
+					PreparedStatement next = connection.prepare(SELECT_FIRST_BETWEEN);
+					next.setString(1, CommentPaths.upperBound(replyPath));
+					next.setString(2, CommentPaths.upperBound(ancestorPath));
+					if (!EntityCache.ids(next).isEmpty()) {
+						moreReplies.add(CommentPaths.id(ancestorPath));
+					}
+				}
+			}
+			return new ThreadExcerpt(database.entities().comments(connection, ids), moreReplies);
+		});
+	}
+
+	@Override
+	public List<Comment> getAncestors(Comment comment) {
+		return database.withConnection(connection -> {
+			String path = threadPath(connection, comment.getId());
+			if (path == null) {
+				return new ArrayList<Comment>();
+			}
+			int[] ids = CommentPaths.ids(path);
+			List<Integer> ancestorIds = new ArrayList<Integer>(ids.length - 1);
+			for (int i = 0; i < ids.length - 1; i++) {
+				ancestorIds.add(ids[i]);
+			}
+			return database.entities().comments(connection, ancestorIds);
+		});
+	}
+
+	@Override
+	public List<Comment> getThread(Comment comment) {
+		return database.withConnection(connection -> {
+			String path = threadPath(connection, comment.getId());
+			Comment topLevelComment = path == null ? comment
+					: database.entities().comment(connection, CommentPaths.ids(path)[0]);
+			List<Comment> thread = new ArrayList<Comment>();
+			thread.add(topLevelComment);
+			if (path != null) {
+				thread.addAll(descendants(connection, CommentPaths.root(topLevelComment.getId())));
+			}
+			return thread;
+		});
+	}
+
+	@Override
+	public List<Comment> searchComments(String query, int limit) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int id : database.searchIndex().search(query, limit)) {
+			ids.add(id);
+		}
+		return database.withConnection(connection -> database.entities().comments(connection, ids));
+	}
+
+	@Override
+	public boolean isCommentOwner(User user, Comment comment) {
+		return comment.getOwner().equals(user);
+	}
+
+	@Override
+	public void deleteComment(Comment comment, String deletionMessage) {
+		synchronized (comment) {
+			database.transaction(connection -> {
+				PreparedStatement delete = connection.prepare(DELETE_CONTENT);
+				delete.setString(1, deletionMessage);
+				delete.setInt(2, comment.getId());
+				delete.executeUpdate();
+				String path = threadPath(connection, comment.getId());
+				if (path != null) {
+					PreparedStatement detachDescendants = connection.prepare(DETACH_DESCENDANTS);
+					detachDescendants.setString(1, path);
+					detachDescendants.setString(2, CommentPaths.upperBound(path));
+					detachDescendants.executeUpdate();
+				}
+				PreparedStatement detach = connection.prepare(DETACH_REPLIES);
+				detach.setInt(1, comment.getId());
+				return detach.executeUpdate();
+			});
+			comment.setCommentContent(deletionMessage);
+			comment.setDeleted(true);
+		}
+		database.searchIndex().remove(comment.getId());
+	}
+
+	/**
+	 * Reads the path of a comment, null if it has none
+	 */
+	private static String threadPath(PooledConnection connection, int commentId) throws SQLException {
+		PreparedStatement statement = connection.prepare(SELECT_THREAD_PATH);
+		statement.setInt(1, commentId);
+		try (ResultSet row = statement.executeQuery()) {
+			return row.next() ? row.getString(1) : null;
+		}
+	}
+
+	/**
+	 * Resolves the comments whose paths continue the path given, in path order
+	 */
+	private List<Comment> descendants(PooledConnection connection, String path) throws SQLException {
+		if (path == null) {
+			return new ArrayList<Comment>();
+		}
+		PreparedStatement statement = connection.prepare(SELECT_DESCENDANTS);
+		statement.setString(1, path);
+		statement.setString(2, CommentPaths.upperBound(path));
+		return database.entities().comments(connection, EntityCache.ids(statement));
+	}
+
+	/**
+	 * Stores all columns of the comment, inserting its row if it is new. A
+	 * reply gets a path if the comment it replies to has one.
+	 */
+	private void save(Comment comment) {
+		database.withConnection(connection -> {
+			Comment parent = comment.getParentComment();
+			String parentPath = parent == null ? null : threadPath(connection, parent.getId());
+			PreparedStatement statement = connection.prepare(MERGE_COMMENT);
+			statement.setInt(1, comment.getId());
+			EntityCache.setNullableInt(statement, 2,
+					comment.getCatalogueItem() == null ? null : comment.getCatalogueItem().getId());
+			EntityCache.setNullableInt(statement, 3,
+					comment.getParentComment() == null ? null : comment.getParentComment().getId());
+			statement.setString(4, comment.getOwner() == null ? null : comment.getOwner().getUsername());
+			statement.setString(5, comment.getCommentContent());
+			statement.setTimestamp(6, comment.getCreationTimestamp() == Comment.NO_CREATION_TIMESTAMP ? null
+					: new Timestamp(comment.getCreationTimestamp()));
+			statement.setInt(7, comment.getFavouritesCount());
+			statement.setBoolean(8, comment.isDeleted());
+			statement.setString(9, parent == null ? CommentPaths.root(comment.getId())
+					: parentPath == null ? null : CommentPaths.child(parentPath, comment.getId()));
+			return statement.executeUpdate();
+		});
+		database.entities().register(comment);
+	}
+}
@@ -0,0 +1,276 @@
+package org.crowdlib.model.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.crowdlib.exceptions.UserNotFoundException;
+import org.crowdlib.model.UserDao;
+
+/**
+ * {@link UserDao} storing the favourites, followed items, notifications and
+ * read watermarks of users in a {@link Database}. Following an item is a
+ * single item_follower row, which is both the item's follower and the user's
+ * followed item.
+ */
+public class JdbcUserDao implements UserDao {
+
+	private static final String SELECT_FAVOURITES = "SELECT comment_id FROM favourite WHERE username = ? ORDER BY seq";
+
+	private static final String SELECT_FAVOURITE = "SELECT 1 FROM favourite WHERE username = ? AND comment_id = ?";
+
+	private static final String INSERT_FAVOURITE = "INSERT INTO favourite (username, comment_id) SELECT ?, ? FROM DUAL "
+			+ "WHERE NOT EXISTS (SELECT 1 FROM favourite WHERE username = ? AND comment_id = ?)";
+
+	private static final String DUPLICATE_KEY = "23505";
+
+	private static final String SELECT_FOLLOWED_ITEMS = "SELECT item_id FROM item_follower WHERE username = ? "
+			+ "ORDER BY seq";
+
+	private static final String SELECT_FOLLOWED_ITEM = "SELECT 1 FROM item_follower WHERE username = ? AND item_id = ?";
+
+	private static final String MERGE_FOLLOWED_ITEM = "MERGE INTO item_follower (item_id, username) "
+			+ "KEY (item_id, username) VALUES (?, ?)";
+
+	private static final String SELECT_COMMENT_COUNT = "SELECT comment_count FROM catalogue_item WHERE id = ?";
+
+	private static final String INSERT_NOTIFICATION = "INSERT INTO notification "
+			+ "(username, item_id, comment_id, log_position, link) VALUES (?, ?, ?, ?, ?)";
+
+	private static final String SELECT_NOTIFICATIONS = "SELECT item_id, comment_id, log_position, link "
+			+ "FROM notification WHERE username = ? ORDER BY id";
+
+	private static final String DELETE_SEEN_NOTIFICATIONS = "DELETE FROM notification n WHERE n.username = ? "
+			+ "AND EXISTS (SELECT 1 FROM read_watermark w WHERE w.username = n.username AND w.item_id = n.item_id "
+			+ "AND n.log_position <= w.position)";
+
+	private static final String DELETE_COMMENT_NOTIFICATIONS = "DELETE FROM notification WHERE username = ? "
+			+ "AND comment_id = ?";
+
+	private static final String SELECT_WATERMARK = "SELECT position FROM read_watermark WHERE username = ? "
+			+ "AND item_id = ?";
+
+	private static final String RAISE_WATERMARK = "UPDATE read_watermark SET position = GREATEST(position, ?) "
+			+ "WHERE username = ? AND item_id = ?";
+
+	private static final String INSERT_WATERMARK = "INSERT INTO read_watermark (username, item_id, position) "
+			+ "VALUES (?, ?, ?)";
+
+	private final Database database;
+
+	public JdbcUserDao(Database database) {
+		this.database = database;
+	}
+
+	@Override
+	public User getUserByUsername(String username) throws UserNotFoundException {
+		return findUserByUsername(username).orElseThrow(UserNotFoundException::notAvailable);
+	}
+
+	@Override
+	public Optional<User> findUserByUsername(String username) {
+		return Optional.ofNullable(
+				database.withConnection(connection -> database.entities().user(connection, username)));
+	}
+
+	@Override
+	public List<Comment> getUserFavouriteComments(User user) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_FAVOURITES);
+			statement.setString(1, user.getUsername());
+			return database.entities().comments(connection, EntityCache.ids(statement));
+		});
+	}
+
+	@Override
+	public boolean checkIfCommentIsAmongFavourites(User user, Comment comment) {
+		return exists(SELECT_FAVOURITE, user, comment.getId());
+	}
+
+	@Override
+	public boolean addCommentToFavourites(User user, Comment comment) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(INSERT_FAVOURITE);
+			statement.setString(1, user.getUsername());
+			statement.setInt(2, comment.getId());
+			statement.setString(3, user.getUsername());
+			statement.setInt(4, comment.getId());
+			try {
+				return statement.executeUpdate() == 1;
+			} catch (SQLException e) {
+				// another connection inserted the same favourite since the check
+				if (DUPLICATE_KEY.equals(e.getSQLState())) {
+					return false;
+				}
+				throw e;
+			}
+		});
+	}
+
+	@Override
+	public List<CatalogueItem> getUserFollowedItems(User user) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_FOLLOWED_ITEMS);
+			statement.setString(1, user.getUsername());
+			List<CatalogueItem> items = new ArrayList<CatalogueItem>();
+			for (Integer itemId : EntityCache.ids(statement)) {
+				items.add(database.entities().item(connection, itemId));
+			}
+			return items;
+		});
+	}
+
+	@Override
+	public boolean checkIfItemIsAmongFollowedItems(User user, CatalogueItem item) {
+		return exists(SELECT_FOLLOWED_ITEM, user, item.getId());
+	}
+
+	@Override
+	public void addItemToFollowedItems(User user, CatalogueItem item) {
+		int numberOfComments = database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(MERGE_FOLLOWED_ITEM);
+			statement.setInt(1, item.getId());
+			statement.setString(2, user.getUsername());
+			statement.executeUpdate();
+			PreparedStatement count = connection.prepare(SELECT_COMMENT_COUNT);
+			count.setInt(1, item.getId());
+			try (ResultSet row = count.executeQuery()) {
+				return row.next() ? row.getInt(1) : 0;
+			}
+		});
+		// comments posted before following are not notified
+		advanceReadWatermark(user, item, numberOfComments - 1);
+	}
+
+	@Override
+	public void addToListOfNotifications(User user, Notification notification) {
+		database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(INSERT_NOTIFICATION);
+			bindNotification(statement, user, notification);
+			return statement.executeUpdate();
+		});
+	}
+
+	@Override
+	public void addAllToListOfNotifications(User user, List<Notification> notifications) {
+		if (notifications.isEmpty()) {
+			return;
+		}
+		database.transaction(connection -> {
+			PreparedStatement statement = connection.prepare(INSERT_NOTIFICATION);
+			for (Notification notification : notifications) {
+				bindNotification(statement, user, notification);
+				statement.addBatch();
+			}
+			return statement.executeBatch();
+		});
+	}
+
+	@Override
+	public List<Notification> getListOfNotifications(User user) {
+		return database.withConnection(connection -> selectNotifications(connection, user));
+	}
+
+	@Override
+	public List<Notification> getUnseenNotifications(User user) {
+		// two requests of the same user would otherwise delete the same rows at once
+		synchronized (user) {
+			return database.transaction(connection -> {
+				PreparedStatement delete = connection.prepare(DELETE_SEEN_NOTIFICATIONS);
+				delete.setString(1, user.getUsername());
+				delete.executeUpdate();
+				return selectNotifications(connection, user);
+			});
+		}
+	}
+
+	@Override
+	public void adjustListOfNotificationsAfterCommentIsSeen(User user, Comment comment) {
+		synchronized (user) {
+			database.withConnection(connection -> {
+				PreparedStatement statement = connection.prepare(DELETE_COMMENT_NOTIFICATIONS);
+				statement.setString(1, user.getUsername());
+				statement.setInt(2, comment.getId());
+				return statement.executeUpdate();
+			});
+		}
+	}
+
+	@Override
+	public int getReadWatermark(User user, CatalogueItem item) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(SELECT_WATERMARK);
+			statement.setString(1, user.getUsername());
+			statement.setInt(2, item.getId());
+			try (ResultSet row = statement.executeQuery()) {
+				return row.next() ? row.getInt(1) : -1;
+			}
+		});
+	}
+
+	@Override
+	public void advanceReadWatermark(User user, CatalogueItem item, int position) {
+		synchronized (user) {
+			database.withConnection(connection -> {
+				PreparedStatement raise = connection.prepare(RAISE_WATERMARK);
+				raise.setInt(1, position);
+				raise.setString(2, user.getUsername());
+				raise.setInt(3, item.getId());
+				if (raise.executeUpdate() > 0) {
+					return null;
+				}
+				PreparedStatement insert = connection.prepare(INSERT_WATERMARK);
+				insert.setString(1, user.getUsername());
+				insert.setInt(2, item.getId());
+				insert.setInt(3, position);
+				return insert.executeUpdate();
+			});
+		}
+	}
+
+	private boolean exists(String sql, User user, int id) {
+		return database.withConnection(connection -> {
+			PreparedStatement statement = connection.prepare(sql);
+			statement.setString(1, user.getUsername());
+			statement.setInt(2, id);
+			try (ResultSet row = statement.executeQuery()) {
+				return row.next();
+			}
+		});
+	}
+
+	private static void bindNotification(PreparedStatement statement, User user, Notification notification)
+			throws SQLException {
+		CatalogueItem item = notification.getCatalogueItem();
+		statement.setString(1, user.getUsername());
+		EntityCache.setNullableInt(statement, 2, item == null ? null : item.getId());
+		statement.setInt(3, notification.getComment().getId());
+		statement.setInt(4, notification.getLogPosition());
+		statement.setString(5, EntityCache.format(notification.getLinkToComment()));
+	}
+
+	private List<Notification> selectNotifications(PooledConnection connection, User user) throws SQLException {
+		PreparedStatement statement = connection.prepare(SELECT_NOTIFICATIONS);
+		statement.setString(1, user.getUsername());
+		List<Object[]> rows = new ArrayList<Object[]>();
+		try (ResultSet row = statement.executeQuery()) {
+			while (row.next()) {
+				rows.add(new Object[] { row.getObject(1), row.getInt(2), row.getInt(3), row.getString(4) });
+			}
+		}
+		List<Notification> notifications = new ArrayList<Notification>(rows.size());
+		for (Object[] row : rows) {
+			notifications.add(new Notification(database.entities().item(connection, (Integer) row[0]),
+					database.entities().comment(connection, (Integer) row[1]), (Integer) row[2],
+					EntityCache.parse((String) row[3])));
+		}
+		return notifications;
+	}
+}
@@ -0,0 +1,58 @@
+package org.crowdlib.model.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A database connection owned by a {@link ConnectionPool}, together with the
+ * statements prepared on it. A statement is prepared once per connection and
+ * then reused by every DAO call that runs the same SQL. A pooled connection is
+ * only ever used by one thread at a time, so neither needs to be thread-safe.
+ */
+public final class PooledConnection {
+
+	private final Connection connection;
+
+	private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+
+	PooledConnection(Connection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Retrieves the statement prepared for this SQL, preparing it on first use.
+	 * Executing the statement again closes the result set of its previous
+	 * execution, so a result set has to be read completely before the same SQL
+	 * runs again, e.g. while loading a parent comment.
+	 * @param sql SQL of the statement
+	 * @return The prepared statement with its parameters cleared
+	 * @throws SQLException if the statement cannot be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement statement = statements.get(sql);
+		if (statement == null) {
+			statement = connection.prepareStatement(sql);
+			statements.put(sql, statement);
+		} else {
+			statement.clearParameters();
+		}
+		return statement;
+	}
+
+	Connection getConnection() {
+		return connection;
+	}
+
+	void close() {
+		try {
+			// closing the connection closes its statements too
+			connection.close();
+		} catch (SQLException e) {
+			// the connection is discarded either way
+		}
+		statements.clear();
+	}
+}
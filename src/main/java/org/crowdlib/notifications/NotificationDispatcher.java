@@ -0,0 +1,356 @@
+package org.crowdlib.notifications;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.crowdlib.model.CatalogueItemDao;
+import org.crowdlib.model.DaoFactory;
+import org.crowdlib.model.UserDao;
+
+/**
+ * Delivers the notifications of new comments to item followers on background
+ * worker threads, so posting a comment does not wait for its followers. New
+ * comments wait in a bounded queue. Every worker takes a batch of them at a
+ * time and hands each follower all of its notifications from the batch at
+ * once.
+ *
+ * When the queue is full, posting waits for room up to the offer timeout, so
+ * posts slow down to the pace of the workers instead of handing their work to
+ * the request threads. A comment that still does not fit, or that comes while
+ * the dispatcher is not running, is delivered on the posting thread, so no
+ * notification is dropped. Shutting down waits for the posts already queueing,
+ * so none of them lands in the queue after its last drain. Notifications of one
+ * follower may be delivered out of posting order; seen tracking does not depend
+ * on it.
+ *
+ * A failure only loses what it has to. If the followers of a comment cannot be
+ * read, the batch has not notified anyone yet, and its comments are delivered
+ * one at a time so that only the failing one is dropped. If a follower's list
+ * cannot be updated, the other followers are still notified. Both kinds of
+ * loss are counted in the metrics.
+ */
+public class NotificationDispatcher implements NotificationDispatcherMXBean {
+
+	public static final long DEFAULT_OFFER_TIMEOUT_MILLIS = 100;
+
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	private final BlockingQueue<NewComment> queue;
+
+	private final int capacity;
+
+	private final int batchSize;
+
+	private final long offerTimeoutMillis;
+
+	private final Thread[] workers;
+
+	private final CatalogueItemDao catalogueItemDao;
+
+	private final UserDao userDao;
+
+	private volatile boolean running;
+
+	/**
+	 * Held for reading by posts from checking {@link #running} to queueing, and
+	 * for writing by the shutdown while it clears the flag
+	 */
+	private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+	private final AtomicLong queuedComments = new AtomicLong();
+	private final AtomicLong deliveredComments = new AtomicLong();
+	private final AtomicLong deliveredNotifications = new AtomicLong();
+	private final AtomicLong callerDeliveries = new AtomicLong();
+	private final AtomicLong failedComments = new AtomicLong();
+	private final AtomicLong failedNotifications = new AtomicLong();
+	private final AtomicLong maxDeliveryLagNanos = new AtomicLong();
+	private volatile long lastDeliveryLagNanos;
+
+	/**
+	 * Creates a dispatcher, which delivers on the posting thread until it is started
+	 * @param capacity Maximum number of new comments waiting for delivery
+	 * @param numberOfWorkers Number of worker threads
+	 * @param batchSize Maximum number of new comments a worker delivers at once
+	 */
+	public NotificationDispatcher(int capacity, int numberOfWorkers, int batchSize) {
+		this(capacity, numberOfWorkers, batchSize, DEFAULT_OFFER_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Creates a dispatcher, which delivers on the posting thread until it is started
+	 * @param capacity Maximum number of new comments waiting for delivery
+	 * @param numberOfWorkers Number of worker threads
+	 * @param batchSize Maximum number of new comments a worker delivers at once
+	 * @param offerTimeoutMillis Longest a post waits for room in a full queue
+	 */
+	public NotificationDispatcher(int capacity, int numberOfWorkers, int batchSize, long offerTimeoutMillis) {
+		this(capacity, numberOfWorkers, batchSize, offerTimeoutMillis, DaoFactory.getCatalogueItemDao(),
+				DaoFactory.getUserDao());
+	}
+
+	NotificationDispatcher(int capacity, int numberOfWorkers, int batchSize, long offerTimeoutMillis,
+			CatalogueItemDao catalogueItemDao, UserDao userDao) {
+		if (capacity < 1 || numberOfWorkers < 1 || batchSize < 1) {
+			throw new IllegalArgumentException("Capacity, workers and batch size must be positive");
+		}
+		if (offerTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Offer timeout must not be negative");
+		}
+		this.queue = new ArrayBlockingQueue<NewComment>(capacity);
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.offerTimeoutMillis = offerTimeoutMillis;
+		this.workers = new Thread[numberOfWorkers];
+		this.catalogueItemDao = catalogueItemDao;
+		this.userDao = userDao;
+	}
+
+	/**
+	 * Starts the worker threads
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(this::work, "notification-dispatcher-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Stops accepting new comments and waits until the workers have delivered
+	 * every queued one. Whatever is left when the timeout expires is delivered on
+	 * the calling thread.
+	 * @param timeout Maximum time to wait for the workers
+	 * @param unit Unit of the timeout
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		runningLock.writeLock().lock();
+		try {
+			running = false;
+		} finally {
+			runningLock.writeLock().unlock();
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Thread worker : workers) {
+			if (worker == null) {
+				continue;
+			}
+			worker.join(Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1));
+		}
+		// comments the workers left when the timeout expired; no post queues any after the flag is cleared
+		List<NewComment> remaining = new ArrayList<NewComment>();
+		queue.drainTo(remaining);
+		if (!remaining.isEmpty()) {
+			deliver(remaining);
+		}
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Queues the delivery of a new comment to the followers of its item
+	 * @param item Item the comment was added to
+	 * @param comment The new comment
+	 * @param logPosition Position of the new comment in the item's comment log
+	 * @param linkToComment Link to the new comment
+	 */
+	public void dispatch(CatalogueItem item, Comment comment, int logPosition, Link linkToComment) {
+		NewComment newComment = new NewComment(item, comment, logPosition, linkToComment);
+		if (enqueue(newComment)) {
+			queuedComments.incrementAndGet();
+			return;
+		}
+		callerDeliveries.incrementAndGet();
+		List<NewComment> batch = new ArrayList<NewComment>(1);
+		batch.add(newComment);
+		deliver(batch);
+	}
+
+	/**
+	 * Queues a new comment while the dispatcher is running, waiting for room up
+	 * to the offer timeout
+	 * @return false if the comment was not queued
+	 */
+	private boolean enqueue(NewComment newComment) {
+		runningLock.readLock().lock();
+		try {
+			return running && queue.offer(newComment, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			runningLock.readLock().unlock();
+		}
+	}
+
+	private void work() {
+		List<NewComment> batch = new ArrayList<NewComment>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				NewComment first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				deliver(batch);
+				recordLag(first.queuedAt);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Groups the notifications of a batch by follower so that every follower's
+	 * list is updated once per batch.
+	 */
+	private void deliver(List<NewComment> batch) {
+		Map<User, List<Notification>> notificationsPerFollower;
+		try {
+			notificationsPerFollower = groupByFollower(batch);
+		} catch (RuntimeException e) {
+			if (batch.size() == 1) {
+				failedComments.incrementAndGet();
+				System.out.println("Notifications of comment " + batch.get(0).comment.getId() + " were not delivered: "
+						+ e);
+				return;
+			}
+			for (NewComment newComment : batch) {
+				deliver(Collections.singletonList(newComment));
+			}
+			return;
+		}
+		long notifications = 0;
+		for (Map.Entry<User, List<Notification>> entry : notificationsPerFollower.entrySet()) {
+			try {
+				userDao.addAllToListOfNotifications(entry.getKey(), entry.getValue());
+				notifications += entry.getValue().size();
+			} catch (RuntimeException e) {
+				failedNotifications.addAndGet(entry.getValue().size());
+				System.out.println("Notifications of " + entry.getKey().getUsername() + " were not delivered: " + e);
+			}
+		}
+		deliveredComments.addAndGet(batch.size());
+		deliveredNotifications.addAndGet(notifications);
+	}
+
+	private Map<User, List<Notification>> groupByFollower(List<NewComment> batch) {
+		Map<User, List<Notification>> notificationsPerFollower = new IdentityHashMap<User, List<Notification>>();
+		for (NewComment newComment : batch) {
+			for (User follower : catalogueItemDao.getAllFollowers(newComment.item)) {
+				List<Notification> notifications = notificationsPerFollower.get(follower);
+				if (notifications == null) {
+					notifications = new ArrayList<Notification>();
+					notificationsPerFollower.put(follower, notifications);
+				}
+				notifications.add(new Notification(newComment.item, newComment.comment, newComment.logPosition,
+						newComment.linkToComment));
+			}
+		}
+		return notificationsPerFollower;
+	}
+
+	private void recordLag(long queuedAt) {
+		long lag = System.nanoTime() - queuedAt;
+		lastDeliveryLagNanos = lag;
+		maxDeliveryLagNanos.accumulateAndGet(lag, Math::max);
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public long getOldestPendingLagMillis() {
+		NewComment oldest = queue.peek();
+		return oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.queuedAt);
+	}
+
+	@Override
+	public long getLastDeliveryLagMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lastDeliveryLagNanos);
+	}
+
+	@Override
+	public long getMaxDeliveryLagMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxDeliveryLagNanos.get());
+	}
+
+	@Override
+	public long getQueuedComments() {
+		return queuedComments.get();
+	}
+
+	@Override
+	public long getDeliveredComments() {
+		return deliveredComments.get();
+	}
+
+	@Override
+	public long getDeliveredNotifications() {
+		return deliveredNotifications.get();
+	}
+
+	@Override
+	public long getCallerDeliveries() {
+		return callerDeliveries.get();
+	}
+
+	@Override
+	public long getFailedComments() {
+		return failedComments.get();
+	}
+
+	@Override
+	public long getFailedNotifications() {
+		return failedNotifications.get();
+	}
+
+	private static final class NewComment {
+
+		private final CatalogueItem item;
+		private final Comment comment;
+		private final int logPosition;
+		private final Link linkToComment;
+		private final long queuedAt = System.nanoTime();
+
+		private NewComment(CatalogueItem item, Comment comment, int logPosition, Link linkToComment) {
+			this.item = item;
+			this.comment = comment;
+			this.logPosition = logPosition;
+			this.linkToComment = linkToComment;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package org.crowdlib.notifications;
+
+/**
+ * Metrics of the {@link NotificationDispatcher}, published over JMX.
+ */
+public interface NotificationDispatcherMXBean {
+
+	/**
+	 * @return Number of new comments waiting to be delivered to their followers
+	 */
+	public int getQueueDepth();
+
+	/**
+	 * @return Maximum number of new comments that can wait in the queue
+	 */
+	public int getQueueCapacity();
+
+	/**
+	 * @return Time the oldest waiting comment has spent in the queue, 0 if the queue is empty
+	 */
+	public long getOldestPendingLagMillis();
+
+	/**
+	 * @return Time between queueing and delivery of the oldest comment of the last batch
+	 */
+	public long getLastDeliveryLagMillis();
+
+	/**
+	 * @return Largest delivery lag seen since the dispatcher was started
+	 */
+	public long getMaxDeliveryLagMillis();
+
+	/**
+	 * @return Number of new comments queued for delivery
+	 */
+	public long getQueuedComments();
+
+	/**
+	 * @return Number of new comments whose followers were read and notified
+	 */
+	public long getDeliveredComments();
+
+	/**
+	 * @return Number of notifications added to followers' lists
+	 */
+	public long getDeliveredNotifications();
+
+	/**
+	 * @return Number of new comments delivered on the posting thread because the queue stayed full
+	 *         for the offer timeout or the dispatcher was stopped
+	 */
+	public long getCallerDeliveries();
+
+	/**
+	 * @return Number of new comments not delivered because their followers could not be read
+	 */
+	public long getFailedComments();
+
+	/**
+	 * @return Number of notifications not delivered because a follower's list could not be updated
+	 */
+	public long getFailedNotifications();
+}
@@ -0,0 +1,21 @@
+package org.crowdlib.notifications;
+
+/**
+ * How followers learn about new comments on the items they follow.
+ */
+public enum NotificationMode {
+
+	/**
+	 * A notification is added to the list of every follower when a comment is
+	 * posted. Reading notifications is cheap, posting costs one notification per
+	 * follower.
+	 */
+	FAN_OUT_ON_WRITE,
+
+	/**
+	 * Posting only appends to the item's comment log. Notifications are computed
+	 * when they are read, from the comments each followed item received after the
+	 * user's read watermark for it.
+	 */
+	FAN_OUT_ON_READ
+}
@@ -0,0 +1,171 @@
+package org.crowdlib.notifications;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.CommentLinks;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.crowdlib.model.CatalogueItemDao;
+import org.crowdlib.model.CommentPage;
+import org.crowdlib.model.DaoFactory;
+import org.crowdlib.model.UserDao;
+import org.glassfish.jersey.media.sse.EventOutput;
+
+/**
+ * Keeps the notifications of item followers up to date according to the
+ * configured {@link NotificationMode}. The mode is chosen once at startup,
+ * switching it later does not carry over pending notifications.
+ *
+ * In both modes what a user has seen is tracked by a read watermark per
+ * followed item, so marking a page of comments as seen costs the same however
+ * many notifications are pending.
+ */
+public class NotificationService {
+
+	private static volatile NotificationMode mode = NotificationMode.FAN_OUT_ON_WRITE;
+
+	private static volatile NotificationDispatcher dispatcher;
+
+	private static volatile NotificationStreams streams = new NotificationStreams(2, 256);
+
+	private CatalogueItemDao catalogueItemDao;
+	private UserDao userDao;
+
+	public NotificationService() {
+		this.catalogueItemDao = DaoFactory.getCatalogueItemDao();
+		this.userDao = DaoFactory.getUserDao();
+	}
+
+	public static NotificationMode getMode() {
+		return mode;
+	}
+
+	public static void setMode(NotificationMode notificationMode) {
+		mode = notificationMode;
+	}
+
+	public static NotificationDispatcher getDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * Hands the delivery of new comments in fan-out-on-write mode to a background
+	 * dispatcher
+	 * @param notificationDispatcher The dispatcher, null to deliver while the comment is posted
+	 */
+	public static void setDispatcher(NotificationDispatcher notificationDispatcher) {
+		dispatcher = notificationDispatcher;
+	}
+
+	public static NotificationStreams getStreams() {
+		return streams;
+	}
+
+	public static void setStreams(NotificationStreams notificationStreams) {
+		streams = notificationStreams;
+	}
+
+	/**
+	 * Notifies the followers of an item about a comment that has just been added to it
+	 * @param item Item the comment was added to
+	 * @param comment The new comment
+	 * @param logPosition Position of the new comment in the item's comment log
+	 * @param linkToComment Link to the new comment
+	 */
+	public void commentAdded(CatalogueItem item, Comment comment, int logPosition, Link linkToComment) {
+		streams.publish(new Notification(item, comment, logPosition, linkToComment));
+		if (mode == NotificationMode.FAN_OUT_ON_READ) {
+			// the comment log of the item is all followers need
+			return;
+		}
+		NotificationDispatcher currentDispatcher = dispatcher;
+		if (currentDispatcher != null) {
+			currentDispatcher.dispatch(item, comment, logPosition, linkToComment);
+			return;
+		}
+		for (User follower : catalogueItemDao.getAllFollowers(item)) {
+			userDao.addToListOfNotifications(follower, new Notification(item, comment, logPosition, linkToComment));
+		}
+	}
+
+	/**
+	 * Retrieves the notifications the user has not seen yet
+	 * @param user User specified
+	 * @return List of the user's notifications
+	 */
+	public List<Notification> getNotifications(User user) {
+		if (mode == NotificationMode.FAN_OUT_ON_WRITE) {
+			return userDao.getUnseenNotifications(user);
+		}
+		List<Notification> notifications = new ArrayList<Notification>();
+		for (CatalogueItem item : userDao.getUserFollowedItems(user)) {
+			int watermark = userDao.getReadWatermark(user, item);
+			CommentPage unseen = catalogueItemDao.getCommentsAfter(item, watermark, Integer.MAX_VALUE);
+			int position = Math.max(watermark, -1);
+			for (Comment comment : unseen.getComments()) {
+				notifications.add(
+						new Notification(item, comment, ++position, CommentLinks.toComment(comment, "comment")));
+			}
+		}
+		return notifications;
+	}
+
+	/**
+	 * Marks a single comment as seen by the user
+	 * @param user User specified
+	 * @param comment The comment seen
+	 */
+	public void commentSeen(User user, Comment comment) {
+		if (mode == NotificationMode.FAN_OUT_ON_WRITE) {
+			// a comment seen out of order is below no watermark, drop its notification directly
+			userDao.adjustListOfNotificationsAfterCommentIsSeen(user, comment);
+		}
+		CatalogueItem item = comment.getCatalogueItem();
+		if (item == null) {
+			return;
+		}
+		// the watermark can only move past this comment if it is the next unseen one
+		int watermark = userDao.getReadWatermark(user, item);
+		List<Comment> next = catalogueItemDao.getCommentsAfter(item, watermark, 1).getComments();
+		if (!next.isEmpty() && next.get(0) == comment) {
+			userDao.advanceReadWatermark(user, item, watermark + 1);
+		}
+	}
+
+	/**
+	 * Marks a page of an item's comments as seen by the user
+	 * @param user User specified
+	 * @param item Item the comments belong to
+	 * @param comments The comments seen
+	 * @param lastPosition Position of the last of these comments in the item's comment log
+	 */
+	public void commentsSeen(User user, CatalogueItem item, List<Comment> comments, int lastPosition) {
+		if (!comments.isEmpty()) {
+			userDao.advanceReadWatermark(user, item, lastPosition);
+		}
+	}
+
+	/**
+	 * Starts streaming the user's notifications to a Server-Sent Events connection,
+	 * beginning with the ones the user has not seen yet
+	 * @param user User specified
+	 * @param output Event output of the connection
+	 */
+	public void openStream(User user, EventOutput output) {
+		streams.open(user, userDao.getUserFollowedItems(user), output, getNotifications(user));
+	}
+
+	/**
+	 * Includes the comments of a newly followed item in the user's open streams
+	 * @param user User specified
+	 * @param item Item followed
+	 */
+	public void itemFollowed(User user, CatalogueItem item) {
+		streams.itemFollowed(user, item);
+	}
+}
@@ -0,0 +1,412 @@
+package org.crowdlib.notifications;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.MediaType;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+
+/**
+ * Open Server-Sent Events connections of users listening for notifications.
+ * Every connection is subscribed to the items its user follows, so a new
+ * comment only costs one buffer insertion per connected follower.
+ *
+ * Each connection has a bounded buffer that a shared pool of writer threads
+ * drains into its event output. A client that does not keep up fills its
+ * buffer and is disconnected; it gets the notifications it missed when it
+ * reconnects. Those are written from the collection they come in, ahead of
+ * the buffer, so a backlog of any size does not count against it.
+ *
+ * A heartbeat task sends an SSE comment line to every connection nothing has
+ * been written to for a heartbeat interval, so that proxies do not close idle
+ * connections and clients that went away are noticed by the failing write. A
+ * connection whose write has been blocked for longer than the write timeout
+ * is closed by the same task.
+ */
+public class NotificationStreams {
+
+	private static final String EVENT_NAME = "notification";
+
+	public static final long DEFAULT_HEARTBEAT_INTERVAL_MILLIS = 15000;
+
+	public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = 30000;
+
+	private static final OutboundEvent HEARTBEAT = new OutboundEvent.Builder().comment("heartbeat").build();
+
+	private static final long NOT_WRITING = Long.MIN_VALUE;
+
+	private final Executor writers;
+
+	private final int bufferSize;
+
+	private final long heartbeatIntervalNanos;
+
+	private final long writeTimeoutNanos;
+
+	private final boolean scheduleHeartbeats;
+
+	private volatile ScheduledExecutorService heartbeat;
+
+	private final ConcurrentHashMap<Integer, Set<Stream>> subscribersByItem = new ConcurrentHashMap<Integer, Set<Stream>>();
+
+	private final ConcurrentHashMap<String, Set<Stream>> streamsByUser = new ConcurrentHashMap<String, Set<Stream>>();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong timeouts = new AtomicLong();
+
+	/**
+	 * Creates the streams with their own pool of writer threads, and the
+	 * default heartbeat interval and write timeout
+	 * @param numberOfWriters Number of threads writing events to the connections
+	 * @param bufferSize Maximum number of events waiting to be written to one connection
+	 */
+	public NotificationStreams(int numberOfWriters, int bufferSize) {
+		this(numberOfWriters, bufferSize, DEFAULT_HEARTBEAT_INTERVAL_MILLIS, DEFAULT_WRITE_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Creates the streams with their own pool of writer threads and a heartbeat
+	 * task, started when the first stream opens
+	 * @param numberOfWriters Number of threads writing events to the connections
+	 * @param bufferSize Maximum number of events waiting to be written to one connection
+	 * @param heartbeatIntervalMillis Time without a write after which a connection gets a heartbeat
+	 * @param writeTimeoutMillis Time a write may block before its connection is closed
+	 */
+	public NotificationStreams(int numberOfWriters, int bufferSize, long heartbeatIntervalMillis,
+			long writeTimeoutMillis) {
+		this(newWriterPool(numberOfWriters), bufferSize, heartbeatIntervalMillis, writeTimeoutMillis, true);
+	}
+
+	/**
+	 * Creates the streams without a heartbeat task; {@link #sendHeartbeats()}
+	 * is called by hand
+	 */
+	NotificationStreams(Executor writers, int bufferSize, long heartbeatIntervalMillis, long writeTimeoutMillis) {
+		this(writers, bufferSize, heartbeatIntervalMillis, writeTimeoutMillis, false);
+	}
+
+	private NotificationStreams(Executor writers, int bufferSize, long heartbeatIntervalMillis,
+			long writeTimeoutMillis, boolean scheduleHeartbeats) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be positive");
+		}
+		if (heartbeatIntervalMillis <= 0 || writeTimeoutMillis <= 0) {
+			throw new IllegalArgumentException("Heartbeat interval and write timeout must be positive");
+		}
+		this.writers = writers;
+		this.bufferSize = bufferSize;
+		this.heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalMillis);
+		this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+		this.scheduleHeartbeats = scheduleHeartbeats;
+	}
+
+	/**
+	 * Opens a stream of the user's notifications on this event output. The
+	 * pending notifications are sent first, however many there are, so a
+	 * client may receive a notification twice if a comment is posted while the
+	 * stream opens; the event id identifies it.
+	 * @param user User listening
+	 * @param followedItems Items the user follows
+	 * @param output Event output of the connection
+	 * @param pending Notifications the user has not seen yet
+	 */
+	public void open(User user, Collection<CatalogueItem> followedItems, EventOutput output,
+			Collection<Notification> pending) {
+		Stream stream = new Stream(user.getUsername(), output, pending);
+		if (scheduleHeartbeats) {
+			startHeartbeat();
+		}
+		streamsByUser.computeIfAbsent(stream.username, username -> ConcurrentHashMap.<Stream> newKeySet()).add(stream);
+		for (CatalogueItem item : followedItems) {
+			subscribe(stream, item);
+		}
+		if (!pending.isEmpty()) {
+			stream.scheduleWrite();
+		}
+	}
+
+	/**
+	 * Subscribes the user's open streams to an item the user started following
+	 * @param user User specified
+	 * @param item Item followed
+	 */
+	public void itemFollowed(User user, CatalogueItem item) {
+		Set<Stream> streams = streamsByUser.get(user.getUsername());
+		if (streams == null) {
+			return;
+		}
+		for (Stream stream : streams) {
+			subscribe(stream, item);
+		}
+	}
+
+	/**
+	 * Pushes a notification to every stream subscribed to its item
+	 * @param notification Notification of a new comment
+	 */
+	public void publish(Notification notification) {
+		Set<Stream> subscribers = subscribersByItem.get(notification.getCatalogueItem().getId());
+		if (subscribers == null) {
+			return;
+		}
+		for (Stream stream : subscribers) {
+			stream.offer(notification);
+		}
+	}
+
+	/**
+	 * Retrieves the number of open streams of a user
+	 * @param user User specified
+	 * @return Number of open streams
+	 */
+	public int getNumberOfStreams(User user) {
+		Set<Stream> streams = streamsByUser.get(user.getUsername());
+		return streams == null ? 0 : streams.size();
+	}
+
+	/**
+	 * @return Number of connections closed because their client did not keep up
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return Number of connections closed because a write blocked for too long
+	 */
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	/**
+	 * Schedules a heartbeat on every connection idle for a heartbeat interval,
+	 * and closes those whose write has blocked for longer than the write timeout
+	 */
+	void sendHeartbeats() {
+		long now = System.nanoTime();
+		for (Set<Stream> streams : streamsByUser.values()) {
+			for (Stream stream : streams) {
+				stream.heartbeat(now);
+			}
+		}
+	}
+
+	private void startHeartbeat() {
+		if (heartbeat != null) {
+			return;
+		}
+		synchronized (this) {
+			if (heartbeat != null) {
+				return;
+			}
+			ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "notification-stream-heartbeat");
+				thread.setDaemon(true);
+				return thread;
+			});
+			// a tenth of the interval, so that an idle connection waits at most 10% more
+			long period = Math.max(1, heartbeatIntervalNanos / 10);
+			executor.scheduleWithFixedDelay(this::sendHeartbeatsQuietly, period, period, TimeUnit.NANOSECONDS);
+			heartbeat = executor;
+		}
+	}
+
+	/**
+	 * An exception would cancel the scheduled task, and with it every later
+	 * heartbeat
+	 */
+	private void sendHeartbeatsQuietly() {
+		try {
+			sendHeartbeats();
+		} catch (RuntimeException e) {
+			System.out.println("Sending heartbeats to notification streams failed: " + e.getMessage());
+		}
+	}
+
+	private void subscribe(Stream stream, CatalogueItem item) {
+		stream.itemIds.add(item.getId());
+		subscribersByItem.computeIfAbsent(item.getId(), itemId -> ConcurrentHashMap.<Stream> newKeySet()).add(stream);
+		// the stream may have been closed while subscribing
+		if (stream.closed.get()) {
+			unsubscribe(stream);
+		}
+	}
+
+	private void unsubscribe(Stream stream) {
+		for (Integer itemId : stream.itemIds) {
+			Set<Stream> subscribers = subscribersByItem.get(itemId);
+			if (subscribers != null) {
+				subscribers.remove(stream);
+			}
+		}
+		Set<Stream> streams = streamsByUser.get(stream.username);
+		if (streams != null) {
+			streams.remove(stream);
+		}
+	}
+
+	private static ExecutorService newWriterPool(int numberOfWriters) {
+		return Executors.newFixedThreadPool(numberOfWriters, runnable -> {
+			Thread thread = new Thread(runnable, "notification-stream-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * One open connection.
+	 */
+	private final class Stream implements Runnable {
+
+		private final String username;
+
+		private final EventOutput output;
+
+		private final BlockingQueue<Notification> buffer = new ArrayBlockingQueue<Notification>(bufferSize);
+
+		private final Set<Integer> itemIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+		private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+		private final AtomicBoolean heartbeatDue = new AtomicBoolean();
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private volatile long lastWrite = System.nanoTime();
+
+		private volatile long writeStarted = NOT_WRITING;
+
+		/**
+		 * Notifications pending when the stream opened, null once written; only
+		 * the writer of the stream touches it
+		 */
+		private Iterator<Notification> backlog;
+
+		private Stream(String username, EventOutput output, Collection<Notification> pending) {
+			this.username = username;
+			this.output = output;
+			this.backlog = pending.iterator();
+		}
+
+		/**
+		 * Buffers a notification and makes sure a writer will send it
+		 * @return false if the stream is closed
+		 */
+		private boolean offer(Notification notification) {
+			if (closed.get()) {
+				return false;
+			}
+			if (!buffer.offer(notification)) {
+				evictions.incrementAndGet();
+				close();
+				return false;
+			}
+			scheduleWrite();
+			return true;
+		}
+
+		private void scheduleWrite() {
+			if (writeScheduled.compareAndSet(false, true)) {
+				writers.execute(this);
+			}
+		}
+
+		/**
+		 * Closes the stream if its write has blocked for too long, or has a
+		 * heartbeat written if nothing else has been for a while
+		 */
+		private void heartbeat(long now) {
+			if (closed.get()) {
+				return;
+			}
+			long started = writeStarted;
+			if (started != NOT_WRITING && now - started > writeTimeoutNanos) {
+				timeouts.incrementAndGet();
+				close();
+				return;
+			}
+			if (started != NOT_WRITING || now - lastWrite < heartbeatIntervalNanos) {
+				return;
+			}
+			heartbeatDue.set(true);
+			scheduleWrite();
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (heartbeatDue.getAndSet(false) && !closed.get()) {
+					write(HEARTBEAT);
+				}
+				if (backlog != null) {
+					while (!closed.get() && backlog.hasNext()) {
+						write(toEvent(backlog.next()));
+					}
+					backlog = null;
+				}
+				Notification notification;
+				while (!closed.get() && (notification = buffer.poll()) != null) {
+					write(toEvent(notification));
+				}
+			} catch (IOException | RuntimeException e) {
+				// the client went away
+				close();
+				return;
+			} finally {
+				writeScheduled.set(false);
+			}
+			// a notification or heartbeat may have come after the last poll but before the flag was cleared
+			if ((!buffer.isEmpty() || heartbeatDue.get()) && !closed.get() && writeScheduled.compareAndSet(false, true)) {
+				writers.execute(this);
+			}
+		}
+
+		private void write(OutboundEvent event) throws IOException {
+			writeStarted = System.nanoTime();
+			try {
+				output.write(event);
+			} finally {
+				lastWrite = System.nanoTime();
+				writeStarted = NOT_WRITING;
+			}
+		}
+
+		private OutboundEvent toEvent(Notification notification) {
+			return new OutboundEvent.Builder().name(EVENT_NAME)
+					.id(notification.getCatalogueItem().getId() + ":" + notification.getLogPosition())
+					.mediaType(MediaType.APPLICATION_JSON_TYPE).data(Notification.class, notification).build();
+		}
+
+		private void close() {
+			if (!closed.compareAndSet(false, true)) {
+				return;
+			}
+			unsubscribe(this);
+			buffer.clear();
+			try {
+				output.close();
+			} catch (IOException e) {
+				// already disconnected
+			}
+		}
+	}
+}
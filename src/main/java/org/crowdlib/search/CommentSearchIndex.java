@@ -0,0 +1,332 @@
+package org.crowdlib.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.StampedLock;
+
+import org.crowdlib.inmemory.collections.IntBitmap;
+
+/**
+ * An inverted index over the content of comments. Content is split into words
+ * of letters and digits, folded to lower case, and every word points to the
+ * comments containing it through a {@link PostingList}. A search reads the
+ * posting lists of its words only, merging them document by document, and
+ * keeps the best hits in a heap as big as the number asked for. Comments are
+ * ranked by BM25 without length normalization: rare words count for more than
+ * common ones, words repeated in a comment count for a little more, and ties go
+ * to the newer comment.
+ *
+ * Comments are numbered in the order they are added and kept in segments of
+ * {@link #SEGMENT_SIZE}, each with posting lists of its own. When the estimated
+ * size of the index goes over its budget, the oldest segments are dropped, so
+ * the index covers the most recent comments that fit. Deleted comments are
+ * only marked, and filtered out of results; a comment that is not indexed, or
+ * no longer, is not marked, and the marks of a dropped segment go with it.
+ *
+ * Searches share a lock that additions and deletions hold alone.
+ */
+public class CommentSearchIndex {
+
+	static final int SEGMENT_SIZE = 16384;
+
+	public static final long DEFAULT_BUDGET_BYTES = 64L << 20;
+
+	private static final int MAX_WORD_LENGTH = 32;
+
+	private static final double K1 = 1.2;
+
+	/**
+	 * Estimated cost of a word in a segment besides its postings: the String,
+	 * its characters, the entry of the hash map and the posting list object
+	 */
+	private static final int WORD_OVERHEAD_BYTES = 104;
+
+	private static volatile long defaultBudgetBytes = DEFAULT_BUDGET_BYTES;
+
+	private final long budgetBytes;
+
+	private final StampedLock lock = new StampedLock();
+
+	private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+
+	private final IntBitmap indexedCommentIds = new IntBitmap();
+
+	private final IntBitmap deletedCommentIds = new IntBitmap();
+
+	private long sizeInBytes;
+
+	private int documents;
+
+	public CommentSearchIndex() {
+		this(defaultBudgetBytes);
+	}
+
+	/**
+	 * @param budgetBytes Estimated size the index is kept within
+	 */
+	public CommentSearchIndex(long budgetBytes) {
+		this.budgetBytes = budgetBytes;
+	}
+
+	/**
+	 * Sets the budget of the indexes created from now on without one
+	 * @param budgetBytes Estimated size an index is kept within
+	 */
+	public static void setDefaultBudget(long budgetBytes) {
+		defaultBudgetBytes = budgetBytes;
+	}
+
+	/**
+	 * Indexes the content of a comment
+	 * @param commentId Id of the comment
+	 * @param content Content of the comment, may be null
+	 */
+	public void add(int commentId, String content) {
+		Map<String, Integer> frequencies = new HashMap<String, Integer>();
+		for (String word : words(content)) {
+			frequencies.merge(word, 1, Integer::sum);
+		}
+		if (frequencies.isEmpty()) {
+			return;
+		}
+		long stamp = lock.writeLock();
+		try {
+			Segment segment = segments.peekLast();
+			if (segment == null || segment.documents == SEGMENT_SIZE) {
+				segment = new Segment();
+				segments.addLast(segment);
+				sizeInBytes += segment.sizeInBytes;
+			}
+			long before = segment.sizeInBytes;
+			segment.add(commentId, frequencies);
+			sizeInBytes += segment.sizeInBytes - before;
+			documents++;
+			indexedCommentIds.add(commentId);
+			while (totalSizeInBytes() > budgetBytes && segments.size() > 1) {
+				Segment dropped = segments.removeFirst();
+				sizeInBytes -= dropped.sizeInBytes;
+				documents -= dropped.documents;
+				for (int document = 0; document < dropped.documents; document++) {
+					indexedCommentIds.remove(dropped.commentIds[document]);
+					deletedCommentIds.remove(dropped.commentIds[document]);
+				}
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Leaves a deleted comment out of the results from now on
+	 * @param commentId Id of the comment
+	 */
+	public void remove(int commentId) {
+		long stamp = lock.writeLock();
+		try {
+			if (indexedCommentIds.contains(commentId)) {
+				deletedCommentIds.add(commentId);
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Finds the comments containing the words of a query
+	 * @param query Words to be found, in any order
+	 * @param limit Maximum number of comments found
+	 * @return Ids of the comments containing any of the words, best match first
+	 */
+	public int[] search(String query, int limit) {
+		List<String> words = new ArrayList<String>(new LinkedHashSet<String>(words(query)));
+		if (words.isEmpty() || limit <= 0) {
+			return new int[0];
+		}
+		PriorityQueue<Hit> best = new PriorityQueue<Hit>(limit);
+		long stamp = lock.readLock();
+		try {
+			double[] weights = weights(words);
+			long segmentNumber = 0;
+			for (Segment segment : segments) {
+				search(segment, segmentNumber++ * SEGMENT_SIZE, words, weights, limit, best);
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+		int[] commentIds = new int[best.size()];
+		for (int i = commentIds.length - 1; i >= 0; i--) {
+			commentIds[i] = best.poll().commentId;
+		}
+		return commentIds;
+	}
+
+	/**
+	 * @return Estimated size of the index in bytes
+	 */
+	public long getSizeInBytes() {
+		long stamp = lock.readLock();
+		try {
+			return totalSizeInBytes();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private long totalSizeInBytes() {
+		return sizeInBytes + indexedCommentIds.getSizeInBytes() + deletedCommentIds.getSizeInBytes();
+	}
+
+	/**
+	 * Splits text into the words it is indexed by
+	 * @param text Text to be split, may be null
+	 * @return Words in the order they occur, repeated as often as they do
+	 */
+	static List<String> words(String text) {
+		List<String> words = new ArrayList<String>();
+		if (text == null) {
+			return words;
+		}
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (inWord && start < 0) {
+				start = i;
+			} else if (!inWord && start >= 0) {
+				if (i - start <= MAX_WORD_LENGTH) {
+					words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				}
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * The inverse document frequency of each word over the whole index
+	 */
+	private double[] weights(List<String> words) {
+		double[] weights = new double[words.size()];
+		for (int w = 0; w < weights.length; w++) {
+			int containing = 0;
+			for (Segment segment : segments) {
+				PostingList postings = segment.postings.get(words.get(w));
+				if (postings != null) {
+					containing += postings.documents();
+				}
+			}
+			weights[w] = Math.log(1 + (documents - containing + 0.5) / (containing + 0.5));
+		}
+		return weights;
+	}
+
+	private void search(Segment segment, long firstOrder, List<String> words, double[] weights, int limit,
+			PriorityQueue<Hit> best) {
+		PostingList.Cursor[] cursors = new PostingList.Cursor[words.size()];
+		for (int w = 0; w < cursors.length; w++) {
+			PostingList postings = segment.postings.get(words.get(w));
+			if (postings != null) {
+				cursors[w] = postings.cursor();
+				cursors[w].next();
+			}
+		}
+		while (true) {
+			int document = PostingList.Cursor.END;
+			for (PostingList.Cursor cursor : cursors) {
+				if (cursor != null && cursor.document() < document) {
+					document = cursor.document();
+				}
+			}
+			if (document == PostingList.Cursor.END) {
+				return;
+			}
+			double score = 0;
+			for (int w = 0; w < cursors.length; w++) {
+				PostingList.Cursor cursor = cursors[w];
+				if (cursor == null || cursor.document() != document) {
+					continue;
+				}
+				int frequency = cursor.frequency();
+				score += weights[w] * frequency * (K1 + 1) / (frequency + K1);
+				cursor.next();
+			}
+			int commentId = segment.commentIds[document];
+			if (deletedCommentIds.contains(commentId)) {
+				continue;
+			}
+			long order = firstOrder + document;
+			if (best.size() < limit) {
+				best.add(new Hit(score, order, commentId));
+			} else if (best.peek().isWorseThan(score, order)) {
+				best.poll();
+				best.add(new Hit(score, order, commentId));
+			}
+		}
+	}
+
+	/**
+	 * Up to {@link #SEGMENT_SIZE} comments numbered from 0 in the order they
+	 * were added, with the posting lists of the words they contain
+	 */
+	private static final class Segment {
+
+		final int[] commentIds = new int[SEGMENT_SIZE];
+
+		final Map<String, PostingList> postings = new HashMap<String, PostingList>();
+
+		int documents;
+
+		long sizeInBytes = SEGMENT_SIZE * 4L;
+
+		void add(int commentId, Map<String, Integer> frequencies) {
+			int document = documents++;
+			commentIds[document] = commentId;
+			for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+				PostingList postingList = postings.get(entry.getKey());
+				if (postingList == null) {
+					postingList = new PostingList();
+					postings.put(entry.getKey(), postingList);
+					sizeInBytes += WORD_OVERHEAD_BYTES + 2 * entry.getKey().length() + postingList.capacity();
+				}
+				int capacity = postingList.capacity();
+				postingList.add(document, entry.getValue());
+				sizeInBytes += postingList.capacity() - capacity;
+			}
+		}
+	}
+
+	/**
+	 * A comment found, ordered worst first so that the heap drops the worst
+	 */
+	private static final class Hit implements Comparable<Hit> {
+
+		final double score;
+
+		final long order;
+
+		final int commentId;
+
+		Hit(double score, long order, int commentId) {
+			this.score = score;
+			this.order = order;
+			this.commentId = commentId;
+		}
+
+		boolean isWorseThan(double otherScore, long otherOrder) {
+			return score < otherScore || (score == otherScore && order < otherOrder);
+		}
+
+		@Override
+		public int compareTo(Hit other) {
+			if (score != other.score) {
+				return Double.compare(score, other.score);
+			}
+			return Long.compare(order, other.order);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package org.crowdlib.search;
+
+/**
+ * The documents of a segment containing one term, in ascending order, each
+ * with the number of times it contains the term. Both are written as varints,
+ * the documents as the gap from the previous one, so a term found in every
+ * document of a segment costs two bytes a document.
+ */
+final class PostingList {
+
+	private byte[] bytes = new byte[8];
+
+	private int length;
+
+	private int lastDocument = -1;
+
+	private int documents;
+
+	/**
+	 * Appends a document, which must come after every document already in the list
+	 * @param document Number of the document in its segment
+	 * @param frequency Number of times the document contains the term
+	 */
+	void add(int document, int frequency) {
+		if (length + 10 > bytes.length) {
+			byte[] grown = new byte[bytes.length * 2];
+			System.arraycopy(bytes, 0, grown, 0, length);
+			bytes = grown;
+		}
+		writeVarint(document - lastDocument);
+		writeVarint(frequency);
+		lastDocument = document;
+		documents++;
+	}
+
+	/**
+	 * @return Number of documents containing the term
+	 */
+	int documents() {
+		return documents;
+	}
+
+	/**
+	 * @return Bytes allocated for the postings
+	 */
+	int capacity() {
+		return bytes.length;
+	}
+
+	Cursor cursor() {
+		return new Cursor();
+	}
+
+	private void writeVarint(int value) {
+		while ((value & ~0x7F) != 0) {
+			bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[length++] = (byte) value;
+	}
+
+	/**
+	 * Reads the list from the start, one document at a time
+	 */
+	final class Cursor {
+
+		static final int END = Integer.MAX_VALUE;
+
+		private int position;
+
+		private int document = -1;
+
+		private int frequency;
+
+		/**
+		 * Moves to the next document
+		 * @return The document, or {@link #END} after the last one
+		 */
+		int next() {
+			if (position >= length) {
+				return document = END;
+			}
+			document += readVarint();
+			frequency = readVarint();
+			return document;
+		}
+
+		int document() {
+			return document;
+		}
+
+		int frequency() {
+			return frequency;
+		}
+
+		private int readVarint() {
+			int value = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = bytes[position++];
+				value |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package org.crowdlib.text;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.crowdlib.entities.Utf8Text;
+
+/**
+ * Append-only store of UTF-8 text in direct buffers, outside the heap the
+ * garbage collector has to trace and copy. Texts are packed one after the
+ * other into chunks, and a new chunk is allocated when the current one is
+ * full. The space of a text is never reused, so the arena suits text that is
+ * rarely replaced, such as the content of comments.
+ */
+public class OffHeapTextArena {
+
+	public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+	private final int chunkSize;
+
+	private ByteBuffer chunk;
+
+	private long reservedBytes;
+
+	private long storedBytes;
+
+	/**
+	 * @param chunkSize Size of the direct buffers allocated, texts longer than
+	 * this get a buffer of their own
+	 */
+	public OffHeapTextArena(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Copies a text into the arena
+	 * @param text Text to be stored
+	 * @return Reference to the stored UTF-8 bytes
+	 */
+	public Utf8Text store(String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		synchronized (this) {
+			if (chunk == null || chunk.remaining() < bytes.length) {
+				chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, bytes.length));
+				reservedBytes += chunk.capacity();
+			}
+			int offset = chunk.position();
+			chunk.put(bytes);
+			storedBytes += bytes.length;
+			return new Utf8Text(chunk, offset, bytes.length);
+		}
+	}
+
+	/**
+	 * @return Bytes of direct memory allocated by the arena
+	 */
+	public synchronized long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	/**
+	 * @return Bytes of text stored, including texts that were since replaced
+	 */
+	public synchronized long getStoredBytes() {
+		return storedBytes;
+	}
+}
@@ -0,0 +1,43 @@
+package org.crowdlib.text;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.crowdlib.entities.Utf8Text;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Writes a {@link Utf8Text} as a JSON string without decoding it. Its bytes
+ * are copied into a per-thread scratch array and handed to the generator as
+ * they are, which escapes them on the way out. Generators writing characters
+ * rather than bytes cannot take UTF-8, so they get the decoded String. Any
+ * other value is written as its String form.
+ */
+public class Utf8TextSerializer extends JsonSerializer<Object> {
+
+	private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[1024];
+		}
+	};
+
+	@Override
+	public void serialize(Object value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+		if (!(value instanceof Utf8Text) || !(generator.getOutputTarget() instanceof OutputStream)) {
+			generator.writeString(value.toString());
+			return;
+		}
+		Utf8Text text = (Utf8Text) value;
+		byte[] scratch = SCRATCH.get();
+		if (scratch.length < text.length()) {
+			scratch = new byte[text.length()];
+			SCRATCH.set(scratch);
+		}
+		text.copyTo(scratch);
+		generator.writeUTF8String(scratch, 0, text.length());
+	}
+}
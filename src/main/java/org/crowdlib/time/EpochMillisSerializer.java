@@ -0,0 +1,114 @@
+package org.crowdlib.time;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.Month;
+
+import org.crowdlib.entities.Comment;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Writes milliseconds since the epoch as the object Jackson writes for a
+ * {@link java.time.LocalDateTime} read as a bean, in local time, so clients
+ * that read timestamps from when they were kept as LocalDateTime still can.
+ * The fields are worked out from the number; no date or time object is
+ * created. {@link Comment#NO_CREATION_TIMESTAMP} is written as null.
+ */
+public class EpochMillisSerializer extends JsonSerializer<Long> {
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	// days from 0000-03-01 to 1970-01-01, counting in the proleptic Gregorian calendar
+	private static final long DAYS_TO_EPOCH_FROM_MARCH_OF_YEAR_0 = 719468;
+
+	private static final int[] DAYS_BEFORE_MONTH = { 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334 };
+
+	private static final SerializedString NANO = new SerializedString("nano");
+	private static final SerializedString YEAR = new SerializedString("year");
+	private static final SerializedString MONTH_VALUE = new SerializedString("monthValue");
+	private static final SerializedString DAY_OF_MONTH = new SerializedString("dayOfMonth");
+	private static final SerializedString HOUR = new SerializedString("hour");
+	private static final SerializedString MINUTE = new SerializedString("minute");
+	private static final SerializedString SECOND = new SerializedString("second");
+	private static final SerializedString MONTH = new SerializedString("month");
+	private static final SerializedString DAY_OF_WEEK = new SerializedString("dayOfWeek");
+	private static final SerializedString DAY_OF_YEAR = new SerializedString("dayOfYear");
+	private static final SerializedString CHRONOLOGY = new SerializedString("chronology");
+	private static final SerializedString ID = new SerializedString("id");
+	private static final SerializedString ISO = new SerializedString("ISO");
+	private static final SerializedString CALENDAR_TYPE = new SerializedString("calendarType");
+	private static final SerializedString ISO8601 = new SerializedString("iso8601");
+
+	private static final SerializedString[] MONTH_NAMES = new SerializedString[12];
+	private static final SerializedString[] DAY_OF_WEEK_NAMES = new SerializedString[7];
+
+	static {
+		for (Month month : Month.values()) {
+			MONTH_NAMES[month.ordinal()] = new SerializedString(month.name());
+		}
+		for (DayOfWeek day : DayOfWeek.values()) {
+			DAY_OF_WEEK_NAMES[day.ordinal()] = new SerializedString(day.name());
+		}
+	}
+
+	@Override
+	public void serialize(Long value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+		long epochMillis = value.longValue();
+		if (epochMillis == Comment.NO_CREATION_TIMESTAMP) {
+			generator.writeNull();
+			return;
+		}
+		long localMillis = MonotonicClock.toLocalMillis(epochMillis);
+		long epochDay = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+		int millisOfDay = (int) Math.floorMod(localMillis, MILLIS_PER_DAY);
+
+		// civil date from a day count, counting years from March so that the leap day comes last
+		long days = epochDay + DAYS_TO_EPOCH_FROM_MARCH_OF_YEAR_0;
+		long era = Math.floorDiv(days, 146097);
+		int dayOfEra = (int) (days - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfMarchYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int marchMonth = (5 * dayOfMarchYear + 2) / 153;
+		int dayOfMonth = dayOfMarchYear - (153 * marchMonth + 2) / 5 + 1;
+		int month = marchMonth < 10 ? marchMonth + 3 : marchMonth - 9;
+		int year = (int) (era * 400 + yearOfEra) + (month <= 2 ? 1 : 0);
+		boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+		int dayOfYear = DAYS_BEFORE_MONTH[month - 1] + dayOfMonth + (leap && month > 2 ? 1 : 0);
+		// 1970-01-01 was a Thursday
+		long dayOfWeek = Math.floorMod(epochDay + 3, 7L);
+
+		generator.writeStartObject();
+		generator.writeFieldName(NANO);
+		generator.writeNumber(millisOfDay % 1000 * 1000000);
+		generator.writeFieldName(YEAR);
+		generator.writeNumber(year);
+		generator.writeFieldName(MONTH_VALUE);
+		generator.writeNumber(month);
+		generator.writeFieldName(DAY_OF_MONTH);
+		generator.writeNumber(dayOfMonth);
+		generator.writeFieldName(HOUR);
+		generator.writeNumber(millisOfDay / 3600000);
+		generator.writeFieldName(MINUTE);
+		generator.writeNumber(millisOfDay / 60000 % 60);
+		generator.writeFieldName(SECOND);
+		generator.writeNumber(millisOfDay / 1000 % 60);
+		generator.writeFieldName(MONTH);
+		generator.writeString(MONTH_NAMES[month - 1]);
+		generator.writeFieldName(DAY_OF_WEEK);
+		generator.writeString(DAY_OF_WEEK_NAMES[(int) dayOfWeek]);
+		generator.writeFieldName(DAY_OF_YEAR);
+		generator.writeNumber(dayOfYear);
+		generator.writeFieldName(CHRONOLOGY);
+		generator.writeStartObject();
+		generator.writeFieldName(ID);
+		generator.writeString(ISO);
+		generator.writeFieldName(CALENDAR_TYPE);
+		generator.writeString(ISO8601);
+		generator.writeEndObject();
+		generator.writeEndObject();
+	}
+}
@@ -0,0 +1,67 @@
+package org.crowdlib.time;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Tells the time in milliseconds since the epoch without allocating. The wall
+ * clock is read once, when the class is loaded; from then on the time is
+ * advanced with {@link System#nanoTime()}, so it never goes backwards when
+ * the system clock is adjusted, at the price of drifting from it by as much
+ * as the adjustments add up to.
+ * Timestamps are shown in the time zone the JVM started in.
+ */
+public final class MonotonicClock {
+
+	private static final long EPOCH_MILLIS_AT_START = System.currentTimeMillis();
+
+	private static final long NANOS_AT_START = System.nanoTime();
+
+	private static final ZoneId ZONE = ZoneId.systemDefault();
+
+	private static final ZoneRules ZONE_RULES = ZONE.getRules();
+
+	// zones without daylight saving time, UTC among them, need no lookup
+	private static final int FIXED_OFFSET_SECONDS = ZONE_RULES.isFixedOffset()
+			? ZONE_RULES.getOffset(Instant.EPOCH).getTotalSeconds() : Integer.MIN_VALUE;
+
+	private MonotonicClock() {
+	}
+
+	/**
+	 * @return Milliseconds since 1970-01-01T00:00Z
+	 */
+	public static long currentTimeMillis() {
+		return EPOCH_MILLIS_AT_START + (System.nanoTime() - NANOS_AT_START) / 1000000;
+	}
+
+	/**
+	 * @param epochMillis Milliseconds since 1970-01-01T00:00Z
+	 * @return Milliseconds since 1970-01-01T00:00 local time, i.e. the local
+	 *         date and time counted as if they were UTC
+	 */
+	public static long toLocalMillis(long epochMillis) {
+		int offsetSeconds = FIXED_OFFSET_SECONDS != Integer.MIN_VALUE ? FIXED_OFFSET_SECONDS
+				: ZONE_RULES.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds();
+		return epochMillis + offsetSeconds * 1000L;
+	}
+
+	/**
+	 * The reverse of {@link #toLocalMillis(long)}. A local time skipped or
+	 * repeated around a daylight saving time change is resolved the way
+	 * {@link LocalDateTime#atZone(ZoneId)} resolves it.
+	 * @param localMillis Milliseconds since 1970-01-01T00:00 local time
+	 * @return Milliseconds since 1970-01-01T00:00Z
+	 */
+	public static long toEpochMillis(long localMillis) {
+		if (FIXED_OFFSET_SECONDS != Integer.MIN_VALUE) {
+			return localMillis - FIXED_OFFSET_SECONDS * 1000L;
+		}
+		LocalDateTime local = LocalDateTime.ofEpochSecond(Math.floorDiv(localMillis, 1000L),
+				(int) Math.floorMod(localMillis, 1000L) * 1000000, ZoneOffset.UTC);
+		return local.atZone(ZONE).toInstant().toEpochMilli();
+	}
+}
@@ -8,6 +8,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.ResourceContext;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Link;
@@ -18,12 +19,13 @@ import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.core.Response.Status;
 
 import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
 import org.crowdlib.exceptions.CatalogueItemNotFoundException;
 import org.crowdlib.exceptions.CustomizedWebApplicationException;
 import org.crowdlib.model.CatalogueItemDao;
-import org.crowdlib.model.CatalogueItemDaoImpl;
 import org.crowdlib.model.CommentDao;
 import org.crowdlib.model.CommentDaoImpl;
+import org.crowdlib.model.DaoFactory;
 import org.crowdlib.model.UserDao;
 import org.crowdlib.model.UserDaoImpl;
 
@@ -31,7 +33,13 @@ import org.crowdlib.model.UserDaoImpl;
 @PermitAll
 public class CatalogueItemResource {
 
+	private static final int DEFAULT_SEARCH_LIMIT = 20;
+
+	private static final int MAX_SEARCH_LIMIT = 100;
+
 	private CatalogueItemDao catalogueItemDao;
+
+	private CommentDao commentDao;
 	
 	@Context
 	private UriInfo uriInfo;
@@ -40,7 +48,8 @@ public class CatalogueItemResource {
 	ResourceContext rc;
 
 	public CatalogueItemResource() {
-		this.catalogueItemDao = new CatalogueItemDaoImpl();
+		this.catalogueItemDao = DaoFactory.getCatalogueItemDao();
+		this.commentDao = DaoFactory.getCommentDao();
 	}
 	
 	/**
@@ -62,13 +71,33 @@ public class CatalogueItemResource {
 	@Produces(MediaType.APPLICATION_JSON)
 	@Path("/{itemId}")
 	public CatalogueItem getCatalogueItem(@PathParam("itemId") Integer itemId) {
-		CatalogueItem item;
-		try {
-			item = catalogueItemDao.getById(itemId);
-			return item;
-		} catch (CatalogueItemNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
+		return catalogueItemDao.findById(itemId)
+				.orElseThrow(() -> new CustomizedWebApplicationException(Status.NOT_FOUND,
+						CatalogueItemNotFoundException.NOT_AVAILABLE_MESSAGE));
+	}
+
+
+	/**
+	 * Finds the comments of all catalogue items containing the words of a query,
+	 * best match first
+	 * @param query Words to be found, in any order and case
+	 * @param limit Maximum number of comments returned, 20 if not specified
+	 * @return a list of comments
+	 */
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	@Path("/search/comments")
+	public List<Comment> searchComments(@QueryParam("q") String query, @QueryParam("limit") Integer limit) {
+		if (query == null || query.trim().isEmpty()) {
+			throw new CustomizedWebApplicationException(Status.BAD_REQUEST, "Invalid query");
+		}
+		if (limit == null) {
+			limit = DEFAULT_SEARCH_LIMIT;
+		}
+		if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+			throw new CustomizedWebApplicationException(Status.BAD_REQUEST, "Invalid limit");
 		}
+		return commentDao.searchComments(query, limit);
 	}
 	
 	
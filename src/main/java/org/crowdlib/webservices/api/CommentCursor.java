@@ -0,0 +1,44 @@
+package org.crowdlib.webservices.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes comment log positions as opaque cursors for keyset pagination, so
+ * that clients do not build on the positions themselves.
+ */
+final class CommentCursor {
+
+	private static final String PREFIX = "c";
+
+	private CommentCursor() {
+	}
+
+	/**
+	 * Encodes a log position as a cursor
+	 * @param position Log position of the last comment a client has seen
+	 * @return An opaque cursor
+	 */
+	static String encode(int position) {
+		byte[] plain = (PREFIX + position).getBytes(StandardCharsets.US_ASCII);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(plain);
+	}
+
+	/**
+	 * Decodes a cursor produced by {@link #encode(int)}
+	 * @param cursor The cursor sent by the client
+	 * @return The log position encoded in the cursor
+	 * @throws IllegalArgumentException if the cursor was not produced by this class
+	 */
+	static int decode(String cursor) {
+		String plain = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+		if (!plain.startsWith(PREFIX)) {
+			throw new IllegalArgumentException("Not a comment cursor");
+		}
+		int position = Integer.parseInt(plain.substring(PREFIX.length()));
+		if (position < -1) {
+			throw new IllegalArgumentException("Not a comment cursor");
+		}
+		return position;
+	}
+}
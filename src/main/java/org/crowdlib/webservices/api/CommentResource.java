@@ -1,6 +1,5 @@
 package org.crowdlib.webservices.api;
 
-import java.net.URI;
 import java.util.List;
 
 import javax.annotation.security.PermitAll;
@@ -14,19 +13,17 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
-import javax.ws.rs.core.Link;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
-import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.core.Response.Status;
 
 import org.crowdlib.constants.ExplanatoryMessagesConstants;
 import org.crowdlib.constants.RoleTypeConstants;
 import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.CommentLinks;
 import org.crowdlib.entities.Comment;
-import org.crowdlib.entities.Notification;
 import org.crowdlib.entities.User;
 import org.crowdlib.exceptions.CatalogueItemNotFoundException;
 import org.crowdlib.exceptions.CommentNotFoundException;
@@ -35,19 +32,32 @@ import org.crowdlib.exceptions.UserNotFoundException;
 import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
 import org.crowdlib.inmemory.collections.InMemoryUserCollection;
 import org.crowdlib.model.CatalogueItemDao;
-import org.crowdlib.model.CatalogueItemDaoImpl;
 import org.crowdlib.model.CommentDao;
-import org.crowdlib.model.CommentDaoImpl;
+import org.crowdlib.model.CommentPage;
+import org.crowdlib.model.DaoFactory;
 import org.crowdlib.model.UserDao;
-import org.crowdlib.model.UserDaoImpl;
+import org.crowdlib.notifications.NotificationService;
 
 @Path("/")
 @PermitAll
 public class CommentResource {
 
+	private static final int DEFAULT_PAGE_SIZE = 20;
+
+	private static final String SORT_BY_FAVOURITES = "favourites";
+
+	private static final int DEFAULT_THREAD_DEPTH = 8;
+
+	private static final int MAX_THREAD_DEPTH = 64;
+
+	private static final int DEFAULT_THREAD_NODES = 200;
+
+	private static final int MAX_THREAD_NODES = 10000;
+
 	private CatalogueItemDao catalogueItemDao;
 	private UserDao userDao;
 	private CommentDao commentDao;
+	private NotificationService notificationService;
 
 	@Context
 	private SecurityContext securityContext;
@@ -57,9 +67,10 @@ public class CommentResource {
 	
 
 	public CommentResource() {
-		this.catalogueItemDao = new CatalogueItemDaoImpl();
-		this.userDao = new UserDaoImpl();
-		this.commentDao = new CommentDaoImpl();
+		this.catalogueItemDao = DaoFactory.getCatalogueItemDao();
+		this.userDao = DaoFactory.getUserDao();
+		this.commentDao = DaoFactory.getCommentDao();
+		this.notificationService = new NotificationService();
 	}
 	
 	public void setSecurityContext(SecurityContext securityContext){
@@ -71,37 +82,90 @@ public class CommentResource {
 	}
 
 	/**
-	 * Retrives a list of the comments on this catalogue item
+	 * Retrives a list of the comments on this catalogue item. The comments are either paged by
+	 * offset (start and size) or by cursor (after and limit). In cursor mode the "Next Page" link
+	 * carries a cursor to the last comment on the page, so pages do not shift when comments are
+	 * added and following it later returns the comments posted since. With sort=favourites the
+	 * limit most favourited comments are returned instead, without paging; as they are not a run
+	 * of the comment log, they are not marked as seen.
 	 * @param itemId id of the item to be retrieved
 	 * @param start Start index of the subset of items to be retrieved
 	 * @param size Size of the subset of items to be retrieved
+	 * @param after Cursor returned in a previous "Next Page" link, absent for the first page
+	 * @param limit Maximum number of comments per page in cursor mode, or of comments sorted by favourites
+	 * @param sort "favourites" to get the most favourited comments, absent for the comments in the order
+	 * they were posted
 	 * @return A response containing all the comments on this item
 	 */
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	public Response getCatalogueItemComments(@PathParam("itemId") Integer itemId, @QueryParam("start") Integer start,
-			@QueryParam("size") Integer size) {
-		CatalogueItem currentCatalogueItem;
-		try {
-			currentCatalogueItem = catalogueItemDao.getById(itemId);
-			User currentUser = userDao.getUserByUsername(securityContext.getUserPrincipal().getName());
-			List<Comment> comments;
-			Response response;
-			if (start != null && size != null) {
-				comments = catalogueItemDao.getSubsetOfComments(currentCatalogueItem, start, size);
-				int newStart = adjustStartIndexForPagination(start, size, currentCatalogueItem);
-				response = Response.ok().entity(comments).link(uriInfo.getAbsolutePathBuilder()
-						.replaceQueryParam("start", newStart).replaceQueryParam("size", size).build(), "Next Page").build();
-			} else {
-				comments = catalogueItemDao.getAllComments(currentCatalogueItem);
-				response = Response.ok().entity(comments).build();
+			@QueryParam("size") Integer size, @QueryParam("after") String after, @QueryParam("limit") Integer limit,
+			@QueryParam("sort") String sort) {
+		CatalogueItem currentCatalogueItem = findCatalogueItem(itemId);
+		User currentUser = findCurrentUser();
+		if (sort != null) {
+			if (!sort.equals(SORT_BY_FAVOURITES)) {
+				throw new CustomizedWebApplicationException(Status.BAD_REQUEST, "Invalid sort");
 			}
-			userDao.adjustListOfNotificationsAfterAListOfCommentsIsSeen(currentUser, comments);
-			return response;
-		} catch (CatalogueItemNotFoundException | UserNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
+			return Response.ok().entity(catalogueItemDao.getMostFavouritedComments(currentCatalogueItem,
+					adjustLimitForPagination(limit))).build();
+		}
+		List<Comment> comments;
+		int lastPosition;
+		Response response;
+		if (after != null || limit != null) {
+			CommentPage page = catalogueItemDao.getCommentsAfter(currentCatalogueItem, decodeCursor(after),
+					adjustLimitForPagination(limit));
+			comments = page.getComments();
+			lastPosition = page.getLastPosition();
+			response = Response.ok().entity(comments).link(uriInfo.getAbsolutePathBuilder()
+					.replaceQueryParam("after", CommentCursor.encode(page.getLastPosition()))
+					.replaceQueryParam("limit", adjustLimitForPagination(limit)).build(), "Next Page").build();
+		} else if (start != null && size != null) {
+			comments = catalogueItemDao.getSubsetOfComments(currentCatalogueItem, start, size);
+			lastPosition = start + comments.size() - 1;
+			int newStart = adjustStartIndexForPagination(start, size, currentCatalogueItem);
+			response = Response.ok().entity(comments).link(uriInfo.getAbsolutePathBuilder()
+					.replaceQueryParam("start", newStart).replaceQueryParam("size", size).build(), "Next Page").build();
+		} else {
+			comments = catalogueItemDao.getAllComments(currentCatalogueItem);
+			lastPosition = comments.size() - 1;
+			response = Response.ok().entity(comments).build();
+		}
+		notificationService.commentsSeen(currentUser, currentCatalogueItem, comments, lastPosition);
+		return response;
+	}
+
+	/**
+	 * Decodes the cursor sent by the client
+	 * @param after Cursor from a "Next Page" link, or null for the first page
+	 * @return the comment log position to continue after
+	 */
+	private int decodeCursor(String after) {
+		if (after == null) {
+			return -1;
+		}
+		try {
+			return CommentCursor.decode(after);
+		} catch (IllegalArgumentException e) {
+			throw new CustomizedWebApplicationException(Status.BAD_REQUEST, "Invalid cursor");
 		}
+	}
 
+	/**
+	 * Applies the default page size when the client does not specify a limit
+	 * @param limit Limit requested by the client
+	 * @return the number of comments to put on a page
+	 */
+	private int adjustLimitForPagination(Integer limit) {
+		if (limit == null) {
+			return DEFAULT_PAGE_SIZE;
+		}
+		if (limit < 0) {
+			throw new CustomizedWebApplicationException(Status.BAD_REQUEST, "Invalid limit");
+		}
+		return limit;
 	}
  
 	/**
@@ -132,16 +196,10 @@ public class CommentResource {
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	public Comment getComment(@PathParam("commentId") Integer commentId) {
-		Comment comment;
-		try {
-			comment = commentDao.getById(commentId);
-			User currentUser = userDao.getUserByUsername(securityContext.getUserPrincipal().getName());
-			userDao.adjustListOfNotificationsAfterCommentIsSeen(currentUser, comment);
-			return comment;
-		} catch (CommentNotFoundException | UserNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
-		}
-
+		Comment comment = findComment(commentId);
+		User currentUser = findCurrentUser();
+		notificationService.commentSeen(currentUser, comment);
+		return comment;
 	}
 
 	/**
@@ -154,26 +212,13 @@ public class CommentResource {
 	@Produces(MediaType.APPLICATION_JSON)
 	@Consumes(MediaType.TEXT_PLAIN)
 	public Comment addCommentToCatalogueItem(@PathParam("itemId") Integer itemId, String commentContent) {
-		User currentUser;
-		try {
-			currentUser = userDao.getUserByUsername(securityContext.getUserPrincipal().getName());
-			CatalogueItem currentCatalogueItem = catalogueItemDao.getById(itemId);
-			Comment comment = commentDao.createComment(commentContent, currentUser, currentCatalogueItem);
-			URI uriToComment = getUriToComment(uriInfo, comment);
-			commentDao.adjustLinkToSelf(comment, Link.fromUri(uriToComment).rel("self").build());
-			commentDao.adjustLinkToReplies(comment,
-					Link.fromUri(UriBuilder.fromUri(uriToComment).path("replies").build()).rel("replies").build());
-			Link linkToComment = Link.fromUri(uriToComment).rel("comment").build();
-			catalogueItemDao.addComment(currentCatalogueItem, comment, linkToComment);
-			List<User> followers = catalogueItemDao.getAllFollowers(currentCatalogueItem);
-			for (User follower : followers) {
-				userDao.addToListOfNotifications(follower, new Notification(currentCatalogueItem, comment, linkToComment));
-			}
-			return comment;
-		} catch (UserNotFoundException | CatalogueItemNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
-		}
-
+		User currentUser = findCurrentUser();
+		CatalogueItem currentCatalogueItem = findCatalogueItem(itemId);
+		Comment comment = commentDao.createComment(commentContent, currentUser, currentCatalogueItem);
+		int logPosition = catalogueItemDao.addComment(currentCatalogueItem, comment);
+		notificationService.commentAdded(currentCatalogueItem, comment, logPosition,
+				CommentLinks.toComment(comment, "comment"));
+		return comment;
 	}
 
 	/**
@@ -188,21 +233,11 @@ public class CommentResource {
 	@Consumes(MediaType.TEXT_PLAIN)
 	public Comment addReplyToComment(@PathParam("commentId") Integer commentId,
 			String replyContent) {
-		User currentUser;
-		try {
-			currentUser = userDao.getUserByUsername(securityContext.getUserPrincipal().getName());
-			Comment comment = commentDao.getById(commentId);
-			Comment reply = commentDao.createComment(replyContent, currentUser, comment.getCatalogueItem());
-			commentDao.addReply(comment, reply);
-			URI uriToReply = getUriToReply(uriInfo, reply);
-			commentDao.adjustLinkToSelf(reply, Link.fromUri(uriToReply).rel("self").build());
-			commentDao.adjustLinkToReplies(reply,
-					Link.fromUri(UriBuilder.fromUri(uriToReply).path("replies").build()).rel("replies").build());
-			return reply;
-		} catch (UserNotFoundException | CommentNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
-		}
-		
+		User currentUser = findCurrentUser();
+		Comment comment = findComment(commentId);
+		Comment reply = commentDao.createComment(replyContent, currentUser, comment.getCatalogueItem());
+		commentDao.addReply(comment, reply);
+		return reply;
 	}
 
 	/**
@@ -214,13 +249,47 @@ public class CommentResource {
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	public List<Comment> getCommentReplies(@PathParam("commentId") Integer commentId) {
-		Comment comment;
-		try {
-			comment = commentDao.getById(commentId);
-			return commentDao.getReplies(comment);
-		} catch (CommentNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
+		return commentDao.getReplies(findComment(commentId));
+	}
+
+	/**
+	 * Retrieves a comment with its replies, their replies and so on, in one
+	 * response that is written while the thread is walked
+	 * @param commentId Id of comment specified
+	 * @param depth Number of levels of replies below the comment, 8 if absent
+	 * @param maxNodes Maximum number of comments in the response, the comment
+	 * itself included, 200 if absent
+	 * @return A response streaming the thread as nested JSON objects
+	 */
+	@Path("/{commentId}/thread")
+	@GET
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response getCommentThread(@PathParam("commentId") Integer commentId, @QueryParam("depth") Integer depth,
+			@QueryParam("maxNodes") Integer maxNodes) {
+		Comment comment = findComment(commentId);
+		return Response.ok(new CommentThreadOutput(commentDao, comment,
+				adjustThreadBound(depth, 0, DEFAULT_THREAD_DEPTH, MAX_THREAD_DEPTH, "Invalid depth"),
+				adjustThreadBound(maxNodes, 1, DEFAULT_THREAD_NODES, MAX_THREAD_NODES, "Invalid maxNodes"))).build();
+	}
+
+	/**
+	 * Applies the default of a bound on the thread returned, answering with 400
+	 * if the client asks for one out of range
+	 * @param bound Bound requested by the client
+	 * @param min Lowest bound accepted
+	 * @param defaultBound Bound used when the client does not specify one
+	 * @param max Highest bound accepted
+	 * @param message Message of the response if the bound is out of range
+	 * @return the bound to walk the thread with
+	 */
+	private int adjustThreadBound(Integer bound, int min, int defaultBound, int max, String message) {
+		if (bound == null) {
+			return defaultBound;
 		}
+		if (bound < min || bound > max) {
+			throw new CustomizedWebApplicationException(Status.BAD_REQUEST, message);
+		}
+		return bound;
 	}
 
 	/**
@@ -232,43 +301,46 @@ public class CommentResource {
 	@DELETE
 	@Produces(MediaType.APPLICATION_JSON)
 	public Comment deleteComment(@PathParam("commentId") Integer commentId) {
-		Comment comment;
-		try {
-			comment = commentDao.getById(commentId);
-			User currentUser = userDao.getUserByUsername(securityContext.getUserPrincipal().getName());
-			if (commentDao.isCommentOwner(currentUser, comment)) {
-				commentDao.deleteComment(comment, ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE);
-			} else if (securityContext.isUserInRole(RoleTypeConstants.ADMIN_USER)) {
-				commentDao.deleteComment(comment, ExplanatoryMessagesConstants.ADMIN_DELETION_MESSAGE);
-			}
-			return comment;
-		} catch (CommentNotFoundException | UserNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
+		Comment comment = findComment(commentId);
+		User currentUser = findCurrentUser();
+		if (commentDao.isCommentOwner(currentUser, comment)) {
+			commentDao.deleteComment(comment, ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE);
+		} else if (securityContext.isUserInRole(RoleTypeConstants.ADMIN_USER)) {
+			commentDao.deleteComment(comment, ExplanatoryMessagesConstants.ADMIN_DELETION_MESSAGE);
 		}
+		return comment;
+	}
 
+	/**
+	 * Looks up the logged in user, answering with 404 if the user is not in memory
+	 * @return The logged in user
+	 */
+	private User findCurrentUser() {
+		return userDao.findUserByUsername(securityContext.getUserPrincipal().getName())
+				.orElseThrow(() -> new CustomizedWebApplicationException(Status.NOT_FOUND,
+						UserNotFoundException.NOT_AVAILABLE_MESSAGE));
 	}
 
 	/**
-	 * A private method that returns the URI to the comment specified
-	 * @param uriInfo Uri info object that capsulates the current path of the resource
-	 * @param comment Comment that requires a URI to be retrieved for
-	 * @return URI for the comment
+	 * Looks up the catalogue item, answering with 404 if there is none with this id
+	 * @param itemId Id of the catalogue item
+	 * @return The catalogue item
 	 */
-	private URI getUriToComment(UriInfo uriInfo, Comment comment) {
-		URI locationURI = uriInfo.getAbsolutePathBuilder().path(String.valueOf(comment.getId())).build();
-		return locationURI;
+	private CatalogueItem findCatalogueItem(Integer itemId) {
+		return catalogueItemDao.findById(itemId)
+				.orElseThrow(() -> new CustomizedWebApplicationException(Status.NOT_FOUND,
+						CatalogueItemNotFoundException.NOT_AVAILABLE_MESSAGE));
 	}
 
 	/**
-	 * A private method that returns the URI to the reply specified.
-	 * @param uriInfo Uri info object that capsulates the current path of the resource
-	 * @param comment Comment that requires a URI to be retrieved for
-	 * @return URI for the comment
+	 * Looks up the comment, answering with 404 if there is none with this id
+	 * @param commentId Id of the comment
+	 * @return The comment
 	 */
-	private URI getUriToReply(UriInfo uriInfo, Comment reply) {
-		String absolutePath = uriInfo.getAbsolutePath().toString();
-		String pathToComments = absolutePath.substring(0, absolutePath.lastIndexOf('/'));
-		return UriBuilder.fromPath(pathToComments).path(String.valueOf(reply.getId())).build();
+	private Comment findComment(Integer commentId) {
+		return commentDao.findById(commentId)
+				.orElseThrow(() -> new CustomizedWebApplicationException(Status.NOT_FOUND,
+						CommentNotFoundException.NOT_AVAILABLE_MESSAGE));
 	}
 
 }
@@ -0,0 +1,122 @@
+package org.crowdlib.webservices.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.crowdlib.entities.Comment;
+import org.crowdlib.model.CommentDao;
+import org.crowdlib.model.ThreadExcerpt;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+/**
+ * Writes a comment and its replies, down to a depth and up to a number of
+ * comments, as nested JSON objects straight to the response:
+ * {"comment": {...}, "replies": [...], "moreReplies": false}. moreReplies is
+ * true when replies of the comment were left out, which the client can fetch
+ * from its linkToReplies.
+ *
+ * Only the descendants within the bounds are read, already depth first, each
+ * followed by its own replies, together with which comments have replies left
+ * out; see {@link CommentDao#getThreadExcerpt(Comment, int, int)}. They are
+ * nested by their parents: the comments whose replies are being written are
+ * kept on a stack as deep as the thread may go, and each comment is written as
+ * soon as it is reached, so no tree is built before the response.
+ */
+final class CommentThreadOutput implements StreamingOutput {
+
+	/**
+	 * Set up like the JSON provider Jersey uses for the other responses, which
+	 * reads Jackson annotations first and JAXB annotations second. Flushing is
+	 * left to the end of the thread, and the serializer of comments is looked
+	 * up once rather than for every comment.
+	 */
+	private static final ObjectWriter COMMENT_WRITER = new ObjectMapper()
+			.setAnnotationIntrospector(AnnotationIntrospector.pair(new JacksonAnnotationIntrospector(),
+					new JaxbAnnotationIntrospector(TypeFactory.defaultInstance())))
+			.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE).writerFor(Comment.class);
+
+	private final CommentDao commentDao;
+
+	private final Comment comment;
+
+	private final int depth;
+
+	private final int maxNodes;
+
+	/**
+	 * @param commentDao Dao the descendants are read through
+	 * @param comment Comment the thread starts from
+	 * @param depth Number of levels of replies written below the comment
+	 * @param maxNodes Maximum number of comments written, the first one included
+	 */
+	CommentThreadOutput(CommentDao commentDao, Comment comment, int depth, int maxNodes) {
+		this.commentDao = commentDao;
+		this.comment = comment;
+		this.depth = depth;
+		this.maxNodes = maxNodes;
+	}
+
+	@Override
+	public void write(OutputStream output) throws IOException {
+		try (JsonGenerator generator = COMMENT_WRITER.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+			writeThread(generator);
+		}
+	}
+
+	private void writeThread(JsonGenerator generator) throws IOException {
+		ThreadExcerpt excerpt = commentDao.getThreadExcerpt(comment, depth, maxNodes - 1);
+		List<Comment> open = new ArrayList<Comment>(depth + 1);
+		open(generator, comment);
+		open.add(comment);
+		for (Comment descendant : excerpt.getDescendants()) {
+			int parentLevel = levelOf(open, descendant.getParentComment());
+			while (open.size() > parentLevel + 1) {
+				close(generator, excerpt.hasMoreReplies(open.remove(open.size() - 1)));
+			}
+			open(generator, descendant);
+			open.add(descendant);
+		}
+		while (!open.isEmpty()) {
+			close(generator, excerpt.hasMoreReplies(open.remove(open.size() - 1)));
+		}
+	}
+
+	/**
+	 * Finds the parent of a descendant among the comments being written,
+	 * deepest first
+	 * @return Its level
+	 */
+	private static int levelOf(List<Comment> open, Comment parent) {
+		int level = open.size() - 1;
+		while (!open.get(level).getId().equals(parent.getId())) {
+			level--;
+		}
+		return level;
+	}
+
+	private static void open(JsonGenerator generator, Comment comment) throws IOException {
+		generator.writeStartObject();
+		generator.writeFieldName("comment");
+		COMMENT_WRITER.writeValue(generator, comment);
+		generator.writeArrayFieldStart("replies");
+	}
+
+	private static void close(JsonGenerator generator, boolean moreReplies) throws IOException {
+		generator.writeEndArray();
+		generator.writeBooleanField("moreReplies", moreReplies);
+		generator.writeEndObject();
+	}
+}
@@ -22,11 +22,12 @@ import org.crowdlib.exceptions.CommentNotFoundException;
 import org.crowdlib.exceptions.CustomizedWebApplicationException;
 import org.crowdlib.exceptions.UserNotFoundException;
 import org.crowdlib.model.CatalogueItemDao;
-import org.crowdlib.model.CatalogueItemDaoImpl;
 import org.crowdlib.model.CommentDao;
-import org.crowdlib.model.CommentDaoImpl;
+import org.crowdlib.model.DaoFactory;
 import org.crowdlib.model.UserDao;
-import org.crowdlib.model.UserDaoImpl;
+import org.crowdlib.notifications.NotificationService;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.SseFeature;
 
 /**
  * 
@@ -39,13 +40,15 @@ public class UserResource {
 	private CatalogueItemDao catalogueItemDao;
 	private UserDao userDao;
 	private CommentDao commentDao;
+	private NotificationService notificationService;
 	@Context
 	private SecurityContext securityContext;
 
 	public UserResource() {
-		this.catalogueItemDao = new CatalogueItemDaoImpl();
-		this.userDao = new UserDaoImpl();
-		this.commentDao = new CommentDaoImpl();
+		this.catalogueItemDao = DaoFactory.getCatalogueItemDao();
+		this.userDao = DaoFactory.getUserDao();
+		this.commentDao = DaoFactory.getCommentDao();
+		this.notificationService = new NotificationService();
 	}
 
 	public void setSecurityContext(SecurityContext securityContext) {
@@ -60,13 +63,9 @@ public class UserResource {
 	@Path("/self")
 	@Produces(MediaType.APPLICATION_JSON)
 	public User getCurrentLoggedUser() {
-		User currentUser;
-		try {
-			currentUser = userDao.getUserByUsername(securityContext.getUserPrincipal().getName());
-		} catch (UserNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
-		}
-		return currentUser;
+		return userDao.findUserByUsername(securityContext.getUserPrincipal().getName())
+				.orElseThrow(() -> new CustomizedWebApplicationException(Status.NOT_FOUND,
+						UserNotFoundException.NOT_AVAILABLE_MESSAGE));
 	}
 
 	/**
@@ -93,19 +92,14 @@ public class UserResource {
 	@Path("/self/favourites/{commentId}")
 	@Produces(MediaType.APPLICATION_JSON)
 	public Comment addCommentToUserFavourites(@PathParam("commentId") int commentId) {
-		User currentUser;
-		try {
-			currentUser = getCurrentLoggedUser();
-			Comment favouriteComment = commentDao.getById(commentId);
-			if (!userDao.checkIfCommentIsAmongFavourites(currentUser, favouriteComment)) {
-				userDao.addCommentToFavourites(currentUser, favouriteComment);
-				commentDao.incrementFavouritesCount(favouriteComment);
-			}
-			return favouriteComment;
-		} catch (CommentNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
+		User currentUser = getCurrentLoggedUser();
+		Comment favouriteComment = commentDao.findById(commentId)
+				.orElseThrow(() -> new CustomizedWebApplicationException(Status.NOT_FOUND,
+						CommentNotFoundException.NOT_AVAILABLE_MESSAGE));
+		if (userDao.addCommentToFavourites(currentUser, favouriteComment)) {
+			commentDao.incrementFavouritesCount(favouriteComment);
 		}
-
+		return favouriteComment;
 	}
 
 	/**
@@ -130,18 +124,16 @@ public class UserResource {
 	@Path("/self/followedItems/{itemId}")
 	@Produces(MediaType.APPLICATION_JSON)
 	public Response addItemToUserFollowedItems(@PathParam("itemId") int itemId) {
-		User currentUser;
-		try {
-			currentUser = getCurrentLoggedUser();
-			CatalogueItem item = catalogueItemDao.getById(itemId);
-			if (!userDao.checkIfItemIsAmongFollowedItems(currentUser, item)) {
-				userDao.addItemToFollowedItems(currentUser, item);
-				catalogueItemDao.addFollower(item, currentUser);
-			}
-			return Response.ok().entity(item).build();
-		} catch (CatalogueItemNotFoundException e) {
-			throw new CustomizedWebApplicationException(Status.NOT_FOUND, e.getMessage());
+		User currentUser = getCurrentLoggedUser();
+		CatalogueItem item = catalogueItemDao.findById(itemId)
+				.orElseThrow(() -> new CustomizedWebApplicationException(Status.NOT_FOUND,
+						CatalogueItemNotFoundException.NOT_AVAILABLE_MESSAGE));
+		if (!userDao.checkIfItemIsAmongFollowedItems(currentUser, item)) {
+			userDao.addItemToFollowedItems(currentUser, item);
+			catalogueItemDao.addFollower(item, currentUser);
+			notificationService.itemFollowed(currentUser, item);
 		}
+		return Response.ok().entity(item).build();
 	}
 
 	/**
@@ -154,8 +146,24 @@ public class UserResource {
 	public List<Notification> getUserNotifications() {
 		User currentUser;
 		currentUser = getCurrentLoggedUser();
-		return userDao.getListOfNotifications(currentUser);
+		return notificationService.getNotifications(currentUser);
+
+	}
 
+	/**
+	 * Streams the user's notifications as Server-Sent Events, starting with the
+	 * ones not seen yet and then pushing each new comment on a followed item
+	 * @return the event output of the stream
+	 */
+	@GET
+	@Path("/self/notifications/stream")
+	@Produces(SseFeature.SERVER_SENT_EVENTS)
+	public EventOutput streamUserNotifications() {
+		User currentUser;
+		currentUser = getCurrentLoggedUser();
+		EventOutput eventOutput = new EventOutput();
+		notificationService.openStream(currentUser, eventOutput);
+		return eventOutput;
 	}
 
 }
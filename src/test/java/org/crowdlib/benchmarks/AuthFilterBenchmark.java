@@ -0,0 +1,79 @@
+package org.crowdlib.benchmarks;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.SecurityContext;
+
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.main.AuthFilter;
+import org.glassfish.jersey.internal.util.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures AuthFilter on an authenticated request with and without the
+ * credential cache. The request is a proxy that only answers the calls the
+ * filter makes, its cost is the same in both cases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuthFilterBenchmark {
+
+	@Param({ "uncached", "cached" })
+	public String credentials;
+
+	private AuthFilter authFilter;
+
+	private ContainerRequestContext request;
+
+	private SecurityContext securityContext;
+
+	@Setup
+	public void setup() {
+		InMemoryUserCollection.initializeInMemoryUsers();
+		authFilter = credentials.equals("cached") ? new AuthFilter(10000, TimeUnit.MINUTES.toMillis(5))
+				: new AuthFilter(0, 0);
+		final String authHeader = "Basic " + Base64.encodeAsString("student1:whoopey");
+		request = (ContainerRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ContainerRequestContext.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getHeaderString":
+						return HttpHeaders.AUTHORIZATION.equals(args[0]) ? authHeader : null;
+					case "setSecurityContext":
+						securityContext = (SecurityContext) args[0];
+						return null;
+					case "abortWith":
+						throw new IllegalStateException("Request was not authenticated");
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	@Benchmark
+	public SecurityContext authenticate() throws IOException {
+		authFilter.filter(request);
+		return securityContext;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(AuthFilterBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
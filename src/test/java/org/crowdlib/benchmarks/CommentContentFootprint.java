@@ -0,0 +1,66 @@
+package org.crowdlib.benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import org.crowdlib.entities.Comment;
+import org.crowdlib.text.OffHeapTextArena;
+
+/**
+ * Prints the heap retained by comments whose content is kept in Strings and by
+ * comments whose content is kept in an OffHeapTextArena, and how long a full
+ * collection of that heap takes. Run it once per mode, "heap" or "offheap",
+ * in a JVM of its own; the number of comments is the second argument, 5M by
+ * default, which needs about -Xmx3g.
+ */
+public final class CommentContentFootprint {
+
+	private static final String CONTENT = "I found the second half of this book much slower than the first, "
+			+ "but the chapter on the history of the library made up for it. Has anyone read the sequel? ";
+
+	private CommentContentFootprint() {
+	}
+
+	public static void main(String[] args) {
+		boolean offHeap = args.length > 0 && "offheap".equals(args[0]);
+		int numberOfComments = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+		OffHeapTextArena arena = offHeap ? new OffHeapTextArena(OffHeapTextArena.DEFAULT_CHUNK_SIZE) : null;
+		Comment.setContentArena(arena);
+
+		long before = usedHeap();
+		Comment[] comments = new Comment[numberOfComments];
+		for (int i = 0; i < numberOfComments; i++) {
+			// every comment gets a distinct String, as it would from a request body
+			comments[i] = new Comment(i, CONTENT + i, Comment.NO_CREATION_TIMESTAMP);
+		}
+		long collectionsWhileCreating = collectionMillis();
+		long after = usedHeap();
+		long started = System.nanoTime();
+		System.gc();
+		long fullCollectionMillis = (System.nanoTime() - started) / 1000000;
+
+		System.out.println(String.format("%s, %d comments: heap %.1f MB (%.1f bytes/comment), off-heap %.1f MB, "
+				+ "full GC %d ms, GC time while creating %d ms", offHeap ? "off-heap" : "heap", numberOfComments,
+				(after - before) / 1e6, (double) (after - before) / numberOfComments,
+				arena == null ? 0 : arena.getReservedBytes() / 1e6, fullCollectionMillis, collectionsWhileCreating));
+		if (comments[numberOfComments - 1].getCommentContent().isEmpty()) {
+			throw new IllegalStateException();
+		}
+	}
+
+	private static long collectionMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += collector.getCollectionTime();
+		}
+		return millis;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
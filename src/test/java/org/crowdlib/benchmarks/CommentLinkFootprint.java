@@ -0,0 +1,71 @@
+package org.crowdlib.benchmarks;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.CommentDaoImpl;
+
+/**
+ * Prints the heap retained by comments posted through the in-memory DAOs the
+ * way CommentResource posts them, spread over the three catalogue items, and
+ * how long it takes to build the links of every comment and item afterwards.
+ * The number of comments is the first argument, 1M by default, which needs
+ * about -Xmx2g.
+ */
+public final class CommentLinkFootprint {
+
+	private CommentLinkFootprint() {
+	}
+
+	public static void main(String[] args) {
+		int numberOfComments = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		InMemoryUserCollection.initializeInMemoryUsers();
+		InMemoryCatalogueItemCollection.initializeInMemoryCatalogueItems();
+		InMemoryCommentLogCollection.initializeInMemoryCommentLogs();
+		CommentDaoImpl commentDao = new CommentDaoImpl();
+		CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+		User owner = InMemoryUserCollection.getUser("student1");
+
+		long before = usedHeap();
+		Comment[] comments = new Comment[numberOfComments];
+		for (int i = 0; i < numberOfComments; i++) {
+			CatalogueItem item = InMemoryCatalogueItemCollection.getCatalogueItem(1 + i % 3);
+			comments[i] = commentDao.createComment("c" + i, owner, item);
+			catalogueItemDao.addComment(item, comments[i]);
+		}
+		long after = usedHeap();
+
+		long started = System.nanoTime();
+		int hash = 0;
+		for (Comment comment : comments) {
+			hash += comment.getLinkToSelf().hashCode() + comment.getLinkToReplies().hashCode();
+		}
+		for (int itemId = 1; itemId <= 3; itemId++) {
+			for (Link link : InMemoryCatalogueItemCollection.getCatalogueItem(itemId).getLinksToEachComment()) {
+				hash += link.hashCode();
+			}
+		}
+		long linkMillis = (System.nanoTime() - started) / 1000000;
+
+		System.out.println(String.format("%d comments: heap %.1f MB (%.1f bytes/comment), building %d links %d ms",
+				numberOfComments, (after - before) / 1e6, (double) (after - before) / numberOfComments,
+				3 * numberOfComments, linkMillis));
+		if (hash == 42) {
+			System.out.println();
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
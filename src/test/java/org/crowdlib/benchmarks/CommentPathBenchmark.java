@@ -0,0 +1,132 @@
+package org.crowdlib.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.inmemory.collections.InMemoryCommentPathCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.CommentDaoImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares listing the descendants of a comment and the ancestors of its
+ * deepest reply through the path index with walking the reply lists and the
+ * parent links. The thread has ten replies to every comment down to the depth
+ * given, and the index also holds a thousand other threads of that shape.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommentPathBenchmark {
+
+	private static final int FAN_OUT = 10;
+
+	private static final int OTHER_THREADS = 1000;
+
+	@Param({ "2", "3" })
+	public int depth;
+
+	private final CommentDaoImpl commentDao = new CommentDaoImpl();
+
+	private final CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+
+	private Comment comment;
+
+	private Comment deepestReply;
+
+	@Setup
+	public void setup() {
+		InMemoryCommentPathCollection.initializeInMemoryCommentPaths();
+		CatalogueItem item = new CatalogueItem(6000000 + depth, "Book", "Author", null);
+		for (int i = 0; i < OTHER_THREADS / 2; i++) {
+			post(item);
+		}
+		comment = post(item);
+		for (int i = 0; i < OTHER_THREADS / 2; i++) {
+			post(item);
+		}
+		deepestReply = comment;
+		while (!deepestReply.getReplies().isEmpty()) {
+			deepestReply = deepestReply.getReplies().get(FAN_OUT - 1);
+		}
+	}
+
+	private Comment post(CatalogueItem item) {
+		Comment comment = commentDao.createComment("comment", null, item);
+		catalogueItemDao.addComment(item, comment);
+		addReplies(item, comment, depth);
+		return comment;
+	}
+
+	private void addReplies(CatalogueItem item, Comment parent, int levels) {
+		if (levels == 0) {
+			return;
+		}
+		for (int i = 0; i < FAN_OUT; i++) {
+			Comment reply = commentDao.createComment("reply", null, item);
+			commentDao.addReply(parent, reply);
+			addReplies(item, reply, levels - 1);
+		}
+	}
+
+	@Benchmark
+	public List<Comment> descendantsFromIndex() {
+		return commentDao.getDescendants(comment);
+	}
+
+	@Benchmark
+	public List<Comment> descendantsByWalkingReplies() {
+		List<Comment> descendants = new ArrayList<Comment>();
+		Deque<Comment> pending = new ArrayDeque<Comment>();
+		pushReplies(pending, comment);
+		while (!pending.isEmpty()) {
+			Comment next = pending.pop();
+			descendants.add(next);
+			pushReplies(pending, next);
+		}
+		return descendants;
+	}
+
+	private static void pushReplies(Deque<Comment> pending, Comment comment) {
+		List<Comment> replies = comment.getReplies();
+		for (int i = replies.size() - 1; i >= 0; i--) {
+			pending.push(replies.get(i));
+		}
+	}
+
+	@Benchmark
+	public List<Comment> ancestorsFromIndex() {
+		return commentDao.getAncestors(deepestReply);
+	}
+
+	@Benchmark
+	public List<Comment> ancestorsByWalkingParents() {
+		List<Comment> ancestors = new ArrayList<Comment>();
+		for (Comment parent = deepestReply.getParentComment(); parent != null; parent = parent.getParentComment()) {
+			ancestors.add(0, parent);
+		}
+		return ancestors;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(CommentPathBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,135 @@
+package org.crowdlib.benchmarks;
+
+import java.util.AbstractList;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.UserDaoImpl;
+import org.crowdlib.notifications.NotificationDispatcher;
+import org.crowdlib.notifications.NotificationMode;
+import org.crowdlib.notifications.NotificationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the work done on the request thread when a comment is posted to an
+ * item, for growing numbers of followers. This is the part of
+ * CommentResource.addCommentToCatalogueItem that depends on the number of
+ * followers. "write" delivers notifications on the posting thread,
+ * "write-async" hands them to a NotificationDispatcher and "read" uses
+ * fan-out-on-read. Sampling reports percentiles, e.g. p0.99.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommentPostBenchmark {
+
+	@Param({ "1", "100", "10000", "100000" })
+	public int followers;
+
+	@Param({ "write", "write-async", "read" })
+	public String notifications;
+
+	private NotificationDispatcher dispatcher;
+
+	private final CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+	private final UserDaoImpl userDao = new UserDaoImpl();
+	private final NotificationService notificationService = new NotificationService();
+
+	private User author;
+	private CatalogueItem item;
+	private Link linkToComment;
+	private int nextItemId = 1000000;
+
+	@Setup
+	public void setupMode() {
+		NotificationService.setMode(notifications.equals("read") ? NotificationMode.FAN_OUT_ON_READ
+				: NotificationMode.FAN_OUT_ON_WRITE);
+		if (notifications.equals("write-async")) {
+			dispatcher = new NotificationDispatcher(10000, 2, 64);
+			dispatcher.start();
+			NotificationService.setDispatcher(dispatcher);
+		}
+		author = new User(0, "Mr.", "John", "Doe", RoleTypeConstants.GUEST_USER, "author", "password");
+		linkToComment = Link.fromPath("http://localhost:9998/items/1/comments/1").rel("comment").build();
+	}
+
+	/**
+	 * Starts every iteration with a fresh item, so that the item's comments do
+	 * not keep growing.
+	 */
+	@Setup(Level.Iteration)
+	public void setupItem() {
+		item = new CatalogueItem(nextItemId++, "Book", "Author", null);
+		for (int i = 0; i < followers; i++) {
+			User follower = new User(i + 1, "Ms.", "Jane", "Doe", RoleTypeConstants.GUEST_USER, "follower" + i, "password");
+			follower.setNotifications(new DiscardingList());
+			InMemoryUserCollection.addUser(follower);
+			userDao.addItemToFollowedItems(follower, item);
+			catalogueItemDao.addFollower(item, follower);
+		}
+	}
+
+	@TearDown
+	public void stopDispatcher() throws InterruptedException {
+		NotificationService.setDispatcher(null);
+		if (dispatcher != null) {
+			dispatcher.shutdown(1, TimeUnit.MINUTES);
+		}
+	}
+
+	@Benchmark
+	public Comment postComment() {
+		Comment comment = new Comment("new comment", author, item);
+		int logPosition = catalogueItemDao.addComment(item, comment);
+		notificationService.commentAdded(item, comment, logPosition, linkToComment);
+		return comment;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(CommentPostBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+
+	/**
+	 * Notification list of a follower that drops what is added to it, so that
+	 * millions of posts do not fill the heap with notifications nobody reads.
+	 */
+	private static final class DiscardingList extends AbstractList<Notification> {
+
+		@Override
+		public void add(int index, Notification notification) {
+		}
+
+		@Override
+		public Notification get(int index) {
+			throw new IndexOutOfBoundsException("Notifications are discarded");
+		}
+
+		@Override
+		public int size() {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package org.crowdlib.benchmarks;
+
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.crowdlib.search.CommentSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares finding the ten comments best matching a two-word query through the
+ * search index with scanning the content of every comment. Comments have twelve
+ * words drawn from a vocabulary of ten thousand, common words far more often
+ * than rare ones, and the query has a word of middling frequency and a rare
+ * one. The size of the index per comment is printed once it is filled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommentSearchBenchmark {
+
+	private static final int VOCABULARY = 10000;
+
+	private static final int WORDS_PER_COMMENT = 12;
+
+	private static final int LIMIT = 10;
+
+	private static final String QUERY = "w200 w5000";
+
+	@Param({ "10000", "100000" })
+	public int comments;
+
+	private String[] contents;
+
+	private CommentSearchIndex index;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(25);
+		contents = new String[comments];
+		index = new CommentSearchIndex(Long.MAX_VALUE);
+		for (int id = 0; id < comments; id++) {
+			StringBuilder content = new StringBuilder();
+			for (int i = 0; i < WORDS_PER_COMMENT; i++) {
+				// roughly Zipf distributed, word n about n times rarer than word 1
+				int word = (int) Math.pow(VOCABULARY, random.nextDouble());
+				content.append(i == 0 ? "W" : " w").append(word);
+			}
+			contents[id] = content.append('.').toString();
+			index.add(id, contents[id]);
+		}
+		System.out.println(String.format("%n%d bytes per comment", index.getSizeInBytes() / comments));
+	}
+
+	@Benchmark
+	public int[] searchIndex() {
+		return index.search(QUERY, LIMIT);
+	}
+
+	@Benchmark
+	public int[] scanContents() {
+		String[] words = QUERY.split(" ");
+		PriorityQueue<long[]> best = new PriorityQueue<long[]>(LIMIT,
+				(a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+		for (int id = 0; id < contents.length; id++) {
+			String content = contents[id].toLowerCase(Locale.ROOT);
+			long matches = 0;
+			for (String word : words) {
+				if (containsWord(content, word)) {
+					matches++;
+				}
+			}
+			if (matches == 0) {
+				continue;
+			}
+			if (best.size() < LIMIT) {
+				best.add(new long[] { matches, id });
+			} else if (best.peek()[0] < matches || (best.peek()[0] == matches && best.peek()[1] < id)) {
+				best.poll();
+				best.add(new long[] { matches, id });
+			}
+		}
+		int[] ids = new int[best.size()];
+		for (int i = ids.length - 1; i >= 0; i--) {
+			ids[i] = (int) best.poll()[1];
+		}
+		return ids;
+	}
+
+	private static boolean containsWord(String content, String word) {
+		for (int at = content.indexOf(word); at >= 0; at = content.indexOf(word, at + 1)) {
+			int end = at + word.length();
+			if ((at == 0 || !Character.isLetterOrDigit(content.charAt(at - 1)))
+					&& (end == content.length() || !Character.isLetterOrDigit(content.charAt(end)))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(CommentSearchBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,117 @@
+package org.crowdlib.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.crowdlib.entities.Comment;
+import org.crowdlib.inmemory.collections.StripedStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the striped comment store with a HashMap behind one monitor while
+ * 1 to 64 threads add comments and read them back. Each thread cycles through
+ * ids of its own, so the stores stay the same size however long the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommentStoreBenchmark {
+
+	private static final int IDS_PER_THREAD = 1 << 16;
+
+	@Param({ "synchronized", "striped" })
+	public String storeType;
+
+	private CommentStore store;
+
+	private final AtomicInteger nextThread = new AtomicInteger();
+
+	@Setup
+	public void setup() {
+		if (storeType.equals("striped")) {
+			StripedStore<Comment> striped = new StripedStore<Comment>();
+			store = new CommentStore() {
+				@Override
+				public void put(int id, Comment comment) {
+					striped.put(id, comment);
+				}
+
+				@Override
+				public Comment get(int id) {
+					return striped.get(id);
+				}
+			};
+		} else {
+			Map<Integer, Comment> synchronizedMap = Collections.synchronizedMap(new HashMap<Integer, Comment>());
+			store = new CommentStore() {
+				@Override
+				public void put(int id, Comment comment) {
+					synchronizedMap.put(id, comment);
+				}
+
+				@Override
+				public Comment get(int id) {
+					return synchronizedMap.get(id);
+				}
+			};
+		}
+	}
+
+	/**
+	 * The ids and the comment of one benchmark thread
+	 */
+	@State(Scope.Thread)
+	public static class Writer {
+
+		private final Comment comment = new Comment();
+
+		private int firstId;
+
+		private int next;
+
+		@Setup
+		public void setup(CommentStoreBenchmark benchmark) {
+			firstId = benchmark.nextThread.getAndIncrement() * IDS_PER_THREAD;
+		}
+
+		int nextId() {
+			next = (next + 1) & (IDS_PER_THREAD - 1);
+			return firstId + next;
+		}
+	}
+
+	@Benchmark
+	public Comment addThenGet(Writer writer) {
+		int id = writer.nextId();
+		store.put(id, writer.comment);
+		return store.get(id);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for (int threads = 1; threads <= 64; threads <<= 1) {
+			Options options = new OptionsBuilder().include(CommentStoreBenchmark.class.getSimpleName())
+					.threads(threads).forks(1).warmupIterations(3).measurementIterations(5).build();
+			new Runner(options).run();
+		}
+	}
+
+	private interface CommentStore {
+		void put(int id, Comment comment);
+
+		Comment get(int id);
+	}
+}
@@ -0,0 +1,110 @@
+package org.crowdlib.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.CommentDaoImpl;
+import org.crowdlib.webservices.api.CommentResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+/**
+ * Compares streaming a thread of 1111 comments, ten replies to every comment
+ * three levels down, with what the server serialized for a client walking it
+ * through the replies of each comment, one request per comment with replies.
+ * Round trips are not counted, only the JSON written.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommentThreadBenchmark {
+
+	private static final int FAN_OUT = 10;
+
+	private static final int DEPTH = 3;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.setAnnotationIntrospector(AnnotationIntrospector.pair(new JacksonAnnotationIntrospector(),
+					new JaxbAnnotationIntrospector(TypeFactory.defaultInstance())));
+
+	private final CommentDaoImpl commentDao = new CommentDaoImpl();
+
+	private final CommentResource commentResource = new CommentResource();
+
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream(1 << 20);
+
+	private Comment comment;
+
+	@Setup
+	public void setup() {
+		CatalogueItem item = new CatalogueItem(5000000, "Book", "Author", null);
+		comment = commentDao.createComment("comment", null, item);
+		new CatalogueItemDaoImpl().addComment(item, comment);
+		addReplies(item, comment, DEPTH);
+	}
+
+	private void addReplies(CatalogueItem item, Comment parent, int levels) {
+		if (levels == 0) {
+			return;
+		}
+		for (int i = 0; i < FAN_OUT; i++) {
+			Comment reply = commentDao.createComment("reply " + i, null, item);
+			commentDao.addReply(parent, reply);
+			addReplies(item, reply, levels - 1);
+		}
+	}
+
+	@Benchmark
+	public int streamThread() throws IOException {
+		output.reset();
+		StreamingOutput thread = (StreamingOutput) commentResource.getCommentThread(comment.getId(), DEPTH, 2000)
+				.getEntity();
+		thread.write(output);
+		return output.size();
+	}
+
+	@Benchmark
+	public int repliesLevelByLevel() throws IOException {
+		output.reset();
+		Deque<Comment> pending = new ArrayDeque<Comment>();
+		pending.add(comment);
+		while (!pending.isEmpty()) {
+			Comment next = pending.poll();
+			if (next.getReplies().isEmpty()) {
+				continue;
+			}
+			MAPPER.writeValue(output, commentResource.getCommentReplies(next.getId()));
+			pending.addAll(next.getReplies());
+		}
+		return output.size();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(CommentThreadBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
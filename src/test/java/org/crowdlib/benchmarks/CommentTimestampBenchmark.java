@@ -0,0 +1,70 @@
+package org.crowdlib.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import org.crowdlib.entities.Comment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.jaxrs.json.JacksonJaxbJsonProvider;
+
+/**
+ * Measures what the creation timestamp of a comment costs: creating a
+ * comment, which reads the clock, and writing a comment as JSON with the
+ * mapper Jersey uses for responses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommentTimestampBenchmark {
+
+	private ObjectWriter writer;
+
+	private Comment comment;
+
+	private final OutputStream discarded = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	@Setup
+	public void setup() {
+		writer = new JacksonJaxbJsonProvider().locateMapper(Comment.class, MediaType.APPLICATION_JSON_TYPE).writer();
+		comment = new Comment("I found the second half of this book much slower than the first.", null, null);
+	}
+
+	@Benchmark
+	public Comment createComment() {
+		return new Comment("new comment", null, null);
+	}
+
+	@Benchmark
+	public void writeCommentAsJson() throws IOException {
+		writer.writeValue(discarded, comment);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(CommentTimestampBenchmark.class.getSimpleName())
+				.addProfiler("gc").forks(1).warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
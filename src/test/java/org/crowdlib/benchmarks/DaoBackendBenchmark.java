@@ -0,0 +1,109 @@
+package org.crowdlib.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.CatalogueItemDao;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.CommentDao;
+import org.crowdlib.model.CommentDaoImpl;
+import org.crowdlib.model.CommentPage;
+import org.crowdlib.model.jdbc.Database;
+import org.crowdlib.model.jdbc.JdbcCatalogueItemDao;
+import org.crowdlib.model.jdbc.JdbcCommentDao;
+import org.crowdlib.model.jdbc.JdbcUserDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the throughput of the in-memory DAOs with the JDBC DAOs on an
+ * in-memory H2 database, for the DAO calls made when a comment is posted and
+ * when a page of comments is read. The item is prefilled with comments so
+ * that reads page through a realistic log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DaoBackendBenchmark {
+
+	private static final int PREFILLED_COMMENTS = 1000;
+
+	@Param({ "in-memory", "h2" })
+	public String backend;
+
+	private Database database;
+	private CatalogueItemDao catalogueItemDao;
+	private CommentDao commentDao;
+
+	private User author;
+	private CatalogueItem item;
+
+	@Setup
+	public void setup() {
+		User newAuthor = new User(9000000, "Mr.", "John", "Doe", RoleTypeConstants.GUEST_USER, "benchmark_author",
+				"password");
+		CatalogueItem newItem = new CatalogueItem(9000000, "Book", "Author",
+				Link.fromPath("http://localhost:9998/items/9000000/comments").build());
+		if (backend.equals("h2")) {
+			database = Database.open("jdbc:h2:mem:dao-backend-benchmark", 8);
+			database.seedIfEmpty(Arrays.asList(newAuthor), Arrays.asList(newItem));
+			catalogueItemDao = new JdbcCatalogueItemDao(database);
+			commentDao = new JdbcCommentDao(database);
+			author = new JdbcUserDao(database).findUserByUsername(newAuthor.getUsername()).get();
+		} else {
+			InMemoryUserCollection.addUser(newAuthor);
+			InMemoryCatalogueItemCollection.addCatalogueItem(newItem);
+			catalogueItemDao = new CatalogueItemDaoImpl();
+			commentDao = new CommentDaoImpl();
+			author = newAuthor;
+		}
+		item = catalogueItemDao.findById(newItem.getId()).get();
+		for (int i = 0; i < PREFILLED_COMMENTS; i++) {
+			postComment();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (database != null) {
+			database.close();
+		}
+	}
+
+	@Benchmark
+	public Comment postComment() {
+		Comment comment = commentDao.createComment("benchmark comment", author, item);
+		catalogueItemDao.addComment(item, comment);
+		return comment;
+	}
+
+	@Benchmark
+	public CommentPage readPage() {
+		return catalogueItemDao.getCommentsAfter(item, PREFILLED_COMMENTS / 2, 20);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(DaoBackendBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
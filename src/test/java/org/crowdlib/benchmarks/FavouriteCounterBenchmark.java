@@ -0,0 +1,78 @@
+package org.crowdlib.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.CommentDaoImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures 32 threads favouriting one comment, which soon has its favourites
+ * counted in stripes, against the same threads bumping the count under the
+ * monitor of the comment, as every favourite did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(32)
+public class FavouriteCounterBenchmark {
+
+	private final CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+
+	private final CommentDaoImpl commentDao = new CommentDaoImpl();
+
+	private Comment striped;
+
+	private Comment locked;
+
+	private int nextItemId = 4000000;
+
+	@Setup
+	public void setup() {
+		InMemoryCommentLogCollection.initializeInMemoryCommentLogs();
+		striped = post();
+		locked = post();
+	}
+
+	@Benchmark
+	public void incrementFavouritesCount() {
+		commentDao.incrementFavouritesCount(striped);
+	}
+
+	@Benchmark
+	public void incrementUnderMonitor() {
+		Comment comment = locked;
+		synchronized (comment) {
+			int previousFavouritesCount = comment.materializedFavouritesCount();
+			comment.setFavouritesCount(previousFavouritesCount + 1);
+			InMemoryCommentLogCollection.favouritesCountChanged(comment, previousFavouritesCount);
+		}
+	}
+
+	private Comment post() {
+		CatalogueItem item = new CatalogueItem(nextItemId++, "Book", "Author", null);
+		Comment comment = new Comment("viral", null, item);
+		catalogueItemDao.addComment(item, comment);
+		return comment;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(FavouriteCounterBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
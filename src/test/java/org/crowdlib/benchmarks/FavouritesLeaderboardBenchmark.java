@@ -0,0 +1,96 @@
+package org.crowdlib.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.CommentDaoImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares reading the ten most favourited comments of an item from its
+ * leaderboard with sorting all of its comments by favourites, the only way
+ * to get them before, and measures what a favourite costs now that it also
+ * re-ranks the comment. A tenth of the comments have been favourited, with
+ * counts spread over 1 to 100.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FavouritesLeaderboardBenchmark {
+
+	private static final int TOP = 10;
+
+	@Param({ "1000", "100000" })
+	public int comments;
+
+	private final CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+
+	private final CommentDaoImpl commentDao = new CommentDaoImpl();
+
+	private CatalogueItem item;
+
+	private Comment[] favourited;
+
+	private int nextFavourite;
+
+	private int nextItemId = 3000000;
+
+	@Setup
+	public void setup() {
+		InMemoryCommentLogCollection.initializeInMemoryCommentLogs();
+		item = new CatalogueItem(nextItemId++, "Book", "Author", null);
+		Random random = new Random(21);
+		favourited = new Comment[comments / 10];
+		for (int i = 0; i < comments; i++) {
+			Comment comment = new Comment("comment " + i, null, item);
+			if (i % 10 == 0) {
+				comment.setFavouritesCount(1 + random.nextInt(100));
+				favourited[i / 10] = comment;
+			}
+			catalogueItemDao.addComment(item, comment);
+		}
+	}
+
+	@Benchmark
+	public List<Comment> sortAllComments() {
+		List<Comment> sorted = new ArrayList<Comment>(catalogueItemDao.getAllComments(item));
+		sorted.sort(Comparator.comparingInt(Comment::getFavouritesCount).reversed());
+		return sorted.subList(0, TOP);
+	}
+
+	@Benchmark
+	public List<Comment> mostFavouritedComments() {
+		return catalogueItemDao.getMostFavouritedComments(item, TOP);
+	}
+
+	@Benchmark
+	public Comment incrementFavouritesCount() {
+		Comment comment = favourited[nextFavourite++ % favourited.length];
+		commentDao.incrementFavouritesCount(comment);
+		return comment;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(FavouritesLeaderboardBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,108 @@
+package org.crowdlib.benchmarks;
+
+import java.util.List;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.IdIndexedList;
+import org.crowdlib.inmemory.collections.InMemoryFollowerCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.inmemory.collections.IntBitmap;
+
+/**
+ * Prints the heap taken by the followers of a popular item, once held as the
+ * IdIndexedList of users items used to keep and once in
+ * InMemoryFollowerCollection, for users with consecutive ids and for users
+ * whose ids are spread over a range a hundred times larger. A second item is
+ * followed by every third of those users; the time taken to intersect both
+ * sets of followers, to copy out the ids of the followers of the first item
+ * and to iterate over those followers is printed as well. The number of
+ * followers is the first argument, 1M by default, which needs about -Xmx4g.
+ */
+public final class FollowerIndexFootprint {
+
+	private static final int ITEM = 1;
+
+	private static final int OTHER_ITEM = 2;
+
+	private FollowerIndexFootprint() {
+	}
+
+	public static void main(String[] args) {
+		int numberOfFollowers = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		for (int spread : new int[] { 1, 100 }) {
+			User[] followers = new User[numberOfFollowers];
+			for (int i = 0; i < numberOfFollowers; i++) {
+				followers[i] = new User(1 + i * spread, "Ms.", "Jane", "Doe", RoleTypeConstants.GUEST_USER, "follower" + i,
+						"password");
+				InMemoryUserCollection.addUser(followers[i]);
+			}
+
+			long before = usedHeap();
+			List<User> list = new IdIndexedList<User>();
+			for (User follower : followers) {
+				list.add(follower);
+			}
+			long listBytes = usedHeap() - before;
+
+			InMemoryFollowerCollection.initializeInMemoryFollowers();
+			before = usedHeap();
+			for (User follower : followers) {
+				InMemoryFollowerCollection.addFollower(ITEM, follower.getId());
+			}
+			long itemSideBytes = usedHeap() - before;
+			long bitmapBytes = InMemoryFollowerCollection.getFollowers(ITEM).getSizeInBytes();
+			for (int i = 0; i < numberOfFollowers; i += 3) {
+				InMemoryFollowerCollection.addFollower(OTHER_ITEM, followers[i].getId());
+			}
+			long indexBytes = usedHeap() - before;
+
+			long intersectionNanos = Long.MAX_VALUE;
+			long idsNanos = Long.MAX_VALUE;
+			long fanOutNanos = Long.MAX_VALUE;
+			long listFanOutNanos = Long.MAX_VALUE;
+			int hash = 0;
+			for (int round = 0; round < 20; round++) {
+				long started = System.nanoTime();
+				IntBitmap followersOfBoth = InMemoryFollowerCollection.getFollowersOfBoth(ITEM, OTHER_ITEM);
+				intersectionNanos = Math.min(intersectionNanos, System.nanoTime() - started);
+				hash += followersOfBoth.getCardinality();
+
+				started = System.nanoTime();
+				hash += InMemoryFollowerCollection.getFollowerIds(ITEM).length;
+				idsNanos = Math.min(idsNanos, System.nanoTime() - started);
+
+				started = System.nanoTime();
+				for (int followerId : InMemoryFollowerCollection.getFollowerIds(ITEM)) {
+					hash += InMemoryUserCollection.getUserById(followerId).getUsername().length();
+				}
+				fanOutNanos = Math.min(fanOutNanos, System.nanoTime() - started);
+
+				started = System.nanoTime();
+				for (User follower : list) {
+					hash += follower.getUsername().length();
+				}
+				listFanOutNanos = Math.min(listFanOutNanos, System.nanoTime() - started);
+			}
+
+			System.out.println(String.format("%d followers, ids %d apart: IdIndexedList %.1f MB, "
+					+ "item bitmap %.2f MB (%.1f MB measured), both indexes for two items %.1f MB; "
+					+ "intersection %.2f ms, follower ids %.1f ms, fan-out %.1f ms (IdIndexedList %.1f ms)",
+					numberOfFollowers, spread, listBytes / 1e6, bitmapBytes / 1e6, itemSideBytes / 1e6,
+					indexBytes / 1e6, intersectionNanos / 1e6, idsNanos / 1e6, fanOutNanos / 1e6,
+					listFanOutNanos / 1e6));
+			if (hash == 42) {
+				System.out.println(list.size());
+			}
+			InMemoryFollowerCollection.initializeInMemoryFollowers();
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,71 @@
+package org.crowdlib.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.crowdlib.ids.AtomicIdAllocator;
+import org.crowdlib.ids.BlockLeasingIdAllocator;
+import org.crowdlib.ids.IdAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the comment id allocators against a synchronized counter while
+ * 1 to 64 threads allocate ids concurrently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdAllocatorBenchmark {
+
+	@Param({ "synchronized", "atomic", "block" })
+	public String allocatorType;
+
+	private IdAllocator allocator;
+
+	@Setup
+	public void setup() {
+		if (allocatorType.equals("atomic")) {
+			allocator = new AtomicIdAllocator();
+		} else if (allocatorType.equals("block")) {
+			allocator = new BlockLeasingIdAllocator(1024);
+		} else {
+			allocator = new SynchronizedIdAllocator();
+		}
+	}
+
+	@Benchmark
+	public int nextId() {
+		return allocator.nextId();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for (int threads = 1; threads <= 64; threads <<= 1) {
+			Options options = new OptionsBuilder().include(IdAllocatorBenchmark.class.getSimpleName())
+					.threads(threads).forks(1).warmupIterations(3).measurementIterations(5).build();
+			new Runner(options).run();
+		}
+	}
+
+	/**
+	 * The baseline: a plain counter guarded by a monitor.
+	 */
+	private static class SynchronizedIdAllocator implements IdAllocator {
+
+		private int lastId;
+
+		@Override
+		public synchronized int nextId() {
+			return ++lastId;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package org.crowdlib.benchmarks;
+
+import java.util.HashMap;
+
+import org.crowdlib.inmemory.collections.IntObjectHashMap;
+
+/**
+ * Prints the heap retained by a HashMap&lt;Integer, Object&gt; and by an
+ * IntObjectHashMap holding the same 1M and 10M mappings. All mappings share one
+ * value object, so only the cost of the map structure itself is reported. Needs
+ * a heap of at least 2GB (-Xmx2g).
+ */
+public final class IntObjectHashMapFootprint {
+
+	private static final Object VALUE = new Object();
+
+	private IntObjectHashMapFootprint() {
+	}
+
+	public static void main(String[] args) {
+		System.out.println("entries\tHashMap (MB)\tIntObjectHashMap (MB)\tbytes/entry HashMap\tbytes/entry IntObjectHashMap");
+		for (int entries : new int[] { 1000000, 10000000 }) {
+			long hashMapBytes = measureHashMap(entries);
+			long intMapBytes = measureIntObjectHashMap(entries);
+			System.out.println(String.format("%d\t%.1f\t%.1f\t%.1f\t%.1f", entries, hashMapBytes / 1e6,
+					intMapBytes / 1e6, (double) hashMapBytes / entries, (double) intMapBytes / entries));
+		}
+	}
+
+	private static long measureHashMap(int entries) {
+		long before = usedHeap();
+		HashMap<Integer, Object> map = new HashMap<Integer, Object>();
+		for (int i = 1; i <= entries; i++) {
+			map.put(i, VALUE);
+		}
+		long after = usedHeap();
+		if (map.size() != entries) {
+			throw new IllegalStateException();
+		}
+		return after - before;
+	}
+
+	private static long measureIntObjectHashMap(int entries) {
+		long before = usedHeap();
+		IntObjectHashMap<Object> map = new IntObjectHashMap<Object>();
+		for (int i = 1; i <= entries; i++) {
+			map.put(i, VALUE);
+		}
+		long after = usedHeap();
+		if (map.size() != entries) {
+			throw new IllegalStateException();
+		}
+		return after - before;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
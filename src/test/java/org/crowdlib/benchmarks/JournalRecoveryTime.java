@@ -0,0 +1,101 @@
+package org.crowdlib.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.inmemory.journal.InMemoryJournal;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.CommentDaoImpl;
+
+/**
+ * Prints how long it takes to recover the in-memory collections from the
+ * journal, once by replaying the whole log and once from a snapshot. The
+ * comments are posted through the in-memory DAOs the way CommentResource
+ * posts them, spread over the three catalogue items. The number of comments
+ * is the first argument, 10M by default; every comment takes roughly 1KB of
+ * heap, so 10M comments need about -Xmx16g.
+ */
+public final class JournalRecoveryTime {
+
+	private JournalRecoveryTime() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		int numberOfComments = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		Path directory = Files.createTempDirectory("journal-recovery");
+		initializeCollections();
+		InMemoryJournal.start(directory, 10, false, 0);
+		long started = System.nanoTime();
+		int lastCommentId = postComments(numberOfComments);
+		InMemoryJournal.stop();
+		System.out.println(String.format("posted %d comments in %.1f s, log %.1f MB", numberOfComments,
+				seconds(started), size(directory) / 1e6));
+
+		restart(lastCommentId);
+		started = System.nanoTime();
+		InMemoryJournal.recover(directory);
+		System.out.println(String.format("recovered from the log in %.1f s", seconds(started)));
+
+		InMemoryJournal.start(directory, 10, false, 0);
+		started = System.nanoTime();
+		InMemoryJournal.snapshot();
+		InMemoryJournal.stop();
+		System.out.println(String.format("wrote the snapshot in %.1f s, journal %.1f MB", seconds(started),
+				size(directory) / 1e6));
+
+		restart(lastCommentId);
+		started = System.nanoTime();
+		InMemoryJournal.recover(directory);
+		System.out.println(String.format("recovered from the snapshot in %.1f s", seconds(started)));
+	}
+
+	private static int postComments(int numberOfComments) {
+		CommentDaoImpl commentDao = new CommentDaoImpl();
+		CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+		User owner = InMemoryUserCollection.getUser("student1");
+		int lastCommentId = 0;
+		for (int i = 0; i < numberOfComments; i++) {
+			CatalogueItem item = InMemoryCatalogueItemCollection.getCatalogueItem(1 + i % 3);
+			Comment comment = commentDao.createComment("Comment number " + i + " on the book", owner, item);
+			catalogueItemDao.addComment(item, comment);
+			lastCommentId = comment.getId();
+		}
+		return lastCommentId;
+	}
+
+	/**
+	 * Drops everything recovery rebuilds, as if the process had been restarted
+	 */
+	private static void restart(int lastCommentId) {
+		for (int id = 1; id <= lastCommentId; id++) {
+			InMemoryCommentCollection.removeComment(id);
+		}
+		initializeCollections();
+		System.gc();
+	}
+
+	private static void initializeCollections() {
+		InMemoryUserCollection.initializeInMemoryUsers();
+		InMemoryCatalogueItemCollection.initializeInMemoryCatalogueItems();
+		InMemoryCommentLogCollection.initializeInMemoryCommentLogs();
+	}
+
+	private static double seconds(long startedNanos) {
+		return (System.nanoTime() - startedNanos) / 1e9;
+	}
+
+	private static long size(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.mapToLong(file -> file.toFile().length()).sum();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package org.crowdlib.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.IdIndexedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the membership checks made before a comment is favourited or an
+ * item followed, on the favourites, followed items and followers of power
+ * users and popular items, held in ArrayLists or in IdIndexedLists. The
+ * entity looked up is not a member, which is what every successful PUT
+ * checks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MembershipBenchmark {
+
+	@Param({ "ArrayList", "IdIndexedList" })
+	public String listType;
+
+	@Param({ "10000" })
+	public int memberships;
+
+	private List<Comment> favouriteComments;
+
+	private List<CatalogueItem> followedItems;
+
+	private List<User> followers;
+
+	private Comment newFavourite;
+
+	private CatalogueItem newFollowedItem;
+
+	private User newFollower;
+
+	@Setup
+	public void setup() {
+		boolean indexed = listType.equals("IdIndexedList");
+		favouriteComments = indexed ? new IdIndexedList<Comment>() : new ArrayList<Comment>();
+		followedItems = indexed ? new IdIndexedList<CatalogueItem>() : new ArrayList<CatalogueItem>();
+		followers = indexed ? new IdIndexedList<User>() : new ArrayList<User>();
+		for (int id = 1; id <= memberships; id++) {
+			favouriteComments.add(new Comment(id, "comment", Comment.NO_CREATION_TIMESTAMP));
+			followedItems.add(new CatalogueItem(id, "Book", "Author", null));
+			followers.add(user(id));
+		}
+		newFavourite = new Comment(memberships + 1, "comment", Comment.NO_CREATION_TIMESTAMP);
+		newFollowedItem = new CatalogueItem(memberships + 1, "Book", "Author", null);
+		newFollower = user(memberships + 1);
+	}
+
+	@Benchmark
+	public boolean isAmongFavourites() {
+		return favouriteComments.contains(newFavourite);
+	}
+
+	@Benchmark
+	public boolean isAmongFollowedItems() {
+		return followedItems.contains(newFollowedItem);
+	}
+
+	@Benchmark
+	public boolean isAmongFollowers() {
+		return followers.contains(newFollower);
+	}
+
+	private static User user(int id) {
+		return new User(id, "Ms.", "Jane", "Doe", RoleTypeConstants.GUEST_USER, "user" + id, "password");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(MembershipBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,119 @@
+package org.crowdlib.benchmarks;
+
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.SecurityContext;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.webservices.api.CommentResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares GET /items/{itemId}/comments/{commentId} for a comment that exists
+ * with one that does not, called directly on CommentResource. The previous
+ * not-found path, a new exception with a stack trace turned into a freshly
+ * built response, is reproduced for reference. The stack under a real
+ * container is several times deeper than here, so the savings there are
+ * larger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NotFoundBenchmark {
+
+	private static final int MISSING_COMMENT_ID = -1;
+
+	private CommentResource commentResource;
+
+	private int existingCommentId;
+
+	@Setup
+	public void setup() {
+		InMemoryUserCollection.initializeInMemoryUsers();
+		InMemoryCatalogueItemCollection.initializeInMemoryCatalogueItems();
+		User user = InMemoryUserCollection.getUser("student1");
+		CatalogueItem item = InMemoryCatalogueItemCollection.getAllCatalogueItems().get(0);
+		Comment comment = new Comment("existing", user, item);
+		InMemoryCommentCollection.addComment(comment);
+		existingCommentId = comment.getId();
+		commentResource = new CommentResource();
+		commentResource.setSecurityContext(new SecurityContext() {
+			@Override
+			public Principal getUserPrincipal() {
+				return () -> "student1";
+			}
+
+			@Override
+			public boolean isUserInRole(String role) {
+				return true;
+			}
+
+			@Override
+			public boolean isSecure() {
+				return false;
+			}
+
+			@Override
+			public String getAuthenticationScheme() {
+				return SecurityContext.BASIC_AUTH;
+			}
+		});
+	}
+
+	@Benchmark
+	public Object found() {
+		return commentResource.getComment(existingCommentId);
+	}
+
+	@Benchmark
+	public Object notFound() {
+		try {
+			return commentResource.getComment(MISSING_COMMENT_ID);
+		} catch (WebApplicationException e) {
+			return e.getResponse();
+		}
+	}
+
+	@Benchmark
+	public Object notFoundWithStackTraces() {
+		try {
+			if (InMemoryCommentCollection.getComment(MISSING_COMMENT_ID) == null) {
+				throw new Exception("Comment not available");
+			}
+			return null;
+		} catch (Exception e) {
+			try {
+				throw new WebApplicationException(Response.status(Status.NOT_FOUND).type(MediaType.TEXT_PLAIN)
+						.entity("Error : " + e.getMessage()).build());
+			} catch (WebApplicationException webApplicationException) {
+				return webApplicationException.getResponse();
+			}
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(NotFoundBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,129 @@
+package org.crowdlib.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.UserDaoImpl;
+import org.crowdlib.notifications.NotificationMode;
+import org.crowdlib.notifications.NotificationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures marking a page of comments as seen for a user with many pending
+ * notifications, comparing the read watermark against the previous scan of the
+ * notification list. Marking the same page again costs as much as the first
+ * time, so the state is only reset once per iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NotificationSeenBenchmark {
+
+	private static final int FOLLOWED_ITEMS = 10;
+	private static final int PAGE_SIZE = 20;
+
+	@Param({ "10000", "100000" })
+	public int pendingNotifications;
+
+	@Param({ "scan", "watermark" })
+	public String strategy;
+
+	private final CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+	private final UserDaoImpl userDao = new UserDaoImpl();
+	private final NotificationService notificationService = new NotificationService();
+
+	private User follower;
+	private CatalogueItem pageItem;
+	private List<Comment> page;
+	private List<Notification> pending;
+	private int nextItemId = 2000000;
+
+	@Setup
+	public void setup() {
+		NotificationService.setMode(NotificationMode.FAN_OUT_ON_WRITE);
+		follower = new User(1, "Ms.", "Jane", "Doe", RoleTypeConstants.GUEST_USER, "follower", "password");
+		User author = new User(2, "Mr.", "John", "Doe", RoleTypeConstants.GUEST_USER, "author", "password");
+		InMemoryUserCollection.addUser(follower);
+		Link linkToComment = Link.fromPath("http://localhost:9998/items/1/comments/1").rel("comment").build();
+		List<CatalogueItem> items = new ArrayList<CatalogueItem>();
+		for (int i = 0; i < FOLLOWED_ITEMS; i++) {
+			CatalogueItem item = new CatalogueItem(nextItemId++, "Book", "Author", null);
+			userDao.addItemToFollowedItems(follower, item);
+			catalogueItemDao.addFollower(item, follower);
+			items.add(item);
+		}
+		for (int i = 0; i < pendingNotifications; i++) {
+			CatalogueItem item = items.get(i % FOLLOWED_ITEMS);
+			Comment comment = new Comment("comment " + i, author, item);
+			int logPosition = catalogueItemDao.addComment(item, comment);
+			notificationService.commentAdded(item, comment, logPosition, linkToComment);
+		}
+		pending = new ArrayList<Notification>(follower.getNotifications());
+		// the oldest page of the most recently commented item, so the scan has to
+		// look at every notification
+		pageItem = items.get(FOLLOWED_ITEMS - 1);
+		page = catalogueItemDao.getSubsetOfComments(pageItem, 0, PAGE_SIZE);
+	}
+
+	@Setup(Level.Iteration)
+	public void resetSeenState() {
+		follower.setNotifications(new ArrayList<Notification>(pending));
+		follower.getReadWatermarks().clear();
+	}
+
+	@Benchmark
+	public void markPageSeen() {
+		if (strategy.equals("scan")) {
+			removeNotificationsOfSeenComments(follower, page);
+		} else {
+			notificationService.commentsSeen(follower, pageItem, page, PAGE_SIZE - 1);
+		}
+	}
+
+	@Benchmark
+	public List<Notification> markPageSeenAndGetNotifications() {
+		markPageSeen();
+		return notificationService.getNotifications(follower);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(NotificationSeenBenchmark.class.getSimpleName()).forks(1)
+				.warmupIterations(3).measurementIterations(5).build();
+		new Runner(options).run();
+	}
+
+	/**
+	 * The previous implementation: every notification is checked against every
+	 * comment of the page.
+	 */
+	private static void removeNotificationsOfSeenComments(User user, List<Comment> comments) {
+		for (Iterator<Notification> itr = user.getNotifications().iterator(); itr.hasNext();) {
+			if (comments.contains(itr.next().getComment())) {
+				itr.remove();
+			}
+		}
+	}
+}
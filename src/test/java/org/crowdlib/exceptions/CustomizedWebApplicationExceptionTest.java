@@ -0,0 +1,49 @@
+package org.crowdlib.exceptions;
+
+import static org.junit.Assert.*;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.junit.Test;
+
+public class CustomizedWebApplicationExceptionTest {
+
+	@Test
+	public void whenTheExceptionIsCreatedItsResponseShouldCarryTheStatusAndMessage() {
+		//when
+		CustomizedWebApplicationException exception = new CustomizedWebApplicationException(Status.NOT_FOUND,
+				CommentNotFoundException.NOT_AVAILABLE_MESSAGE);
+
+		//then
+		Response response = exception.getResponse();
+		assertEquals(404, response.getStatus());
+		assertEquals(MediaType.TEXT_PLAIN_TYPE, response.getMediaType());
+		assertEquals("Error : " + CommentNotFoundException.NOT_AVAILABLE_MESSAGE, response.getEntity());
+	}
+
+	@Test
+	public void whenTheSameErrorIsThrownTwiceEachExceptionShouldHaveItsOwnResponse() {
+		//when
+		CustomizedWebApplicationException first = new CustomizedWebApplicationException(Status.NOT_FOUND,
+				UserNotFoundException.NOT_AVAILABLE_MESSAGE);
+		CustomizedWebApplicationException second = new CustomizedWebApplicationException(Status.NOT_FOUND,
+				UserNotFoundException.NOT_AVAILABLE_MESSAGE);
+
+		//then
+		assertNotSame(first.getResponse(), second.getResponse());
+		assertEquals(first.getResponse().getEntity(), second.getResponse().getEntity());
+	}
+
+	@Test
+	public void whenTheExceptionIsCreatedItShouldNotRecordAStackTrace() {
+		//when
+		CustomizedWebApplicationException exception = new CustomizedWebApplicationException(Status.BAD_REQUEST,
+				"Invalid cursor");
+
+		//then
+		assertEquals(0, exception.getStackTrace().length);
+		assertEquals(400, exception.getResponse().getStatus());
+	}
+}
@@ -0,0 +1,75 @@
+package org.crowdlib.ids;
+
+import static org.junit.Assert.*;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class IdAllocatorTest {
+
+	private static final int THREADS = 8;
+	private static final int IDS_PER_THREAD = 10000;
+
+	@Test
+	public void whenIdsAreAllocatedConcurrentlyByTheAtomicAllocatorTheyShouldAllBeUnique() throws InterruptedException {
+		//when
+		Set<Integer> ids = allocateConcurrently(new AtomicIdAllocator());
+
+		//then
+		assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+	}
+
+	@Test
+	public void whenIdsAreAllocatedConcurrentlyByTheBlockLeasingAllocatorTheyShouldAllBeUnique() throws InterruptedException {
+		//when
+		Set<Integer> ids = allocateConcurrently(new BlockLeasingIdAllocator(64));
+
+		//then
+		assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+	}
+
+	@Test
+	public void whenTheAtomicAllocatorStartsAfterAnIdItShouldHandOutTheFollowingIds() {
+		//given
+		AtomicIdAllocator allocator = new AtomicIdAllocator(41);
+
+		//then
+		assertEquals(42, allocator.nextId());
+		assertEquals(43, allocator.nextId());
+	}
+
+	@Test
+	public void whenASingleThreadUsesTheBlockLeasingAllocatorItsIdsShouldBeConsecutiveWithinABlock() {
+		//given
+		BlockLeasingIdAllocator allocator = new BlockLeasingIdAllocator(4);
+
+		//when
+		int first = allocator.nextId();
+
+		//then
+		assertEquals(first + 1, allocator.nextId());
+		assertEquals(first + 2, allocator.nextId());
+		assertEquals(first + 3, allocator.nextId());
+	}
+
+	private Set<Integer> allocateConcurrently(final IdAllocator allocator) throws InterruptedException {
+		final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		final CountDownLatch done = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < IDS_PER_THREAD; i++) {
+						ids.add(allocator.nextId());
+					}
+					done.countDown();
+				}
+			}).start();
+		}
+		done.await();
+		return ids;
+	}
+}
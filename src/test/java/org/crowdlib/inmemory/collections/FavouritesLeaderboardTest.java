@@ -0,0 +1,132 @@
+package org.crowdlib.inmemory.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.model.CommentDaoImpl;
+import org.junit.Test;
+
+public class FavouritesLeaderboardTest {
+
+	private static final int ROUNDS = 500;
+
+	private static final AtomicInteger nextId = new AtomicInteger(60000000);
+
+	CatalogueItem item = new CatalogueItem(nextId.getAndIncrement(), "Book", "Author", null);
+
+	CommentLog commentLog = InMemoryCommentLogCollection.getCommentLog(item);
+
+	CommentDaoImpl commentDao = new CommentDaoImpl();
+
+	@Test
+	public void whenFewerCommentsAreFavouritedThanRequestedTheOthersShouldFollowInLogOrder() {
+		//given
+		Comment first = post();
+		Comment second = post();
+		Comment third = post();
+		Comment reply = new Comment(nextId.getAndIncrement(), "reply", Comment.NO_CREATION_TIMESTAMP);
+		reply.setParentComment(first);
+		reply.setCatalogueItem(item);
+
+		//when
+		commentDao.incrementFavouritesCount(second);
+		commentDao.incrementFavouritesCount(reply);
+
+		//then
+		assertEquals(Arrays.asList(second), commentLog.readMostFavourited(1));
+		assertEquals(Arrays.asList(second, first, third), commentLog.readMostFavourited(10));
+	}
+
+	@Test
+	public void whenCommentsAreFavouritedConcurrentlyTheirRanksShouldMatchTheirFinalCounts() throws InterruptedException {
+		//given
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		List<Comment> comments = new ArrayList<Comment>();
+		for (int i = 0; i < 10; i++) {
+			comments.add(post());
+		}
+		AtomicInteger incompleteReads = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> favouriting = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			favouriting.add(new Thread(() -> {
+				awaitQuietly(start);
+				for (int round = 0; round < ROUNDS; round++) {
+					// the i-th comment is favourited i + 1 times a round
+					for (int i = 0; i < comments.size(); i++) {
+						for (int j = 0; j <= i; j++) {
+							commentDao.incrementFavouritesCount(comments.get(i));
+						}
+					}
+					if (distinct(commentLog.readMostFavourited(10)) != 10) {
+						incompleteReads.incrementAndGet();
+					}
+				}
+			}));
+		}
+
+		//when
+		for (Thread thread : favouriting) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : favouriting) {
+			thread.join();
+		}
+
+		//then
+		assertEquals(0, incompleteReads.get());
+		awaitMaterialized(comments);
+		List<Comment> top = commentLog.readMostFavourited(10);
+		for (int rank = 0; rank < 10; rank++) {
+			assertSame(comments.get(9 - rank), top.get(rank));
+			assertEquals(threads * ROUNDS * (10 - rank), top.get(rank).getFavouritesCount());
+		}
+		assertEquals(10, commentLog.getFavouritesLeaderboard().size());
+	}
+
+	/**
+	 * Comments promoted to striped counters are ranked by what has been
+	 * materialized, which catches up in the background
+	 */
+	private static void awaitMaterialized(List<Comment> comments) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		for (Comment comment : comments) {
+			while (comment.materializedFavouritesCount() != comment.getFavouritesCount()
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	private static int distinct(List<Comment> comments) {
+		Set<Comment> distinct = Collections.newSetFromMap(new IdentityHashMap<Comment, Boolean>());
+		distinct.addAll(comments);
+		return distinct.size();
+	}
+
+	private Comment post() {
+		Comment comment = new Comment(nextId.getAndIncrement(), "comment", Comment.NO_CREATION_TIMESTAMP);
+		comment.setCatalogueItem(item);
+		commentLog.append(comment);
+		return comment;
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
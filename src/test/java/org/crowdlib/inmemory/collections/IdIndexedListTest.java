@@ -0,0 +1,64 @@
+package org.crowdlib.inmemory.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.junit.Test;
+
+public class IdIndexedListTest {
+
+	IdIndexedList<Comment> list = new IdIndexedList<Comment>();
+
+	@Test
+	public void whenEntitiesAreAddedTheyShouldBeFoundByIdAndIteratedInTheOrderTheyWereAdded() {
+		//given
+		Comment third = new Comment(3, "third", Comment.NO_CREATION_TIMESTAMP);
+		Comment first = new Comment(1, "first", Comment.NO_CREATION_TIMESTAMP);
+
+		//when
+		list.add(third);
+		list.add(first);
+
+		//then
+		assertEquals(Arrays.asList(third, first), list);
+		assertTrue(list.contains(first));
+		assertTrue(list.contains(new Comment(3, "same id", Comment.NO_CREATION_TIMESTAMP)));
+		assertFalse(list.contains(new Comment(2, "other id", Comment.NO_CREATION_TIMESTAMP)));
+		assertFalse(list.contains("not an entity"));
+	}
+
+	@Test
+	public void whenAnEntityIsRemovedItShouldNoLongerBeFoundUnlessAnotherElementHasItsId() {
+		//given
+		Comment comment = new Comment(1, "comment", Comment.NO_CREATION_TIMESTAMP);
+		Comment other = new Comment(2, "other", Comment.NO_CREATION_TIMESTAMP);
+		list.addAll(Arrays.asList(comment, other, comment));
+
+		//when
+		list.remove(0);
+		boolean containedAfterFirstRemoval = list.contains(comment);
+		list.removeIf(element -> element.getId() == 1);
+
+		//then
+		assertTrue(containedAfterFirstRemoval);
+		assertFalse(list.contains(comment));
+		assertEquals(Arrays.asList(other), list);
+	}
+
+	@Test
+	public void whenAnEntityHasNoIdItShouldBeFoundByComparingIt() {
+		//given
+		IdIndexedList<User> users = new IdIndexedList<User>();
+		User withoutId = new User("no_id");
+
+		//when
+		users.add(withoutId);
+
+		//then
+		assertTrue(users.contains(withoutId));
+		assertFalse(users.contains(new User(1, "Ms.", "Jane", "Doe", "guest", "jane", "password")));
+	}
+}
@@ -0,0 +1,93 @@
+package org.crowdlib.inmemory.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.crowdlib.entities.Comment;
+import org.junit.After;
+import org.junit.Test;
+
+public class InMemoryCommentCollectionStressTest {
+
+	private static final int FIRST_ID = 50000000;
+	private static final int COMMENTS_PER_THREAD = 20000;
+
+	private static final AtomicInteger nextFreeId = new AtomicInteger(FIRST_ID);
+
+	@After
+	public void tearDown() {
+		for (int id = FIRST_ID; id < nextFreeId.get(); id++) {
+			InMemoryCommentCollection.removeComment(id);
+		}
+	}
+
+	@Test
+	public void whenCommentsAreAddedConcurrentlyNoneOfThemShouldBeLost() throws InterruptedException {
+		//given
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		List<List<Comment>> commentsPerThread = createComments(threads);
+
+		//when
+		runConcurrently(commentsPerThread);
+
+		//then
+		for (List<Comment> comments : commentsPerThread) {
+			for (Comment comment : comments) {
+				assertSame(comment, InMemoryCommentCollection.getComment(comment.getId()));
+			}
+		}
+	}
+
+	private List<List<Comment>> createComments(int threads) {
+		List<List<Comment>> commentsPerThread = new ArrayList<List<Comment>>();
+		for (int t = 0; t < threads; t++) {
+			List<Comment> comments = new ArrayList<Comment>(COMMENTS_PER_THREAD);
+			for (int i = 0; i < COMMENTS_PER_THREAD; i++) {
+				Comment comment = new Comment();
+				comment.setId(nextFreeId.getAndIncrement());
+				comments.add(comment);
+			}
+			commentsPerThread.add(comments);
+		}
+		return commentsPerThread;
+	}
+
+	/**
+	 * Starts one thread per list, each adding its comments and then reading them
+	 * back, and waits for all of them to finish.
+	 */
+	private void runConcurrently(List<List<Comment>> commentsPerThread) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(commentsPerThread.size());
+		final AtomicInteger misses = new AtomicInteger();
+		for (final List<Comment> comments : commentsPerThread) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (Comment comment : comments) {
+							InMemoryCommentCollection.addComment(comment);
+						}
+						for (Comment comment : comments) {
+							if (InMemoryCommentCollection.getComment(comment.getId()) != comment) {
+								misses.incrementAndGet();
+							}
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		done.await();
+		assertEquals(0, misses.get());
+	}
+}
@@ -0,0 +1,89 @@
+package org.crowdlib.inmemory.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class IntBitmapTest {
+
+	IntBitmap bitmap = new IntBitmap();
+
+	@Test
+	public void whenManyValuesAreAddedAndRemovedTheBitmapShouldBehaveLikeATreeSet() {
+		//given
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		Random random = new Random(20);
+
+		//when
+		for (int i = 0; i < 200000; i++) {
+			// dense enough for the first chunk to become a bitmap and back
+			int value = random.nextInt(3) == 0 ? random.nextInt(1000000) : random.nextInt(12000);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(value), bitmap.remove(value));
+			} else {
+				assertEquals(expected.add(value), bitmap.add(value));
+			}
+		}
+
+		//then
+		assertEquals(expected.size(), bitmap.getCardinality());
+		int[] values = bitmap.toArray();
+		int index = 0;
+		for (int value : expected) {
+			assertEquals(value, values[index++]);
+			assertTrue(bitmap.contains(value));
+		}
+		assertFalse(bitmap.contains(1000000));
+	}
+
+	@Test
+	public void whenTwoBitmapsAreIntersectedOnlyTheValuesInBothShouldRemain() {
+		//given
+		IntBitmap other = new IntBitmap();
+		for (int value = 0; value < 200000; value++) {
+			// the multiples of 2 fill bitmap chunks, those of 30 array chunks
+			if (value % 2 == 0) {
+				bitmap.add(value);
+			}
+			if (value % 30 == 0) {
+				other.add(value);
+			}
+			if (value % 3 == 0 && value < 70000) {
+				other.add(value);
+			}
+		}
+
+		//when
+		IntBitmap intersection = IntBitmap.and(bitmap, other);
+
+		//then
+		for (int value = 0; value < 200000; value++) {
+			boolean inBoth = value % 2 == 0 && (value % 30 == 0 || (value % 3 == 0 && value < 70000));
+			assertEquals(inBoth, intersection.contains(value));
+		}
+		assertEquals(intersection.getCardinality(), IntBitmap.and(other, bitmap).getCardinality());
+	}
+
+	@Test
+	public void whenABitmapIsCopiedChangesToTheCopyShouldNotAffectTheOriginal() {
+		//given
+		for (int value = 0; value < 10000; value++) {
+			bitmap.add(value);
+		}
+		bitmap.add(-1);
+
+		//when
+		IntBitmap copy = bitmap.copy();
+		copy.remove(5);
+		copy.add(20000);
+
+		//then
+		assertTrue(bitmap.contains(5));
+		assertFalse(bitmap.contains(20000));
+		assertEquals(10001, bitmap.getCardinality());
+		assertEquals(-1, bitmap.toArray()[10000]);
+	}
+}
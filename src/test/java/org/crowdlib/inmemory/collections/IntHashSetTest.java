@@ -0,0 +1,53 @@
+package org.crowdlib.inmemory.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IntHashSetTest {
+
+	IntHashSet set = new IntHashSet();
+
+	@Test
+	public void whenZeroAndNegativeValuesAreAddedTheyShouldBeContainedLikeAnyOtherValue() {
+		//when
+		boolean zeroAdded = set.add(0);
+		set.add(-1);
+		boolean zeroAddedAgain = set.add(0);
+
+		//then
+		assertTrue(zeroAdded);
+		assertFalse(zeroAddedAgain);
+		assertTrue(set.contains(0));
+		assertTrue(set.contains(-1));
+		assertFalse(set.contains(1));
+		assertEquals(2, set.size());
+	}
+
+	@Test
+	public void whenManyValuesAreAddedAndRemovedTheSetShouldBehaveLikeAHashSet() {
+		//given
+		Set<Integer> expected = new HashSet<Integer>();
+		Random random = new Random(19);
+
+		//when
+		for (int i = 0; i < 100000; i++) {
+			int value = random.nextInt(2000) - 100;
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(value), set.remove(value));
+			} else {
+				assertEquals(expected.add(value), set.add(value));
+			}
+		}
+
+		//then
+		assertEquals(expected.size(), set.size());
+		for (int value = -100; value < 1900; value++) {
+			assertEquals(expected.contains(value), set.contains(value));
+		}
+	}
+}
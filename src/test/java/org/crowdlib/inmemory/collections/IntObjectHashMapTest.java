@@ -0,0 +1,95 @@
+package org.crowdlib.inmemory.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntObjectHashMapTest {
+
+	IntObjectHashMap<String> map = new IntObjectHashMap<String>();
+
+	@Test
+	public void whenAValueIsPutItShouldBeReturnedForItsKey() {
+		//when
+		map.put(7, "seven");
+
+		//then
+		assertEquals("seven", map.get(7));
+		assertNull(map.get(8));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void whenAKeyIsPutTwiceTheSecondValueShouldReplaceTheFirst() {
+		//given
+		map.put(7, "seven");
+
+		//when
+		String previous = map.put(7, "SEVEN");
+
+		//then
+		assertEquals("seven", previous);
+		assertEquals("SEVEN", map.get(7));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void whenZeroAndNegativeKeysArePutTheyShouldBeStoredLikeAnyOtherKey() {
+		//when
+		map.put(0, "zero");
+		map.put(-1, "minus one");
+
+		//then
+		assertEquals("zero", map.get(0));
+		assertEquals("minus one", map.get(-1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void whenANullValueIsPutItShouldBeRejected() {
+		//when
+		map.put(1, null);
+	}
+
+	@Test
+	public void whenManyKeysArePutAndRemovedTheMapShouldBehaveLikeAHashMap() {
+		//given
+		Map<Integer, String> expected = new HashMap<Integer, String>();
+		Random random = new Random(42);
+
+		//when
+		for (int i = 0; i < 200000; i++) {
+			int key = random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				String value = "v" + i;
+				assertEquals(expected.put(key, value), map.put(key, value));
+			}
+		}
+
+		//then
+		assertEquals(expected.size(), map.size());
+		for (int key = 0; key < 5000; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+		assertEquals(expected.size(), map.values().size());
+	}
+
+	@Test
+	public void whenTheMapIsClearedItShouldBeEmpty() {
+		//given
+		map.put(1, "one");
+		map.put(2, "two");
+
+		//when
+		map.clear();
+
+		//then
+		assertTrue(map.isEmpty());
+		assertNull(map.get(1));
+	}
+}
@@ -0,0 +1,49 @@
+package org.crowdlib.inmemory.collections;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class StripedCounterTest {
+
+	private static final int ADDS = 100000;
+
+	@Test
+	public void whenThreadsAddWhileTheCounterIsSealedEveryAdditionShouldBeEitherSealedOrRefused()
+			throws InterruptedException {
+		//given
+		StripedCounter counter = new StripedCounter(4);
+		AtomicLong accepted = new AtomicLong();
+		List<Thread> adding = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			adding.add(new Thread(() -> {
+				for (int i = 0; i < ADDS; i++) {
+					if (counter.add(1)) {
+						accepted.incrementAndGet();
+					}
+				}
+			}));
+		}
+
+		//when
+		for (Thread thread : adding) {
+			thread.start();
+		}
+		while (accepted.get() < ADDS) {
+			Thread.yield();
+		}
+		long sealed = counter.seal();
+		for (Thread thread : adding) {
+			thread.join();
+		}
+
+		//then
+		assertTrue(counter.isSealed());
+		assertEquals(accepted.get(), sealed);
+		assertFalse(counter.add(1));
+	}
+}
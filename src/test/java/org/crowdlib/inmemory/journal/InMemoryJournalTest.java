@@ -0,0 +1,285 @@
+package org.crowdlib.inmemory.journal;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.crowdlib.constants.ExplanatoryMessagesConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentCollection;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.CommentDaoImpl;
+import org.crowdlib.model.UserDaoImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InMemoryJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	Path directory;
+
+	CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+	CommentDaoImpl commentDao = new CommentDaoImpl();
+	UserDaoImpl userDao = new UserDaoImpl();
+
+	List<Integer> journaledCommentIds = new ArrayList<Integer>();
+
+	@Before
+	public void setup() {
+		directory = folder.getRoot().toPath().resolve("journal");
+		initializeCollections();
+		InMemoryJournal.start(directory, 0, true, 0);
+	}
+
+	@After
+	public void tearDown() {
+		InMemoryJournal.stop();
+	}
+
+	@Test
+	public void whenTheCollectionsAreRecoveredFromTheLogTheyShouldHoldTheJournaledChanges() {
+		//given
+		Comment comment = postComment("student1", "recovered");
+		Comment reply = commentDao.createComment("reply", user("student2"), item());
+		journaledCommentIds.add(reply.getId());
+		commentDao.addReply(comment, reply);
+		userDao.addCommentToFavourites(user("student2"), comment);
+		commentDao.incrementFavouritesCount(comment);
+		userDao.addItemToFollowedItems(user("student2"), item());
+		catalogueItemDao.addFollower(item(), user("student2"));
+		Comment deleted = postComment("student2", "deleted");
+		commentDao.deleteComment(deleted, ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE);
+
+		//when
+		int lastCommentId = restart();
+
+		//then
+		Comment recovered = InMemoryCommentCollection.getComment(comment.getId());
+		Comment recoveredReply = InMemoryCommentCollection.getComment(reply.getId());
+		assertNotSame(comment, recovered);
+		assertEquals(deleted.getId().intValue(), lastCommentId);
+		assertEquals("recovered", recovered.getCommentContent());
+		assertEquals(comment.getCreationTimestamp(), recovered.getCreationTimestamp());
+		assertSame(user("student1"), recovered.getOwner());
+		assertSame(item(), recovered.getCatalogueItem());
+		assertEquals(comment.getLinkToSelf().getUri(), recovered.getLinkToSelf().getUri());
+		assertEquals(1, recovered.getFavouritesCount());
+		assertEquals(Arrays.asList(recoveredReply), recovered.getReplies());
+		assertSame(recovered, recoveredReply.getParentComment());
+		assertEquals(Arrays.asList(recovered, recoveredReply), commentDao.getThread(recoveredReply));
+		assertEquals(ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE,
+				InMemoryCommentCollection.getComment(deleted.getId()).getCommentContent());
+		assertEquals(Arrays.asList(recovered, InMemoryCommentCollection.getComment(deleted.getId())),
+				catalogueItemDao.getCommentsAfter(item(), -1, 10).getComments());
+		assertEquals(2, item().getLinksToEachComment().size());
+		assertEquals(Arrays.asList(recovered), userDao.getUserFavouriteComments(user("student2")));
+		assertEquals(Arrays.asList(item()), userDao.getUserFollowedItems(user("student2")));
+		assertEquals(Arrays.asList(user("student2")), catalogueItemDao.getAllFollowers(item()));
+		assertEquals(0, userDao.getReadWatermark(user("student2"), item()));
+	}
+
+	@Test
+	public void whenASnapshotWasTakenRecoveryShouldLoadItAndReplayTheLogWrittenAfterIt() throws IOException {
+		//given
+		Comment first = postComment("student1", "in the snapshot");
+		userDao.advanceReadWatermark(user("student1"), item(), 0);
+		InMemoryJournal.snapshot();
+		Comment second = postComment("student2", "in the log");
+
+		//when
+		int lastCommentId = restart();
+
+		//then
+		assertEquals(1, WriteAheadLog.segments(directory).size());
+		// the snapshot holds every comment in the collection, including those of other tests
+		assertTrue(lastCommentId >= second.getId());
+		List<Comment> comments = catalogueItemDao.getCommentsAfter(item(), -1, 10).getComments();
+		assertEquals(2, comments.size());
+		assertEquals(first.getId(), comments.get(0).getId());
+		assertEquals("in the snapshot", comments.get(0).getCommentContent());
+		assertEquals(second.getId(), comments.get(1).getId());
+		assertEquals(0, userDao.getReadWatermark(user("student1"), item()));
+	}
+
+	@Test
+	public void whenSnapshotsAreTakenWhileCommentsArePostedRecoveryShouldRestoreEveryCommentInOrder()
+			throws InterruptedException {
+		//given
+		AtomicBoolean posting = new AtomicBoolean(true);
+		List<Comment> posted = new ArrayList<Comment>();
+		Thread poster = new Thread(() -> {
+			while (posting.get()) {
+				Comment comment = commentDao.createComment("posted during a snapshot", user("student1"), item());
+				catalogueItemDao.addComment(item(), comment);
+				posted.add(comment);
+			}
+		});
+		poster.start();
+
+		//when
+		for (int i = 0; i < 20; i++) {
+			InMemoryJournal.snapshot();
+		}
+		posting.set(false);
+		poster.join();
+		for (Comment comment : posted) {
+			journaledCommentIds.add(comment.getId());
+		}
+		restart();
+
+		//then
+		List<Comment> recovered = catalogueItemDao.getAllComments(item());
+		assertEquals(posted.size(), recovered.size());
+		for (int i = 0; i < posted.size(); i++) {
+			assertEquals(posted.get(i).getId(), recovered.get(i).getId());
+		}
+	}
+
+	@Test
+	public void whenACommentLoadedFromASnapshotIsDeletedItsContentShouldBeReplaced() {
+		//given
+		Comment comment = postComment("student1", "mapped from the snapshot");
+		InMemoryJournal.snapshot();
+		restart();
+		Comment recovered = InMemoryCommentCollection.getComment(comment.getId());
+		String loadedContent = recovered.getCommentContent();
+
+		//when
+		commentDao.deleteComment(recovered, ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE);
+
+		//then
+		assertEquals("mapped from the snapshot", loadedContent);
+		assertEquals(ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE, recovered.getCommentContent());
+	}
+
+	@Test
+	public void whenTheLogIsReplayedOverChangesAlreadyRecoveredNothingShouldBeAppliedTwice() {
+		//given
+		Comment comment = postComment("student1", "once");
+		userDao.addCommentToFavourites(user("student2"), comment);
+		commentDao.incrementFavouritesCount(comment);
+		commentDao.incrementFavouritesCount(comment);
+		userDao.addItemToFollowedItems(user("student2"), item());
+		catalogueItemDao.addFollower(item(), user("student2"));
+		restart();
+
+		//when
+		InMemoryJournal.recover(directory);
+
+		//then
+		Comment recovered = InMemoryCommentCollection.getComment(comment.getId());
+		assertEquals(Arrays.asList(recovered), catalogueItemDao.getAllComments(item()));
+		assertEquals(1, item().getLinksToEachComment().size());
+		assertEquals(2, recovered.getFavouritesCount());
+		assertEquals(1, userDao.getUserFavouriteComments(user("student2")).size());
+		assertEquals(1, userDao.getUserFollowedItems(user("student2")).size());
+		assertEquals(1, catalogueItemDao.getAllFollowers(item()).size());
+	}
+
+	@Test
+	public void whenAReadWatermarkAdvancedWithoutWaitingForTheDiskTheJournalShouldStillHoldItAfterAStop() {
+		//given
+		postComment("student1", "read");
+
+		//when
+		userDao.advanceReadWatermark(user("student2"), item(), 0);
+		restart();
+
+		//then
+		assertEquals(0, userDao.getReadWatermark(user("student2"), item()));
+	}
+
+	@Test
+	public void whenACommentWasPostedInAnHourRepeatedByAClockChangeItsCreationTimeShouldBeRecoveredExactly()
+			throws IOException {
+		//given
+		Comment inSnapshot = commentCreatedAt(inRepeatedHour());
+		InMemoryJournal.snapshot();
+		Comment inLog = commentCreatedAt(inRepeatedHour() + 1);
+
+		//when
+		restart();
+
+		//then
+		assertEquals(inSnapshot.getCreationTimestamp(),
+				InMemoryCommentCollection.getComment(inSnapshot.getId()).getCreationTimestamp());
+		assertEquals(inLog.getCreationTimestamp(),
+				InMemoryCommentCollection.getComment(inLog.getId()).getCreationTimestamp());
+	}
+
+	private Comment commentCreatedAt(long creationTimestamp) {
+		Comment comment = new Comment(Comment.getIdAllocator().nextId(), "posted", creationTimestamp);
+		comment.setOwner(user("student1"));
+		comment.setCatalogueItem(item());
+		journaledCommentIds.add(comment.getId());
+		InMemoryCommentCollection.addComment(comment);
+		InMemoryJournal.commentCreated(comment);
+		return comment;
+	}
+
+	/**
+	 * An instant in the second occurrence of a local hour, the last time the
+	 * clocks of the default zone went back, or any instant if they never did
+	 */
+	private static long inRepeatedHour() {
+		ZoneRules rules = ZoneId.systemDefault().getRules();
+		ZoneOffsetTransition transition = rules.previousTransition(Instant.now());
+		while (transition != null && !transition.isOverlap()) {
+			transition = rules.previousTransition(transition.getInstant());
+		}
+		return transition == null ? 1500000000123L : transition.getInstant().toEpochMilli() + 123;
+	}
+
+	private Comment postComment(String username, String content) {
+		Comment comment = commentDao.createComment(content, user(username), item());
+		journaledCommentIds.add(comment.getId());
+		catalogueItemDao.addComment(item(), comment);
+		return comment;
+	}
+
+	/**
+	 * Stops the journal and starts over with the collections the application
+	 * starts with, then recovers them from the journal
+	 */
+	private int restart() {
+		InMemoryJournal.stop();
+		for (Integer id : journaledCommentIds) {
+			InMemoryCommentCollection.removeComment(id);
+		}
+		initializeCollections();
+		return InMemoryJournal.recover(directory);
+	}
+
+	private static void initializeCollections() {
+		InMemoryUserCollection.initializeInMemoryUsers();
+		InMemoryCatalogueItemCollection.initializeInMemoryCatalogueItems();
+		InMemoryCommentLogCollection.initializeInMemoryCommentLogs();
+	}
+
+	private static User user(String username) {
+		return InMemoryUserCollection.getUser(username);
+	}
+
+	private static CatalogueItem item() {
+		return InMemoryCatalogueItemCollection.getCatalogueItem(2);
+	}
+}
@@ -0,0 +1,105 @@
+package org.crowdlib.inmemory.journal;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.crowdlib.entities.Utf8Text;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedInputTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void whenValuesCrossTheEndOfAWindowTheyShouldBeReadFromTheNextOne() throws IOException {
+		//given
+		Path file = write(output -> {
+			output.writeInt(1);
+			output.writeLong(2L);
+			output.write("crosses the window".getBytes("UTF-8"));
+			output.writeInt(3);
+		});
+
+		//when
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedInput input = new MappedInput(channel, 6);
+			int first = input.readInt();
+			long second = input.readLong();
+			Utf8Text text = input.readText(18);
+			int third = input.readInt();
+
+			//then
+			assertEquals(1, first);
+			assertEquals(2L, second);
+			assertEquals("crosses the window", text.toString());
+			assertEquals(18, text.length());
+			assertEquals(3, third);
+		}
+	}
+
+	@Test
+	public void whenATextIsReadAfterTheChannelIsClosedItShouldStillBeDecoded() throws IOException {
+		//given
+		Path file = write(output -> output.write("still mapped".getBytes("UTF-8")));
+		Utf8Text text;
+
+		//when
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			text = new MappedInput(channel, MappedInput.WINDOW_SIZE).readText(12);
+		}
+
+		//then
+		assertEquals("still mapped", text.toString());
+	}
+
+	@Test(expected = EOFException.class)
+	public void whenTheFileEndsBeforeAValueReadingShouldFail() throws IOException {
+		//given
+		Path file = write(output -> output.writeShort(1));
+
+		//when
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			new MappedInput(channel, MappedInput.WINDOW_SIZE).readInt();
+		}
+	}
+
+	@Test
+	public void whenLinesAreReadTheyShouldEndLikeThoseOfADataInputStream() throws IOException {
+		//given
+		Path file = write(output -> output.writeBytes("first\nsecond\r\nthird\rlast"));
+
+		//when
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedInput input = new MappedInput(channel, 4);
+
+			//then
+			assertEquals("first", input.readLine());
+			assertEquals("second", input.readLine());
+			assertEquals("third", input.readLine());
+			assertEquals("last", input.readLine());
+			assertNull(input.readLine());
+		}
+	}
+
+	private interface Contents {
+		void writeTo(DataOutputStream output) throws IOException;
+	}
+
+	private Path write(Contents contents) throws IOException {
+		Path file = folder.newFile().toPath();
+		try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(file))) {
+			contents.writeTo(output);
+		}
+		return file;
+	}
+}
@@ -0,0 +1,168 @@
+package org.crowdlib.inmemory.journal;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WriteAheadLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	Path directory;
+
+	@Before
+	public void setup() {
+		directory = folder.getRoot().toPath().resolve("journal");
+	}
+
+	@Test
+	public void whenRecordsAreAppendedTheyShouldBeReadBackInTheSameOrder() throws IOException {
+		//given
+		WriteAheadLog log = new WriteAheadLog(directory, 0, true);
+
+		//when
+		log.awaitDurable(log.append(bytes("first")));
+		log.awaitDurable(log.append(bytes("second")));
+		log.close();
+
+		//then
+		assertEquals(Arrays.asList("first", "second"), readAll());
+	}
+
+	@Test
+	public void whenTheLastRecordIsCutShortReadingShouldStopBeforeItAndDropIt() throws IOException {
+		//given
+		WriteAheadLog log = new WriteAheadLog(directory, 0, true);
+		log.append(bytes("complete"));
+		log.append(bytes("cut short"));
+		log.close();
+		Path segment = directory.resolve(Files.list(directory).findFirst().get().getFileName());
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+
+		//when
+		List<String> records = new ArrayList<String>();
+		boolean intact = WriteAheadLog.read(directory, 1, record -> records.add(string(record)));
+
+		//then
+		assertFalse(intact);
+		assertEquals(Arrays.asList("complete"), records);
+		assertEquals(Arrays.asList("complete"), readAll());
+	}
+
+	@Test
+	public void whenARecordIsCorruptedReadingShouldStopAtIt() throws IOException {
+		//given
+		WriteAheadLog log = new WriteAheadLog(directory, 0, true);
+		log.append(bytes("first"));
+		log.append(bytes("second"));
+		log.close();
+		Path segment = directory.resolve(Files.list(directory).findFirst().get().getFileName());
+		byte[] contents = Files.readAllBytes(segment);
+		contents[contents.length - 1] ^= 1;
+		Files.write(segment, contents);
+
+		//when
+		List<String> records = readAll();
+
+		//then
+		assertEquals(Arrays.asList("first"), records);
+	}
+
+	@Test
+	public void whenTheLogIsRolledTheFollowingRecordsShouldGoToTheNewSegment() throws IOException {
+		//given
+		WriteAheadLog log = new WriteAheadLog(directory, 0, true);
+		log.append(bytes("before"));
+
+		//when
+		long newSegment = log.roll();
+		log.awaitDurable(log.append(bytes("after")));
+		log.deleteSegmentsBefore(newSegment);
+		log.close();
+
+		//then
+		assertEquals(Collections.singletonList(newSegment), WriteAheadLog.segments(directory));
+		assertEquals(Arrays.asList("after"), readAll());
+	}
+
+	@Test
+	public void whenTheLogIsReopenedItShouldContinueInANewSegment() throws IOException {
+		//given
+		WriteAheadLog log = new WriteAheadLog(directory, 0, true);
+		log.append(bytes("first run"));
+		log.close();
+
+		//when
+		log = new WriteAheadLog(directory, 0, true);
+		log.append(bytes("second run"));
+		log.close();
+
+		//then
+		assertEquals(Arrays.asList(1L, 2L), WriteAheadLog.segments(directory));
+		assertEquals(Arrays.asList("first run", "second run"), readAll());
+	}
+
+	@Test
+	public void whenManyThreadsAppendAndAwaitEveryRecordShouldBeInTheLog() throws Exception {
+		//given
+		WriteAheadLog log = new WriteAheadLog(directory, 1, true);
+		int threads = 8;
+		int recordsPerThread = 200;
+		List<Thread> appenders = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			String prefix = "thread" + t + "-";
+			appenders.add(new Thread(() -> {
+				for (int i = 0; i < recordsPerThread; i++) {
+					log.awaitDurable(log.append(bytes(prefix + i)));
+				}
+			}));
+		}
+
+		//when
+		for (Thread appender : appenders) {
+			appender.start();
+		}
+		for (Thread appender : appenders) {
+			appender.join();
+		}
+		log.close();
+
+		//then
+		List<String> records = readAll();
+		assertEquals(threads * recordsPerThread, records.size());
+		assertEquals(threads * recordsPerThread, records.stream().distinct().count());
+	}
+
+	private List<String> readAll() throws IOException {
+		List<String> records = new ArrayList<String>();
+		for (long segment : WriteAheadLog.segments(directory)) {
+			WriteAheadLog.read(directory, segment, record -> records.add(string(record)));
+		}
+		return records;
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] record) {
+		return new String(record, StandardCharsets.UTF_8);
+	}
+}
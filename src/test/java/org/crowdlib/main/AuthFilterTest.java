@@ -0,0 +1,148 @@
+package org.crowdlib.main;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.User;
+import org.crowdlib.model.UserDao;
+import org.glassfish.jersey.internal.util.Base64;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AuthFilterTest {
+
+	@Mock
+	UserDao mockUserDao;
+
+	@Mock
+	ContainerRequestContext mockRequestContext;
+
+	AuthFilter authFilter;
+
+	User user;
+
+	@Before
+	public void setup() {
+		authFilter = new AuthFilter(mockUserDao, 10, 60000);
+		user = new User(1, "Mr.", "Fady", "Zaki", RoleTypeConstants.GUEST_USER, "student1", "whoopey");
+		when(mockUserDao.findUserByUsername("student1")).thenReturn(Optional.of(user));
+	}
+
+	@Test
+	public void whenTheRequestIsAuthenticatedRoleChecksShouldNotTouchTheUserDao() throws IOException {
+		//given
+		sendCredentials("student1:whoopey");
+
+		//when
+		authFilter.filter(mockRequestContext);
+		SecurityContext securityContext = capturedSecurityContext();
+		boolean isGuest = securityContext.isUserInRole(RoleTypeConstants.GUEST_USER);
+		boolean isAdmin = securityContext.isUserInRole(RoleTypeConstants.ADMIN_USER);
+
+		//then
+		assertTrue(isGuest);
+		assertFalse(isAdmin);
+		assertEquals("student1", securityContext.getUserPrincipal().getName());
+		verify(mockUserDao, times(1)).findUserByUsername("student1");
+		verifyNoMoreInteractions(mockUserDao);
+	}
+
+	@Test
+	public void whenTheSameCredentialsAreSentAgainTheUserDaoShouldNotBeTouched() throws IOException {
+		//given
+		sendCredentials("student1:whoopey");
+		authFilter.filter(mockRequestContext);
+
+		//when
+		authFilter.filter(mockRequestContext);
+
+		//then
+		verify(mockRequestContext, times(2)).setSecurityContext(any(SecurityContext.class));
+		verify(mockUserDao, times(1)).findUserByUsername("student1");
+	}
+
+	@Test
+	public void whenTheRoleOfTheUserChangesAfterAuthenticationTheRoleFoundAtAuthenticationShouldBeChecked() throws IOException {
+		//given
+		sendCredentials("student1:whoopey");
+		authFilter.filter(mockRequestContext);
+		SecurityContext securityContext = capturedSecurityContext();
+
+		//when
+		user.setRole(RoleTypeConstants.ADMIN_USER);
+
+		//then
+		assertTrue(securityContext.isUserInRole(RoleTypeConstants.GUEST_USER));
+	}
+
+	@Test
+	public void whenNoCredentialsAreSentTheRequestShouldBeAborted() throws IOException {
+		//given
+		when(mockRequestContext.getHeaderString(HttpHeaders.AUTHORIZATION)).thenReturn(null);
+
+		//when
+		authFilter.filter(mockRequestContext);
+
+		//then
+		verify(mockRequestContext).abortWith(any(Response.class));
+		verify(mockUserDao, never()).findUserByUsername(anyString());
+	}
+
+	@Test
+	public void whenTheUserIsUnknownTheRequestShouldBeAborted() throws IOException {
+		//given
+		when(mockUserDao.findUserByUsername("nobody")).thenReturn(Optional.<User> empty());
+		sendCredentials("nobody:whoopey");
+
+		//when
+		authFilter.filter(mockRequestContext);
+
+		//then
+		verify(mockRequestContext).abortWith(any(Response.class));
+		verify(mockRequestContext, never()).setSecurityContext(any(SecurityContext.class));
+	}
+
+	@Test
+	public void whenThePasswordIsWrongTheRequestShouldBeAborted() throws IOException {
+		//given
+		sendCredentials("student1:wrong");
+
+		//when
+		authFilter.filter(mockRequestContext);
+
+		//then
+		verify(mockRequestContext).abortWith(any(Response.class));
+		verify(mockRequestContext, never()).setSecurityContext(any(SecurityContext.class));
+	}
+
+	private void sendCredentials(String credentials) {
+		when(mockRequestContext.getHeaderString(HttpHeaders.AUTHORIZATION))
+				.thenReturn("Basic " + Base64.encodeAsString(credentials));
+	}
+
+	private SecurityContext capturedSecurityContext() {
+		ArgumentCaptor<SecurityContext> captor = ArgumentCaptor.forClass(SecurityContext.class);
+		verify(mockRequestContext).setSecurityContext(captor.capture());
+		return captor.getValue();
+	}
+}
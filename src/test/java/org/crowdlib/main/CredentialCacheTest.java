@@ -0,0 +1,140 @@
+package org.crowdlib.main;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+import javax.ws.rs.core.SecurityContext;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CredentialCacheTest {
+
+	private static final String AUTH_HEADER = "Basic c3R1ZGVudDE6d2hvb3BleQ==";
+
+	CredentialCache credentialCache = new CredentialCache(10, 60000);
+
+	SecurityContext securityContext = mock(SecurityContext.class);
+
+	User user;
+
+	@Before
+	public void setup() {
+		user = new User(1, "Mr.", "Fady", "Zaki", RoleTypeConstants.GUEST_USER, "student1", "whoopey");
+	}
+
+	@Test
+	public void whenAHeaderWasAuthenticatedBeforeGetShouldReturnItsSecurityContext() {
+		//given
+		credentialCache.put(AUTH_HEADER, user, securityContext, InMemoryUserCollection.getModificationCount());
+
+		//when
+		SecurityContext cached = credentialCache.get(AUTH_HEADER);
+
+		//then
+		assertSame(securityContext, cached);
+	}
+
+	@Test
+	public void whenTheUsersPasswordChangesTheCachedHeaderShouldNoLongerBeAccepted() {
+		//given
+		credentialCache.put(AUTH_HEADER, user, securityContext, InMemoryUserCollection.getModificationCount());
+
+		//when
+		user.setPassword("changed");
+
+		//then
+		assertNull(credentialCache.get(AUTH_HEADER));
+		assertEquals(0, credentialCache.size());
+	}
+
+	@Test
+	public void whenTheUsersRoleChangesTheCachedHeaderShouldNoLongerBeAccepted() {
+		//given
+		credentialCache.put(AUTH_HEADER, user, securityContext, InMemoryUserCollection.getModificationCount());
+
+		//when
+		user.setRole(RoleTypeConstants.ADMIN_USER);
+
+		//then
+		assertNull(credentialCache.get(AUTH_HEADER));
+	}
+
+	@Test
+	public void whenAUserIsAddedOrReplacedTheCachedHeaderShouldNoLongerBeAccepted() {
+		//given
+		credentialCache.put(AUTH_HEADER, user, securityContext, InMemoryUserCollection.getModificationCount());
+
+		//when
+		InMemoryUserCollection.initializeInMemoryUsers();
+
+		//then
+		assertNull(credentialCache.get(AUTH_HEADER));
+	}
+
+	@Test
+	public void whenTheTimeToLiveHasPassedTheCachedHeaderShouldNoLongerBeAccepted() {
+		//given
+		CredentialCache expiringCache = new CredentialCache(10, 0);
+
+		//when
+		expiringCache.put(AUTH_HEADER, user, securityContext, InMemoryUserCollection.getModificationCount());
+
+		//then
+		assertNull(expiringCache.get(AUTH_HEADER));
+	}
+
+	@Test
+	public void whenTheCacheIsFullAddingAHeaderShouldNotGrowItBeyondItsCapacity() {
+		//given
+		int modificationCount = InMemoryUserCollection.getModificationCount();
+
+		//when
+		for (int i = 0; i < 100; i++) {
+			credentialCache.put(AUTH_HEADER + i, user, securityContext, modificationCount);
+		}
+
+		//then
+		assertTrue(credentialCache.size() <= 10);
+		assertSame(securityContext, credentialCache.get(AUTH_HEADER + 99));
+	}
+
+	@Test
+	public void whenTheCacheIsFullAHeaderNotUsedSinceItWasCachedShouldMakeRoomBeforeOneThatWas() {
+		//given
+		int modificationCount = InMemoryUserCollection.getModificationCount();
+		for (int i = 0; i < 10; i++) {
+			credentialCache.put(AUTH_HEADER + i, user, securityContext, modificationCount);
+		}
+		credentialCache.get(AUTH_HEADER + 0);
+
+		//when
+		credentialCache.put(AUTH_HEADER + 10, user, securityContext, modificationCount);
+
+		//then
+		assertEquals(10, credentialCache.size());
+		assertSame(securityContext, credentialCache.get(AUTH_HEADER + 0));
+		assertNull(credentialCache.get(AUTH_HEADER + 1));
+		assertSame(securityContext, credentialCache.get(AUTH_HEADER + 10));
+	}
+
+	@Test
+	public void whenEveryCachedHeaderWasUsedAddingAHeaderShouldStillMakeRoom() {
+		//given
+		int modificationCount = InMemoryUserCollection.getModificationCount();
+		for (int i = 0; i < 10; i++) {
+			credentialCache.put(AUTH_HEADER + i, user, securityContext, modificationCount);
+			credentialCache.get(AUTH_HEADER + i);
+		}
+
+		//when
+		credentialCache.put(AUTH_HEADER + 10, user, securityContext, modificationCount);
+
+		//then
+		assertEquals(10, credentialCache.size());
+		assertSame(securityContext, credentialCache.get(AUTH_HEADER + 10));
+	}
+}
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import javax.ws.rs.core.Link;
 
@@ -17,6 +18,7 @@ import org.crowdlib.entities.User;
 import org.crowdlib.exceptions.CatalogueItemNotFoundException;
 import org.crowdlib.exceptions.CustomizedWebApplicationException;
 import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -74,6 +76,29 @@ public class CatalogueItemDaoImplTests {
 		//CatalogueItemNotFoundException should be thrown
 	}
 	
+	@Test
+	public void whenFindByIdIsCalledWithAnIdNotAvailableInMemoryItShouldReturnAnEmptyOptional() {
+		//given
+		int unknownItemId = 4329; //item not added to memory
+		
+		//when
+		Optional<CatalogueItem> item = this.itemDaoImpl.findById(unknownItemId);
+				
+		//then
+		assertFalse(item.isPresent());
+	}
+	
+	@Test
+	public void whenFindByIdIsCalledItShouldReturnTheItemAvailableInMemory() {
+		//given
+		
+		//when
+		Optional<CatalogueItem> item = this.itemDaoImpl.findById(mockItem.getId());
+				
+		//then
+		assertSame(mockItem, item.get());
+	}
+	
 	@Test
 	public void whenGetAllCommentsIsCalledOnANewCatalogueItemItShouldReturnAnEmptyListOfComments() throws CatalogueItemNotFoundException{
 		//given
@@ -176,6 +201,59 @@ public class CatalogueItemDaoImplTests {
 		assertEquals(itemCommentsReturnedFromMethod.size(), 2);
 	}
 	
+	@Test
+	public void whenGetCommentsAfterIsCalledWithoutACursorPositionItShouldReturnTheFirstCommentsInTheOrderTheyWereAdded() {
+		//given
+		CatalogueItem item = new CatalogueItem(2001, "title", "author", mockLink);
+		Comment firstComment = mock(Comment.class);
+		Comment secondComment = mock(Comment.class);
+		Comment thirdComment = mock(Comment.class);
+		this.itemDaoImpl.addComment(item, firstComment);
+		this.itemDaoImpl.addComment(item, secondComment);
+		this.itemDaoImpl.addComment(item, thirdComment);
+
+		//when
+		CommentPage page = this.itemDaoImpl.getCommentsAfter(item, -1, 2);
+
+		//then
+		assertEquals(2, page.getComments().size());
+		assertEquals(firstComment, page.getComments().get(0));
+		assertEquals(secondComment, page.getComments().get(1));
+		assertEquals(1, page.getLastPosition());
+	}
+
+	@Test
+	public void whenGetCommentsAfterIsCalledWithThePositionOfAPreviousPageItShouldContinueAfterThatPageEvenIfNewCommentsWereAdded() {
+		//given
+		CatalogueItem item = new CatalogueItem(2002, "title", "author", mockLink);
+		Comment firstComment = mock(Comment.class);
+		Comment secondComment = mock(Comment.class);
+		this.itemDaoImpl.addComment(item, firstComment);
+		CommentPage firstPage = this.itemDaoImpl.getCommentsAfter(item, -1, 10);
+		this.itemDaoImpl.addComment(item, secondComment);
+
+		//when
+		CommentPage secondPage = this.itemDaoImpl.getCommentsAfter(item, firstPage.getLastPosition(), 10);
+
+		//then
+		assertEquals(1, secondPage.getComments().size());
+		assertEquals(secondComment, secondPage.getComments().get(0));
+	}
+
+	@Test
+	public void whenGetCommentsAfterIsCalledAfterTheLastCommentItShouldReturnAnEmptyPageKeepingThePosition() {
+		//given
+		CatalogueItem item = new CatalogueItem(2003, "title", "author", mockLink);
+		this.itemDaoImpl.addComment(item, mockComment);
+
+		//when
+		CommentPage page = this.itemDaoImpl.getCommentsAfter(item, 0, 10);
+
+		//then
+		assertTrue(page.getComments().isEmpty());
+		assertEquals(0, page.getLastPosition());
+	}
+
 	@Test
 	public void whenGetNumberOfRemainingCommentsIsCalledWithStartIndexGreaterThanListSizeItShouldReturnZero() {
 		
@@ -227,7 +305,7 @@ public class CatalogueItemDaoImplTests {
 		when(mockItem.getComments()).thenReturn(itemComments);
 		
 		//when
-		this.itemDaoImpl.addComment(mockItem, mockComment, mockLink);
+		this.itemDaoImpl.addComment(mockItem, mockComment);
 		
 		//then
 		assertTrue(mockItem.getComments().contains(mockComment));
@@ -236,16 +314,16 @@ public class CatalogueItemDaoImplTests {
 	@Test
 	public void whenAddCommentIsCalledOnAnItemALinkToThisCommentShouldBeAddedToThisCatalogueItem(){
 		//given
-		List<Comment> itemComments = new ArrayList<Comment>();
-		List<Link> itemCommentsLinks = new ArrayList<Link>();
-		when(mockItem.getComments()).thenReturn(itemComments);
-		when(mockItem.getLinksToEachComment()).thenReturn(itemCommentsLinks);
+		CatalogueItem item = new CatalogueItem(2004, "title", "author", mockLink);
+		when(mockComment.getId()).thenReturn(7);
 		
 		//when
-		this.itemDaoImpl.addComment(mockItem, mockComment, mockLink);
+		this.itemDaoImpl.addComment(item, mockComment);
 		
 		//then
-		assertTrue(mockItem.getLinksToEachComment().contains(mockLink));
+		assertEquals(1, item.getLinksToEachComment().size());
+		assertEquals(Link.fromUri("http://localhost:9998/items/2004/comments/7").rel("comment").build(),
+				item.getLinksToEachComment().get(0));
 	}
 	
 	
@@ -266,30 +344,47 @@ public class CatalogueItemDaoImplTests {
 	@Test
 	public void whenAddAFollowerisCalledOnACatalogueItemsTheNumberOfFollowersForThisCatalogueItemShouldBeIncremented(){
 		//given
-		List<User> itemFollowers = new ArrayList<User>(); 
-		when(mockItem.getFollowers()).thenReturn(itemFollowers);
-		int numberOfFollowersBeforeAddingAFollower = itemFollowers.size();
+		registerMockUserAsUser();
+		int numberOfFollowersBeforeAddingAFollower = itemDaoImpl.getAllFollowers(mockItem).size();
 		
 		//when
 		this.itemDaoImpl.addFollower(mockItem, mockUser);
 		
 		//then
-		int numberOfFollowersAfterAddingAFollower = itemFollowers.size();
+		int numberOfFollowersAfterAddingAFollower = itemDaoImpl.getAllFollowers(mockItem).size();
 		assertEquals(numberOfFollowersBeforeAddingAFollower+1, numberOfFollowersAfterAddingAFollower);
 	}
 	
 	@Test
 	public void whenGetAllFollowersisCalledOnACatalogueItemsItShouldReturnAllFollowersForThatItem(){
 		//given
-		List<User> itemFollowers = new ArrayList<User>(); 
-		when(mockItem.getFollowers()).thenReturn(itemFollowers);
+		registerMockUserAsUser();
 		
 		//when
-		mockItem.getFollowers().add(mockUser);
+		itemDaoImpl.addFollower(mockItem, mockUser);
 		
 		//then
 		assertTrue(itemDaoImpl.getAllFollowers(mockItem).contains(mockUser));
 	}
+
+	@Test
+	public void whenAUserFollowsAnItemTwiceItShouldBeAmongItsFollowersOnce(){
+		//given
+		registerMockUserAsUser();
+		itemDaoImpl.addFollower(mockItem, mockUser);
+		
+		//when
+		itemDaoImpl.addFollower(mockItem, mockUser);
+		
+		//then
+		assertEquals(1, itemDaoImpl.getAllFollowers(mockItem).size());
+	}
+
+	private void registerMockUserAsUser() {
+		when(mockUser.getId()).thenReturn(1121);
+		when(mockUser.getUsername()).thenReturn("mockFollower");
+		InMemoryUserCollection.addUser(mockUser);
+	}
 	
 	
 	
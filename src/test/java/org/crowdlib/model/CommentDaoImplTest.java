@@ -76,6 +76,30 @@ public class CommentDaoImplTest {
 		//CommentNotFoundException should be thrown
 	}
 
+	@Test
+	public void whenGetCommentByIdIsCalledWithUnknownIdsTheSameStacklessExceptionShouldBeThrown() {
+		//given
+		CommentNotFoundException first = null;
+		CommentNotFoundException second = null;
+
+		//when
+		try {
+			this.commentDao.getById(4322);
+		} catch (CommentNotFoundException e) {
+			first = e;
+		}
+		try {
+			this.commentDao.getById(4323);
+		} catch (CommentNotFoundException e) {
+			second = e;
+		}
+
+		//then
+		assertSame(first, second);
+		assertEquals(0, first.getStackTrace().length);
+		assertEquals(CommentNotFoundException.NOT_AVAILABLE_MESSAGE, first.getMessage());
+	}
+
 	@Test
 	public void whenCreateCommentIsCalledItShouldAddThisCommentToMemory() {
 		//when
@@ -142,29 +166,17 @@ public class CommentDaoImplTest {
 	}
 
 	@Test
-	public void whenAdjustLinkToSelfIsCalledTheLinkSpecifiedShouldBeAddedToComment() {
-		//given
-		Comment comment = new Comment();
-		
-		//when
-		this.commentDao.adjustLinkToSelf(comment, mockLink);
-		
-		//then
-		assertNotNull(comment.getLinkToSelf());
-		assertEquals(mockLink, comment.getLinkToSelf());
-	}
-	
-	@Test
-	public void whenAdjustLinkToRepliesIsCalledTheLinkSpecifiedShouldBeAddedToComment() {
+	public void whenACommentIsCreatedItsLinksShouldBeDerivedFromItsIdAndItsCatalogueItem() {
 		//given
-		Comment comment = new Comment();
+		when(mockItem.getId()).thenReturn(3);
 		
 		//when
-		this.commentDao.adjustLinkToReplies(comment, mockLink);
+		Comment comment = this.commentDao.createComment("new Comment", mockUser, mockItem);
 		
 		//then
-		assertNotNull(comment.getLinkToReplies());
-		assertEquals(mockLink, comment.getLinkToReplies());
+		String uri = "http://localhost:9998/items/3/comments/" + comment.getId();
+		assertEquals(Link.fromUri(uri).rel("self").build(), comment.getLinkToSelf());
+		assertEquals(Link.fromUri(uri + "/replies").rel("replies").build(), comment.getLinkToReplies());
 	}
 
 	@Test
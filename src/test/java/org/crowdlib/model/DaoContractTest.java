@@ -0,0 +1,546 @@
+package org.crowdlib.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.constants.ExplanatoryMessagesConstants;
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.crowdlib.ids.AtomicIdAllocator;
+import org.crowdlib.ids.IdAllocator;
+import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.jdbc.Database;
+import org.crowdlib.model.jdbc.JdbcCatalogueItemDao;
+import org.crowdlib.model.jdbc.JdbcCommentDao;
+import org.crowdlib.model.jdbc.JdbcUserDao;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Behaviour the resources rely on, checked against both the in-memory DAOs and
+ * the JDBC DAOs on an H2 database.
+ */
+@RunWith(Parameterized.class)
+public class DaoContractTest {
+
+	private static final AtomicInteger nextId = new AtomicInteger(70000000);
+
+	@Parameters
+	public static Collection<Object[]> backends() {
+		return Arrays.asList(new Object[][] { { "in-memory" }, { "h2" } });
+	}
+
+	private final String backend;
+
+	Database database;
+	IdAllocator inMemoryIdAllocator;
+	CatalogueItemDao catalogueItemDao;
+	CommentDao commentDao;
+	UserDao userDao;
+
+	User user;
+	User anotherUser;
+	CatalogueItem item;
+	CatalogueItem otherItem;
+
+	public DaoContractTest(String backend) {
+		this.backend = backend;
+	}
+
+	@Before
+	public void setup() {
+		int id = nextId.getAndIncrement();
+		User newUser = new User(id, "Ms.", "Ada", "Lovelace", RoleTypeConstants.GUEST_USER, "contract_user_" + id,
+				"secret");
+		User newAnotherUser = new User(id + 1, "Mr.", "Charles", "Babbage", RoleTypeConstants.GUEST_USER,
+				"contract_another_user_" + id, "secret");
+		CatalogueItem newItem = new CatalogueItem(id, "Book", "Author",
+				Link.fromPath("http://localhost:9998/items/" + id + "/comments").build());
+		CatalogueItem newOtherItem = new CatalogueItem(id + 1, "Another book", "Another author",
+				Link.fromPath("http://localhost:9998/items/" + (id + 1) + "/comments").build());
+		nextId.getAndIncrement();
+		if (backend.equals("h2")) {
+			// ids of comments stored in H2 are kept apart from those of the in-memory collection
+			inMemoryIdAllocator = Comment.getIdAllocator();
+			Comment.setIdAllocator(new AtomicIdAllocator(id * 10));
+			database = Database.open("jdbc:h2:mem:dao-contract-" + id, 2);
+			database.seedIfEmpty(Arrays.asList(newUser, newAnotherUser), Arrays.asList(newItem, newOtherItem));
+			catalogueItemDao = new JdbcCatalogueItemDao(database);
+			commentDao = new JdbcCommentDao(database);
+			userDao = new JdbcUserDao(database);
+		} else {
+			InMemoryUserCollection.addUser(newUser);
+			InMemoryUserCollection.addUser(newAnotherUser);
+			InMemoryCatalogueItemCollection.addCatalogueItem(newItem);
+			InMemoryCatalogueItemCollection.addCatalogueItem(newOtherItem);
+			catalogueItemDao = new CatalogueItemDaoImpl();
+			commentDao = new CommentDaoImpl();
+			userDao = new UserDaoImpl();
+		}
+		user = userDao.findUserByUsername(newUser.getUsername()).get();
+		anotherUser = userDao.findUserByUsername(newAnotherUser.getUsername()).get();
+		item = catalogueItemDao.findById(id).get();
+		otherItem = catalogueItemDao.findById(id + 1).get();
+	}
+
+	@After
+	public void tearDown() {
+		if (database != null) {
+			database.close();
+			Comment.setIdAllocator(inMemoryIdAllocator);
+		}
+	}
+
+	@Test
+	public void whenUnknownIdsAreLookedUpEveryDaoShouldReturnAnEmptyOptional() {
+		//given
+		int unknownId = -42;
+
+		//when
+		boolean itemFound = catalogueItemDao.findById(unknownId).isPresent();
+		boolean commentFound = commentDao.findById(unknownId).isPresent();
+		boolean userFound = userDao.findUserByUsername("unknown_contract_user").isPresent();
+
+		//then
+		assertFalse(itemFound);
+		assertFalse(commentFound);
+		assertFalse(userFound);
+	}
+
+	@Test
+	public void whenACommentIsCreatedLookingItUpShouldReturnTheSameComment() {
+		//given
+		Comment comment = commentDao.createComment("first", user, item);
+
+		//when
+		Comment foundComment = commentDao.findById(comment.getId()).get();
+
+		//then
+		assertSame(comment, foundComment);
+		assertEquals("first", foundComment.getCommentContent());
+		assertEquals(user, foundComment.getOwner());
+		assertSame(item, foundComment.getCatalogueItem());
+	}
+
+	@Test
+	public void whenCommentsAreAddedToAnItemTheyShouldBeReturnedInTheOrderOfTheirLogPositions() {
+		//given
+		Comment first = postComment("first");
+		Comment second = postComment("second");
+		Comment third = postComment("third");
+
+		//when
+		List<Comment> comments = catalogueItemDao.getAllComments(item);
+
+		//then
+		assertEquals(Arrays.asList(first, second, third), comments);
+		assertEquals(3, item.getLinksToEachComment().size());
+	}
+
+	@Test
+	public void whenACommentIsAddedToAnItemItsLogPositionShouldFollowThePreviousComment() {
+		//given
+		Comment first = commentDao.createComment("first", user, item);
+		Comment second = commentDao.createComment("second", user, item);
+
+		//when
+		int firstPosition = catalogueItemDao.addComment(item, first);
+		int secondPosition = catalogueItemDao.addComment(item, second);
+
+		//then
+		assertEquals(0, firstPosition);
+		assertEquals(1, secondPosition);
+	}
+
+	@Test
+	public void whenASubsetOfCommentsIsRequestedItShouldBeCutFromTheCommentsInPostingOrder() {
+		//given
+		postComment("first");
+		Comment second = postComment("second");
+		Comment third = postComment("third");
+
+		//when
+		List<Comment> subset = catalogueItemDao.getSubsetOfComments(item, 1, 5);
+		int remaining = catalogueItemDao.getNumberOfRemainingComments(item, 2);
+		int noneRemaining = catalogueItemDao.getNumberOfRemainingComments(item, 4);
+
+		//then
+		assertEquals(Arrays.asList(second, third), subset);
+		assertEquals(1, remaining);
+		assertEquals(0, noneRemaining);
+	}
+
+	@Test
+	public void whenCommentsArePagedByLogPositionEachPageShouldContinueAfterThePreviousOne() {
+		//given
+		Comment first = postComment("first");
+		Comment second = postComment("second");
+		Comment third = postComment("third");
+
+		//when
+		CommentPage firstPage = catalogueItemDao.getCommentsAfter(item, -1, 2);
+		CommentPage secondPage = catalogueItemDao.getCommentsAfter(item, firstPage.getLastPosition(), 2);
+		CommentPage emptyPage = catalogueItemDao.getCommentsAfter(item, secondPage.getLastPosition(), 2);
+
+		//then
+		assertEquals(Arrays.asList(first, second), firstPage.getComments());
+		assertEquals(Arrays.asList(third), secondPage.getComments());
+		assertTrue(emptyPage.getComments().isEmpty());
+		assertEquals(2, emptyPage.getLastPosition());
+	}
+
+	@Test
+	public void whenAReplyIsAddedItShouldBeAmongTheRepliesOfItsParent() {
+		//given
+		Comment comment = postComment("comment");
+		Comment reply = commentDao.createComment("reply", anotherUser, item);
+
+		//when
+		commentDao.addReply(comment, reply);
+
+		//then
+		assertEquals(Arrays.asList(reply), commentDao.getReplies(comment));
+		assertSame(comment, reply.getParentComment());
+		assertEquals(Arrays.asList(comment), catalogueItemDao.getAllComments(item));
+	}
+
+	@Test
+	public void whenRepliesAreNestedTheThreadShouldListEachCommentBeforeItsRepliesAndTheirAncestorsFromTheTop() {
+		//given
+		Comment comment = postComment("comment");
+		Comment firstReply = reply(comment, "first reply");
+		Comment secondReply = reply(comment, "second reply");
+		Comment replyToFirstReply = reply(firstReply, "reply to first reply");
+		Comment replyToThatReply = reply(replyToFirstReply, "reply to that reply");
+		Comment otherComment = postComment("other comment");
+		reply(otherComment, "reply to other comment");
+
+		//when
+		List<Comment> descendants = commentDao.getDescendants(comment);
+		List<Comment> descendantsOfFirstReply = commentDao.getDescendants(firstReply);
+		List<Comment> ancestors = commentDao.getAncestors(replyToThatReply);
+		List<Comment> thread = commentDao.getThread(replyToFirstReply);
+
+		//then
+		assertEquals(Arrays.asList(firstReply, replyToFirstReply, replyToThatReply, secondReply), descendants);
+		assertEquals(Arrays.asList(replyToFirstReply, replyToThatReply), descendantsOfFirstReply);
+		assertEquals(Arrays.asList(comment, firstReply, replyToFirstReply), ancestors);
+		assertTrue(commentDao.getAncestors(comment).isEmpty());
+		assertEquals(Arrays.asList(comment, firstReply, replyToFirstReply, replyToThatReply, secondReply), thread);
+	}
+
+	@Test
+	public void whenACommentIsDeletedTheSubtreesOfItsRepliesShouldLeaveTheThread() {
+		//given
+		Comment comment = postComment("comment");
+		Comment reply = reply(comment, "reply");
+		Comment deletedReply = reply(comment, "deleted reply");
+		Comment detachedReply = reply(deletedReply, "detached reply");
+		reply(detachedReply, "reply to detached reply");
+
+		//when
+		commentDao.deleteComment(deletedReply, ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE);
+		Comment laterReply = reply(detachedReply, "later reply to detached reply");
+
+		//then
+		assertEquals(Arrays.asList(comment, reply, deletedReply), commentDao.getThread(comment));
+		assertTrue(commentDao.getAncestors(detachedReply).isEmpty());
+		assertTrue(commentDao.getDescendants(detachedReply).isEmpty());
+		assertEquals(Arrays.asList(laterReply), commentDao.getThread(laterReply));
+	}
+
+	@Test
+	public void whenAnExcerptOfAThreadIsReadOnlyTheDescendantsWithinBoundsShouldBeReadAndTheOthersFlagged() {
+		//given
+		Comment comment = postComment("comment");
+		Comment firstReply = reply(comment, "first reply");
+		Comment secondReply = reply(comment, "second reply");
+		Comment thirdReply = reply(comment, "third reply");
+		Comment firstReplyToFirstReply = reply(firstReply, "first reply to first reply");
+		Comment secondReplyToFirstReply = reply(firstReply, "second reply to first reply");
+		Comment replyToSecondReply = reply(secondReply, "reply to second reply");
+		Comment deepReply = reply(firstReplyToFirstReply, "deep reply");
+
+		//when
+		ThreadExcerpt whole = commentDao.getThreadExcerpt(comment, 8, 100);
+		ThreadExcerpt shallow = commentDao.getThreadExcerpt(comment, 1, 100);
+		ThreadExcerpt small = commentDao.getThreadExcerpt(comment, 8, 3);
+		ThreadExcerpt smallAndShallow = commentDao.getThreadExcerpt(comment, 2, 3);
+		ThreadExcerpt commentOnly = commentDao.getThreadExcerpt(comment, 0, 100);
+
+		//then
+		assertEquals(Arrays.asList(firstReply, firstReplyToFirstReply, deepReply, secondReplyToFirstReply, secondReply,
+				replyToSecondReply, thirdReply), whole.getDescendants());
+		for (Comment read : whole.getDescendants()) {
+			assertFalse(whole.hasMoreReplies(read));
+		}
+		assertFalse(whole.hasMoreReplies(comment));
+		assertEquals(Arrays.asList(firstReply, secondReply, thirdReply), shallow.getDescendants());
+		assertFalse(shallow.hasMoreReplies(comment));
+		assertTrue(shallow.hasMoreReplies(firstReply));
+		assertTrue(shallow.hasMoreReplies(secondReply));
+		assertFalse(shallow.hasMoreReplies(thirdReply));
+		assertEquals(Arrays.asList(firstReply, firstReplyToFirstReply, deepReply), small.getDescendants());
+		assertTrue(small.hasMoreReplies(comment));
+		assertTrue(small.hasMoreReplies(firstReply));
+		assertFalse(small.hasMoreReplies(firstReplyToFirstReply));
+		assertFalse(small.hasMoreReplies(deepReply));
+		assertEquals(Arrays.asList(firstReply, firstReplyToFirstReply, secondReplyToFirstReply),
+				smallAndShallow.getDescendants());
+		assertTrue(smallAndShallow.hasMoreReplies(comment));
+		assertFalse(smallAndShallow.hasMoreReplies(firstReply));
+		assertTrue(smallAndShallow.hasMoreReplies(firstReplyToFirstReply));
+		assertFalse(smallAndShallow.hasMoreReplies(secondReplyToFirstReply));
+		assertTrue(commentOnly.getDescendants().isEmpty());
+		assertTrue(commentOnly.hasMoreReplies(comment));
+	}
+
+	@Test
+	public void whenAnExcerptOfAThreadIsReadFromAReplyDetachedByADeletionItsRepliesShouldStillBeRead() {
+		//given
+		Comment comment = postComment("comment");
+		Comment deletedReply = reply(comment, "deleted reply");
+		Comment detachedReply = reply(deletedReply, "detached reply");
+		Comment replyToDetachedReply = reply(detachedReply, "reply to detached reply");
+		commentDao.deleteComment(deletedReply, ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE);
+		Comment laterReply = reply(detachedReply, "later reply to detached reply");
+
+		//when
+		ThreadExcerpt excerpt = commentDao.getThreadExcerpt(detachedReply, 8, 1);
+
+		//then
+		assertEquals(Arrays.asList(replyToDetachedReply), excerpt.getDescendants());
+		assertTrue(excerpt.hasMoreReplies(detachedReply));
+		assertFalse(excerpt.hasMoreReplies(replyToDetachedReply));
+		assertEquals(Arrays.asList(replyToDetachedReply, laterReply),
+				commentDao.getThreadExcerpt(detachedReply, 8, 100).getDescendants());
+	}
+
+	@Test
+	public void whenCommentsAreSearchedTheOnesWithMoreOfTheWordsShouldComeFirstAndDeletedOnesShouldBeLeftOut() {
+		//given
+		// the words are made unique so that comments of the other tests are not found
+		String rare = "quagga" + item.getId();
+		String common = "zebra" + item.getId();
+		Comment commonOnly = postComment("A " + common + " grazing");
+		Comment both = postComment(common.toUpperCase() + " next to a " + rare);
+		Comment newerCommonOnly = postComment("Another " + common);
+		Comment deleted = postComment("Yet another " + common + " and " + rare);
+
+		//when
+		commentDao.deleteComment(deleted, ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE);
+
+		//then
+		assertEquals(Arrays.asList(both, newerCommonOnly, commonOnly),
+				commentDao.searchComments(rare + " " + common, 10));
+		assertEquals(Arrays.asList(newerCommonOnly, both), commentDao.searchComments(common, 2));
+	}
+
+	@Test
+	public void whenACommentIsDeletedItsContentShouldBeReplacedAndItsRepliesRemoved() {
+		//given
+		Comment comment = postComment("comment");
+		commentDao.addReply(comment, commentDao.createComment("reply", anotherUser, item));
+		assertNotNull(comment.getLinkToReplies());
+
+		//when
+		commentDao.deleteComment(comment, ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE);
+
+		//then
+		assertEquals(ExplanatoryMessagesConstants.OWNER_DELETION_MESSAGE, comment.getCommentContent());
+		assertTrue(commentDao.getReplies(comment).isEmpty());
+		assertNull(comment.getLinkToReplies());
+	}
+
+	@Test
+	public void whenACommentIsAddedToFavouritesItsCountAndTheUsersFavouritesShouldIncludeIt() {
+		//given
+		Comment comment = postComment("favourite");
+
+		//when
+		userDao.addCommentToFavourites(user, comment);
+		commentDao.incrementFavouritesCount(comment);
+
+		//then
+		assertTrue(userDao.checkIfCommentIsAmongFavourites(user, comment));
+		assertFalse(userDao.checkIfCommentIsAmongFavourites(anotherUser, comment));
+		assertEquals(Arrays.asList(comment), userDao.getUserFavouriteComments(user));
+		assertEquals(1, comment.getFavouritesCount());
+	}
+
+	@Test
+	public void whenTheSameCommentIsAddedToFavouritesConcurrentlyItShouldBeAddedOnce() throws InterruptedException {
+		//given
+		Comment comment = postComment("favourite");
+		AtomicInteger added = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> adding = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			adding.add(new Thread(() -> {
+				awaitQuietly(start);
+				if (userDao.addCommentToFavourites(user, comment)) {
+					added.incrementAndGet();
+				}
+			}));
+		}
+
+		//when
+		for (Thread thread : adding) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : adding) {
+			thread.join();
+		}
+
+		//then
+		assertEquals(1, added.get());
+		assertEquals(Arrays.asList(comment), userDao.getUserFavouriteComments(user));
+		assertFalse(userDao.addCommentToFavourites(user, comment));
+	}
+
+	@Test
+	public void whenTheMostFavouritedCommentsAreRequestedTheyShouldComeByCountThenInTheOrderTheyWerePosted() {
+		//given
+		Comment first = postComment("first");
+		Comment second = postComment("second");
+		Comment third = postComment("third");
+		Comment reply = commentDao.createComment("reply", user, item);
+		commentDao.addReply(first, reply);
+
+		//when
+		commentDao.incrementFavouritesCount(third);
+		commentDao.incrementFavouritesCount(third);
+		commentDao.incrementFavouritesCount(second);
+		commentDao.incrementFavouritesCount(reply);
+
+		//then
+		assertEquals(Arrays.asList(third, second), catalogueItemDao.getMostFavouritedComments(item, 2));
+		assertEquals(Arrays.asList(third, second, first), catalogueItemDao.getMostFavouritedComments(item, 10));
+	}
+
+	@Test
+	public void whenAUserFollowsAnItemTheUserShouldBeAmongItsFollowersAndTheOldCommentsSeen() {
+		//given
+		postComment("before following");
+
+		//when
+		follow(user, item);
+
+		//then
+		assertEquals(Arrays.asList(user), catalogueItemDao.getAllFollowers(item));
+		assertEquals(Arrays.asList(item), userDao.getUserFollowedItems(user));
+		assertTrue(userDao.checkIfItemIsAmongFollowedItems(user, item));
+		assertFalse(userDao.checkIfItemIsAmongFollowedItems(anotherUser, item));
+		assertEquals(0, userDao.getReadWatermark(user, item));
+	}
+
+	@Test
+	public void whenFollowersOfTwoItemsAreRequestedOnlyTheUsersFollowingBothShouldBeReturned() {
+		//given
+		follow(user, item);
+		follow(anotherUser, item);
+		follow(anotherUser, otherItem);
+
+		//when
+		List<User> followersOfBoth = catalogueItemDao.getFollowersOfBoth(item, otherItem);
+
+		//then
+		assertEquals(Arrays.asList(anotherUser), followersOfBoth);
+		assertEquals(Arrays.asList(user, anotherUser), catalogueItemDao.getAllFollowers(item));
+	}
+
+	@Test
+	public void whenTheReadWatermarkIsAdvancedToALowerPositionItShouldNotMoveBackwards() {
+		//given
+		userDao.advanceReadWatermark(user, item, 5);
+
+		//when
+		userDao.advanceReadWatermark(user, item, 3);
+
+		//then
+		assertEquals(5, userDao.getReadWatermark(user, item));
+		assertEquals(-1, userDao.getReadWatermark(anotherUser, item));
+	}
+
+	@Test
+	public void whenUnseenNotificationsAreRetrievedTheOnesBelowTheWatermarkShouldBeDropped() {
+		//given
+		Comment first = postComment("first");
+		Comment second = postComment("second");
+		userDao.addAllToListOfNotifications(user, Arrays.asList(notification(first, 0), notification(second, 1)));
+
+		//when
+		userDao.advanceReadWatermark(user, item, 0);
+		List<Notification> unseen = userDao.getUnseenNotifications(user);
+
+		//then
+		assertEquals(1, unseen.size());
+		assertSame(second, unseen.get(0).getComment());
+		assertEquals(1, unseen.get(0).getLogPosition());
+		assertEquals(second.getLinkToSelf().getUri(), unseen.get(0).getLinkToComment().getUri());
+	}
+
+	@Test
+	public void whenASingleCommentIsSeenItsNotificationShouldBeRemoved() {
+		//given
+		Comment first = postComment("first");
+		Comment second = postComment("second");
+		userDao.addToListOfNotifications(user, notification(first, 0));
+		userDao.addToListOfNotifications(user, notification(second, 1));
+
+		//when
+		userDao.adjustListOfNotificationsAfterCommentIsSeen(user, second);
+
+		//then
+		List<Notification> notifications = userDao.getListOfNotifications(user);
+		assertEquals(1, notifications.size());
+		assertSame(first, notifications.get(0).getComment());
+	}
+
+	private Comment postComment(String content) {
+		Comment comment = commentDao.createComment(content, user, item);
+		catalogueItemDao.addComment(item, comment);
+		return comment;
+	}
+
+	private Comment reply(Comment comment, String content) {
+		Comment reply = commentDao.createComment(content, anotherUser, item);
+		commentDao.addReply(comment, reply);
+		return reply;
+	}
+
+	private void follow(User follower, CatalogueItem followedItem) {
+		userDao.addItemToFollowedItems(follower, followedItem);
+		catalogueItemDao.addFollower(followedItem, follower);
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Notification notification(Comment comment, int logPosition) {
+		return new Notification(item, comment, logPosition,
+				Link.fromUri(comment.getLinkToSelf().getUri()).rel("comment").build());
+	}
+}
@@ -0,0 +1,174 @@
+package org.crowdlib.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.inmemory.collections.CommentLog;
+import org.crowdlib.inmemory.collections.InMemoryCommentLogCollection;
+import org.junit.Test;
+
+public class FavouriteCountersTest {
+
+	private static final AtomicInteger nextId = new AtomicInteger(70000000);
+
+	CatalogueItem item = new CatalogueItem(nextId.getAndIncrement(), "Book", "Author", null);
+
+	CommentLog commentLog = InMemoryCommentLogCollection.getCommentLog(item);
+
+	@Test
+	public void whenAFavouriteMeetsAnotherOneTheCommentShouldBePromotedWithoutLosingEitherFavourite()
+			throws InterruptedException {
+		//given
+		Comment comment = post();
+
+		//when
+		promote(comment);
+
+		//then
+		assertTrue(FavouriteCounters.isHot(comment));
+		assertEquals(2, comment.getFavouritesCount());
+	}
+
+	@Test
+	public void whenAHotCommentIsMaterializedItsCountAndRankShouldIncludeEveryPendingFavourite()
+			throws InterruptedException {
+		//given
+		Comment cold = post();
+		Comment hot = post();
+		FavouriteCounters.increment(cold);
+		FavouriteCounters.increment(cold);
+		promote(hot);
+		List<Thread> favouriting = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			favouriting.add(new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					FavouriteCounters.increment(hot);
+				}
+			}));
+		}
+
+		//when
+		for (Thread thread : favouriting) {
+			thread.start();
+		}
+		for (Thread thread : favouriting) {
+			thread.join();
+		}
+		FavouriteCounters.materialize();
+
+		//then
+		assertEquals(8002, hot.getFavouritesCount());
+		assertEquals(8002, hot.materializedFavouritesCount());
+		assertSame(hot, commentLog.readMostFavourited(1).get(0));
+		assertSame(cold, commentLog.readMostFavourited(2).get(1));
+	}
+
+	@Test
+	public void whenAHotCommentIsMaterializedWhileFavouritedItsCountShouldNeverGoDown() throws InterruptedException {
+		//given
+		Comment comment = post();
+		promote(comment);
+		List<Thread> favouriting = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			favouriting.add(new Thread(() -> {
+				for (int i = 0; i < 20000; i++) {
+					FavouriteCounters.increment(comment);
+				}
+			}));
+		}
+		AtomicInteger wentDown = new AtomicInteger();
+		Thread reading = new Thread(() -> {
+			int last = 0;
+			while (last < 80002) {
+				int count = comment.getFavouritesCount();
+				if (count < last) {
+					wentDown.incrementAndGet();
+				}
+				last = Math.max(last, count);
+			}
+		});
+
+		//when
+		reading.start();
+		for (Thread thread : favouriting) {
+			thread.start();
+		}
+		for (int i = 0; i < 100; i++) {
+			FavouriteCounters.materialize();
+			Thread.yield();
+		}
+		for (Thread thread : favouriting) {
+			thread.join();
+		}
+		reading.join();
+
+		//then
+		assertEquals(0, wentDown.get());
+		assertEquals(80002, comment.getFavouritesCount());
+	}
+
+	@Test
+	public void whenAHotCommentGoesQuietItShouldBeDemotedWithItsExactCount() throws InterruptedException {
+		//given
+		Comment comment = post();
+		promote(comment);
+		FavouriteCounters.increment(comment);
+
+		//when
+		for (int i = 0; i <= FavouriteCounters.QUIET_INTERVALS_BEFORE_DEMOTION; i++) {
+			FavouriteCounters.materialize();
+		}
+		FavouriteCounters.increment(comment);
+
+		//then
+		assertFalse(FavouriteCounters.isHot(comment));
+		assertNull(comment.hotFavourites());
+		assertEquals(4, comment.getFavouritesCount());
+		assertEquals(4, comment.materializedFavouritesCount());
+		assertSame(comment, commentLog.readMostFavourited(1).get(0));
+	}
+
+	@Test
+	public void whenAHotCommentIsDeletedItShouldBeDemotedAtTheNextMaterialization() throws InterruptedException {
+		//given
+		Comment comment = post();
+		promote(comment);
+
+		//when
+		comment.setDeleted(true);
+		FavouriteCounters.materialize();
+
+		//then
+		assertFalse(FavouriteCounters.isHot(comment));
+		assertNull(comment.hotFavourites());
+		assertEquals(2, comment.getFavouritesCount());
+	}
+
+	/**
+	 * Favourites the comment twice, the second time while the first favourite
+	 * waits for the monitor of the comment
+	 */
+	private void promote(Comment comment) throws InterruptedException {
+		Thread first = new Thread(() -> FavouriteCounters.increment(comment));
+		synchronized (comment) {
+			first.start();
+			while (comment.hotFavourites() == null) {
+				Thread.yield();
+			}
+			FavouriteCounters.increment(comment);
+		}
+		first.join();
+	}
+
+	private Comment post() {
+		Comment comment = new Comment(nextId.getAndIncrement(), "comment", Comment.NO_CREATION_TIMESTAMP);
+		comment.setCatalogueItem(item);
+		commentLog.append(comment);
+		return comment;
+	}
+}
@@ -5,7 +5,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Optional;
 
 import org.junit.Test;
 import javax.ws.rs.core.Link;
@@ -83,6 +85,18 @@ public class UserDaoImplTest {
 		//UserNotFoundException should be thrown
 	}
 
+	@Test
+	public void whenFindUserByUsernameIsCalledWithAnUnregisteredUsernameItShouldReturnAnEmptyOptional() {
+		//given
+		String unregisteredUsername = "unregistered_mock_user";
+		
+		//when
+		Optional<User> user = this.userDaoImpl.findUserByUsername(unregisteredUsername);
+				
+		//then
+		assertFalse(user.isPresent());
+	}
+
 	@Test
 	public void whenGetUserFavouriteCommentsIsCalledOnANewUserItShouldReturnAnEmptyList() {
 		//given
@@ -253,56 +267,70 @@ public class UserDaoImplTest {
 	}
 	
 	@Test
-	public void whenAdjustListOfNotificationsAfterAListOfCommentsIsSeenIsCalledWithAListOfCommentsItShouldRemoveTheNotificationOfAllTheseCommentsFromListOfNotification() {
+	public void whenGetUnseenNotificationsIsCalledAfterAPageOfCommentsIsSeenItShouldRemoveTheNotificationsOfAllTheseCommentsFromListOfNotification() {
 		//given
 		List<Notification> notifications = new ArrayList<Notification>();
 		when(mockUser.getNotifications()).thenReturn(notifications);
-		List<Comment> newComments = new ArrayList<Comment>();
+		when(mockUser.getReadWatermarks()).thenReturn(new HashMap<Integer, Integer>());
+		when(mockItem.getId()).thenReturn(1);
 		
-		when(mockNotification.getComment()).thenReturn(mockComment);
+		when(mockNotification.getCatalogueItem()).thenReturn(mockItem);
+		when(mockNotification.getLogPosition()).thenReturn(0);
 		notifications.add(mockNotification);
-		newComments.add(mockComment);
 		
-		Comment anotherMockComment = mock(Comment.class);
 		Notification anotherMockNotification = mock(Notification.class);
-		when(anotherMockNotification.getComment()).thenReturn(anotherMockComment);
+		when(anotherMockNotification.getCatalogueItem()).thenReturn(mockItem);
+		when(anotherMockNotification.getLogPosition()).thenReturn(1);
 		notifications.add(anotherMockNotification);
-		newComments.add(anotherMockComment);
-		
-		int numberOfNotificationsBeforeCommentIsSeen = mockUser.getNotifications().size();
 		
 		//when
-		this.userDaoImpl.adjustListOfNotificationsAfterAListOfCommentsIsSeen(mockUser, newComments);
-		int numberOfNotificationsAfterCommentIsSeen = mockUser.getNotifications().size();
+		this.userDaoImpl.advanceReadWatermark(mockUser, mockItem, 1);
+		List<Notification> unseenNotifications = this.userDaoImpl.getUnseenNotifications(mockUser);
 		
 		//then
-		assertEquals(numberOfNotificationsBeforeCommentIsSeen - 2,  numberOfNotificationsAfterCommentIsSeen);
-		assertFalse(mockUser.getNotifications().contains(mockNotification));
-		assertFalse(mockUser.getNotifications().contains(anotherMockNotification));
+		assertTrue(unseenNotifications.isEmpty());
+		assertTrue(mockUser.getNotifications().isEmpty());
 	}
 	
 	@Test
-	public void whenAdjustListOfNotificationsAfterAListOfCommentsIsSeenIsCalledWithAListOfCommentsItShouldNotRemoveAnotherCommentNotificationFromListOfNotification() {
+	public void whenGetUnseenNotificationsIsCalledAfterAPageOfCommentsIsSeenItShouldNotRemoveTheNotificationsOfLaterComments() {
 		//given
 		List<Notification> notifications = new ArrayList<Notification>();
 		when(mockUser.getNotifications()).thenReturn(notifications);
-		List<Comment> newComments = new ArrayList<Comment>();
+		when(mockUser.getReadWatermarks()).thenReturn(new HashMap<Integer, Integer>());
+		when(mockItem.getId()).thenReturn(1);
 		
-		when(mockNotification.getComment()).thenReturn(mockComment);
+		when(mockNotification.getCatalogueItem()).thenReturn(mockItem);
+		when(mockNotification.getLogPosition()).thenReturn(0);
 		notifications.add(mockNotification);
-		newComments.add(mockComment);
 		
-		Comment anotherMockComment = mock(Comment.class);
 		Notification anotherMockNotification = mock(Notification.class);
-		when(anotherMockNotification.getComment()).thenReturn(anotherMockComment);
+		when(anotherMockNotification.getCatalogueItem()).thenReturn(mockItem);
+		when(anotherMockNotification.getLogPosition()).thenReturn(1);
 		notifications.add(anotherMockNotification);
-		//anotherMockComment is not added to the list of seen comments
+		//only the comment at position 0 is seen
 		
 		//when
-		this.userDaoImpl.adjustListOfNotificationsAfterAListOfCommentsIsSeen(mockUser, newComments);
+		this.userDaoImpl.advanceReadWatermark(mockUser, mockItem, 0);
+		List<Notification> unseenNotifications = this.userDaoImpl.getUnseenNotifications(mockUser);
 		
 		//then
-		assertTrue(mockUser.getNotifications().contains(anotherMockNotification));
+		assertEquals(1, unseenNotifications.size());
+		assertTrue(unseenNotifications.contains(anotherMockNotification));
+	}
+	
+	@Test
+	public void whenAdvanceReadWatermarkIsCalledWithALowerPositionTheWatermarkShouldNotMoveBackwards() {
+		//given
+		when(mockUser.getReadWatermarks()).thenReturn(new HashMap<Integer, Integer>());
+		when(mockItem.getId()).thenReturn(1);
+		this.userDaoImpl.advanceReadWatermark(mockUser, mockItem, 5);
+		
+		//when
+		this.userDaoImpl.advanceReadWatermark(mockUser, mockItem, 2);
+		
+		//then
+		assertEquals(5, this.userDaoImpl.getReadWatermark(mockUser, mockItem));
 	}
 
 }
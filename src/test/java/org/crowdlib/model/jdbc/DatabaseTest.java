@@ -0,0 +1,139 @@
+package org.crowdlib.model.jdbc;
+
+import static org.junit.Assert.*;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.User;
+import org.crowdlib.ids.AtomicIdAllocator;
+import org.crowdlib.ids.IdAllocator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DatabaseTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	String url;
+
+	Database database;
+
+	User user;
+
+	CatalogueItem item;
+
+	IdAllocator inMemoryIdAllocator;
+
+	@Before
+	public void setup() {
+		// comments stored here are not in the in-memory collection, their ids must not be taken from it
+		inMemoryIdAllocator = Comment.getIdAllocator();
+		Comment.setIdAllocator(new AtomicIdAllocator(80000000));
+		url = "jdbc:h2:" + folder.getRoot().getAbsolutePath() + "/crowdlib";
+		user = new User(1, "Mr.", "Fady", "Zaki", RoleTypeConstants.GUEST_USER, "student1", "whoopey");
+		item = new CatalogueItem(1, "Book1", "Author1", Link.fromPath("http://localhost:9998/1/comments").build());
+		database = Database.open(url, 2);
+		database.seedIfEmpty(Arrays.asList(user), Arrays.asList(item));
+	}
+
+	@After
+	public void tearDown() {
+		database.close();
+		Comment.setIdAllocator(inMemoryIdAllocator);
+	}
+
+	@Test
+	public void whenTheDatabaseIsReopenedTheCommentsShouldStillBeInTheirItemsLog() {
+		//given
+		JdbcCommentDao commentDao = new JdbcCommentDao(database);
+		JdbcCatalogueItemDao catalogueItemDao = new JdbcCatalogueItemDao(database);
+		CatalogueItem storedItem = catalogueItemDao.findById(1).get();
+		User storedUser = new JdbcUserDao(database).findUserByUsername("student1").get();
+		Comment comment = commentDao.createComment("persistent", storedUser, storedItem);
+		catalogueItemDao.addComment(storedItem, comment);
+		commentDao.incrementFavouritesCount(comment);
+		database.close();
+
+		//when
+		database = Database.open(url, 2);
+		CatalogueItem reopenedItem = new JdbcCatalogueItemDao(database).findById(1).get();
+		Comment reopenedComment = new JdbcCatalogueItemDao(database).getCommentsAfter(reopenedItem, -1, 10)
+				.getComments().get(0);
+
+		//then
+		assertNotSame(comment, reopenedComment);
+		assertEquals(comment.getId(), reopenedComment.getId());
+		assertEquals("persistent", reopenedComment.getCommentContent());
+		assertEquals("student1", reopenedComment.getOwner().getUsername());
+		assertEquals(1, reopenedComment.getFavouritesCount());
+		assertEquals(1, reopenedItem.getLinksToEachComment().size());
+		assertEquals(comment.getId().intValue(), database.getLastCommentId());
+	}
+
+	@Test
+	public void whenTheDatabaseIsSeededAgainNoUsersOrItemsShouldBeAdded() {
+		//given
+		User anotherUser = new User(2, "Mr.", "John", "Doe", RoleTypeConstants.GUEST_USER, "student2", "password");
+
+		//when
+		database.seedIfEmpty(Arrays.asList(user, anotherUser), Collections.<CatalogueItem> emptyList());
+
+		//then
+		assertFalse(new JdbcUserDao(database).findUserByUsername("student2").isPresent());
+		assertEquals(1, new JdbcCatalogueItemDao(database).getAll().size());
+	}
+
+	@Test
+	public void whenTheSameSqlIsPreparedAgainOnAConnectionTheStatementShouldBeReused() {
+		//given
+		String sql = "SELECT id FROM catalogue_item WHERE id = ?";
+
+		//when
+		PreparedStatement[] statements = database.withConnection(connection -> new PreparedStatement[] {
+				connection.prepare(sql), connection.prepare(sql) });
+
+		//then
+		assertSame(statements[0], statements[1]);
+	}
+
+	@Test
+	public void whenWorkIsNestedInOtherWorkItShouldRunOnTheSameConnection() {
+		//given
+
+		//when
+		boolean sameConnection = database.withConnection(outer -> database.transaction(inner -> inner == outer));
+
+		//then
+		assertTrue(sameConnection);
+	}
+
+	@Test(expected = SQLException.class)
+	public void whenAllConnectionsAreInUseAcquiringAnotherShouldFailAfterTheTimeout() throws SQLException {
+		//given
+		ConnectionPool pool = new ConnectionPool(url, 1, 10);
+		PooledConnection connection = pool.acquire();
+
+		//when
+		try {
+			pool.acquire();
+		} finally {
+			pool.release(connection, false);
+			pool.close();
+		}
+
+		//then
+		//SQLException should be thrown
+	}
+}
@@ -0,0 +1,278 @@
+package org.crowdlib.notifications;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.UserDaoImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NotificationDispatcherTest {
+
+	private static final int FOLLOWERS = 50;
+
+	private static int nextItemId = 40000;
+
+	CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+	UserDaoImpl userDao = new UserDaoImpl();
+	NotificationService notificationService = new NotificationService();
+
+	User author;
+	CatalogueItem item;
+	User[] followers = new User[FOLLOWERS];
+
+	@Before
+	public void setup() {
+		author = new User(201, "Mr.", "John", "Doe", RoleTypeConstants.GUEST_USER, "author", "password");
+		item = new CatalogueItem(nextItemId++, "Book", "Author", null);
+		for (int i = 0; i < FOLLOWERS; i++) {
+			followers[i] = new User(300 + i, "Ms.", "Jane", "Doe", RoleTypeConstants.GUEST_USER, "follower" + i, "password");
+			InMemoryUserCollection.addUser(followers[i]);
+			userDao.addItemToFollowedItems(followers[i], item);
+			catalogueItemDao.addFollower(item, followers[i]);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		NotificationService.setDispatcher(null);
+	}
+
+	@Test
+	public void whenCommentsArePostedWhileTheDispatcherRunsEveryFollowerShouldBeNotifiedOfAllOfThemAfterShutdown() throws InterruptedException {
+		//given
+		NotificationDispatcher dispatcher = new NotificationDispatcher(1000, 2, 16);
+		dispatcher.start();
+		NotificationService.setDispatcher(dispatcher);
+
+		//when
+		for (int i = 0; i < 100; i++) {
+			postComment("comment " + i);
+		}
+		dispatcher.shutdown(10, TimeUnit.SECONDS);
+
+		//then
+		for (User follower : followers) {
+			assertEquals(100, notificationService.getNotifications(follower).size());
+		}
+		assertEquals(0, dispatcher.getQueueDepth());
+		assertEquals(100, dispatcher.getDeliveredComments());
+		assertEquals(100 * FOLLOWERS, dispatcher.getDeliveredNotifications());
+	}
+
+	@Test
+	public void whenCommentsArePostedWhileTheDispatcherShutsDownEveryOneShouldBeDelivered() throws InterruptedException {
+		//given
+		NotificationDispatcher dispatcher = new NotificationDispatcher(1000, 2, 16);
+		dispatcher.start();
+		NotificationService.setDispatcher(dispatcher);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> posting = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			posting.add(new Thread(() -> {
+				awaitQuietly(start);
+				for (int i = 0; i < 50; i++) {
+					postComment("comment " + i);
+				}
+			}));
+		}
+		for (Thread thread : posting) {
+			thread.start();
+		}
+
+		//when
+		start.countDown();
+		dispatcher.shutdown(10, TimeUnit.SECONDS);
+		for (Thread thread : posting) {
+			thread.join();
+		}
+
+		//then
+		assertEquals(200, followers[0].getNotifications().size());
+		assertEquals(0, dispatcher.getQueueDepth());
+		assertEquals(200, dispatcher.getDeliveredComments());
+	}
+
+	@Test
+	public void whenTheQueueFreesUpWithinTheOfferTimeoutThePostShouldWaitForRoom() throws InterruptedException {
+		//given
+		final CountDownLatch workerBlocked = new CountDownLatch(1);
+		final CountDownLatch releaseWorker = new CountDownLatch(1);
+		UserDaoImpl blockingUserDao = new UserDaoImpl() {
+			@Override
+			public void addAllToListOfNotifications(User user, List<Notification> notifications) {
+				if (Thread.currentThread().getName().startsWith("notification-dispatcher")) {
+					workerBlocked.countDown();
+					awaitQuietly(releaseWorker);
+				}
+				super.addAllToListOfNotifications(user, notifications);
+			}
+		};
+		NotificationDispatcher dispatcher = new NotificationDispatcher(1, 1, 1, 10000, catalogueItemDao,
+				blockingUserDao);
+		dispatcher.start();
+		NotificationService.setDispatcher(dispatcher);
+		postComment("taken by the worker");
+		workerBlocked.await(10, TimeUnit.SECONDS);
+		postComment("fills the queue");
+		Thread waiting = new Thread(() -> postComment("waits for room"));
+		waiting.start();
+
+		//when
+		Thread.sleep(50);
+		releaseWorker.countDown();
+		waiting.join();
+
+		//then
+		assertEquals(0, dispatcher.getCallerDeliveries());
+		assertEquals(3, dispatcher.getQueuedComments());
+		dispatcher.shutdown(10, TimeUnit.SECONDS);
+		assertEquals(3, followers[0].getNotifications().size());
+	}
+
+	@Test
+	public void whenTheQueueStaysFullForTheOfferTimeoutTheCommentShouldBeDeliveredOnThePostingThread()
+			throws InterruptedException {
+		//given
+		final CountDownLatch workerBlocked = new CountDownLatch(1);
+		final CountDownLatch releaseWorker = new CountDownLatch(1);
+		UserDaoImpl blockingUserDao = new UserDaoImpl() {
+			@Override
+			public void addAllToListOfNotifications(User user, List<Notification> notifications) {
+				if (Thread.currentThread().getName().startsWith("notification-dispatcher")) {
+					workerBlocked.countDown();
+					awaitQuietly(releaseWorker);
+				}
+				super.addAllToListOfNotifications(user, notifications);
+			}
+		};
+		NotificationDispatcher dispatcher = new NotificationDispatcher(1, 1, 1, 10, catalogueItemDao, blockingUserDao);
+		dispatcher.start();
+		NotificationService.setDispatcher(dispatcher);
+		postComment("taken by the worker");
+		workerBlocked.await(10, TimeUnit.SECONDS);
+		postComment("fills the queue");
+
+		//when
+		postComment("does not fit");
+
+		//then
+		assertEquals(1, dispatcher.getCallerDeliveries());
+		assertEquals(1, dispatcher.getQueueDepth());
+		assertEquals(1, followers[0].getNotifications().size());
+		releaseWorker.countDown();
+		dispatcher.shutdown(10, TimeUnit.SECONDS);
+		assertEquals(3, followers[0].getNotifications().size());
+	}
+
+	@Test
+	public void whenTheFollowersOfOneCommentOfABatchCannotBeReadOnlyThatCommentShouldBeLost() throws InterruptedException {
+		//given
+		final CatalogueItem brokenItem = new CatalogueItem(nextItemId++, "Broken book", "Author", null);
+		final CountDownLatch workerBlocked = new CountDownLatch(1);
+		final CountDownLatch releaseWorker = new CountDownLatch(1);
+		CatalogueItemDaoImpl failingCatalogueItemDao = new CatalogueItemDaoImpl() {
+			@Override
+			public List<User> getAllFollowers(CatalogueItem followedItem) {
+				if (followedItem == brokenItem) {
+					throw new IllegalStateException("followers unavailable");
+				}
+				workerBlocked.countDown();
+				awaitQuietly(releaseWorker);
+				return super.getAllFollowers(followedItem);
+			}
+		};
+		NotificationDispatcher dispatcher = new NotificationDispatcher(100, 1, 16,
+				NotificationDispatcher.DEFAULT_OFFER_TIMEOUT_MILLIS, failingCatalogueItemDao, userDao);
+		dispatcher.start();
+		NotificationService.setDispatcher(dispatcher);
+		postComment(item, "taken by the worker");
+		workerBlocked.await(10, TimeUnit.SECONDS);
+		for (int i = 0; i < 5; i++) {
+			postComment(item, "before " + i);
+		}
+		postComment(brokenItem, "fails");
+		for (int i = 0; i < 5; i++) {
+			postComment(item, "after " + i);
+		}
+
+		//when
+		releaseWorker.countDown();
+		dispatcher.shutdown(10, TimeUnit.SECONDS);
+
+		//then
+		for (User follower : followers) {
+			assertEquals(11, follower.getNotifications().size());
+		}
+		assertEquals(11, dispatcher.getDeliveredComments());
+		assertEquals(1, dispatcher.getFailedComments());
+		assertEquals(0, dispatcher.getFailedNotifications());
+	}
+
+	@Test
+	public void whenTheDispatcherIsNotStartedTheCommentShouldBeDeliveredOnThePostingThread() {
+		//given
+		NotificationDispatcher dispatcher = new NotificationDispatcher(10, 1, 16);
+		NotificationService.setDispatcher(dispatcher);
+
+		//when
+		postComment("comment");
+
+		//then
+		assertEquals(1, dispatcher.getCallerDeliveries());
+		assertEquals(0, dispatcher.getQueueDepth());
+		assertEquals(1, followers[0].getNotifications().size());
+	}
+
+	@Test
+	public void whenABatchIsDeliveredTheLagMetricsShouldBeRecorded() throws InterruptedException {
+		//given
+		NotificationDispatcher dispatcher = new NotificationDispatcher(10, 1, 16);
+		dispatcher.start();
+		NotificationService.setDispatcher(dispatcher);
+
+		//when
+		postComment("comment");
+		dispatcher.shutdown(10, TimeUnit.SECONDS);
+
+		//then
+		assertEquals(1, dispatcher.getQueuedComments());
+		assertEquals(0, dispatcher.getOldestPendingLagMillis());
+		assertTrue(dispatcher.getMaxDeliveryLagMillis() >= dispatcher.getLastDeliveryLagMillis());
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private Comment postComment(String content) {
+		return postComment(item, content);
+	}
+
+	private Comment postComment(CatalogueItem commentedItem, String content) {
+		Comment comment = new Comment(content, author, commentedItem);
+		Link linkToComment = Link.fromPath("http://localhost:9998/items/" + commentedItem.getId() + "/comments/"
+				+ comment.getId()).rel("comment").build();
+		int logPosition = catalogueItemDao.addComment(commentedItem, comment);
+		notificationService.commentAdded(commentedItem, comment, logPosition, linkToComment);
+		return comment;
+	}
+}
@@ -0,0 +1,167 @@
+package org.crowdlib.notifications;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.ws.rs.core.Link;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.UserDaoImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NotificationServiceTest {
+
+	private static int nextItemId = 30000;
+
+	CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+	UserDaoImpl userDao = new UserDaoImpl();
+	NotificationService notificationService = new NotificationService();
+
+	User follower;
+	User author;
+	CatalogueItem item;
+
+	@Before
+	public void setup() {
+		NotificationService.setMode(NotificationMode.FAN_OUT_ON_READ);
+		follower = new User(101, "Ms.", "Jane", "Doe", RoleTypeConstants.GUEST_USER, "follower", "password");
+		author = new User(102, "Mr.", "John", "Doe", RoleTypeConstants.GUEST_USER, "author", "password");
+		item = new CatalogueItem(nextItemId++, "Book", "Author", null);
+	}
+
+	@After
+	public void tearDown() {
+		NotificationService.setMode(NotificationMode.FAN_OUT_ON_WRITE);
+	}
+
+	@Test
+	public void whenACommentIsAddedToAFollowedItemInFanOutOnReadModeNoNotificationShouldBeAddedToTheFollowersList() {
+		//given
+		follow(follower, item);
+
+		//when
+		postComment("new comment");
+
+		//then
+		assertTrue(follower.getNotifications().isEmpty());
+	}
+
+	@Test
+	public void whenACommentIsAddedToAFollowedItemInFanOutOnReadModeItShouldBeAmongTheFollowersNotifications() {
+		//given
+		follow(follower, item);
+
+		//when
+		Comment comment = postComment("new comment");
+		List<Notification> notifications = notificationService.getNotifications(follower);
+
+		//then
+		assertEquals(1, notifications.size());
+		assertEquals(comment, notifications.get(0).getComment());
+		assertEquals(item, notifications.get(0).getCatalogueItem());
+		assertEquals("comment", notifications.get(0).getLinkToComment().getRel());
+	}
+
+	@Test
+	public void whenAUserStartsFollowingAnItemCommentsPostedBeforeShouldNotBeNotified() {
+		//given
+		postComment("old comment");
+
+		//when
+		follow(follower, item);
+
+		//then
+		assertTrue(notificationService.getNotifications(follower).isEmpty());
+	}
+
+	@Test
+	public void whenAPageOfCommentsIsSeenTheirNotificationsShouldNoLongerBeReturned() {
+		//given
+		follow(follower, item);
+		Comment firstComment = postComment("first");
+		Comment secondComment = postComment("second");
+		Comment thirdComment = postComment("third");
+
+		//when
+		notificationService.commentsSeen(follower, item, Arrays.asList(firstComment, secondComment), 1);
+		List<Notification> notifications = notificationService.getNotifications(follower);
+
+		//then
+		assertEquals(1, notifications.size());
+		assertEquals(thirdComment, notifications.get(0).getComment());
+	}
+
+	@Test
+	public void whenTheNextUnseenCommentIsSeenItsNotificationShouldNoLongerBeReturned() {
+		//given
+		follow(follower, item);
+		Comment firstComment = postComment("first");
+		Comment secondComment = postComment("second");
+
+		//when
+		notificationService.commentSeen(follower, firstComment);
+		List<Notification> notifications = notificationService.getNotifications(follower);
+
+		//then
+		assertEquals(1, notifications.size());
+		assertEquals(secondComment, notifications.get(0).getComment());
+	}
+
+	@Test
+	public void whenACommentAfterTheNextUnseenOneIsSeenEarlierNotificationsShouldStillBeReturned() {
+		//given
+		follow(follower, item);
+		postComment("first");
+		Comment secondComment = postComment("second");
+
+		//when
+		notificationService.commentSeen(follower, secondComment);
+
+		//then
+		assertEquals(2, notificationService.getNotifications(follower).size());
+	}
+
+	@Test
+	public void whenAPageOfCommentsIsSeenInFanOutOnWriteModeTheirNotificationsShouldBeRemovedFromTheFollowersList() {
+		//given
+		NotificationService.setMode(NotificationMode.FAN_OUT_ON_WRITE);
+		follow(follower, item);
+		Comment firstComment = postComment("first");
+		Comment secondComment = postComment("second");
+		Comment thirdComment = postComment("third");
+
+		//when
+		notificationService.commentsSeen(follower, item, Arrays.asList(firstComment, secondComment), 1);
+		List<Notification> notifications = notificationService.getNotifications(follower);
+
+		//then
+		assertEquals(1, notifications.size());
+		assertEquals(thirdComment, notifications.get(0).getComment());
+		assertEquals(1, follower.getNotifications().size());
+	}
+
+	private void follow(User user, CatalogueItem catalogueItem) {
+		InMemoryUserCollection.addUser(user);
+		userDao.addItemToFollowedItems(user, catalogueItem);
+		catalogueItemDao.addFollower(catalogueItem, user);
+	}
+
+	private Comment postComment(String content) {
+		Comment comment = new Comment(content, author, item);
+		Link linkToComment = Link.fromPath("http://localhost:9998/items/" + item.getId() + "/comments/" + comment.getId())
+				.rel("comment").build();
+		int logPosition = catalogueItemDao.addComment(item, comment);
+		notificationService.commentAdded(item, comment, logPosition, linkToComment);
+		return comment;
+	}
+}
@@ -0,0 +1,246 @@
+package org.crowdlib.notifications;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.crowdlib.constants.RoleTypeConstants;
+import org.crowdlib.entities.CatalogueItem;
+import org.crowdlib.entities.Comment;
+import org.crowdlib.entities.Notification;
+import org.crowdlib.entities.User;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationStreamsTest {
+
+	private static final int BUFFER_SIZE = 2;
+
+	private static final long HEARTBEAT_INTERVAL_MILLIS = 60000;
+
+	private static final long WRITE_TIMEOUT_MILLIS = 60000;
+
+	@Mock
+	EventOutput mockEventOutput;
+
+	@Mock
+	Comment mockComment;
+
+	ManualExecutor writers = new ManualExecutor();
+	NotificationStreams notificationStreams = new NotificationStreams(writers, BUFFER_SIZE, HEARTBEAT_INTERVAL_MILLIS,
+			WRITE_TIMEOUT_MILLIS);
+
+	User user;
+	CatalogueItem followedItem;
+	CatalogueItem otherItem;
+
+	@Before
+	public void setup() {
+		user = new User(401, "Ms.", "Jane", "Doe", RoleTypeConstants.GUEST_USER, "listener", "password");
+		followedItem = new CatalogueItem(50001, "Book", "Author", null);
+		otherItem = new CatalogueItem(50002, "Book", "Author", null);
+		user.getFollowedItems().add(followedItem);
+	}
+
+	@Test
+	public void whenACommentIsAddedToAFollowedItemItsNotificationShouldBeWrittenToTheStream() throws IOException {
+		//given
+		notificationStreams.open(user, user.getFollowedItems(), mockEventOutput, Collections.<Notification> emptyList());
+
+		//when
+		notificationStreams.publish(notification(followedItem, 0));
+		writers.runAll();
+
+		//then
+		verify(mockEventOutput, times(1)).write(any(OutboundEvent.class));
+	}
+
+	@Test
+	public void whenTheStreamIsOpenedThePendingNotificationsShouldBeWrittenFirst() throws IOException {
+		//when
+		notificationStreams.open(user, user.getFollowedItems(), mockEventOutput, Collections.singletonList(notification(followedItem, 0)));
+		writers.runAll();
+
+		//then
+		verify(mockEventOutput, times(1)).write(any(OutboundEvent.class));
+	}
+
+	@Test
+	public void whenMoreNotificationsArePendingThanTheBufferHoldsTheyShouldAllBeWrittenWithoutClosingTheStream()
+			throws IOException {
+		//given
+		List<Notification> pending = new ArrayList<Notification>();
+		for (int i = 0; i < BUFFER_SIZE * 3; i++) {
+			pending.add(notification(followedItem, i));
+		}
+
+		//when
+		notificationStreams.open(user, user.getFollowedItems(), mockEventOutput, pending);
+		notificationStreams.publish(notification(followedItem, BUFFER_SIZE * 3));
+		writers.runAll();
+
+		//then
+		verify(mockEventOutput, times(BUFFER_SIZE * 3 + 1)).write(any(OutboundEvent.class));
+		verify(mockEventOutput, never()).close();
+		assertEquals(0, notificationStreams.getEvictions());
+		assertEquals(1, notificationStreams.getNumberOfStreams(user));
+	}
+
+	@Test
+	public void whenACommentIsAddedToAnItemThatIsNotFollowedNothingShouldBeWrittenToTheStream() throws IOException {
+		//given
+		notificationStreams.open(user, user.getFollowedItems(), mockEventOutput, Collections.<Notification> emptyList());
+
+		//when
+		notificationStreams.publish(notification(otherItem, 0));
+		writers.runAll();
+
+		//then
+		verify(mockEventOutput, never()).write(any(OutboundEvent.class));
+	}
+
+	@Test
+	public void whenTheUserFollowsAnItemAfterOpeningTheStreamItsCommentsShouldBeWrittenToTheStream() throws IOException {
+		//given
+		notificationStreams.open(user, user.getFollowedItems(), mockEventOutput, Collections.<Notification> emptyList());
+
+		//when
+		notificationStreams.itemFollowed(user, otherItem);
+		notificationStreams.publish(notification(otherItem, 0));
+		writers.runAll();
+
+		//then
+		verify(mockEventOutput, times(1)).write(any(OutboundEvent.class));
+	}
+
+	@Test
+	public void whenTheClientDoesNotKeepUpWithItsBufferTheStreamShouldBeClosed() throws IOException {
+		//given
+		notificationStreams.open(user, user.getFollowedItems(), mockEventOutput, Collections.<Notification> emptyList());
+
+		//when
+		for (int i = 0; i <= BUFFER_SIZE; i++) {
+			notificationStreams.publish(notification(followedItem, i));
+		}
+		writers.runAll();
+
+		//then
+		verify(mockEventOutput).close();
+		verify(mockEventOutput, never()).write(any(OutboundEvent.class));
+		assertEquals(1, notificationStreams.getEvictions());
+		assertEquals(0, notificationStreams.getNumberOfStreams(user));
+	}
+
+	@Test
+	public void whenWritingToTheClientFailsTheStreamShouldBeClosed() throws IOException {
+		//given
+		doThrow(new IOException("connection reset")).when(mockEventOutput).write(any(OutboundEvent.class));
+		notificationStreams.open(user, user.getFollowedItems(), mockEventOutput, Collections.<Notification> emptyList());
+
+		//when
+		notificationStreams.publish(notification(followedItem, 0));
+		writers.runAll();
+
+		//then
+		verify(mockEventOutput).close();
+		assertEquals(0, notificationStreams.getNumberOfStreams(user));
+	}
+
+	@Test
+	public void whenNothingHasBeenWrittenForAHeartbeatIntervalAHeartbeatShouldBeWritten()
+			throws IOException, InterruptedException {
+		//given
+		NotificationStreams beatingStreams = new NotificationStreams(writers, BUFFER_SIZE, 1, WRITE_TIMEOUT_MILLIS);
+		beatingStreams.open(user, user.getFollowedItems(), mockEventOutput, Collections.<Notification> emptyList());
+		Thread.sleep(5);
+
+		//when
+		beatingStreams.sendHeartbeats();
+		writers.runAll();
+
+		//then
+		ArgumentCaptor<OutboundEvent> written = ArgumentCaptor.forClass(OutboundEvent.class);
+		verify(mockEventOutput, times(1)).write(written.capture());
+		assertEquals("heartbeat", written.getValue().getComment());
+		assertNull(written.getValue().getData());
+	}
+
+	@Test
+	public void whenTheStreamHasBeenWrittenToWithinAHeartbeatIntervalNoHeartbeatShouldBeWritten() throws IOException {
+		//given
+		notificationStreams.open(user, user.getFollowedItems(), mockEventOutput, Collections.<Notification> emptyList());
+
+		//when
+		notificationStreams.sendHeartbeats();
+		writers.runAll();
+
+		//then
+		verify(mockEventOutput, never()).write(any(OutboundEvent.class));
+	}
+
+	@Test
+	public void whenAWriteBlocksForLongerThanTheWriteTimeoutTheStreamShouldBeClosed() throws IOException {
+		//given
+		NotificationStreams timingOutStreams = new NotificationStreams(writers, BUFFER_SIZE, HEARTBEAT_INTERVAL_MILLIS, 1);
+		doAnswer(invocation -> {
+			Thread.sleep(5);
+			timingOutStreams.sendHeartbeats();
+			return null;
+		}).when(mockEventOutput).write(any(OutboundEvent.class));
+		timingOutStreams.open(user, user.getFollowedItems(), mockEventOutput, Collections.<Notification> emptyList());
+
+		//when
+		timingOutStreams.publish(notification(followedItem, 0));
+		timingOutStreams.publish(notification(followedItem, 1));
+		writers.runAll();
+
+		//then
+		verify(mockEventOutput).close();
+		verify(mockEventOutput, times(1)).write(any(OutboundEvent.class));
+		assertEquals(1, timingOutStreams.getTimeouts());
+		assertEquals(0, timingOutStreams.getNumberOfStreams(user));
+	}
+
+	private Notification notification(CatalogueItem item, int logPosition) {
+		return new Notification(item, mockComment, logPosition, null);
+	}
+
+	/**
+	 * Runs the writers on the test thread when asked to.
+	 */
+	private static final class ManualExecutor implements Executor {
+
+		private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+
+		@Override
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		void runAll() {
+			Runnable task;
+			while ((task = tasks.poll()) != null) {
+				task.run();
+			}
+		}
+	}
+}
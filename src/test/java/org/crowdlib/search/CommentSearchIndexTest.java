@@ -0,0 +1,96 @@
+package org.crowdlib.search;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CommentSearchIndexTest {
+
+	CommentSearchIndex index = new CommentSearchIndex();
+
+	@Test
+	public void whenContentIsSplitIntoWordsPunctuationShouldSeparateThemAndCaseShouldBeIgnored() {
+		//when
+		//then
+		assertEquals(Arrays.asList("great", "book", "5", "stars", "great"),
+				CommentSearchIndex.words("Great book -- 5 stars, GREAT!"));
+		assertTrue(CommentSearchIndex.words(null).isEmpty());
+	}
+
+	@Test
+	public void whenCommentsAreSearchedRareAndRepeatedWordsShouldRankHigherAndTiesShouldGoToNewerComments() {
+		//given
+		index.add(1, "a good book");
+		index.add(2, "a good good good book");
+		index.add(3, "a good read");
+		index.add(4, "a rare book");
+		index.add(5, "nothing to see");
+
+		//when
+		int[] found = index.search("rare good", 10);
+
+		//then
+		assertArrayEquals(new int[] { 4, 2, 3, 1 }, found);
+		assertArrayEquals(new int[] { 4, 2 }, index.search("RARE, good!", 2));
+		assertArrayEquals(new int[0], index.search("missing", 10));
+		assertArrayEquals(new int[0], index.search("  ", 10));
+	}
+
+	@Test
+	public void whenACommentIsRemovedItShouldNoLongerBeFound() {
+		//given
+		index.add(1, "first comment");
+		index.add(2, "second comment");
+
+		//when
+		index.remove(1);
+
+		//then
+		assertArrayEquals(new int[] { 2 }, index.search("comment", 10));
+	}
+
+	@Test
+	public void whenTheIndexOutgrowsItsBudgetTheOldestCommentsShouldBeDroppedAndTheNewestKept() {
+		//given
+		CommentSearchIndex small = new CommentSearchIndex(4 << 20);
+		int comments = CommentSearchIndex.SEGMENT_SIZE * 8;
+
+		//when
+		for (int id = 1; id <= comments; id++) {
+			small.add(id, "comment number w" + id + " shared");
+		}
+
+		//then
+		assertTrue(small.getSizeInBytes() <= 4 << 20);
+		assertArrayEquals(new int[0], small.search("w1", 10));
+		assertArrayEquals(new int[] { comments }, small.search("w" + comments, 10));
+		assertArrayEquals(new int[] { comments, comments - 1 }, small.search("shared", 2));
+	}
+
+	@Test
+	public void whenDeletedCommentsAreDroppedOrWereNeverIndexedTheyShouldLeaveNoMarkBehind() {
+		//given
+		CommentSearchIndex withDeletions = new CommentSearchIndex(4 << 20);
+		CommentSearchIndex withoutDeletions = new CommentSearchIndex(4 << 20);
+		int comments = CommentSearchIndex.SEGMENT_SIZE * 8;
+
+		//when
+		for (int id = 1; id <= comments; id++) {
+			withDeletions.add(id, "comment number w" + id + " shared");
+			withoutDeletions.add(id, "comment number w" + id + " shared");
+			if (id <= CommentSearchIndex.SEGMENT_SIZE && id % 3 == 0) {
+				withDeletions.remove(id);
+			}
+		}
+		for (int id = 1; id <= CommentSearchIndex.SEGMENT_SIZE; id++) {
+			withDeletions.remove(id);
+		}
+		withDeletions.remove(comments + 1);
+
+		//then
+		assertArrayEquals(new int[0], withDeletions.search("w1", 10));
+		assertEquals(withoutDeletions.getSizeInBytes(), withDeletions.getSizeInBytes());
+	}
+}
@@ -0,0 +1,42 @@
+package org.crowdlib.text;
+
+import static org.junit.Assert.*;
+
+import org.crowdlib.entities.Utf8Text;
+import org.junit.Test;
+
+public class OffHeapTextArenaTest {
+
+	@Test
+	public void whenTextsAreStoredTheyShouldBeReadBackUnchanged() {
+		//given
+		OffHeapTextArena arena = new OffHeapTextArena(64);
+
+		//when
+		Utf8Text first = arena.store("first");
+		Utf8Text accented = arena.store("Comment\u00e9 \u2713");
+
+		//then
+		assertEquals("first", first.toString());
+		assertEquals("Comment\u00e9 \u2713", accented.toString());
+		assertEquals(5 + 13, arena.getStoredBytes());
+		assertEquals(64, arena.getReservedBytes());
+	}
+
+	@Test
+	public void whenAChunkIsFullTheNextTextShouldGoToANewOne() {
+		//given
+		OffHeapTextArena arena = new OffHeapTextArena(8);
+		Utf8Text first = arena.store("1234567");
+
+		//when
+		Utf8Text second = arena.store("89");
+		Utf8Text longerThanAChunk = arena.store("longer than a chunk");
+
+		//then
+		assertEquals("1234567", first.toString());
+		assertEquals("89", second.toString());
+		assertEquals("longer than a chunk", longerThanAChunk.toString());
+		assertEquals(8 + 8 + 19, arena.getReservedBytes());
+	}
+}
@@ -0,0 +1,75 @@
+package org.crowdlib.text;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.crowdlib.entities.Comment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+public class Utf8TextSerializerTest {
+
+	// configured like the JSON provider Jersey registers
+	ObjectMapper mapper = new ObjectMapper().setAnnotationIntrospector(AnnotationIntrospector.pair(
+			new JacksonAnnotationIntrospector(), new JaxbAnnotationIntrospector(TypeFactory.defaultInstance())));
+
+	@Before
+	public void setup() {
+		Comment.setContentArena(new OffHeapTextArena(1024));
+	}
+
+	@After
+	public void tearDown() {
+		Comment.setContentArena(null);
+	}
+
+	@Test
+	public void whenACommentStoredOffHeapIsWrittenToAStreamItsContentShouldBeAnEscapedJsonString() throws IOException {
+		//given
+		Comment comment = new Comment(1, "a \"quoted\" caf\u00e9\n", Comment.NO_CREATION_TIMESTAMP);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		//when
+		mapper.writeValue(output, comment);
+
+		//then
+		JsonNode json = mapper.readTree(output.toByteArray());
+		assertEquals("a \"quoted\" caf\u00e9\n", json.get("commentContent").asText());
+		assertEquals(1, json.get("id").asInt());
+		assertFalse(json.has("commentContentForJson"));
+	}
+
+	@Test
+	public void whenACommentStoredOffHeapIsWrittenAsCharactersItsContentShouldBeDecoded() throws IOException {
+		//given
+		Comment comment = new Comment(1, "written as characters", Comment.NO_CREATION_TIMESTAMP);
+
+		//when
+		String json = mapper.writeValueAsString(comment);
+
+		//then
+		assertEquals("written as characters", mapper.readTree(json).get("commentContent").asText());
+	}
+
+	@Test
+	public void whenACommentIsReadFromJsonItsContentShouldBeSet() throws IOException {
+		//given
+		String json = "{\"id\":1,\"commentContent\":\"from json\"}";
+
+		//when
+		Comment comment = mapper.readValue(json, Comment.class);
+
+		//then
+		assertEquals("from json", comment.getCommentContent());
+	}
+}
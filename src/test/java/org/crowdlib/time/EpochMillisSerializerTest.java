@@ -0,0 +1,59 @@
+package org.crowdlib.time;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Random;
+
+import org.crowdlib.entities.Comment;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class EpochMillisSerializerTest {
+
+	ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	public void whenATimestampIsWrittenItShouldMatchTheJsonOfTheLocalDateTimeItStandsFor() throws IOException {
+		//given
+		long[] timestamps = new long[1000];
+		timestamps[0] = 0;
+		timestamps[1] = -1;
+		timestamps[2] = LocalDateTime.of(2000, 2, 29, 23, 59, 59, 999000000).atZone(ZoneId.systemDefault())
+				.toInstant().toEpochMilli();
+		timestamps[3] = LocalDateTime.of(2100, 3, 1, 0, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		timestamps[4] = MonotonicClock.currentTimeMillis();
+		Random random = new Random(18);
+		for (int i = 5; i < timestamps.length; i++) {
+			// from about 1770 to 2170
+			timestamps[i] = (long) ((random.nextDouble() - 0.5) * 2 * 200 * 365.25 * 86400000);
+		}
+
+		for (long timestamp : timestamps) {
+			//when
+			Comment comment = new Comment(1, "comment", timestamp);
+			String json = mapper.writeValueAsString(comment);
+
+			//then
+			LocalDateTime expected = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+			assertEquals(mapper.readTree(mapper.writeValueAsString(expected)),
+					mapper.readTree(json).get("creationTimestamp"));
+		}
+	}
+
+	@Test
+	public void whenACommentHasNoCreationTimestampItShouldBeWrittenAsNull() throws IOException {
+		//given
+		Comment comment = new Comment(1, "comment", Comment.NO_CREATION_TIMESTAMP);
+
+		//when
+		String json = mapper.writeValueAsString(comment);
+
+		//then
+		assertTrue(mapper.readTree(json).get("creationTimestamp").isNull());
+	}
+}
@@ -0,0 +1,36 @@
+package org.crowdlib.time;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MonotonicClockTest {
+
+	@Test
+	public void whenTheTimeIsReadRepeatedlyItShouldNeverGoBackwardsAndStayCloseToTheSystemClock() {
+		//given
+		long previous = MonotonicClock.currentTimeMillis();
+
+		for (int i = 0; i < 100000; i++) {
+			//when
+			long now = MonotonicClock.currentTimeMillis();
+
+			//then
+			assertTrue(now >= previous);
+			previous = now;
+		}
+		assertTrue(Math.abs(System.currentTimeMillis() - previous) < 1000);
+	}
+
+	@Test
+	public void whenATimeIsTurnedIntoLocalTimeAndBackItShouldBeUnchanged() {
+		//given
+		long now = MonotonicClock.currentTimeMillis();
+
+		//when
+		long local = MonotonicClock.toLocalMillis(now);
+
+		//then
+		assertEquals(now, MonotonicClock.toEpochMillis(local));
+	}
+}
@@ -78,4 +78,24 @@ public class CatalogueItemResourceTests {
 		//CustomizedWebApplication exception is thrown because item isn't available in memory
 	}
 
+	@Test
+	public void whenCommentsAreSearchedWithoutWordsShouldThrowCustomizedWebApplicationExceptionWithResponseBadRequest() {
+		//when
+		try {
+			this.catalogueItemResource.searchComments(" ", null);
+			fail();
+		} catch (CustomizedWebApplicationException e) {
+			//then
+			assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), e.getResponse().getStatus());
+		}
+	}
+
+	@Test(expected=CustomizedWebApplicationException.class)
+	public void whenCommentsAreSearchedWithALimitAboveTheMaximumShouldThrowCustomizedWebApplicationException() {
+		//when
+		this.catalogueItemResource.searchComments("book", 1000);
+		//then
+		//CustomizedWebApplication exception is thrown because at most 100 comments are returned
+	}
+
 }
@@ -3,13 +3,18 @@ package org.crowdlib.webservices.api;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.ws.rs.core.Link;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
@@ -23,11 +28,16 @@ import org.crowdlib.exceptions.CustomizedWebApplicationException;
 import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
 import org.crowdlib.inmemory.collections.InMemoryCommentCollection;
 import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
+import org.crowdlib.model.CommentDaoImpl;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -69,6 +79,148 @@ public class CommentResourceTests {
 		this.commentResource.setUriInfo(mockUriInfo);
 	}
 
+	@Test
+	public void whenCommentsAreRequestedWithALimitTheNextPageLinkShouldCarryACursorToTheLastCommentOnThePage() {
+		// given
+		CatalogueItem item = new CatalogueItem(11233, "title", "author", null);
+		InMemoryCatalogueItemCollection.addCatalogueItem(item);
+		Comment firstComment = this.commentResource.addCommentToCatalogueItem(item.getId(), "first");
+		Comment secondComment = this.commentResource.addCommentToCatalogueItem(item.getId(), "second");
+		this.commentResource.addCommentToCatalogueItem(item.getId(), "third");
+		when(mockUriBuilder.replaceQueryParam(anyString(), anyVararg())).thenReturn(mockUriBuilder);
+		// when
+		Response response = this.commentResource.getCatalogueItemComments(item.getId(), null, null, null, 2, null);
+		// then
+		assertEquals(Arrays.asList(firstComment, secondComment), response.getEntity());
+		assertEquals(1, response.getLinks().size());
+		verify(mockUriBuilder).replaceQueryParam("after", CommentCursor.encode(1));
+		verify(mockUriBuilder).replaceQueryParam("limit", 2);
+	}
+
+	@Test
+	public void whenCommentsAreRequestedAfterACursorOnlyTheCommentsFollowingItShouldBeReturned() {
+		// given
+		CatalogueItem item = new CatalogueItem(11234, "title", "author", null);
+		InMemoryCatalogueItemCollection.addCatalogueItem(item);
+		this.commentResource.addCommentToCatalogueItem(item.getId(), "first");
+		this.commentResource.addCommentToCatalogueItem(item.getId(), "second");
+		Comment thirdComment = this.commentResource.addCommentToCatalogueItem(item.getId(), "third");
+		when(mockUriBuilder.replaceQueryParam(anyString(), anyVararg())).thenReturn(mockUriBuilder);
+		// when
+		Response response = this.commentResource.getCatalogueItemComments(item.getId(), null, null,
+				CommentCursor.encode(1), 2, null);
+		// then
+		assertEquals(Arrays.asList(thirdComment), response.getEntity());
+	}
+
+	@Test
+	public void whenCommentsAreRequestedSortedByFavouritesTheMostFavouritedShouldComeFirstUpToTheLimit() {
+		// given
+		CatalogueItem item = new CatalogueItem(11235, "title", "author", null);
+		InMemoryCatalogueItemCollection.addCatalogueItem(item);
+		Comment firstComment = this.commentResource.addCommentToCatalogueItem(item.getId(), "first");
+		Comment secondComment = this.commentResource.addCommentToCatalogueItem(item.getId(), "second");
+		Comment thirdComment = this.commentResource.addCommentToCatalogueItem(item.getId(), "third");
+		CommentDaoImpl commentDao = new CommentDaoImpl();
+		commentDao.incrementFavouritesCount(thirdComment);
+		commentDao.incrementFavouritesCount(thirdComment);
+		commentDao.incrementFavouritesCount(secondComment);
+		// when
+		Response topTwo = this.commentResource.getCatalogueItemComments(item.getId(), null, null, null, 2, "favourites");
+		Response all = this.commentResource.getCatalogueItemComments(item.getId(), null, null, null, 5, "favourites");
+		// then
+		assertEquals(Arrays.asList(thirdComment, secondComment), topTwo.getEntity());
+		assertEquals(Arrays.asList(thirdComment, secondComment, firstComment), all.getEntity());
+		assertTrue(topTwo.getLinks().isEmpty());
+	}
+
+	@Test(expected = CustomizedWebApplicationException.class)
+	public void whenCommentsAreRequestedSortedByAnUnknownOrderItShouldThrowCustomizedWebApplicationException() {
+		// when
+		this.commentResource.getCatalogueItemComments(1, null, null, null, 2, "date");
+		// then
+		// CustomizedWebApplication exception is thrown because only favourites can be sorted by
+	}
+
+	@Test(expected = CustomizedWebApplicationException.class)
+	public void whenCommentsAreRequestedAfterAnInvalidCursorItShouldThrowCustomizedWebApplicationException() {
+		// when
+		this.commentResource.getCatalogueItemComments(1, null, null, "not a cursor", 2, null);
+		// then
+		// CustomizedWebApplication exception is thrown because the cursor cannot be decoded
+	}
+
+	@Test
+	public void whenAThreadIsRequestedTheCommentShouldBeWrittenWithItsRepliesNestedInOrder() throws IOException {
+		// given
+		CatalogueItem item = new CatalogueItem(11236, "title", "author", null);
+		InMemoryCatalogueItemCollection.addCatalogueItem(item);
+		Comment comment = this.commentResource.addCommentToCatalogueItem(item.getId(), "comment");
+		Comment firstReply = this.commentResource.addReplyToComment(comment.getId(), "first reply");
+		Comment replyToFirstReply = this.commentResource.addReplyToComment(firstReply.getId(), "reply to first reply");
+		Comment secondReply = this.commentResource.addReplyToComment(comment.getId(), "second reply");
+		// when
+		JsonNode thread = readThread(this.commentResource.getCommentThread(comment.getId(), null, null));
+		// then
+		assertEquals(comment.getId().intValue(), thread.get("comment").get("id").asInt());
+		assertEquals("comment", thread.get("comment").get("commentContent").asText());
+		assertEquals(2, thread.get("replies").size());
+		JsonNode first = thread.get("replies").get(0);
+		assertEquals(firstReply.getId().intValue(), first.get("comment").get("id").asInt());
+		assertEquals(replyToFirstReply.getId().intValue(), first.get("replies").get(0).get("comment").get("id").asInt());
+		assertEquals(secondReply.getId().intValue(), thread.get("replies").get(1).get("comment").get("id").asInt());
+		assertFalse(thread.get("moreReplies").asBoolean());
+		assertFalse(first.get("moreReplies").asBoolean());
+	}
+
+	@Test
+	public void whenAThreadIsRequestedWithinBoundsTheCommentsLeftOutShouldBeFlaggedOnTheirParents() throws IOException {
+		// given
+		CatalogueItem item = new CatalogueItem(11237, "title", "author", null);
+		InMemoryCatalogueItemCollection.addCatalogueItem(item);
+		Comment comment = this.commentResource.addCommentToCatalogueItem(item.getId(), "comment");
+		Comment firstReply = this.commentResource.addReplyToComment(comment.getId(), "first reply");
+		this.commentResource.addReplyToComment(firstReply.getId(), "reply to first reply");
+		this.commentResource.addReplyToComment(comment.getId(), "second reply");
+		// when
+		JsonNode shallow = readThread(this.commentResource.getCommentThread(comment.getId(), 1, null));
+		JsonNode small = readThread(this.commentResource.getCommentThread(comment.getId(), null, 2));
+		// then
+		assertEquals(2, shallow.get("replies").size());
+		assertFalse(shallow.get("moreReplies").asBoolean());
+		assertEquals(0, shallow.get("replies").get(0).get("replies").size());
+		assertTrue(shallow.get("replies").get(0).get("moreReplies").asBoolean());
+		assertEquals(1, small.get("replies").size());
+		assertTrue(small.get("moreReplies").asBoolean());
+		assertTrue(small.get("replies").get(0).get("moreReplies").asBoolean());
+	}
+
+	@Test
+	public void whenTheThreadOfAReplyDetachedByADeletionIsRequestedItsRepliesShouldStillBeWritten() throws IOException {
+		// given
+		CatalogueItem item = new CatalogueItem(11238, "title", "author", null);
+		InMemoryCatalogueItemCollection.addCatalogueItem(item);
+		Comment comment = this.commentResource.addCommentToCatalogueItem(item.getId(), "comment");
+		Comment reply = this.commentResource.addReplyToComment(comment.getId(), "reply");
+		new CommentDaoImpl().deleteComment(comment, "deleted");
+		Comment replyToReply = this.commentResource.addReplyToComment(reply.getId(), "reply to detached reply");
+		// when
+		JsonNode thread = readThread(this.commentResource.getCommentThread(reply.getId(), null, null));
+		// then
+		assertEquals(reply.getId().intValue(), thread.get("comment").get("id").asInt());
+		assertEquals(1, thread.get("replies").size());
+		assertEquals(replyToReply.getId().intValue(), thread.get("replies").get(0).get("comment").get("id").asInt());
+		assertFalse(thread.get("moreReplies").asBoolean());
+	}
+
+	@Test(expected = CustomizedWebApplicationException.class)
+	public void whenAThreadIsRequestedWithANegativeDepthItShouldThrowCustomizedWebApplicationException() {
+		// when
+		this.commentResource.getCommentThread(1, -1, null);
+		// then
+		// CustomizedWebApplication exception is thrown because a thread is at least the comment itself
+	}
+
 	@Test
 	public void whenGetCommentIsCalledOnCommentAvailableInMemoryItShouldReturnThatComment() {
 		// given:
@@ -121,11 +273,9 @@ public class CommentResourceTests {
 		// given
 		int itemId = 1; // item available in memory
 		String commentContent = "Testing";
-		String pathToComments = APPLICATION_PATH + "items/comments";
-		String pathToThisComment = pathToComments + "/" + String.valueOf(Comment.numberOfComments + 1);
-		when(mockUriBuilder.build()).thenReturn(URI.create(pathToThisComment));
 		// when
 		Comment commentReturnedByMethod = this.commentResource.addCommentToCatalogueItem(itemId, commentContent);
+		String pathToThisComment = APPLICATION_PATH + "items/" + itemId + "/comments/" + commentReturnedByMethod.getId();
 		Link actualLinkToCommentReturnedByMethod = commentReturnedByMethod.getLinkToSelf();
 		Link expectedLinkToCommentReturnedByMethod = Link.fromPath(pathToThisComment).rel("self").build();
 		// then
@@ -137,12 +287,10 @@ public class CommentResourceTests {
 		// given
 		int itemId = 1; // item available in memory
 		String commentContent = "Testing Comment";
-		String pathToComments = APPLICATION_PATH + "items/comments";
-		String pathToThisComment = pathToComments + "/" + String.valueOf(Comment.numberOfComments + 1);
-		when(mockUriBuilder.build()).thenReturn(URI.create(pathToThisComment));
-		String pathToThisCommentReplies = pathToThisComment + "/replies";
 		// when
 		Comment commentReturnedByMethod = this.commentResource.addCommentToCatalogueItem(itemId, commentContent);
+		String pathToThisCommentReplies = APPLICATION_PATH + "items/" + itemId + "/comments/"
+				+ commentReturnedByMethod.getId() + "/replies";
 		Link actualLinkToRepliesReturnedByMethod = commentReturnedByMethod.getLinkToReplies();
 		Link expectedLinkToRepliesReturnedByMethod = Link.fromPath(pathToThisCommentReplies).rel("replies").build();
 		// then
@@ -154,9 +302,10 @@ public class CommentResourceTests {
 		// given
 		ArrayList<Notification> notifications = new ArrayList<Notification>();
 		when(mockUser.getNotifications()).thenReturn(notifications);
-		ArrayList<User> followers = new ArrayList<User>();
-		followers.add(mockUser);
-		when(mockItem.getFollowers()).thenReturn(followers);
+		when(mockUser.getId()).thenReturn(11232);
+		when(mockUser.getUsername()).thenReturn("mockFollower");
+		InMemoryUserCollection.addUser(mockUser);
+		new CatalogueItemDaoImpl().addFollower(mockItem, mockUser);
 		
 		// when
 		int numberOfNotificationsBeforeCommentIsAdded = mockUser.getNotifications().size();
@@ -186,9 +335,7 @@ public class CommentResourceTests {
 		// given
 		Comment commentUnderTest = InMemoryCommentCollection.getComment(1);
 		String replyContent = "Testing Reply";
-		String pathToComments = APPLICATION_PATH + "items/comments";
-		String pathToThisComment = pathToComments + "/" + String.valueOf(commentUnderTest.getId());
-		when(mockUriInfo.getAbsolutePath()).thenReturn(URI.create(pathToThisComment));
+		String pathToComments = APPLICATION_PATH + "items/" + commentUnderTest.getCatalogueItem().getId() + "/comments";
 		// when
 		Comment replyReturnedByMethod = this.commentResource.addReplyToComment(commentUnderTest.getId(), replyContent);
 		Link actualLinkToReplyReturnedByMethod = replyReturnedByMethod.getLinkToSelf();
@@ -202,12 +349,10 @@ public class CommentResourceTests {
 		// given
 		Comment commentUnderTest = InMemoryCommentCollection.getComment(1);
 		String replyContent = "Testing Reply";
-		String pathToComments = APPLICATION_PATH + "items/comments";
-		String pathToThisReply = pathToComments + "/" + String.valueOf(Comment.numberOfComments + 1);
-		String pathToThisReplyReplies = pathToThisReply + "/replies";
-		when(mockUriInfo.getAbsolutePath()).thenReturn(URI.create(pathToThisReply));
+		String pathToComments = APPLICATION_PATH + "items/" + commentUnderTest.getCatalogueItem().getId() + "/comments";
 		// when
 		Comment replyReturnedByMethod = this.commentResource.addReplyToComment(commentUnderTest.getId(), replyContent);
+		String pathToThisReplyReplies = pathToComments + "/" + String.valueOf(replyReturnedByMethod.getId()) + "/replies";
 		Link actualLinkToRepliesReturnedByMethod = replyReturnedByMethod.getLinkToReplies();
 		Link expectedLinkToRepliesReturnedByMethod = Link.fromPath(pathToThisReplyReplies).rel("replies").build();
 		// then
@@ -280,4 +425,9 @@ public class CommentResourceTests {
 		
 	}
 
+	private static JsonNode readThread(Response response) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		((StreamingOutput) response.getEntity()).write(output);
+		return new ObjectMapper().readTree(output.toByteArray());
+	}
 }
@@ -7,6 +7,7 @@ import static org.mockito.Mockito.when;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import javax.ws.rs.core.SecurityContext;
 
@@ -15,9 +16,12 @@ import org.crowdlib.entities.Comment;
 import org.crowdlib.entities.Notification;
 import org.crowdlib.entities.User;
 import org.crowdlib.exceptions.CustomizedWebApplicationException;
+import org.crowdlib.inmemory.collections.HotFavourites;
+import org.crowdlib.inmemory.collections.IdIndexedList;
 import org.crowdlib.inmemory.collections.InMemoryCatalogueItemCollection;
 import org.crowdlib.inmemory.collections.InMemoryCommentCollection;
 import org.crowdlib.inmemory.collections.InMemoryUserCollection;
+import org.crowdlib.model.CatalogueItemDaoImpl;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -51,6 +55,7 @@ public class UserResourceTests {
 		when(mockPrincipal.getName()).thenReturn("user");
 		when(mockUser.getUsername()).thenReturn("user");
 		when(mockComment.getId()).thenReturn(1121);
+		when(mockComment.compareAndSetHotFavourites(any(HotFavourites.class), any(HotFavourites.class))).thenReturn(true);
 		when(mockItem.getId()).thenReturn(1121);
 		InMemoryUserCollection.addUser(mockUser);
 		InMemoryCommentCollection.addComment(mockComment);
@@ -168,6 +173,39 @@ public class UserResourceTests {
 		assertEquals(commentFavouritesCountBeforeAddingCommentToFavourties + 1, commentFavouritesCountAfterAddingCommentToFavourties);
 	}
 	
+	@Test
+	public void whenTheSameCommentIsAddedToFavouritesConcurrentlyItsCountShouldBeIncrementedOnce() throws InterruptedException {
+		//given
+		Comment comment = new Comment();
+		InMemoryCommentCollection.addComment(comment);
+		when(mockUser.getFavouriteComments()).thenReturn(new IdIndexedList<Comment>());
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> adding = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			adding.add(new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				this.userResource.addCommentToUserFavourites(comment.getId());
+			}));
+		}
+		
+		//when
+		for (Thread thread : adding) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : adding) {
+			thread.join();
+		}
+		
+		//then
+		assertEquals(1, mockUser.getFavouriteComments().size());
+		assertEquals(1, comment.getFavouritesCount());
+	}
+	
 	@Test
 	public void whenAUserIsANewUserHeShouldHaveNoFollowedItems() {
 		//given
@@ -233,13 +271,14 @@ public class UserResourceTests {
 	@Test
 	public void whenAddItemToFollowedItemsIsCalledWithANewItemThenTheCountOfFollowersForThisItemShouldBeIncremented(){
 		//given
-		ArrayList<User> followers = new ArrayList<User>();
-		when(mockItem.getFollowers()).thenReturn(followers);
-		int followersListSizeBeforeAddingItemToFollowedItems = mockItem.getFollowers().size();
+		when(mockUser.getId()).thenReturn(1121);
+		InMemoryUserCollection.addUser(mockUser);
+		CatalogueItemDaoImpl catalogueItemDao = new CatalogueItemDaoImpl();
+		int followersListSizeBeforeAddingItemToFollowedItems = catalogueItemDao.getAllFollowers(mockItem).size();
 		
 		//when
 		this.userResource.addItemToUserFollowedItems(mockItem.getId());
-		int followersListSizeAfterAddingItemToFollowedItems = mockItem.getFollowers().size();
+		int followersListSizeAfterAddingItemToFollowedItems = catalogueItemDao.getAllFollowers(mockItem).size();
 		
 		//then
 		assertEquals(followersListSizeBeforeAddingItemToFollowedItems + 1, followersListSizeAfterAddingItemToFollowedItems);